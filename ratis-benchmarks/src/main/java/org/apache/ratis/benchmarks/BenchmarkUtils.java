@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.impl.ServerProtoUtils;
+import org.apache.ratis.server.simulation.MiniRaftClusterWithSimulatedRpc;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Utilities for creating the benchmark data. */
+public interface BenchmarkUtils {
+  ClientId CLIENT_ID = ClientId.randomId();
+  RaftPeerId PEER_ID = RaftPeerId.valueOf("s0");
+  RaftGroupId GROUP_ID = RaftGroupId.randomId();
+
+  /** The key is defined in the package-private SimulatedRequestReply. */
+  String SIMULATE_LATENCY_KEY = "org.apache.ratis.server.simulation.SimulatedRequestReply.simulateLatencyMs";
+
+  /** @return a random payload; half of the bytes are zeros so that the payload is compressible. */
+  static ByteString newPayload(int size) {
+    final byte[] bytes = new byte[size];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    for(int i = 0; i < size; i += 2) {
+      bytes[i] = 0;
+    }
+    return ByteString.copyFrom(bytes);
+  }
+
+  static Message newMessage(int size) {
+    return Message.valueOf(newPayload(size));
+  }
+
+  static RaftClientRequest newWriteRequest(long callId, Message message) {
+    return new RaftClientRequest(CLIENT_ID, PEER_ID, GROUP_ID, callId, message,
+        RaftClientRequest.writeRequestType(), null);
+  }
+
+  static LogEntryProto newLogEntry(long term, long index, int payloadSize) {
+    return ServerProtoUtils.toLogEntryProto(ServerProtoUtils.toStateMachineLogEntryProto(
+        CLIENT_ID, index, newPayload(payloadSize), null), term, index);
+  }
+
+  static LogEntryProto[] newLogEntries(long term, long startIndex, int count, int payloadSize) {
+    final LogEntryProto[] entries = new LogEntryProto[count];
+    for(int i = 0; i < count; i++) {
+      entries[i] = newLogEntry(term, startIndex + i, payloadSize);
+    }
+    return entries;
+  }
+
+  /**
+   * Start an in-memory cluster using the simulated RPC without latency and then wait for the leader.
+   * The servers use the storage under the test directory.
+   */
+  static MiniRaftClusterWithSimulatedRpc newCluster(int numServers, RaftProperties properties)
+      throws IOException, InterruptedException {
+    properties.setInt(SIMULATE_LATENCY_KEY, 0);
+    final MiniRaftClusterWithSimulatedRpc cluster
+        = MiniRaftClusterWithSimulatedRpc.FACTORY.newCluster(numServers, properties);
+    cluster.start();
+    RaftTestUtil.waitForLeader(cluster);
+    return cluster;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.util.ChecksumUtils;
+import org.apache.ratis.util.ChecksumUtils.Crc32cProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Checksum;
+
+/** Compare the CRC32C providers over heap arrays and direct buffers. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChecksumBenchmark {
+  @Param({"JDK", "PURE_JAVA"})
+  private Crc32cProvider provider;
+
+  @Param({"64", "1024", "65536"})
+  private int size;
+
+  private Checksum checksum;
+  private byte[] array;
+  private ByteBuffer direct;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    if (!provider.isAvailable()) {
+      throw new IllegalStateException(provider + " is unavailable in this JVM");
+    }
+    checksum = provider.newChecksum();
+    array = new byte[size];
+    ThreadLocalRandom.current().nextBytes(array);
+    direct = ByteBuffer.allocateDirect(size);
+    direct.put(array).flip();
+  }
+
+  @Benchmark
+  public long array() {
+    checksum.reset();
+    checksum.update(array, 0, array.length);
+    return checksum.getValue();
+  }
+
+  @Benchmark
+  public long directBuffer() {
+    checksum.reset();
+    direct.rewind();
+    ChecksumUtils.update(checksum, direct);
+    return checksum.getValue();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.client.impl.ClientProtoUtils;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientReplyProto;
+import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroupMemberId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.impl.ServerImplUtils;
+import org.apache.ratis.server.impl.ServerProtoUtils;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmark the conversions in {@link ClientProtoUtils} and {@link ServerProtoUtils}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtoUtilsBenchmark {
+  @Param({"128", "4096"})
+  private int payloadSize;
+
+  @Param({"1", "32"})
+  private int numEntries;
+
+  private final RaftGroupMemberId leaderId = RaftGroupMemberId.valueOf(
+      BenchmarkUtils.PEER_ID, BenchmarkUtils.GROUP_ID);
+  private final RaftPeerId followerId = RaftPeerId.valueOf("s1");
+
+  private RaftClientRequest request;
+  private ByteString requestBytes;
+  private RaftClientReply reply;
+  private List<LogEntryProto> entries;
+  private ByteString appendEntriesBytes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    request = BenchmarkUtils.newWriteRequest(1, BenchmarkUtils.newMessage(payloadSize));
+    requestBytes = ClientProtoUtils.toRaftClientRequestProto(request).toByteString();
+    reply = new RaftClientReply(request, BenchmarkUtils.newMessage(payloadSize), Collections.emptyList());
+    entries = Arrays.asList(BenchmarkUtils.newLogEntries(1, 100, numEntries, payloadSize));
+    appendEntriesBytes = toAppendEntriesRequestProto().toByteString();
+  }
+
+  private AppendEntriesRequestProto toAppendEntriesRequestProto() {
+    return ServerProtoUtils.toAppendEntriesRequestProto(leaderId, followerId, 1, entries, 99, false,
+        ServerImplUtils.newTermIndex(1, 99), Collections.emptyList(), 1);
+  }
+
+  @Benchmark
+  public ByteString clientRequestToProto() {
+    return ClientProtoUtils.toRaftClientRequestProto(request).toByteString();
+  }
+
+  @Benchmark
+  public RaftClientRequest clientRequestFromProto() throws InvalidProtocolBufferException {
+    return ClientProtoUtils.toRaftClientRequest(RaftClientRequestProto.parseFrom(requestBytes));
+  }
+
+  @Benchmark
+  public RaftClientReply clientReplyRoundTrip() throws InvalidProtocolBufferException {
+    final ByteString bytes = ClientProtoUtils.toRaftClientReplyProto(reply).toByteString();
+    return ClientProtoUtils.toRaftClientReply(RaftClientReplyProto.parseFrom(bytes));
+  }
+
+  @Benchmark
+  public ByteString appendEntriesToProto() {
+    return toAppendEntriesRequestProto().toByteString();
+  }
+
+  @Benchmark
+  public AppendEntriesRequestProto appendEntriesFromProto() throws InvalidProtocolBufferException {
+    return AppendEntriesRequestProto.parseFrom(appendEntriesBytes);
+  }
+
+  @Benchmark
+  public long logEntrySizeWithoutStateMachineData() {
+    long size = 0;
+    for(LogEntryProto e : entries) {
+      size += ServerProtoUtils.removeStateMachineData(e).getSerializedSize();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.server.simulation.MiniRaftClusterWithSimulatedRpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of write requests
+ * using an in-memory {@link org.apache.ratis.MiniRaftCluster} with the simulated RPC.
+ * It measures the server and client code paths without the network transport.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RaftClusterBenchmark {
+  static final int ASYNC_WINDOW = 64;
+
+  @Param({"1", "3"})
+  private int numServers;
+
+  @Param({"128", "4096"})
+  private int messageSize;
+
+  private MiniRaftClusterWithSimulatedRpc cluster;
+  private RaftClient client;
+  private Message message;
+  private final CompletableFuture<?>[] futures = new CompletableFuture<?>[ASYNC_WINDOW];
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, InterruptedException {
+    cluster = BenchmarkUtils.newCluster(numServers, new RaftProperties());
+    client = cluster.createClient();
+    message = BenchmarkUtils.newMessage(messageSize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    client.close();
+    cluster.shutdown();
+  }
+
+  @Benchmark
+  public RaftClientReply blockingWrite() throws IOException {
+    return client.io().send(message);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ASYNC_WINDOW)
+  public void asyncWrite() {
+    for(int i = 0; i < futures.length; i++) {
+      futures[i] = client.async().send(message);
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+}
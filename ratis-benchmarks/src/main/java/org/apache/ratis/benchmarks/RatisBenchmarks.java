@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the Ratis benchmarks.
+ *
+ * The command line arguments are the standard JMH arguments, e.g. a regular expression selecting the benchmarks.
+ * Unless the result format or the result file is specified,
+ * the results are written in JSON to {@link #DEFAULT_RESULT_FILE}
+ * so that they can be compared across runs for regression tracking.
+ *
+ * Usage: java -jar ratis-benchmarks/target/benchmarks.jar [JMH options] [benchmark regex]
+ */
+public final class RatisBenchmarks {
+  public static final String DEFAULT_RESULT_FILE = "ratis-benchmarks-result.json";
+
+  private RatisBenchmarks() {
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    final CommandLineOptions commandLine = new CommandLineOptions(args);
+    final OptionsBuilder builder = new OptionsBuilder();
+    if (!commandLine.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      builder.result(DEFAULT_RESULT_FILE);
+    }
+    final Options options = builder.parent(commandLine).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.util.SlidingWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Benchmark {@link SlidingWindow.Client} and {@link SlidingWindow.Server}.
+ * Each invocation submits a window of requests and then replies them in order or in reverse order.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SlidingWindowBenchmark {
+  static final int WINDOW = 64;
+
+  static class Request implements SlidingWindow.ClientSideRequest<Long>, SlidingWindow.ServerSideRequest<Long> {
+    private final long seqNum;
+    private boolean isFirst = false;
+    private Long reply;
+
+    Request(long seqNum) {
+      this.seqNum = seqNum;
+    }
+
+    @Override
+    public long getSeqNum() {
+      return seqNum;
+    }
+
+    @Override
+    public void setReply(Long reply) {
+      this.reply = reply;
+    }
+
+    @Override
+    public boolean hasReply() {
+      return reply != null;
+    }
+
+    @Override
+    public void fail(Throwable e) {
+      throw new IllegalStateException("Unexpected failure of " + seqNum, e);
+    }
+
+    @Override
+    public void setFirstRequest() {
+      isFirst = true;
+    }
+
+    @Override
+    public boolean isFirstRequest() {
+      return isFirst;
+    }
+  }
+
+  @Param({"true", "false"})
+  private boolean inOrder;
+
+  private SlidingWindow.Client<Request, Long> client;
+  private SlidingWindow.Server<Request, Long> server;
+  private long nextSeqNum;
+  private final long[] seqNums = new long[WINDOW];
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    client = new SlidingWindow.Client<>(getClass().getSimpleName());
+    server = new SlidingWindow.Server<>(getClass().getSimpleName(), new Request(Long.MAX_VALUE));
+    nextSeqNum = 0;
+
+    // the client delays the other requests until the first request is replied.
+    final Request first = client.submitNewRequest(Request::new, r -> {});
+    client.receiveReply(first.getSeqNum(), first.getSeqNum(), r -> {});
+  }
+
+  private int replyIndex(int i) {
+    return inOrder? i: WINDOW - 1 - i;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW)
+  public void client(Blackhole blackhole) {
+    final Consumer<Request> sendMethod = blackhole::consume;
+    for(int i = 0; i < WINDOW; i++) {
+      seqNums[i] = client.submitNewRequest(Request::new, sendMethod).getSeqNum();
+    }
+    for(int i = 0; i < WINDOW; i++) {
+      final long seqNum = seqNums[replyIndex(i)];
+      client.receiveReply(seqNum, seqNum, sendMethod);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(WINDOW)
+  public void server(Blackhole blackhole) {
+    final Consumer<Request> replyMethod = blackhole::consume;
+    final long first = nextSeqNum;
+    for(int i = 0; i < WINDOW; i++) {
+      server.receivedRequest(new Request(nextSeqNum++), blackhole::consume);
+    }
+    for(int i = 0; i < WINDOW; i++) {
+      final long seqNum = first + replyIndex(i);
+      server.receiveReply(seqNum, seqNum, replyMethod);
+    }
+  }
+}
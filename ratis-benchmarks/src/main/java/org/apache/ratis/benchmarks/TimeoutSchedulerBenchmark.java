@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.benchmarks;
+
+import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule short timeout tasks so that the scheduler queue stays bounded;
+ * the tasks do nothing as in the common case of request timeouts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeoutSchedulerBenchmark {
+  static final Logger LOG = LoggerFactory.getLogger(TimeoutSchedulerBenchmark.class);
+  private static final TimeDuration TIMEOUT = TimeDuration.valueOf(100, TimeUnit.MILLISECONDS);
+
+  private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
+
+  @Benchmark
+  public void onTimeout() {
+    scheduler.onTimeout(TIMEOUT, () -> {}, LOG, () -> "Failed to run the timeout task");
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void onTimeoutConcurrently() {
+    scheduler.onTimeout(TIMEOUT, () -> {}, LOG, () -> "Failed to run the timeout task");
+  }
+}
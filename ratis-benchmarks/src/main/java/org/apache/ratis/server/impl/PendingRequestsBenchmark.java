@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.benchmarks.BenchmarkUtils;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.RaftPeerRole;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.server.simulation.MiniRaftClusterWithSimulatedRpc;
+import org.apache.ratis.statemachine.impl.TransactionContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark {@link PendingRequests}: acquire a permit, add a pending request and then reply it.
+ * The metrics are obtained from a single-server in-memory cluster.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PendingRequestsBenchmark {
+  private MiniRaftClusterWithSimulatedRpc cluster;
+  private PendingRequests pendingRequests;
+  private final Message message = BenchmarkUtils.newMessage(128);
+  private long nextIndex;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, InterruptedException {
+    final RaftProperties properties = new RaftProperties();
+    cluster = BenchmarkUtils.newCluster(1, properties);
+    final RaftServerImpl server = cluster.getLeader();
+    pendingRequests = new PendingRequests(server.getMemberId(), properties, server.getRaftServerMetrics());
+    nextIndex = 1;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pendingRequests.close();
+    cluster.shutdown();
+  }
+
+  @Benchmark
+  public RaftClientReply addAndReply() {
+    final long index = nextIndex++;
+    final RaftClientRequest request = BenchmarkUtils.newWriteRequest(index, message);
+    final LogEntryProto entry = ServerProtoUtils.toLogEntryProto(
+        ServerProtoUtils.toStateMachineLogEntryProto(request, null, null), 1, index);
+    final PendingRequests.Permit permit = Objects.requireNonNull(pendingRequests.tryAcquire(message), "permit");
+    final PendingRequest pending = pendingRequests.add(permit, request,
+        new TransactionContextImpl(RaftPeerRole.LEADER, null, entry));
+
+    final RaftClientReply reply = new RaftClientReply(request, message, Collections.emptyList());
+    pendingRequests.replyPendingRequest(index, reply);
+    return pending.getFuture().join();
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.benchmarks.BenchmarkUtils;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.protocol.RaftClientReply;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.util.TimeDuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark {@link RetryCache}: a new request creates an entry and completes it;
+ * a retry finds the completed entry.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RetryCacheBenchmark {
+  private final ClientId clientId = ClientId.randomId();
+  private RetryCache cache;
+  private RaftClientReply reply;
+  private long nextCallId;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    cache = new RetryCache(TimeDuration.valueOf(60, TimeUnit.SECONDS));
+    final RaftClientRequest request = BenchmarkUtils.newWriteRequest(0, BenchmarkUtils.newMessage(16));
+    reply = new RaftClientReply(request, request.getMessage(), Collections.emptyList());
+    nextCallId = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    cache.close();
+  }
+
+  @Benchmark
+  public boolean newRequest() {
+    final RetryCache.CacheQueryResult result = cache.queryCache(clientId, nextCallId++);
+    result.getEntry().updateResult(reply);
+    return result.isRetry();
+  }
+
+  @Benchmark
+  public boolean retry() {
+    final long callId = nextCallId++;
+    cache.queryCache(clientId, callId).getEntry().updateResult(reply);
+    return cache.queryCache(clientId, callId).isRetry();
+  }
+}
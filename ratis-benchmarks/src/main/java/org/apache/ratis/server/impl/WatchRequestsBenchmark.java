@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.benchmarks.BenchmarkUtils;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.ReplicationLevel;
+import org.apache.ratis.protocol.Message;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark {@link WatchRequests}: add a batch of watch requests and then complete them by index updates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WatchRequestsBenchmark {
+  static final int BATCH = 64;
+
+  private WatchRequests watchRequests;
+  private final CompletableFuture<?>[] futures = new CompletableFuture<?>[BATCH];
+  private long nextIndex;
+
+  @Setup(Level.Iteration)
+  public void setup() {
+    watchRequests = new WatchRequests(getClass().getSimpleName(), new RaftProperties());
+    nextIndex = 1;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    watchRequests.failWatches(new IllegalStateException("Benchmark iteration ended"));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void watch() {
+    final long first = nextIndex;
+    for(int i = 0; i < BATCH; i++) {
+      final long index = nextIndex++;
+      final RaftClientRequest request = new RaftClientRequest(BenchmarkUtils.CLIENT_ID, BenchmarkUtils.PEER_ID,
+          BenchmarkUtils.GROUP_ID, index, Message.EMPTY,
+          RaftClientRequest.watchRequestType(index, ReplicationLevel.MAJORITY), null);
+      futures[i] = watchRequests.add(request);
+    }
+    for(long index = first; index < nextIndex; index++) {
+      watchRequests.update(ReplicationLevel.MAJORITY, index);
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+}
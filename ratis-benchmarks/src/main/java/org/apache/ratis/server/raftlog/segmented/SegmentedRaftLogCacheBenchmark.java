@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.benchmarks.BenchmarkUtils;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.server.metrics.RaftLogMetrics;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.raftlog.segmented.LogSegment.LogRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmark the lookups in {@link SegmentedRaftLogCache}, which are done by the log appenders. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentedRaftLogCacheBenchmark {
+  static final int ENTRIES_PER_SEGMENT = 1000;
+  static final int BATCH = 32;
+
+  @Param({"10", "1000"})
+  private int numSegments;
+
+  private RaftLogMetrics metrics;
+  private SegmentedRaftLogCache cache;
+  private long endIndex;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    metrics = new RaftLogMetrics(getClass().getSimpleName());
+    cache = new SegmentedRaftLogCache(getClass().getSimpleName(), null, new RaftProperties(), metrics);
+    for(int s = 0; s < numSegments; s++) {
+      final long start = (long) s * ENTRIES_PER_SEGMENT;
+      final LogSegment segment = LogSegment.newOpenSegment(null, start, null);
+      for(LogEntryProto e : BenchmarkUtils.newLogEntries(1, start, ENTRIES_PER_SEGMENT, 16)) {
+        segment.appendToOpenSegment(e);
+      }
+      segment.close();
+      cache.addSegment(segment);
+    }
+    endIndex = cache.getEndIndex();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    cache.close();
+    metrics.unregister();
+  }
+
+  private long randomIndex() {
+    return ThreadLocalRandom.current().nextLong(endIndex + 1);
+  }
+
+  @Benchmark
+  public LogRecord getLogRecord() {
+    return cache.getLogRecord(randomIndex());
+  }
+
+  @Benchmark
+  public TermIndex[] getTermIndices() {
+    final long start = randomIndex();
+    return cache.getTermIndices(start, start + BATCH);
+  }
+
+  @Benchmark
+  public LogSegment getSegment() {
+    return cache.getSegment(randomIndex());
+  }
+}
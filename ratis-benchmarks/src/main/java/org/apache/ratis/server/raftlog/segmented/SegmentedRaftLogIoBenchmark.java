@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.benchmarks.BenchmarkUtils;
+import org.apache.ratis.proto.RaftProtos.CompressionType;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.Preconditions;
+import org.apache.ratis.util.SizeInBytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark writing log entries with {@link SegmentedRaftLogOutputStream}
+ * and reading them with {@link SegmentedRaftLogReader}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SegmentedRaftLogIoBenchmark {
+  static final int BATCH = 64;
+  static final int NUM_READ_ENTRIES = 1024;
+  static final long SEGMENT_MAX_SIZE = SizeInBytes.valueOf("8MB").getSize();
+  static final long PREALLOCATED_SIZE = SizeInBytes.valueOf("4MB").getSize();
+
+  @Param({"NONE", "DEFLATE"})
+  private CompressionType compression;
+
+  @Param({"128", "4096"})
+  private int payloadSize;
+
+  private File dir;
+  private ByteBuffer writeBuffer;
+  private LogEntryProto[] entries;
+  private SegmentedRaftLogOutputStream out;
+  private File writeFile;
+  private long batchSize;
+  private long segmentSize;
+  private File readFile;
+
+  @Setup(Level.Trial)
+  public void setupTrial() throws IOException {
+    dir = new File(BaseTest.getRootTestDir(), getClass().getSimpleName() + "-" + System.nanoTime());
+    FileUtils.createDirectories(dir);
+    writeBuffer = ByteBuffer.allocateDirect(SizeInBytes.valueOf("64KB").getSizeInt());
+    entries = BenchmarkUtils.newLogEntries(1, 0, NUM_READ_ENTRIES, payloadSize);
+    batchSize = 0;
+    for(int i = 0; i < BATCH; i++) {
+      batchSize += LogSegment.getEntrySize(entries[i]);
+    }
+    writeFile = new File(dir, "write");
+
+    readFile = new File(dir, "read");
+    try (SegmentedRaftLogOutputStream o = newOutputStream(readFile)) {
+      for (LogEntryProto e : entries) {
+        o.write(e);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws IOException {
+    FileUtils.deleteFully(dir);
+  }
+
+  @Setup(Level.Iteration)
+  public void setupIteration() throws IOException {
+    out = newOutputStream(writeFile);
+    segmentSize = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDownIteration() throws IOException {
+    out.close();
+  }
+
+  private SegmentedRaftLogOutputStream newOutputStream(File file) throws IOException {
+    writeBuffer.clear();
+    return new SegmentedRaftLogOutputStream(file, false, SEGMENT_MAX_SIZE, PREALLOCATED_SIZE, writeBuffer,
+        compression, SizeInBytes.valueOf("64KB").getSizeInt());
+  }
+
+  /**
+   * Write a batch of entries and then flush, as the log worker does.
+   * The file is rewritten from the beginning when it reaches the max segment size.
+   */
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void write() throws IOException {
+    for(int i = 0; i < BATCH; i++) {
+      out.write(entries[i]);
+    }
+    out.flush();
+
+    segmentSize += batchSize;
+    if (segmentSize >= SEGMENT_MAX_SIZE) {
+      out.close();
+      setupIteration();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_READ_ENTRIES)
+  public void read(Blackhole blackhole) throws IOException {
+    try (SegmentedRaftLogReader reader = new SegmentedRaftLogReader(readFile, null)) {
+      Preconditions.assertTrue(reader.verifyHeader());
+      for(LogEntryProto e; (e = reader.readEntry()) != null; ) {
+        blackhole.consume(e);
+      }
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.ratis.client;
 
 import org.apache.ratis.client.api.DataStreamOutput;
 import org.apache.ratis.protocol.DataStreamReply;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -29,4 +30,11 @@ public interface DataStreamOutputRpc extends DataStreamOutput {
 
   /** Create a transaction asynchronously once the stream data is replicated to all servers */
   CompletableFuture<DataStreamReply> startTransactionAsync();
+
+  /**
+   * Send out the data in the buffer asynchronously without copying it,
+   * such as forwarding the data received by a server to the other servers.
+   * The buffer must not be released until the returned future is completed.
+   */
+  CompletableFuture<DataStreamReply> writeAsync(ByteBuf buf);
 }
@@ -17,6 +17,8 @@
  */
 package org.apache.ratis.client.api;
 
+import org.apache.ratis.protocol.RoutingTable;
+
 /**
  * Stream data asynchronously to all the servers in the {@link org.apache.ratis.protocol.RaftGroup}.
  * Clients may stream data to the nearest server and then the server will forward the data to the other servers.
@@ -37,4 +39,11 @@ package org.apache.ratis.client.api;
 public interface DataStreamApi {
   /** Create a stream to write data. */
   DataStreamOutput stream();
+
+  /**
+   * Create a stream to write data,
+   * where the servers forward the data to each other according to the given routing table.
+   * For example, a client may choose a chain through the servers near to it.
+   */
+  DataStreamOutput stream(RoutingTable routingTable);
 }
@@ -19,12 +19,44 @@ package org.apache.ratis.client.api;
 
 import org.apache.ratis.io.CloseAsync;
 import org.apache.ratis.protocol.DataStreamReply;
+import org.apache.ratis.util.IOUtils;
+import org.apache.ratis.util.JavaUtils;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.CompletableFuture;
 
 /** An asynchronous output stream supporting zero buffer copying. */
 public interface DataStreamOutput extends CloseAsync<DataStreamReply> {
   /** Send out the data in the buffer asynchronously */
   CompletableFuture<DataStreamReply> writeAsync(ByteBuffer buf);
+
+  /**
+   * Send out the data in the given region of the file asynchronously.
+   * The data is transferred from the file to the network directly, if the implementation supports it,
+   * without being read into a buffer.
+   * The file must not be closed, and the region must not be modified, until the returned future is completed.
+   * Similar to the buffers, the data of each call is sent as a single packet.
+   *
+   * The default implementation reads the region into a buffer and then calls {@link #writeAsync(ByteBuffer)}.
+   *
+   * @param src the file to be read.
+   * @param position the position of the region in the file.
+   * @param length the length of the region.
+   */
+  default CompletableFuture<DataStreamReply> writeAsync(FileChannel src, long position, long length) {
+    if (position < 0 || length < 0) {
+      throw new IllegalArgumentException("Negative position or length: position = " + position
+          + ", length = " + length);
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+    try {
+      IOUtils.readFully(src, buffer, position);
+    } catch (IOException e) {
+      return JavaUtils.completeExceptionally(e);
+    }
+    buffer.flip();
+    return writeAsync(buffer);
+  }
 }
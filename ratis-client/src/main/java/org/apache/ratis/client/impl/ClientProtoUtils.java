@@ -111,7 +111,8 @@ public interface ClientProtoUtils {
         request.getCallId(),
         toMessage(p.getMessage()),
         type,
-        request.getSlidingWindowEntry());
+        request.getSlidingWindowEntry(),
+        p.hasRoutingTable()? RoutingTable.valueOf(p.getRoutingTable()): null);
   }
 
   static RaftClientRequestProto toRaftClientRequestProto(
@@ -144,6 +145,9 @@ public interface ClientProtoUtils {
             + " in request " + request);
     }
 
+    if (request.getRoutingTable() != null) {
+      b.setRoutingTable(request.getRoutingTable().toProto());
+    }
     return b.build();
   }
 
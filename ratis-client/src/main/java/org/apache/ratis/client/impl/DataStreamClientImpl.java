@@ -22,15 +22,21 @@ import org.apache.ratis.client.DataStreamClientRpc;
 import org.apache.ratis.client.DataStreamOutputRpc;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.datastream.impl.DataStreamPacketByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestFilePositionCount;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.DataStreamReply;
 import org.apache.ratis.protocol.RaftClientRequest;
 import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RoutingTable;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -62,12 +68,13 @@ public class DataStreamClientImpl implements DataStreamClient {
 
     private DataStreamOutputImpl(RaftClientRequest request) {
       this.header = request;
-      this.headerFuture = orderedStreamAsync.sendRequest(request.getCallId(), -1,
-          ClientProtoUtils.toRaftClientRequestProto(header).toByteString().asReadOnlyByteBuffer(), Type.STREAM_HEADER);
+      this.headerFuture = orderedStreamAsync.sendRequest(new DataStreamRequestByteBuffer(request.getCallId(), -1,
+          ClientProtoUtils.toRaftClientRequestProto(header).toByteString().asReadOnlyByteBuffer(), Type.STREAM_HEADER));
     }
 
     private CompletableFuture<DataStreamReply> send(Type type, ByteBuffer buffer) {
-      return orderedStreamAsync.sendRequest(header.getCallId(), streamOffset, buffer, type);
+      return orderedStreamAsync.sendRequest(
+          new DataStreamRequestByteBuffer(header.getCallId(), streamOffset, buffer, type));
     }
 
     private CompletableFuture<DataStreamReply> send(Type type) {
@@ -82,6 +89,22 @@ public class DataStreamClientImpl implements DataStreamClient {
       return f;
     }
 
+    @Override
+    public CompletableFuture<DataStreamReply> writeAsync(FileChannel src, long position, long length) {
+      final CompletableFuture<DataStreamReply> f = orderedStreamAsync.sendRequest(new DataStreamRequestFilePositionCount(
+          header.getCallId(), streamOffset, src, position, length, Type.STREAM_DATA));
+      streamOffset += length;
+      return f;
+    }
+
+    @Override
+    public CompletableFuture<DataStreamReply> writeAsync(ByteBuf buf) {
+      final CompletableFuture<DataStreamReply> f = orderedStreamAsync.sendRequest(new DataStreamRequestByteBuf(
+          header.getCallId(), streamOffset, buf, Type.STREAM_DATA));
+      streamOffset += buf.readableBytes();
+      return f;
+    }
+
     @Override
     public CompletableFuture<DataStreamReply> closeAsync() {
       return send(Type.STREAM_CLOSE);
@@ -109,8 +132,13 @@ public class DataStreamClientImpl implements DataStreamClient {
 
   @Override
   public DataStreamOutputRpc stream() {
-    RaftClientRequest request = new RaftClientRequest(
-        clientId, dataStreamServer.getId(), groupId, RaftClientImpl.nextCallId(), RaftClientRequest.writeRequestType());
+    return stream((RoutingTable) null);
+  }
+
+  @Override
+  public DataStreamOutputRpc stream(RoutingTable routingTable) {
+    final RaftClientRequest request = new RaftClientRequest(clientId, dataStreamServer.getId(), groupId,
+        RaftClientImpl.nextCallId(), null, RaftClientRequest.writeRequestType(), null, routingTable);
     return new DataStreamOutputImpl(request);
   }
 
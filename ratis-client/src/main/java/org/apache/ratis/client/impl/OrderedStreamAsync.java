@@ -22,15 +22,13 @@ import org.apache.ratis.client.RaftClientConfigKeys;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.DataStreamReply;
-import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
-import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
+import org.apache.ratis.protocol.DataStreamRequest;
 import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.SlidingWindow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Semaphore;
 import java.util.function.LongFunction;
@@ -38,16 +36,21 @@ import java.util.function.LongFunction;
 public class OrderedStreamAsync {
   public static final Logger LOG = LoggerFactory.getLogger(OrderedStreamAsync.class);
 
-  static class DataStreamWindowRequest extends DataStreamRequestByteBuffer
-      implements SlidingWindow.ClientSideRequest<DataStreamReply> {
+  static class DataStreamWindowRequest implements SlidingWindow.ClientSideRequest<DataStreamReply> {
+    /** The request to be sent, which may carry its data in a buffer or in a file region. */
+    private final DataStreamRequest request;
     private final long seqNum;
     private final CompletableFuture<DataStreamReply> replyFuture = new CompletableFuture<>();
 
-    DataStreamWindowRequest(long streamId, long offset, ByteBuffer data, long seqNum, Type type){
-      super(streamId, offset, data, type);
+    DataStreamWindowRequest(DataStreamRequest request, long seqNum){
+      this.request = request;
       this.seqNum = seqNum;
     }
 
+    DataStreamRequest getDataStreamRequest() {
+      return request;
+    }
+
     @Override
     public void setFirstRequest() {
     }
@@ -75,6 +78,11 @@ public class OrderedStreamAsync {
     public CompletableFuture<DataStreamReply> getReplyFuture(){
       return replyFuture;
     }
+
+    @Override
+    public String toString() {
+      return request + ", seqNum=" + seqNum;
+    }
   }
 
   private final DataStreamClientRpc dataStreamClientRpc;
@@ -87,16 +95,16 @@ public class OrderedStreamAsync {
     this.requestSemaphore = new Semaphore(RaftClientConfigKeys.DataStream.outstandingRequestsMax(properties));
   }
 
-  CompletableFuture<DataStreamReply> sendRequest(long streamId, long offset, ByteBuffer data, Type type){
-    final int length = data.remaining();
+  CompletableFuture<DataStreamReply> sendRequest(DataStreamRequest request){
     try {
       requestSemaphore.acquire();
     } catch (InterruptedException e){
       return JavaUtils.completeExceptionally(IOUtils.toInterruptedIOException(
-          "Interrupted when sending streamId=" + streamId + ", offset= " + offset + ", length=" + length, e));
+          "Interrupted when sending streamId=" + request.getStreamId() + ", offset= " + request.getStreamOffset()
+              + ", length=" + request.getDataLength(), e));
     }
     final LongFunction<DataStreamWindowRequest> constructor
-        = seqNum -> new DataStreamWindowRequest(streamId, offset, data.slice(), seqNum, type);
+        = seqNum -> new DataStreamWindowRequest(request, seqNum);
     return slidingWindow.submitNewRequest(constructor, this::sendRequestToNetwork).
            getReplyFuture().whenComplete((r, e) -> requestSemaphore.release());
   }
@@ -109,7 +117,8 @@ public class OrderedStreamAsync {
     if(slidingWindow.isFirst(request.getSeqNum())){
       request.setFirstRequest();
     }
-    final CompletableFuture<DataStreamReply> requestFuture = dataStreamClientRpc.streamAsync(request);
+    final CompletableFuture<DataStreamReply> requestFuture = dataStreamClientRpc.streamAsync(
+        request.getDataStreamRequest());
     requestFuture.thenApply(reply -> {
       slidingWindow.receiveReply(
           request.getSeqNum(), reply, this::sendRequestToNetwork);
@@ -16,9 +16,8 @@
  *  limitations under the License.
  */
 
-package org.apache.ratis.netty.server;
+package org.apache.ratis.datastream.impl;
 
-import org.apache.ratis.datastream.impl.DataStreamPacketImpl;
 import org.apache.ratis.protocol.DataStreamRequest;
 import org.apache.ratis.protocol.DataStreamRequestHeader;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
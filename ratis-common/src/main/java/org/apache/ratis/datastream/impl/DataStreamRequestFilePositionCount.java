@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.datastream.impl;
+
+import org.apache.ratis.protocol.DataStreamRequest;
+import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * Implements {@link DataStreamRequest} with a region of a {@link FileChannel}
+ * so that the data can be transferred from the file to the network without copying it to the user space.
+ *
+ * The file channel is owned by the caller; it is not closed by this class.
+ *
+ * This class is immutable.
+ */
+public class DataStreamRequestFilePositionCount extends DataStreamPacketImpl implements DataStreamRequest {
+  private final FileChannel file;
+  private final long position;
+  private final long count;
+
+  public DataStreamRequestFilePositionCount(long streamId, long streamOffset,
+      FileChannel file, long position, long count, Type type) {
+    super(streamId, streamOffset, type);
+    if (position < 0 || count < 0) {
+      throw new IllegalArgumentException("Negative position or count: position = " + position
+          + ", count = " + count);
+    }
+    this.file = file;
+    this.position = position;
+    this.count = count;
+  }
+
+  @Override
+  public long getDataLength() {
+    return count;
+  }
+
+  public FileChannel getFile() {
+    return file;
+  }
+
+  public long getPosition() {
+    return position;
+  }
+}
@@ -29,14 +29,7 @@ import java.util.Arrays;
 public class MD5Hash {
   public static final int MD5_LEN = 16;
 
-  private static final ThreadLocal<MessageDigest> DIGESTER_FACTORY =
-      ThreadLocal.withInitial(() -> {
-    try {
-      return MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-  });
+  private static final ThreadLocal<MessageDigest> DIGESTER_FACTORY = ThreadLocal.withInitial(MD5Hash::newDigester);
 
   private byte[] digest;
 
@@ -97,6 +90,18 @@ public class MD5Hash {
     return digester;
   }
 
+  /**
+   * Create a new MD5 digester which is not shared,
+   * e.g. for computing a digest incrementally across multiple threads.
+   */
+  public static MessageDigest newDigester() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /** Construct a hash value for the content from the InputStream. */
   public static MD5Hash digest(InputStream in) throws IOException {
     final byte[] buffer = new byte[4*1024];
@@ -20,12 +20,29 @@ package org.apache.ratis.protocol;
 
 import org.apache.ratis.datastream.impl.DataStreamPacketImpl;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
 import org.apache.ratis.util.SizeInBytes;
 
-/** The header format is streamId, streamOffset, dataLength. */
+/**
+ * The header format is streamId, streamOffset, dataLength.
+ *
+ * A header is encoded either as a length-prefixed protobuf message
+ * or, after the binary format is negotiated, as a fixed-width binary header:
+ * marker (int), streamId (long), streamOffset (long), dataLength (long), type (byte), flags (byte),
+ * the subclass fields and then a checksum (int) of all the preceding bytes.
+ * The marker is negative so that it is distinguishable from the non-negative length prefix of a protobuf header.
+ */
 public class DataStreamPacketHeader extends DataStreamPacketImpl {
   private static final SizeInBytes SIZE_OF_HEADER_LEN = SizeInBytes.valueOf(4);
 
+  /** The version of the binary header format. */
+  public static final int BINARY_HEADER_VERSION = 1;
+  private static final int BINARY_HEADER_MAGIC = 0xDA7A0000;
+  private static final int BINARY_HEADER_MAGIC_MASK = 0xFFFF0000;
+  /** The size of marker, streamId, streamOffset, dataLength, type and flags. */
+  private static final int SIZE_OF_BINARY_HEADER_FIELDS = 4 + 8 + 8 + 8 + 1 + 1;
+  private static final int SIZE_OF_CHECKSUM = 4;
+
   private final long dataLength;
 
   public DataStreamPacketHeader(long streamId, long streamOffset, long dataLength, Type type) {
@@ -41,4 +58,67 @@ public class DataStreamPacketHeader extends DataStreamPacketImpl {
   public static int getSizeOfHeaderLen() {
     return SIZE_OF_HEADER_LEN.getSizeInt();
   }
+
+  /** @return the size of a binary header having the given size of the subclass fields. */
+  protected static int getSizeOfBinaryHeader(int sizeOfSubclassFields) {
+    return SIZE_OF_BINARY_HEADER_FIELDS + sizeOfSubclassFields + SIZE_OF_CHECKSUM;
+  }
+
+  /** @return is the next packet in the given buffer encoded with a binary header? */
+  public static boolean isBinaryHeader(ByteBuf buf) {
+    return buf.readableBytes() >= 4 && buf.getInt(buf.readerIndex()) < 0;
+  }
+
+  /** Write the binary header fields of the given packet; the subclass fields and the checksum are not written. */
+  protected static void writeBinaryHeaderFields(DataStreamPacket packet, int flags, ByteBuf out) {
+    out.writeInt(BINARY_HEADER_MAGIC | BINARY_HEADER_VERSION)
+        .writeLong(packet.getStreamId())
+        .writeLong(packet.getStreamOffset())
+        .writeLong(packet.getDataLength())
+        .writeByte(packet.getType().getNumber())
+        .writeByte(flags);
+  }
+
+  /** Write the checksum of the bytes written from the given index. */
+  protected static void writeChecksum(ByteBuf out, int fromIndex) {
+    out.writeInt(checksum(out, fromIndex, out.writerIndex()));
+  }
+
+  /**
+   * Verify the marker, the checksum and the type of the binary header starting at the reader index.
+   * The reader index is unchanged.
+   *
+   * @return the error message, or null if the header is valid.
+   */
+  protected static String verifyBinaryHeader(ByteBuf buf, int size) {
+    final int start = buf.readerIndex();
+    final int marker = buf.getInt(start);
+    if ((marker & BINARY_HEADER_MAGIC_MASK) != BINARY_HEADER_MAGIC) {
+      return "Unexpected binary header marker " + Integer.toHexString(marker);
+    }
+    final int version = marker & ~BINARY_HEADER_MAGIC_MASK;
+    if (version != BINARY_HEADER_VERSION) {
+      return "Unsupported binary header version " + version;
+    }
+    final int checksumIndex = start + size - SIZE_OF_CHECKSUM;
+    final int checksum = checksum(buf, start, checksumIndex);
+    if (checksum != buf.getInt(checksumIndex)) {
+      return "Binary header checksum mismatch: computed " + checksum + " but stored " + buf.getInt(checksumIndex);
+    }
+    // the type follows the marker, the streamId, the streamOffset and the dataLength
+    final int type = buf.getByte(start + 4 + 3 * 8);
+    if (Type.forNumber(type) == null) {
+      return "Unknown packet type " + type;
+    }
+    return null;
+  }
+
+  /** A cheap checksum for detecting corrupted or misaligned headers; the data is not covered. */
+  private static int checksum(ByteBuf buf, int from, int to) {
+    int h = 1;
+    for (int i = from; i < to; i++) {
+      h = 31 * h + buf.getByte(i);
+    }
+    return h;
+  }
 }
\ No newline at end of file
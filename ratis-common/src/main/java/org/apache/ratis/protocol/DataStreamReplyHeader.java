@@ -22,6 +22,7 @@ import org.apache.ratis.proto.RaftProtos.DataStreamReplyHeaderProto;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
 import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
 import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.CorruptedFrameException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,7 +30,13 @@ import org.slf4j.LoggerFactory;
 public class DataStreamReplyHeader extends DataStreamPacketHeader implements DataStreamReply {
   private static final Logger LOG = LoggerFactory.getLogger(DataStreamReplyHeader.class);
 
+  private static final int SIZE_OF_BINARY_HEADER = getSizeOfBinaryHeader(8);
+  private static final int FLAG_SUCCESS = 1;
+
   public static DataStreamReplyHeader read(ByteBuf buf) {
+    if (isBinaryHeader(buf)) {
+      return readBinary(buf);
+    }
     if (getSizeOfHeaderLen() > buf.readableBytes()) {
       return null;
     }
@@ -64,6 +71,44 @@ public class DataStreamReplyHeader extends DataStreamPacketHeader implements Dat
     }
   }
 
+  private static DataStreamReplyHeader readBinary(ByteBuf buf) {
+    if (SIZE_OF_BINARY_HEADER > buf.readableBytes()) {
+      return null;
+    }
+    final String error = verifyBinaryHeader(buf, SIZE_OF_BINARY_HEADER);
+    if (error != null) {
+      // the stream cannot be resynchronized; fail so that the channel is closed
+      throw new CorruptedFrameException("Fail to decode reply header: " + error);
+    }
+    final int start = buf.readerIndex();
+    final long dataLength = buf.getLong(start + 20);
+    if (SIZE_OF_BINARY_HEADER + dataLength > buf.readableBytes()) {
+      return null;
+    }
+    buf.skipBytes(4);
+    final long streamId = buf.readLong();
+    final long streamOffset = buf.readLong();
+    buf.skipBytes(8);
+    final Type type = Type.forNumber(buf.readByte());
+    final int flags = buf.readByte();
+    final long bytesWritten = buf.readLong();
+    buf.skipBytes(4); // checksum
+    return new DataStreamReplyHeader(streamId, streamOffset, dataLength, type, bytesWritten,
+        (flags & FLAG_SUCCESS) != 0);
+  }
+
+  /** Write the binary header of the given reply. */
+  public static void writeBinary(DataStreamReply reply, ByteBuf out) {
+    final int start = out.writerIndex();
+    writeBinaryHeaderFields(reply, reply.isSuccess()? FLAG_SUCCESS: 0, out);
+    out.writeLong(reply.getBytesWritten());
+    writeChecksum(out, start);
+  }
+
+  public static int getSizeOfBinaryHeader() {
+    return SIZE_OF_BINARY_HEADER;
+  }
+
   private final long bytesWritten;
   private final boolean success;
 
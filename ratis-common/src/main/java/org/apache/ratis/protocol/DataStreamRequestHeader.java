@@ -22,6 +22,7 @@ import org.apache.ratis.proto.RaftProtos.DataStreamRequestHeaderProto;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
 import org.apache.ratis.thirdparty.com.google.protobuf.InvalidProtocolBufferException;
 import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.handler.codec.CorruptedFrameException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,7 +33,24 @@ import org.slf4j.LoggerFactory;
 public class DataStreamRequestHeader extends DataStreamPacketHeader implements DataStreamRequest {
   private static final Logger LOG = LoggerFactory.getLogger(DataStreamRequestHeader.class);
 
+  private static final int SIZE_OF_BINARY_HEADER = getSizeOfBinaryHeader(0);
+
   public static DataStreamRequestHeader read(ByteBuf buf) {
+    return read(buf, true);
+  }
+
+  /**
+   * Similar to {@link #read(ByteBuf)} except that it does not require the data to be available,
+   * so that the data can be consumed as it arrives.
+   */
+  public static DataStreamRequestHeader readHeaderOnly(ByteBuf buf) {
+    return read(buf, false);
+  }
+
+  private static DataStreamRequestHeader read(ByteBuf buf, boolean requireData) {
+    if (isBinaryHeader(buf)) {
+      return readBinary(buf, requireData);
+    }
     if (getSizeOfHeaderLen() > buf.readableBytes()) {
       return null;
     }
@@ -47,13 +65,15 @@ public class DataStreamRequestHeader extends DataStreamPacketHeader implements D
       ByteBuf headerBuf = buf.slice(buf.readerIndex(), headerBufLen);
       DataStreamRequestHeaderProto header = DataStreamRequestHeaderProto.parseFrom(headerBuf.nioBuffer());
 
-      if (header.getPacketHeader().getDataLength() + headerBufLen <= buf.readableBytes()) {
+      final long requiredDataLength = requireData? header.getPacketHeader().getDataLength(): 0;
+      if (requiredDataLength + headerBufLen <= buf.readableBytes()) {
         buf.readerIndex(buf.readerIndex() + headerBufLen);
         return new DataStreamRequestHeader(
             header.getPacketHeader().getStreamId(),
             header.getPacketHeader().getStreamOffset(),
             header.getPacketHeader().getDataLength(),
-            header.getPacketHeader().getType());
+            header.getPacketHeader().getType(),
+            header.getBinaryHeaderVersion());
       } else {
         buf.resetReaderIndex();
         return null;
@@ -65,7 +85,55 @@ public class DataStreamRequestHeader extends DataStreamPacketHeader implements D
     }
   }
 
+  private static DataStreamRequestHeader readBinary(ByteBuf buf, boolean requireData) {
+    if (SIZE_OF_BINARY_HEADER > buf.readableBytes()) {
+      return null;
+    }
+    final String error = verifyBinaryHeader(buf, SIZE_OF_BINARY_HEADER);
+    if (error != null) {
+      // the stream cannot be resynchronized; fail so that the channel is closed
+      throw new CorruptedFrameException("Fail to decode request header: " + error);
+    }
+    final int start = buf.readerIndex();
+    final long dataLength = buf.getLong(start + 20);
+    if (requireData && SIZE_OF_BINARY_HEADER + dataLength > buf.readableBytes()) {
+      return null;
+    }
+    buf.skipBytes(4);
+    final long streamId = buf.readLong();
+    final long streamOffset = buf.readLong();
+    buf.skipBytes(8);
+    final Type type = Type.forNumber(buf.readByte());
+    buf.skipBytes(1 + 4); // flags and checksum
+    return new DataStreamRequestHeader(streamId, streamOffset, dataLength, type, BINARY_HEADER_VERSION);
+  }
+
+  /** Write the binary header of the given request. */
+  public static void writeBinary(DataStreamRequest request, ByteBuf out) {
+    final int start = out.writerIndex();
+    writeBinaryHeaderFields(request, 0, out);
+    writeChecksum(out, start);
+  }
+
+  public static int getSizeOfBinaryHeader() {
+    return SIZE_OF_BINARY_HEADER;
+  }
+
+  /** The highest binary header version supported by the sender, or 0 if it is unsupported. */
+  private final int binaryHeaderVersion;
+
   public DataStreamRequestHeader(long streamId, long streamOffset, long dataLength, Type type) {
+    this(streamId, streamOffset, dataLength, type, 0);
+  }
+
+  public DataStreamRequestHeader(long streamId, long streamOffset, long dataLength, Type type,
+      int binaryHeaderVersion) {
     super(streamId, streamOffset, dataLength, type);
+    this.binaryHeaderVersion = binaryHeaderVersion;
+  }
+
+  /** @return the highest binary header version supported by the sender, or 0 if it is unsupported. */
+  public int getBinaryHeaderVersion() {
+    return binaryHeaderVersion;
   }
 }
\ No newline at end of file
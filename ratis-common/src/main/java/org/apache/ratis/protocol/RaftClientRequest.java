@@ -185,6 +185,12 @@ public class RaftClientRequest extends RaftClientMessage {
     }
   }
 
+  /** Copy the given request with the given routing table. */
+  public static RaftClientRequest toRoutedRequest(RaftClientRequest r, RoutingTable routingTable) {
+    return new RaftClientRequest(r.getClientId(), r.getServerId(), r.getRaftGroupId(), r.getCallId(),
+        r.getMessage(), r.getType(), r.getSlidingWindowEntry(), routingTable);
+  }
+
   /** Convert the given request to a write request with the given message. */
   public static RaftClientRequest toWriteRequest(RaftClientRequest r, Message message) {
     return new RaftClientRequest(r.getClientId(), r.getServerId(), r.getRaftGroupId(),
@@ -197,6 +203,9 @@ public class RaftClientRequest extends RaftClientMessage {
 
   private final SlidingWindowEntry slidingWindowEntry;
 
+  /** For data streams only; null means forwarding the data from the primary to all the other peers. */
+  private final RoutingTable routingTable;
+
   public RaftClientRequest(ClientId clientId, RaftPeerId serverId, RaftGroupId groupId, long callId, Type type) {
     this(clientId, serverId, groupId, callId, null, type, null);
   }
@@ -204,11 +213,18 @@ public class RaftClientRequest extends RaftClientMessage {
   public RaftClientRequest(
       ClientId clientId, RaftPeerId serverId, RaftGroupId groupId,
       long callId, Message message, Type type, SlidingWindowEntry slidingWindowEntry) {
+    this(clientId, serverId, groupId, callId, message, type, slidingWindowEntry, null);
+  }
+
+  public RaftClientRequest(
+      ClientId clientId, RaftPeerId serverId, RaftGroupId groupId, long callId, Message message, Type type,
+      SlidingWindowEntry slidingWindowEntry, RoutingTable routingTable) {
     super(clientId, serverId, groupId);
     this.callId = callId;
     this.message = message;
     this.type = type;
     this.slidingWindowEntry = slidingWindowEntry != null? slidingWindowEntry: SlidingWindowEntry.getDefaultInstance();
+    this.routingTable = routingTable;
   }
 
   @Override
@@ -232,6 +248,10 @@ public class RaftClientRequest extends RaftClientMessage {
     return type;
   }
 
+  public RoutingTable getRoutingTable() {
+    return routingTable;
+  }
+
   public boolean is(RaftClientRequestProto.TypeCase typeCase) {
     return getType().is(typeCase);
   }
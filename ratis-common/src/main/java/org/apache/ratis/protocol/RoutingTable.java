@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.protocol;
+
+import org.apache.ratis.proto.RaftProtos.RouteProto;
+import org.apache.ratis.proto.RaftProtos.RoutingTableProto;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The routes for forwarding the data of a data stream among the peers.
+ * Each peer forwards the data it receives to its successors.
+ *
+ * The objects of this class are immutable.
+ */
+public final class RoutingTable {
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static final class Builder {
+    private final Map<RaftPeerId, Set<RaftPeerId>> map = new LinkedHashMap<>();
+
+    private Builder() {}
+
+    public Builder addSuccessor(RaftPeerId peerId, RaftPeerId successor) {
+      Objects.requireNonNull(peerId, "peerId == null");
+      Objects.requireNonNull(successor, "successor == null");
+      map.computeIfAbsent(peerId, key -> new LinkedHashSet<>()).add(successor);
+      return this;
+    }
+
+    public RoutingTable build() {
+      return new RoutingTable(map);
+    }
+  }
+
+  /** @return a table such that the primary forwards to all the other peers. */
+  public static RoutingTable star(RaftPeerId primary, List<RaftPeerId> others) {
+    final Builder b = newBuilder();
+    others.forEach(peer -> b.addSuccessor(primary, peer));
+    return b.build();
+  }
+
+  /** @return a table such that the primary forwards to the first peer, which forwards to the second, and so on. */
+  public static RoutingTable chain(RaftPeerId primary, List<RaftPeerId> others) {
+    final Builder b = newBuilder();
+    RaftPeerId previous = primary;
+    for (RaftPeerId peer : others) {
+      b.addSuccessor(previous, peer);
+      previous = peer;
+    }
+    return b.build();
+  }
+
+  public static RoutingTable valueOf(RoutingTableProto proto) {
+    final Builder b = newBuilder();
+    for (RouteProto route : proto.getRoutesList()) {
+      final RaftPeerId peerId = RaftPeerId.valueOf(route.getPeerId());
+      route.getSuccessorsList().forEach(s -> b.addSuccessor(peerId, RaftPeerId.valueOf(s)));
+    }
+    return b.build();
+  }
+
+  private final Map<RaftPeerId, Set<RaftPeerId>> map;
+
+  private RoutingTable(Map<RaftPeerId, Set<RaftPeerId>> map) {
+    final Map<RaftPeerId, Set<RaftPeerId>> copy = new LinkedHashMap<>();
+    map.forEach((peer, successors) -> copy.put(peer, Collections.unmodifiableSet(new LinkedHashSet<>(successors))));
+    this.map = Collections.unmodifiableMap(copy);
+  }
+
+  /** @return the successors of the given peer, or an empty set if it has none. */
+  public Set<RaftPeerId> getSuccessors(RaftPeerId peerId) {
+    return map.getOrDefault(peerId, Collections.emptySet());
+  }
+
+  /**
+   * Validate this table against the given primary and group peers.
+   * A valid table is rooted at the primary and it routes to each of the other peers exactly once,
+   * i.e. the routes form a tree spanning all the peers.
+   *
+   * @throws IllegalArgumentException if this table is invalid.
+   */
+  public void validate(RaftPeerId primary, Collection<RaftPeerId> peers) {
+    final Set<RaftPeerId> unrouted = new HashSet<>(peers);
+    if (!unrouted.remove(primary)) {
+      throw new IllegalArgumentException("The primary " + primary + " is not in the peers " + peers);
+    }
+
+    // traverse from the primary; a peer routed twice (including a cycle) or an unknown peer is not in unrouted
+    final Set<RaftPeerId> visited = new HashSet<>();
+    final Deque<RaftPeerId> queue = new ArrayDeque<>();
+    visited.add(primary);
+    queue.add(primary);
+    while (!queue.isEmpty()) {
+      final RaftPeerId peer = queue.poll();
+      for (RaftPeerId successor : getSuccessors(peer)) {
+        if (!unrouted.remove(successor)) {
+          throw new IllegalArgumentException("Invalid routing table " + this + ": the route " + peer + " -> "
+              + successor + (visited.contains(successor)? " is a duplicate or a cycle": " is to an unknown peer")
+              + ", primary=" + primary + ", peers=" + peers);
+        }
+        visited.add(successor);
+        queue.add(successor);
+      }
+    }
+
+    if (!unrouted.isEmpty()) {
+      throw new IllegalArgumentException("Invalid routing table " + this + ": the peers " + unrouted
+          + " are not routed from the primary " + primary);
+    }
+    for (RaftPeerId peer : map.keySet()) {
+      if (!visited.contains(peer)) {
+        throw new IllegalArgumentException("Invalid routing table " + this + ": the routes from " + peer
+            + " are unreachable from the primary " + primary + ", peers=" + peers);
+      }
+    }
+  }
+
+  public RoutingTableProto toProto() {
+    final RoutingTableProto.Builder b = RoutingTableProto.newBuilder();
+    map.forEach((peer, successors) -> {
+      final RouteProto.Builder route = RouteProto.newBuilder().setPeerId(peer.toByteString());
+      successors.forEach(s -> route.addSuccessors(s.toByteString()));
+      b.addRoutes(route);
+    });
+    return b.build();
+  }
+
+  @Override
+  public String toString() {
+    return map.toString();
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+/**
+ * Checksum related utility methods.
+ *
+ * The CRC32C implementation is provided by {@link Crc32cProvider}.
+ * By default, {@link Crc32cProvider#JDK} is used if it is available (Java 9 or above);
+ * otherwise, {@link Crc32cProvider#PURE_JAVA} is used.
+ * The provider can be set by the system property {@link #CRC32C_PROVIDER_PROPERTY}.
+ */
+public interface ChecksumUtils {
+  Logger LOG = LoggerFactory.getLogger(ChecksumUtils.class);
+
+  String CRC32C_PROVIDER_PROPERTY = "ratis.crc32c.provider";
+
+  /** The providers of CRC32C {@link Checksum}s. */
+  enum Crc32cProvider {
+    /** {@code java.util.zip.CRC32C}, which is intrinsified with the hardware CRC instructions. */
+    JDK(Internal.JDK_CRC32C),
+    /** {@link PureJavaCrc32C}, which is available in all Java versions. */
+    PURE_JAVA(PureJavaCrc32C::new);
+
+    private final Supplier<Checksum> constructor;
+
+    Crc32cProvider(Supplier<Checksum> constructor) {
+      this.constructor = constructor;
+    }
+
+    public boolean isAvailable() {
+      return constructor != null;
+    }
+
+    public Checksum newChecksum() {
+      Preconditions.assertTrue(isAvailable(), () -> this + " is unavailable");
+      return constructor.get();
+    }
+  }
+
+  class Internal {
+    private static final Supplier<Checksum> JDK_CRC32C = newJdkCrc32cConstructor();
+    private static final Supplier<Crc32cProvider> CRC32C_PROVIDER = JavaUtils.memoize(Internal::selectCrc32cProvider);
+    private static final BiConsumer<Checksum, ByteBuffer> UPDATE_BYTE_BUFFER = newUpdateByteBufferMethod();
+
+    private static Supplier<Checksum> newJdkCrc32cConstructor() {
+      final MethodHandle constructor;
+      try {
+        final Class<?> clazz = Class.forName("java.util.zip.CRC32C");
+        constructor = MethodHandles.publicLookup().findConstructor(clazz, MethodType.methodType(void.class));
+      } catch (ReflectiveOperationException e) {
+        LOG.debug("java.util.zip.CRC32C is unavailable", e);
+        return null;
+      }
+      return () -> {
+        try {
+          return (Checksum) constructor.invoke();
+        } catch (Throwable t) {
+          throw new IllegalStateException("Failed to create java.util.zip.CRC32C", t);
+        }
+      };
+    }
+
+    private static Crc32cProvider selectCrc32cProvider() {
+      final String property = System.getProperty(CRC32C_PROVIDER_PROPERTY);
+      if (property != null) {
+        final Crc32cProvider provider = Crc32cProvider.valueOf(property.trim().toUpperCase());
+        if (provider.isAvailable()) {
+          return provider;
+        }
+        LOG.warn("{} = {} is unavailable, use {}", CRC32C_PROVIDER_PROPERTY, provider, Crc32cProvider.PURE_JAVA);
+        return Crc32cProvider.PURE_JAVA;
+      }
+      final Crc32cProvider provider = JDK_CRC32C != null? Crc32cProvider.JDK: Crc32cProvider.PURE_JAVA;
+      LOG.debug("Use {} CRC32C", provider);
+      return provider;
+    }
+
+    /** Use Checksum.update(ByteBuffer) if it is available (Java 9 or above). */
+    private static BiConsumer<Checksum, ByteBuffer> newUpdateByteBufferMethod() {
+      final MethodHandle update;
+      try {
+        update = MethodHandles.publicLookup().findVirtual(Checksum.class, "update",
+            MethodType.methodType(void.class, ByteBuffer.class));
+      } catch (ReflectiveOperationException e) {
+        return ChecksumUtils::updateByCopying;
+      }
+      return (checksum, buffer) -> {
+        try {
+          update.invoke(checksum, buffer);
+        } catch (Throwable t) {
+          throw new IllegalStateException("Failed to update " + checksum, t);
+        }
+      };
+    }
+  }
+
+  static Crc32cProvider getCrc32cProvider() {
+    return Internal.CRC32C_PROVIDER.get();
+  }
+
+  /** @return a new CRC32C {@link Checksum} from the selected {@link Crc32cProvider}. */
+  static Checksum newCrc32c() {
+    return getCrc32cProvider().newChecksum();
+  }
+
+  /**
+   * Update the checksum with the remaining bytes of the given buffer
+   * and then advance the buffer position to its limit.
+   * A direct buffer is checksummed in place when the JDK supports it.
+   */
+  static void update(Checksum checksum, ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      final int position = buffer.position();
+      checksum.update(buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+      buffer.position(buffer.limit());
+    } else {
+      Internal.UPDATE_BYTE_BUFFER.accept(checksum, buffer);
+    }
+  }
+
+  static void updateByCopying(Checksum checksum, ByteBuffer buffer) {
+    final byte[] array = new byte[Math.min(buffer.remaining(), 4096)];
+    while (buffer.hasRemaining()) {
+      final int n = Math.min(buffer.remaining(), array.length);
+      buffer.get(array, 0, n);
+      checksum.update(array, 0, n);
+    }
+  }
+}
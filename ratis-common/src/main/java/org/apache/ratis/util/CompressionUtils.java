@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.apache.ratis.proto.RaftProtos.CompressionType;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression related utility methods.
+ *
+ * Only the codecs available in the JDK are supported so that no additional dependency is required.
+ */
+public interface CompressionUtils {
+  int BUFFER_SIZE = 8 << 10;
+
+  /** The compression types supported by this implementation, excluding {@link CompressionType#NONE}. */
+  List<CompressionType> SUPPORTED_TYPES = Collections.singletonList(CompressionType.DEFLATE);
+
+  static ByteString compress(CompressionType type, ByteString data) throws IOException {
+    switch (type) {
+      case NONE:
+        return data;
+      case DEFLATE:
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+          final ByteString.Output out = ByteString.newOutput(Math.max(data.size() / 2, 64));
+          try (OutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE)) {
+            data.writeTo(deflaterOut);
+          }
+          return out.toByteString();
+        } finally {
+          deflater.end();
+        }
+      default:
+        throw new IOException("Unsupported compression type " + type);
+    }
+  }
+
+  static ByteString decompress(CompressionType type, ByteString data, int uncompressedSize) throws IOException {
+    switch (type) {
+      case NONE:
+        return data;
+      case DEFLATE:
+        final Inflater inflater = new Inflater();
+        try (InputStream in = new InflaterInputStream(data.newInput(), inflater, BUFFER_SIZE)) {
+          final byte[] buf = new byte[uncompressedSize];
+          IOUtils.readFully(in, buf, 0, uncompressedSize);
+          return UnsafeByteOperations.unsafeWrap(buf);
+        } finally {
+          inflater.end();
+        }
+      default:
+        throw new IOException("Unsupported compression type " + type);
+    }
+  }
+}
@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.function.Supplier;
@@ -71,6 +72,18 @@ public interface FileUtils {
         () -> "Files.createDirectories " + dir);
   }
 
+  /**
+   * Fsync the given directory so that the changes of its entries, such as renames, are durable.
+   * It is a no-op on the platforms which do not support opening a directory.
+   */
+  static void fsyncDirectory(File dir) {
+    try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      LOG.debug("Failed to fsync directory {}", dir, e);
+    }
+  }
+
   static void move(File src, File dst) throws IOException {
     move(src.toPath(), dst.toPath());
   }
@@ -126,6 +126,27 @@ public interface IOUtils {
     }
   }
 
+  /**
+   * Read from a FileChannel at a given offset until the buffer is full,
+   * handling short reads.
+   *
+   * @param fc               The FileChannel to read from
+   * @param buf              The output buffer
+   * @param offset           The offset in the file to start reading at
+   * @throws IOException     On I/O error, including EOF
+   */
+  static void readFully(FileChannel fc, ByteBuffer buf, long offset)
+      throws IOException {
+    while (buf.remaining() > 0) {
+      final int ret = fc.read(buf, offset);
+      if (ret < 0) {
+        throw new EOFException("Premature EOF: encountered EOF at " + offset + " with " + buf.remaining()
+            + " bytes remaining");
+      }
+      offset += ret;
+    }
+  }
+
   /**
    * Write a ByteBuffer to a FileChannel at a given offset,
    * handling short writes.
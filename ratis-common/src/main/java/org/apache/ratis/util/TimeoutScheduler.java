@@ -22,38 +22,53 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
-import java.util.Collection;
 import java.util.Optional;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+/**
+ * Schedule timeout tasks using a hashed timing wheel,
+ * which is started lazily and shut down after a grace period with no tasks.
+ *
+ * The tick and the wheel size of the shared instance can be set by
+ * the system properties {@link #TICK_PROPERTY} and {@link #WHEEL_SIZE_PROPERTY}.
+ */
 public final class TimeoutScheduler implements Closeable {
   public static final Logger LOG = LoggerFactory.getLogger(TimeoutScheduler.class);
 
+  public static final String TICK_PROPERTY = "ratis.timeout-scheduler.tick";
+  public static final String WHEEL_SIZE_PROPERTY = "ratis.timeout-scheduler.wheel-size";
+
   static final TimeDuration DEFAULT_GRACE_PERIOD = TimeDuration.valueOf(1, TimeUnit.MINUTES);
+  static final TimeDuration DEFAULT_TICK = TimeDuration.valueOf(10, TimeUnit.MILLISECONDS);
+  static final int DEFAULT_WHEEL_SIZE = 512;
 
-  private static final Supplier<TimeoutScheduler> INSTANCE = JavaUtils.memoize(TimeoutScheduler::new);
+  private static final Supplier<TimeoutScheduler> INSTANCE = JavaUtils.memoize(() -> new TimeoutScheduler(
+      Optional.ofNullable(System.getProperty(TICK_PROPERTY))
+          .map(s -> TimeDuration.valueOf(s, TimeUnit.MILLISECONDS)).orElse(DEFAULT_TICK),
+      Integer.getInteger(WHEEL_SIZE_PROPERTY, DEFAULT_WHEEL_SIZE)));
 
   public static TimeoutScheduler getInstance() {
     return INSTANCE.get();
   }
 
   static TimeoutScheduler newInstance() {
-    return new TimeoutScheduler();
+    return newInstance(DEFAULT_TICK, DEFAULT_WHEEL_SIZE);
+  }
+
+  static TimeoutScheduler newInstance(TimeDuration tick, int wheelSize) {
+    return new TimeoutScheduler(tick, wheelSize);
   }
 
   static class ShutdownTask {
     private final int sid;
-    private final ScheduledFuture<?> future;
+    private final TimingWheel.Task task;
 
-    ShutdownTask(int sid, ScheduledFuture<?> future) {
+    ShutdownTask(int sid, TimingWheel.Task task) {
       this.sid = sid;
-      this.future = future;
+      this.task = task;
     }
 
     int getSid() {
@@ -61,37 +76,44 @@ public final class TimeoutScheduler implements Closeable {
     }
 
     void cancel() {
-      future.cancel(false);
+      task.cancel();
     }
   }
 
   private static class Scheduler {
-    private final AtomicReference<ScheduledThreadPoolExecutor> executor = new AtomicReference<>();
+    private final AtomicReference<TimingWheel> wheel = new AtomicReference<>();
+    private final TimeDuration tick;
+    private final int wheelSize;
+
+    Scheduler(TimeDuration tick, int wheelSize) {
+      this.tick = tick;
+      this.wheelSize = wheelSize;
+    }
 
     boolean hasExecutor() {
-      return executor.get() != null;
+      return wheel.get() != null;
     }
 
     int getQueueSize() {
-      return Optional.ofNullable(executor.get())
-          .map(ScheduledThreadPoolExecutor::getQueue)
-          .map(Collection::size).orElse(0);
+      return Optional.ofNullable(wheel.get()).map(TimingWheel::getPendingCount).orElse(0);
+    }
+
+    TimeDuration getLag() {
+      return Optional.ofNullable(wheel.get()).map(TimingWheel::getLag).orElse(TimeDuration.ZERO);
     }
 
-    ScheduledFuture<?> schedule(Runnable task, Supplier<String> name, TimeDuration time) {
-      return executor.updateAndGet(e -> Optional.ofNullable(e).orElseGet(Scheduler::newExecutor))
-          .schedule(LogUtils.newRunnable(LOG, task, name), time.getDuration(), time.getUnit());
+    TimingWheel.Task schedule(Runnable task, Supplier<String> name, TimeDuration time) {
+      return wheel.updateAndGet(w -> Optional.ofNullable(w).orElseGet(this::newWheel))
+          .schedule(LogUtils.newRunnable(LOG, task, name), time);
     }
 
-    private static ScheduledThreadPoolExecutor newExecutor() {
-      LOG.debug("new ScheduledThreadPoolExecutor");
-      final ScheduledThreadPoolExecutor e = new ScheduledThreadPoolExecutor(1, (ThreadFactory) Daemon::new);
-      e.setRemoveOnCancelPolicy(true);
-      return e;
+    private TimingWheel newWheel() {
+      LOG.debug("new TimingWheel: tick={}, wheelSize={}", tick, wheelSize);
+      return new TimingWheel(TimeoutScheduler.class.getSimpleName(), tick, wheelSize);
     }
 
     void shutdown() {
-      Optional.ofNullable(executor.getAndSet(null)).ifPresent(ScheduledThreadPoolExecutor::shutdown);
+      Optional.ofNullable(wheel.getAndSet(null)).ifPresent(TimingWheel::shutdown);
     }
   }
 
@@ -105,15 +127,22 @@ public final class TimeoutScheduler implements Closeable {
 
   private ShutdownTask shutdownTask = null;
 
-  private final Scheduler scheduler = new Scheduler();
+  private final Scheduler scheduler;
 
-  private TimeoutScheduler() {
+  private TimeoutScheduler(TimeDuration tick, int wheelSize) {
+    this.scheduler = new Scheduler(tick, wheelSize);
   }
 
-  int getQueueSize() {
+  /** @return the number of the scheduled tasks which are not yet run. */
+  public int getQueueSize() {
     return scheduler.getQueueSize();
   }
 
+  /** @return the lag of the latest tick, i.e. how late the expired tasks are run. */
+  public TimeDuration getLag() {
+    return scheduler.getLag();
+  }
+
   TimeDuration getGracePeriod() {
     return gracePeriod.get();
   }
@@ -171,9 +200,9 @@ public final class TimeoutScheduler implements Closeable {
 
     final TimeDuration grace = getGracePeriod();
     LOG.debug("Schedule a shutdown task: grace {}, sid {}", grace, sid);
-    final ScheduledFuture<?> future = scheduler.schedule(() -> tryShutdownScheduler(sid),
+    final TimingWheel.Task task = scheduler.schedule(() -> tryShutdownScheduler(sid),
         () -> "shutdown task #" + sid, grace);
-    shutdownTask = new ShutdownTask(sid, future);
+    shutdownTask = new ShutdownTask(sid, task);
   }
 
   private synchronized void tryShutdownScheduler(int sid) {
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel running the expired tasks in a single daemon thread.
+ *
+ * Scheduling and cancelling a task are O(1):
+ * the new and the cancelled tasks are queued and then processed by the daemon in each tick.
+ * The expired tasks of a tick are run together in a batch.
+ * A task is run at the first tick after its deadline, i.e. it may be delayed by at most one tick.
+ *
+ * After {@link #shutdown()}, the daemon exits once all the pending tasks are completed or cancelled.
+ */
+final class TimingWheel {
+  public static final Logger LOG = LoggerFactory.getLogger(TimingWheel.class);
+
+  /** A scheduled task, which is a node in the doubly linked list of a bucket. */
+  final class Task {
+    private final long deadline;
+    private final Runnable runnable;
+    /** Set to true when the task is completed or cancelled. */
+    private volatile boolean done = false;
+
+    private long remainingRounds;
+    private Task prev;
+    private Task next;
+    private Bucket bucket;
+
+    private Task(long deadline, Runnable runnable) {
+      this.deadline = deadline;
+      this.runnable = runnable;
+    }
+
+    /** Cancel this task. */
+    void cancel() {
+      if (markDone()) {
+        cancelled.offer(this);
+      }
+    }
+
+    private synchronized boolean markDone() {
+      if (done) {
+        return false;
+      }
+      done = true;
+      pending.decrementAndGet();
+      return true;
+    }
+
+    private void expire() {
+      if (markDone()) {
+        try {
+          runnable.run();
+        } catch (Throwable t) {
+          LOG.warn("{}: Failed to run {}", name, runnable, t);
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return runnable.toString();
+    }
+  }
+
+  private static final class Bucket {
+    private Task head;
+    private Task tail;
+
+    void add(Task task) {
+      task.bucket = this;
+      if (tail == null) {
+        head = tail = task;
+      } else {
+        tail.next = task;
+        task.prev = tail;
+        tail = task;
+      }
+    }
+
+    void remove(Task task) {
+      if (task.prev != null) {
+        task.prev.next = task.next;
+      } else {
+        head = task.next;
+      }
+      if (task.next != null) {
+        task.next.prev = task.prev;
+      } else {
+        tail = task.prev;
+      }
+      task.prev = task.next = null;
+      task.bucket = null;
+    }
+
+    /** Expire the tasks with no remaining rounds and decrement the remaining rounds of the other tasks. */
+    void expireTasks() {
+      for (Task task = head; task != null; ) {
+        final Task next = task.next;
+        if (task.remainingRounds <= 0) {
+          remove(task);
+          task.expire();
+        } else {
+          task.remainingRounds--;
+        }
+        task = next;
+      }
+    }
+  }
+
+  private final String name;
+  private final long tickNanos;
+  private final Bucket[] buckets;
+  private final int mask;
+
+  private final Queue<Task> added = new ConcurrentLinkedQueue<>();
+  private final Queue<Task> cancelled = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final long startTime = System.nanoTime();
+  private final Daemon daemon;
+
+  private volatile boolean running = true;
+  /** The lag of the latest tick, i.e. the time elapsed between the tick deadline and the actual tick time. */
+  private volatile long lagNanos = 0;
+  private long tick = 0;
+
+  TimingWheel(String name, TimeDuration tickDuration, int wheelSize) {
+    Preconditions.assertTrue(!tickDuration.isNonPositive(), () -> "Non-positive tick " + tickDuration);
+    Preconditions.assertTrue(wheelSize > 0, () -> "Non-positive wheel size " + wheelSize);
+    this.name = name;
+    this.tickNanos = tickDuration.toLong(TimeUnit.NANOSECONDS);
+
+    final int size = Integer.highestOneBit(wheelSize) == wheelSize? wheelSize: Integer.highestOneBit(wheelSize) << 1;
+    this.buckets = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      buckets[i] = new Bucket();
+    }
+    this.mask = size - 1;
+
+    this.daemon = new Daemon(this::run, name);
+    daemon.start();
+  }
+
+  /** @return the number of the tasks which are neither completed nor cancelled. */
+  int getPendingCount() {
+    return pending.get();
+  }
+
+  TimeDuration getLag() {
+    return TimeDuration.valueOf(lagNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Schedule the given task to run after the given delay. */
+  Task schedule(Runnable runnable, TimeDuration delay) {
+    final long deadline = System.nanoTime() - startTime + Math.max(0, delay.toLong(TimeUnit.NANOSECONDS));
+    final Task task = new Task(deadline, runnable);
+    pending.incrementAndGet();
+    added.offer(task);
+    return task;
+  }
+
+  void shutdown() {
+    running = false;
+  }
+
+  private void run() {
+    for (; running || pending.get() > 0; tick++) {
+      final long tickDeadline = (tick + 1) * tickNanos;
+      for (long now; (now = System.nanoTime() - startTime) < tickDeadline; ) {
+        LockSupport.parkNanos(tickDeadline - now);
+      }
+      lagNanos = System.nanoTime() - startTime - tickDeadline;
+
+      removeCancelledTasks();
+      buckets[(int) (tick & mask)].expireTasks();
+      addNewTasks(tickDeadline);
+    }
+    LOG.debug("{} exits", name);
+  }
+
+  private void removeCancelledTasks() {
+    for (Task task; (task = cancelled.poll()) != null; ) {
+      if (task.bucket != null) {
+        task.bucket.remove(task);
+      }
+    }
+  }
+
+  private void addNewTasks(long tickDeadline) {
+    for (Task task; (task = added.poll()) != null; ) {
+      if (task.done) {
+        continue; // cancelled before added
+      }
+      if (task.deadline <= tickDeadline) {
+        task.expire();
+        continue;
+      }
+      // the task expires at the first tick with deadline >= the task deadline
+      final long ticks = (task.deadline + tickNanos - 1) / tickNanos - 1;
+      task.remainingRounds = (ticks - tick - 1) / buckets.length;
+      buckets[(int) (ticks & mask)].add(task);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket for limiting the rate of a resource, e.g. the number of bytes sent per second.
+ *
+ * The bucket is refilled at the given rate up to the amount of one second.
+ * A take may take more tokens than available, i.e. the bucket goes into debt,
+ * and then the caller waits until the debt is repaid.
+ * Since the later takes see the debt, they wait longer so that the rate is maintained.
+ * The caller may wait without blocking its other work; see {@link #take(long)}.
+ *
+ * When the rate is non-positive, the rate is unlimited.
+ */
+public class TokenBucket {
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final long ratePerSecond;
+  private final LongSupplier nanoTime;
+
+  private long tokens;
+  private long lastRefillNanos;
+
+  public TokenBucket(long ratePerSecond) {
+    this(ratePerSecond, System::nanoTime);
+  }
+
+  TokenBucket(long ratePerSecond, LongSupplier nanoTime) {
+    this.ratePerSecond = ratePerSecond;
+    this.nanoTime = nanoTime;
+    this.tokens = Math.max(ratePerSecond, 0);
+    this.lastRefillNanos = nanoTime.getAsLong();
+  }
+
+  public boolean isUnlimited() {
+    return ratePerSecond <= 0;
+  }
+
+  public long getRatePerSecond() {
+    return ratePerSecond;
+  }
+
+  private void refill(long now) {
+    final long elapsed = now - lastRefillNanos;
+    final long refill = (long) ((double) elapsed * ratePerSecond / NANOS_PER_SECOND);
+    if (refill > 0) {
+      tokens = Math.min(tokens + refill, ratePerSecond);
+      lastRefillNanos = now;
+    }
+  }
+
+  /**
+   * Take the given number of tokens without waiting.
+   *
+   * @return the time in nanoseconds to wait for repaying the debt, if there is any; otherwise, return 0.
+   */
+  public synchronized long take(long n) {
+    if (isUnlimited()) {
+      return 0;
+    }
+    refill(nanoTime.getAsLong());
+    tokens -= n;
+    return tokens >= 0? 0: (long) ((double) -tokens * NANOS_PER_SECOND / ratePerSecond);
+  }
+
+  /** Acquire the given number of tokens, blocking until they are available. */
+  public void acquire(long n) throws InterruptedException {
+    final long waitNanos = take(n);
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return isUnlimited()? "unlimited": ratePerSecond + "/s";
+  }
+}
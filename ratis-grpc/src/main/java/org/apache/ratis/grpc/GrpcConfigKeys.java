@@ -118,6 +118,84 @@ public interface GrpcConfigKeys {
     static void setLeaderOutstandingAppendsMax(RaftProperties properties, int maxAppend) {
       setInt(properties::setInt, LEADER_OUTSTANDING_APPENDS_MAX_KEY, maxAppend);
     }
+
+    /** The number of netty boss event loop threads; 0 means using the gRPC default. */
+    String BOSS_GROUP_SIZE_KEY = PREFIX + ".boss-group.size";
+    int BOSS_GROUP_SIZE_DEFAULT = 0;
+    static int bossGroupSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          BOSS_GROUP_SIZE_KEY, BOSS_GROUP_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setBossGroupSize(RaftProperties properties, int bossGroupSize) {
+      setInt(properties::setInt, BOSS_GROUP_SIZE_KEY, bossGroupSize);
+    }
+
+    /** The number of netty worker event loop threads; 0 means using the gRPC default. */
+    String WORKER_GROUP_SIZE_KEY = PREFIX + ".worker-group.size";
+    int WORKER_GROUP_SIZE_DEFAULT = 0;
+    static int workerGroupSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          WORKER_GROUP_SIZE_KEY, WORKER_GROUP_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setWorkerGroupSize(RaftProperties properties, int workerGroupSize) {
+      setInt(properties::setInt, WORKER_GROUP_SIZE_KEY, workerGroupSize);
+    }
+
+    /**
+     * The number of threads dedicated to the server-to-server protocol service;
+     * 0 means sharing the default executor with the other services.
+     */
+    String SERVER_EXECUTOR_SIZE_KEY = PREFIX + ".executor.server.size";
+    int SERVER_EXECUTOR_SIZE_DEFAULT = 0;
+    static int serverExecutorSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          SERVER_EXECUTOR_SIZE_KEY, SERVER_EXECUTOR_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setServerExecutorSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, SERVER_EXECUTOR_SIZE_KEY, size);
+    }
+
+    /**
+     * The number of threads dedicated to the client protocol service;
+     * 0 means sharing the default executor with the other services.
+     */
+    String CLIENT_EXECUTOR_SIZE_KEY = PREFIX + ".executor.client.size";
+    int CLIENT_EXECUTOR_SIZE_DEFAULT = 0;
+    static int clientExecutorSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          CLIENT_EXECUTOR_SIZE_KEY, CLIENT_EXECUTOR_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setClientExecutorSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, CLIENT_EXECUTOR_SIZE_KEY, size);
+    }
+
+    /**
+     * The number of threads dedicated to the admin protocol service;
+     * 0 means sharing the default executor with the other services.
+     */
+    String ADMIN_EXECUTOR_SIZE_KEY = PREFIX + ".executor.admin.size";
+    int ADMIN_EXECUTOR_SIZE_DEFAULT = 0;
+    static int adminExecutorSize(RaftProperties properties) {
+      return getInt(properties::getInt,
+          ADMIN_EXECUTOR_SIZE_KEY, ADMIN_EXECUTOR_SIZE_DEFAULT, getDefaultLog(), requireMin(0));
+    }
+    static void setAdminExecutorSize(RaftProperties properties, int size) {
+      setInt(properties::setInt, ADMIN_EXECUTOR_SIZE_KEY, size);
+    }
+
+    /**
+     * Should the appendEntries stream be handled directly in the netty event loop?
+     * It avoids a thread handoff per request since the handler is non-blocking.
+     */
+    String APPEND_ENTRIES_DIRECT_EXECUTOR_ENABLED_KEY = PREFIX + ".append-entries.direct-executor.enabled";
+    boolean APPEND_ENTRIES_DIRECT_EXECUTOR_ENABLED_DEFAULT = false;
+    static boolean appendEntriesDirectExecutorEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, APPEND_ENTRIES_DIRECT_EXECUTOR_ENABLED_KEY,
+          APPEND_ENTRIES_DIRECT_EXECUTOR_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setAppendEntriesDirectExecutorEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, APPEND_ENTRIES_DIRECT_EXECUTOR_ENABLED_KEY, enabled);
+    }
   }
 
   interface OutputStream {
@@ -17,6 +17,7 @@
  */
 package org.apache.ratis.grpc.metrics;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
@@ -25,6 +26,9 @@ import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesti
 
 import com.codahale.metrics.Timer;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class GrpcServerMetrics extends RatisMetrics {
   private static final String RATIS_GRPC_METRICS_APP_NAME = "ratis_grpc";
   private static final String RATIS_GRPC_METRICS_COMP_NAME = "log_appender";
@@ -42,13 +46,51 @@ public class GrpcServerMetrics extends RatisMetrics {
       "%s_append_entry_timeout_count";
   public static final String RATIS_GRPC_METRICS_LOG_APPENDER_PENDING_COUNT
       = "%s_pending_log_requests_count";
+  public static final String RATIS_GRPC_METRICS_LOG_APPENDER_PENDING_BYTES
+      = "%s_pending_log_requests_bytes";
 
   public static final String RATIS_GRPC_METRICS_REQUEST_RETRY_COUNT = "num_retries";
   public static final String RATIS_GRPC_METRICS_REQUESTS_TOTAL = "num_requests";
   public static final String RATIS_GRPC_INSTALL_SNAPSHOT_COUNT = "num_install_snapshot";
 
+  /** The metrics of a follower, which are resolved once in order to avoid building the names for each call. */
+  private final class FollowerMetrics {
+    private final Timer latency;
+    private final Timer heartbeatLatency;
+    private final Counter success;
+    private final Counter heartbeatSuccess;
+    private final Counter notLeader;
+    private final Counter inconsistency;
+    private final Counter timeout;
+    private final Counter heartbeatTimeout;
+
+    FollowerMetrics(String follower) {
+      latency = registry.timer(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_LATENCY, follower));
+      heartbeatLatency = registry.timer(String.format(
+          RATIS_GRPC_METRICS_LOG_APPENDER_LATENCY + getHeartbeatSuffix(true), follower));
+      success = registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_SUCCESS, follower));
+      heartbeatSuccess = registry.counter(String.format(
+          RATIS_GRPC_METRICS_LOG_APPENDER_SUCCESS + getHeartbeatSuffix(true), follower));
+      notLeader = registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_NOT_LEADER, follower));
+      inconsistency = registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_INCONSISTENCY, follower));
+      timeout = registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_TIMEOUT, follower));
+      heartbeatTimeout = registry.counter(String.format(
+          RATIS_GRPC_METRICS_LOG_APPENDER_TIMEOUT + getHeartbeatSuffix(true), follower));
+    }
+  }
+
+  private final Map<String, FollowerMetrics> followerMetrics = new ConcurrentHashMap<>();
+  private final Counter requests;
+  private final Counter heartbeatRequests;
+
   public GrpcServerMetrics(String serverId) {
     registry = getMetricRegistryForGrpcServer(serverId);
+    requests = registry.counter(RATIS_GRPC_METRICS_REQUESTS_TOTAL);
+    heartbeatRequests = registry.counter(RATIS_GRPC_METRICS_REQUESTS_TOTAL + getHeartbeatSuffix(true));
+  }
+
+  private FollowerMetrics getFollowerMetrics(String follower) {
+    return followerMetrics.computeIfAbsent(follower, FollowerMetrics::new);
   }
 
   private RatisMetricRegistry getMetricRegistryForGrpcServer(String serverId) {
@@ -59,8 +101,8 @@ public class GrpcServerMetrics extends RatisMetrics {
 
   public Timer getGrpcLogAppenderLatencyTimer(String follower,
       boolean isHeartbeat) {
-    return registry.timer(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_LATENCY + getHeartbeatSuffix(isHeartbeat),
-        follower));
+    final FollowerMetrics m = getFollowerMetrics(follower);
+    return isHeartbeat? m.heartbeatLatency: m.latency;
   }
 
   public void onRequestRetry() {
@@ -68,25 +110,25 @@ public class GrpcServerMetrics extends RatisMetrics {
   }
 
   public void onRequestCreate(boolean isHeartbeat) {
-    registry.counter(RATIS_GRPC_METRICS_REQUESTS_TOTAL + getHeartbeatSuffix(isHeartbeat)).inc();
+    (isHeartbeat? heartbeatRequests: requests).inc();
   }
 
   public void onRequestSuccess(String follower, boolean isHearbeat) {
-    registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_SUCCESS + getHeartbeatSuffix(isHearbeat),
-        follower)).inc();
+    final FollowerMetrics m = getFollowerMetrics(follower);
+    (isHearbeat? m.heartbeatSuccess: m.success).inc();
   }
 
   public void onRequestNotLeader(String follower) {
-    registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_NOT_LEADER, follower)).inc();
+    getFollowerMetrics(follower).notLeader.inc();
   }
 
   public void onRequestInconsistency(String follower) {
-    registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_INCONSISTENCY, follower)).inc();
+    getFollowerMetrics(follower).inconsistency.inc();
   }
 
   public void onRequestTimeout(String follower, boolean isHeartbeat) {
-    registry.counter(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_TIMEOUT + getHeartbeatSuffix(isHeartbeat),
-        follower)).inc();
+    final FollowerMetrics m = getFollowerMetrics(follower);
+    (isHeartbeat? m.heartbeatTimeout: m.timeout).inc();
   }
 
   public void addPendingRequestsCount(String follower,
@@ -94,6 +136,10 @@ public class GrpcServerMetrics extends RatisMetrics {
     registry.gauge(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_PENDING_COUNT, follower), () -> pendinglogQueueSize);
   }
 
+  public void addPendingRequestsBytes(String follower, Gauge pendingLogBytes) {
+    registry.gauge(String.format(RATIS_GRPC_METRICS_LOG_APPENDER_PENDING_BYTES, follower), () -> pendingLogBytes);
+  }
+
   public void onInstallSnapshot() {
     registry.counter(RATIS_GRPC_INSTALL_SNAPSHOT_COUNT).inc();
   }
@@ -22,11 +22,21 @@ import org.apache.ratis.metrics.RatisMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class MessageMetrics extends RatisMetrics {
   static final Logger LOG = LoggerFactory.getLogger(MessageMetrics.class);
   public static final String GRPC_MESSAGE_METRICS = "%s_message_metrics";
   public static final String GRPC_MESSAGE_METRICS_DESC = "Outbound/Inbound message counters";
 
+  // the counters are cached by rpc type in order to avoid building the metric names for each call.
+  private final Map<String, Counter> startedCounters = new ConcurrentHashMap<>();
+  private final Map<String, Counter> completedCounters = new ConcurrentHashMap<>();
+  private final Map<String, Counter> receivedCounters = new ConcurrentHashMap<>();
+
   public MessageMetrics(String endpointId, String endpointType) {
     this.registry = create(
         new MetricRegistryInfo(endpointId,
@@ -42,7 +52,7 @@ public class MessageMetrics extends RatisMetrics {
    * @param rpcType
    */
   public void rpcStarted(String rpcType){
-    registry.counter(rpcType + "_started_total").inc();
+    startedCounters.computeIfAbsent(rpcType, t -> registry.counter(t + "_started_total")).inc();
   }
 
   /**
@@ -51,7 +61,7 @@ public class MessageMetrics extends RatisMetrics {
    * @param rpcType
    */
   public void rpcCompleted(String rpcType){
-    registry.counter(rpcType + "_completed_total").inc();
+    completedCounters.computeIfAbsent(rpcType, t -> registry.counter(t + "_completed_total")).inc();
   }
 
   /**
@@ -59,7 +69,7 @@ public class MessageMetrics extends RatisMetrics {
    * @param rpcType
    */
   public void rpcReceived(String rpcType){
-    registry.counter(rpcType + "_received_executed").inc();
+    receivedCounters.computeIfAbsent(rpcType, t -> registry.counter(t + "_received_executed")).inc();
   }
 
 }
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.grpc.server;
+
+import org.apache.ratis.thirdparty.io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import org.apache.ratis.thirdparty.io.grpc.Metadata;
+import org.apache.ratis.thirdparty.io.grpc.ServerCall;
+import org.apache.ratis.thirdparty.io.grpc.ServerCallHandler;
+import org.apache.ratis.thirdparty.io.grpc.ServerInterceptor;
+import org.apache.ratis.thirdparty.io.grpc.Status;
+import org.apache.ratis.util.TaskQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A server interceptor running the call listeners of a service in the given executor.
+ * The callbacks of each call are executed sequentially in the order received from the transport.
+ *
+ * This interceptor is used when the gRPC server is built with a direct executor
+ * so that the services can have their own executors.
+ * The methods in the given set are not intercepted and are executed directly in the transport thread.
+ */
+class ExecutorServerInterceptor implements ServerInterceptor {
+  static final Logger LOG = LoggerFactory.getLogger(ExecutorServerInterceptor.class);
+
+  private final ExecutorService executor;
+  private final Set<String> directMethods;
+
+  ExecutorServerInterceptor(ExecutorService executor) {
+    this(executor, Collections.emptySet());
+  }
+
+  ExecutorServerInterceptor(ExecutorService executor, Set<String> directMethods) {
+    this.executor = executor;
+    this.directMethods = directMethods;
+  }
+
+  @Override
+  public <R, S> ServerCall.Listener<R> interceptCall(
+      ServerCall<R, S> call, Metadata headers, ServerCallHandler<R, S> next) {
+    final String method = call.getMethodDescriptor().getFullMethodName();
+    final ServerCall.Listener<R> listener = next.startCall(call, headers);
+    return directMethods.contains(method)? listener
+        : new ExecutorListener<>(listener, call, new TaskQueue(method), executor);
+  }
+
+  private static class ExecutorListener<R> extends SimpleForwardingServerCallListener<R> {
+    private final ServerCall<R, ?> call;
+    private final TaskQueue queue;
+    private final ExecutorService executor;
+
+    ExecutorListener(ServerCall.Listener<R> delegate, ServerCall<R, ?> call,
+        TaskQueue queue, ExecutorService executor) {
+      super(delegate);
+      this.call = call;
+      this.queue = queue;
+      this.executor = executor;
+    }
+
+    private void submit(Runnable task) {
+      queue.submit(() -> {
+        task.run();
+        return null;
+      }, executor).exceptionally(t -> {
+        LOG.warn("{}: failed to run listener task", queue, t);
+        call.close(Status.INTERNAL.withCause(t).withDescription(t.toString()), new Metadata());
+        return null;
+      });
+    }
+
+    @Override
+    public void onMessage(R message) {
+      submit(() -> super.onMessage(message));
+    }
+
+    @Override
+    public void onHalfClose() {
+      submit(super::onHalfClose);
+    }
+
+    @Override
+    public void onCancel() {
+      submit(super::onCancel);
+    }
+
+    @Override
+    public void onComplete() {
+      submit(super::onComplete);
+    }
+
+    @Override
+    public void onReady() {
+      submit(super::onReady);
+    }
+  }
+}
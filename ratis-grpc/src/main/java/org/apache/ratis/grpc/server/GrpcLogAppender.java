@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.codahale.metrics.Timer;
 
@@ -57,6 +58,7 @@ public class GrpcLogAppender extends LogAppender {
   private long callId = 0;
   private volatile boolean firstResponseReceived = false;
   private final boolean installSnapshotEnabled;
+  private final int snapshotChunkWindow;
 
   private final TimeDuration requestTimeoutDuration;
   private final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
@@ -76,9 +78,28 @@ public class GrpcLogAppender extends LogAppender {
     requestTimeoutDuration = RaftServerConfigKeys.Rpc.requestTimeout(server.getProxy().getProperties());
     installSnapshotEnabled = RaftServerConfigKeys.Log.Appender.installSnapshotEnabled(
         server.getProxy().getProperties());
+    snapshotChunkWindow = RaftServerConfigKeys.Log.Appender.snapshotChunkWindow(
+        server.getProxy().getProperties());
     grpcServerMetrics = new GrpcServerMetrics(server.getMemberId().toString());
     grpcServerMetrics.addPendingRequestsCount(getFollowerId().toString(),
         () -> pendingRequests.logRequestsSize());
+    grpcServerMetrics.addPendingRequestsBytes(getFollowerId().toString(),
+        () -> pendingRequests.logRequestsBytes());
+  }
+
+  @Override
+  protected int getNumInFlightRequests() {
+    return pendingRequests.logRequestsSize();
+  }
+
+  @Override
+  protected long getInFlightBytes() {
+    return pendingRequests.logRequestsBytes();
+  }
+
+  @Override
+  protected Timer getAppendEntriesLatencyTimer() {
+    return grpcServerMetrics.getGrpcLogAppenderLatencyTimer(getFollowerId().toString(), false);
   }
 
   private GrpcServerProtocolClient getClient() throws IOException {
@@ -195,6 +216,7 @@ public class GrpcLogAppender extends LogAppender {
 
   private void appendLog(boolean excludeLogEntries) throws IOException {
     final AppendEntriesRequestProto pending;
+    final AppendEntriesRequestProto toSend;
     final AppendEntriesRequest request;
     final StreamObserver<AppendEntriesRequestProto> s;
     synchronized (this) {
@@ -205,6 +227,9 @@ public class GrpcLogAppender extends LogAppender {
       if (pending == null) {
         return;
       }
+      // compress before the bookkeeping so that a failure does not leave nextIndex advanced;
+      // the pending request keeps the uncompressed proto
+      toSend = compressEntries(pending);
       request = new AppendEntriesRequest(pending, getFollowerId(), grpcServerMetrics);
       pendingRequests.put(request);
       increaseNextIndex(pending);
@@ -215,16 +240,17 @@ public class GrpcLogAppender extends LogAppender {
     }
 
     if (isAppenderRunning()) {
-      sendRequest(request, pending, s);
+      sendRequest(request, pending, toSend, s);
     }
   }
 
   private void sendRequest(AppendEntriesRequest request, AppendEntriesRequestProto proto,
-        StreamObserver<AppendEntriesRequestProto> s) {
+      AppendEntriesRequestProto toSend, StreamObserver<AppendEntriesRequestProto> s) {
     CodeInjectionForTesting.execute(GrpcService.GRPC_SEND_SERVER_REQUEST,
         getServer().getId(), null, proto);
+    onEntriesSent(proto);
     request.startRequestTimer();
-    s.onNext(proto);
+    s.onNext(toSend);
     scheduler.onTimeout(requestTimeoutDuration,
         () -> timeoutAppendRequest(request.getCallId(), request.isHeartbeat()),
         LOG, () -> "Timeout check failed for append entry request: " + request);
@@ -288,6 +314,7 @@ public class GrpcLogAppender extends LogAppender {
     private void onNextImpl(AppendEntriesReplyProto reply) {
       // update the last rpc time
       getFollower().updateLastRpcResponseTime();
+      getFollower().updateSupportedCompressions(reply.getSupportedCompressionsList());
 
       if (!firstResponseReceived) {
         firstResponseReceived = true;
@@ -349,7 +376,7 @@ public class GrpcLogAppender extends LogAppender {
     getFollower().updateNextIndex(replyNextIndex);
   }
 
-  private class InstallSnapshotResponseHandler implements StreamObserver<InstallSnapshotReplyProto> {
+  class InstallSnapshotResponseHandler implements StreamObserver<InstallSnapshotReplyProto> {
     private final String name = getFollower().getName() + "-" + getClass().getSimpleName();
     private final Queue<Integer> pending;
     private final AtomicBoolean done = new AtomicBoolean(false);
@@ -368,10 +395,14 @@ public class GrpcLogAppender extends LogAppender {
       pending.offer(request.getSnapshotChunk().getRequestIndex());
     }
 
-    synchronized void removePending(InstallSnapshotReplyProto reply) {
-      final Integer index = pending.poll();
-      Objects.requireNonNull(index, "index == null");
-      Preconditions.assertTrue(index == reply.getRequestIndex());
+    void removePending(InstallSnapshotReplyProto reply) {
+      synchronized (this) {
+        final Integer index = pending.poll();
+        Objects.requireNonNull(index, "index == null");
+        Preconditions.assertTrue(index == reply.getRequestIndex());
+      }
+      // wake up the sender waiting for the window
+      GrpcLogAppender.this.notifyAppend();
     }
 
     boolean isDone() {
@@ -387,6 +418,10 @@ public class GrpcLogAppender extends LogAppender {
       return pending.isEmpty();
     }
 
+    synchronized int getNumPending() {
+      return pending.size();
+    }
+
     @Override
     public void onNext(InstallSnapshotReplyProto reply) {
       if (LOG.isInfoEnabled()) {
@@ -396,6 +431,8 @@ public class GrpcLogAppender extends LogAppender {
 
       // update the last rpc time
       getFollower().updateLastRpcResponseTime();
+      getFollower().updateSupportedCompressions(reply.getSupportedCompressionsList());
+      onInstallSnapshotReply(reply);
 
       if (!firstResponseReceived) {
         firstResponseReceived = true;
@@ -421,6 +458,11 @@ public class GrpcLogAppender extends LogAppender {
         case NOT_LEADER:
           checkResponseTerm(reply.getTerm());
           break;
+        case RESUME_MISMATCH:
+          LOG.warn("{}: Failed to resume InstallSnapshot, will retry from the beginning.", this);
+          // stop sending the remaining requests
+          close();
+          break;
         case CONF_MISMATCH:
           LOG.error("{}: Configuration Mismatch ({}): Leader {} has it set to {} but follower {} has it set to {}",
               this, RaftServerConfigKeys.Log.Appender.INSTALL_SNAPSHOT_ENABLED_KEY,
@@ -474,9 +516,19 @@ public class GrpcLogAppender extends LogAppender {
     final String requestId = UUID.randomUUID().toString();
     try {
       snapshotRequestObserver = getClient().installSnapshot(responseHandler);
-      for (InstallSnapshotRequestProto request :
-          new SnapshotRequestIter(snapshot, requestId)) {
-        if (isAppenderRunning()) {
+      final InstallSnapshotRequestProto progressRequest = newSnapshotProgressRequest(snapshot, requestId);
+      if (progressRequest != null) {
+        snapshotRequestObserver.onNext(progressRequest);
+        getFollower().updateLastRpcSendTime();
+        responseHandler.addPending(progressRequest);
+        // the files to be sent depend on the reply
+        awaitSnapshotReplies(responseHandler, 1);
+      }
+      final SnapshotRequestIter requests = new SnapshotRequestIter(snapshot, requestId, progressRequest == null? 0: 1);
+      for (InstallSnapshotRequestProto request : requests) {
+        awaitSnapshotThrottle(requests);
+        awaitSnapshotReplies(responseHandler, snapshotChunkWindow);
+        if (isAppenderRunning() && !responseHandler.isDone()) {
           snapshotRequestObserver.onNext(request);
           getFollower().updateLastRpcSendTime();
           responseHandler.addPending(request);
@@ -505,11 +557,27 @@ public class GrpcLogAppender extends LogAppender {
     }
 
     if (responseHandler.hasAllResponse()) {
+      onSnapshotInstalled();
       getFollower().setSnapshotIndex(snapshot.getTermIndex().getIndex());
       LOG.info("{}: installed snapshot {} successfully", this, snapshot);
     }
   }
 
+  /** Wait until the number of the requests without replies is below the window. */
+  void awaitSnapshotReplies(InstallSnapshotResponseHandler responseHandler, int window) {
+    synchronized (this) {
+      while (isAppenderRunning() && !responseHandler.isDone()
+          && responseHandler.getNumPending() >= window) {
+        try {
+          wait();
+        } catch (InterruptedException ignored) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
   /**
    * Send installSnapshot request to Follower with only a notification that a snapshot needs to be installed.
    * @param firstAvailableLogTermIndex the first available log's index on the Leader
@@ -573,6 +641,7 @@ public class GrpcLogAppender extends LogAppender {
     private final long callId;
     private final TermIndex previousLog;
     private final int entriesCount;
+    private final long size;
 
     private final TermIndex lastEntry;
 
@@ -580,6 +649,7 @@ public class GrpcLogAppender extends LogAppender {
       this.callId = proto.getServerRequest().getCallId();
       this.previousLog = proto.hasPreviousLog()? ServerProtoUtils.toTermIndex(proto.getPreviousLog()): null;
       this.entriesCount = proto.getEntriesCount();
+      this.size = entriesCount > 0? proto.getSerializedSize(): 0;
       this.lastEntry = entriesCount > 0? ServerProtoUtils.toTermIndex(proto.getEntries(entriesCount - 1)): null;
 
       this.timer = grpcServerMetrics.getGrpcLogAppenderLatencyTimer(followerId.toString(), isHeartbeat());
@@ -594,6 +664,10 @@ public class GrpcLogAppender extends LogAppender {
       return previousLog;
     }
 
+    long getSize() {
+      return size;
+    }
+
     void startRequestTimer() {
       timerContext = timer.time();
     }
@@ -616,14 +690,21 @@ public class GrpcLogAppender extends LogAppender {
   static class RequestMap {
     private final Map<Long, AppendEntriesRequest> logRequests = new ConcurrentHashMap<>();
     private final Map<Long, AppendEntriesRequest> heartbeats = new ConcurrentHashMap<>();
+    /** The total size of the log requests. */
+    private final AtomicLong logRequestsBytes = new AtomicLong();
 
     int logRequestsSize() {
       return logRequests.size();
     }
 
+    long logRequestsBytes() {
+      return logRequestsBytes.get();
+    }
+
     void clear() {
       logRequests.clear();
       heartbeats.clear();
+      logRequestsBytes.set(0);
     }
 
     void put(AppendEntriesRequest request) {
@@ -631,6 +712,7 @@ public class GrpcLogAppender extends LogAppender {
         heartbeats.put(request.getCallId(), request);
       } else {
         logRequests.put(request.getCallId(), request);
+        logRequestsBytes.addAndGet(request.getSize());
       }
     }
 
@@ -639,7 +721,14 @@ public class GrpcLogAppender extends LogAppender {
     }
 
     AppendEntriesRequest remove(long cid, boolean isHeartbeat) {
-      return isHeartbeat ? heartbeats.remove(cid): logRequests.remove(cid);
+      if (isHeartbeat) {
+        return heartbeats.remove(cid);
+      }
+      final AppendEntriesRequest removed = logRequests.remove(cid);
+      if (removed != null) {
+        logRequestsBytes.addAndGet(-removed.getSize());
+      }
+      return removed;
     }
 
     public AppendEntriesRequest handleTimeout(long callId, boolean heartbeat) {
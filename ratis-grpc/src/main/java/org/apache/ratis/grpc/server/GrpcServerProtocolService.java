@@ -27,6 +27,7 @@ import org.apache.ratis.thirdparty.io.grpc.StatusRuntimeException;
 import org.apache.ratis.thirdparty.io.grpc.stub.StreamObserver;
 import org.apache.ratis.proto.RaftProtos.*;
 import org.apache.ratis.proto.grpc.RaftServerProtocolServiceGrpc.RaftServerProtocolServiceImplBase;
+import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.ProtoUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,15 +87,30 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
 
     abstract boolean replyInOrder(REQUEST request);
 
+    /**
+     * Should a failure of an in-order request be replied as an error, which closes the stream?
+     * Otherwise, the failed request and the following requests are not replied.
+     */
+    boolean closeOnFailure() {
+      return false;
+    }
+
     StatusRuntimeException wrapException(Throwable e, REQUEST request) {
       return GrpcUtil.wrapException(e, getCallId(request));
     }
 
-    private void handleError(Throwable e, REQUEST request) {
+    private synchronized void handleError(Throwable e, REQUEST request) {
       GrpcUtil.warn(LOG, () -> getId() + ": Failed " + op + " request " + requestToString(request), e);
       responseObserver.onError(wrapException(e, request));
     }
 
+    /** Reply the error and close the stream, unless it is already closed. */
+    private synchronized void handleErrorAndClose(Throwable e, REQUEST request) {
+      if (isClosed.compareAndSet(false, true)) {
+        handleError(e, request);
+      }
+    }
+
     private synchronized void handleReply(REPLY reply) {
       if (!isClosed.get()) {
         if (LOG.isDebugEnabled()) {
@@ -121,11 +137,19 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
           .map(PendingServerRequest::getFuture)
           .orElse(CompletableFuture.completedFuture(null));
       try {
-        process(request).thenCombine(previousFuture, (reply, v) -> {
+        final CompletableFuture<Void> replied = process(request).thenCombine(previousFuture, (reply, v) -> {
           handleReply(reply);
           current.getFuture().complete(null);
           return null;
         });
+        if (closeOnFailure()) {
+          replied.exceptionally(e -> {
+            // the following requests fail with the same exception; reply the error only once
+            handleErrorAndClose(JavaUtils.unwrapCompletionException(e), request);
+            current.getFuture().completeExceptionally(e);
+            return null;
+          });
+        }
       } catch (Exception e) {
         handleError(e, request);
         current.getFuture().completeExceptionally(e);
@@ -133,14 +157,14 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
     }
 
     @Override
-    public void onCompleted() {
+    public synchronized void onCompleted() {
       if (isClosed.compareAndSet(false, true)) {
         LOG.info("{}: Completed {}, lastRequest: {}", getId(), op, getPreviousRequestString());
         responseObserver.onCompleted();
       }
     }
     @Override
-    public void onError(Throwable t) {
+    public synchronized void onError(Throwable t) {
       GrpcUtil.warn(LOG, () -> getId() + ": installSnapshot onError, lastRequest: " + getPreviousRequestString(), t);
       if (isClosed.compareAndSet(false, true)) {
         Status status = Status.fromThrowable(t);
@@ -203,12 +227,12 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
 
       @Override
       boolean replyInOrder(AppendEntriesRequestProto request) {
-        return request.getEntriesCount() != 0;
+        return ServerProtoUtils.hasEntries(request);
       }
 
       @Override
       StatusRuntimeException wrapException(Throwable e, AppendEntriesRequestProto request) {
-        return GrpcUtil.wrapException(e, getCallId(request), request.getEntriesCount() == 0);
+        return GrpcUtil.wrapException(e, getCallId(request), !ServerProtoUtils.hasEntries(request));
       }
     };
   }
@@ -220,7 +244,7 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
         RaftServerProtocol.Op.INSTALL_SNAPSHOT, responseObserver) {
       @Override
       CompletableFuture<InstallSnapshotReplyProto> process(InstallSnapshotRequestProto request) throws IOException {
-        return CompletableFuture.completedFuture(server.installSnapshot(request));
+        return server.installSnapshotAsync(request);
       }
 
       @Override
@@ -242,6 +266,12 @@ class GrpcServerProtocolService extends RaftServerProtocolServiceImplBase {
       boolean replyInOrder(InstallSnapshotRequestProto installSnapshotRequestProto) {
         return true;
       }
+
+      @Override
+      boolean closeOnFailure() {
+        // the chunks are installed asynchronously; reply the failure so that the leader does not wait for it
+        return true;
+      }
     };
   }
 }
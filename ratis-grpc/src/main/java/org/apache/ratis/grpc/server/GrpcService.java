@@ -17,10 +17,12 @@
  */
 package org.apache.ratis.grpc.server;
 
+import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.grpc.GrpcConfigKeys;
 import org.apache.ratis.grpc.GrpcTlsConfig;
 import org.apache.ratis.grpc.client.GrpcClientProtocolService;
 import org.apache.ratis.grpc.metrics.intercept.server.MetricServerInterceptor;
+import org.apache.ratis.proto.grpc.RaftServerProtocolServiceGrpc;
 import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.rpc.SupportedRpcType;
@@ -28,11 +30,17 @@ import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.RaftServerRpc;
 import org.apache.ratis.server.impl.RaftServerRpcWithProxy;
+import org.apache.ratis.thirdparty.io.grpc.BindableService;
+import org.apache.ratis.thirdparty.io.grpc.ServerInterceptor;
 import org.apache.ratis.thirdparty.io.grpc.ServerInterceptors;
+import org.apache.ratis.thirdparty.io.grpc.ServerServiceDefinition;
 import org.apache.ratis.thirdparty.io.grpc.netty.GrpcSslContexts;
 import org.apache.ratis.thirdparty.io.grpc.netty.NettyServerBuilder;
 import org.apache.ratis.thirdparty.io.grpc.Server;
 import org.apache.ratis.thirdparty.io.netty.channel.ChannelOption;
+import org.apache.ratis.thirdparty.io.netty.channel.EventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.ratis.thirdparty.io.netty.handler.ssl.ClientAuth;
 import org.apache.ratis.thirdparty.io.netty.handler.ssl.SslContextBuilder;
 
@@ -43,6 +51,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import static org.apache.ratis.thirdparty.io.netty.handler.ssl.SslProvider.OPENSSL;
@@ -90,6 +107,11 @@ public final class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocol
 
   private final MetricServerInterceptor serverInterceptor;
 
+  /** The executors created by this service, which are shut down in {@link #closeImpl()}. */
+  private final List<ExecutorService> executors = new ArrayList<>();
+  /** The event loop groups created by this service, which are shut down in {@link #closeImpl()}. */
+  private final List<EventLoopGroup> eventLoopGroups = new ArrayList<>();
+
   public MetricServerInterceptor getServerInterceptor() {
     return serverInterceptor;
   }
@@ -124,17 +146,41 @@ public final class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocol
         getClass().getSimpleName() + "_" + Integer.toString(port)
     );
 
+    final RaftProperties properties = raftServer.getProperties();
     NettyServerBuilder nettyServerBuilder = NettyServerBuilder.forPort(port)
         .withChildOption(ChannelOption.SO_REUSEADDR, true)
         .maxInboundMessageSize(grpcMessageSizeMax.getSizeInt())
-        .flowControlWindow(flowControlWindow.getSizeInt())
-        .addService(ServerInterceptors.intercept(
-            new GrpcServerProtocolService(idSupplier, raftServer),
-            serverInterceptor))
-        .addService(ServerInterceptors.intercept(clientProtocolService, serverInterceptor))
-        .addService(ServerInterceptors.intercept(
-            new GrpcAdminProtocolService(raftServer),
-            serverInterceptor));
+        .flowControlWindow(flowControlWindow.getSizeInt());
+    setEventLoopGroups(nettyServerBuilder, properties);
+
+    final GrpcServerProtocolService serverProtocolService = new GrpcServerProtocolService(idSupplier, raftServer);
+    final GrpcAdminProtocolService adminProtocolService = new GrpcAdminProtocolService(raftServer);
+    final int serverExecutorSize = GrpcConfigKeys.Server.serverExecutorSize(properties);
+    final int clientExecutorSize = GrpcConfigKeys.Server.clientExecutorSize(properties);
+    final int adminExecutorSize = GrpcConfigKeys.Server.adminExecutorSize(properties);
+    final boolean appendEntriesDirect = GrpcConfigKeys.Server.appendEntriesDirectExecutorEnabled(properties);
+    if (serverExecutorSize == 0 && clientExecutorSize == 0 && adminExecutorSize == 0 && !appendEntriesDirect) {
+      // use the gRPC default executor for all the services
+      nettyServerBuilder
+          .addService(intercept(serverProtocolService))
+          .addService(intercept(clientProtocolService))
+          .addService(intercept(adminProtocolService));
+    } else {
+      // the listeners are dispatched to the executors by the interceptors
+      nettyServerBuilder.directExecutor();
+      final String name = getClass().getSimpleName();
+      final ExecutorService defaultExecutor = newExecutor(name + "-default", 0);
+      final Set<String> directMethods = appendEntriesDirect?
+          Collections.singleton(RaftServerProtocolServiceGrpc.getAppendEntriesMethod().getFullMethodName())
+          : Collections.emptySet();
+      nettyServerBuilder
+          .addService(intercept(serverProtocolService, new ExecutorServerInterceptor(
+              newExecutor(name + "-server", serverExecutorSize, defaultExecutor), directMethods)))
+          .addService(intercept(clientProtocolService, new ExecutorServerInterceptor(
+              newExecutor(name + "-client", clientExecutorSize, defaultExecutor))))
+          .addService(intercept(adminProtocolService, new ExecutorServerInterceptor(
+              newExecutor(name + "-admin", adminExecutorSize, defaultExecutor))));
+    }
 
     if (tlsConfig != null) {
       SslContextBuilder sslContextBuilder =
@@ -162,6 +208,47 @@ public final class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocol
     addressSupplier = JavaUtils.memoize(() -> new InetSocketAddress(port != 0? port: server.getPort()));
   }
 
+  private ServerServiceDefinition intercept(BindableService service) {
+    return ServerInterceptors.intercept(service, serverInterceptor);
+  }
+
+  private ServerServiceDefinition intercept(BindableService service, ServerInterceptor executorInterceptor) {
+    // the last interceptor is called first so that all the other interceptors run in the executor
+    return ServerInterceptors.intercept(service, serverInterceptor, executorInterceptor);
+  }
+
+  private void setEventLoopGroups(NettyServerBuilder builder, RaftProperties properties) {
+    final int bossGroupSize = GrpcConfigKeys.Server.bossGroupSize(properties);
+    final int workerGroupSize = GrpcConfigKeys.Server.workerGroupSize(properties);
+    if (bossGroupSize == 0 && workerGroupSize == 0) {
+      return; // use the gRPC default event loop groups
+    }
+    // a size of 0 means the netty default number of threads
+    final EventLoopGroup bossGroup = new NioEventLoopGroup(bossGroupSize);
+    final EventLoopGroup workerGroup = new NioEventLoopGroup(workerGroupSize);
+    eventLoopGroups.add(bossGroup);
+    eventLoopGroups.add(workerGroup);
+    builder.bossEventLoopGroup(bossGroup)
+        .workerEventLoopGroup(workerGroup)
+        .channelType(NioServerSocketChannel.class);
+  }
+
+  /** @return a new executor if size > 0; otherwise, return the given default executor. */
+  private ExecutorService newExecutor(String name, int size, ExecutorService defaultExecutor) {
+    return size > 0? newExecutor(name, size): defaultExecutor;
+  }
+
+  /** @return a new fixed thread pool if size > 0; otherwise, return a new cached thread pool. */
+  private ExecutorService newExecutor(String name, int size) {
+    final AtomicInteger count = new AtomicInteger();
+    // the id may not be available yet, so the thread name is computed when creating the thread
+    final ThreadFactory threadFactory = r -> new Daemon(r, getId() + "-" + name + "-" + count.incrementAndGet());
+    final ExecutorService executor = size > 0? Executors.newFixedThreadPool(size, threadFactory)
+        : Executors.newCachedThreadPool(threadFactory);
+    executors.add(executor);
+    return executor;
+  }
+
   @Override
   public SupportedRpcType getRpcType() {
     return SupportedRpcType.GRPC;
@@ -189,6 +276,8 @@ public final class GrpcService extends RaftServerRpcWithProxy<GrpcServerProtocol
       Thread.currentThread().interrupt();
       throw IOUtils.toInterruptedIOException(name + " failed", e);
     }
+    executors.forEach(ExecutorService::shutdown);
+    eventLoopGroups.forEach(g -> g.shutdownGracefully(0, 100, TimeUnit.MILLISECONDS));
     LOG.info("{} successfully", name);
   }
 
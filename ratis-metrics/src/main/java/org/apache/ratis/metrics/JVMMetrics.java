@@ -22,6 +22,9 @@ import com.codahale.metrics.jvm.GarbageCollectorMetricSet;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
 import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TimeoutScheduler;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class to add JVM metrics.
@@ -43,5 +46,9 @@ public interface JVMMetrics {
     registry.registerAll("memory", new MemoryUsageGaugeSet());
     registry.registerAll("threads", new ThreadStatesGaugeSet());
     registry.registerAll("classLoading", new ClassLoadingGaugeSet());
+
+    final TimeoutScheduler scheduler = TimeoutScheduler.getInstance();
+    registry.gauge("timeoutScheduler.queueSize", () -> scheduler::getQueueSize);
+    registry.gauge("timeoutScheduler.lagMs", () -> () -> scheduler.getLag().toLong(TimeUnit.MILLISECONDS));
   }
 }
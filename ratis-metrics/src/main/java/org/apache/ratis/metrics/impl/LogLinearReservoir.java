@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.ratis.metrics.impl;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link Reservoir} recording the values in log-linear buckets, similar to HdrHistogram.
+ *
+ * Each power-of-two range is divided into {@link #HALF_SUB_BUCKETS} linear sub-buckets,
+ * so that the relative error of a recorded value is less than 1/{@link #HALF_SUB_BUCKETS}.
+ * Recording a value is lock-free and allocation-free.
+ * Unlike the exponentially decaying reservoir, the tail of the distribution is not sampled away.
+ *
+ * A {@link #getSnapshot()} contains the values recorded since the start of the previous interval,
+ * i.e. it covers between one and two intervals when the reservoir is read at least once per interval.
+ * The snapshot is recomputed in each call, so that it always includes the latest values.
+ */
+public class LogLinearReservoir implements Reservoir {
+  private static final int SUB_BUCKET_BITS = 6;
+  static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** The values greater than or equal to 2^MAX_BITS are recorded in the last bucket. */
+  private static final int MAX_BITS = 40;
+  static final int NUM_BUCKETS = SUB_BUCKETS + (MAX_BITS - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+  static final long DEFAULT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+  /** The maximum length of {@link Snapshot#getValues()}, the same as the exponentially decaying reservoir. */
+  static final int MAX_VALUES = 1028;
+
+  static int getBucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return value < 0? 0: (int) value;
+    }
+    final int msb = 63 - Long.numberOfLeadingZeros(value);
+    if (msb >= MAX_BITS) {
+      return NUM_BUCKETS - 1;
+    }
+    final int shift = msb - SUB_BUCKET_BITS + 1;
+    final int top = (int) (value >>> shift); // in [HALF_SUB_BUCKETS, SUB_BUCKETS)
+    return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + top - HALF_SUB_BUCKETS;
+  }
+
+  /** @return the smallest value in the bucket. */
+  static long getBucketLowerBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final int i = index - SUB_BUCKETS;
+    final int shift = i / HALF_SUB_BUCKETS + 1;
+    return (long) (i % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+  }
+
+  /** @return the value representing the bucket, i.e. the middle of the bucket. */
+  static long getBucketValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    final long lower = getBucketLowerBound(index);
+    return lower + ((getBucketLowerBound(index + 1) - lower) >> 1);
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final long intervalNanos;
+  private final LongSupplier nanoClock;
+
+  /** The counts at the start of the previous interval, i.e. the start of the window; guarded by this. */
+  private long[] windowStart = new long[NUM_BUCKETS];
+  /** The counts at the start of the current interval; guarded by this. */
+  private long[] intervalStart = new long[NUM_BUCKETS];
+  private long intervalStartTime;
+
+  public LogLinearReservoir() {
+    this(DEFAULT_INTERVAL_NANOS, System::nanoTime);
+  }
+
+  LogLinearReservoir(long intervalNanos, LongSupplier nanoClock) {
+    this.intervalNanos = intervalNanos;
+    this.nanoClock = nanoClock;
+    this.intervalStartTime = nanoClock.getAsLong();
+  }
+
+  @Override
+  public int size() {
+    return getSnapshot().size();
+  }
+
+  @Override
+  public void update(long value) {
+    counts.incrementAndGet(getBucketIndex(value));
+  }
+
+  @Override
+  public synchronized Snapshot getSnapshot() {
+    final long now = nanoClock.getAsLong();
+    final long[] current = new long[NUM_BUCKETS];
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      current[i] = counts.get(i);
+    }
+    if (now - intervalStartTime >= intervalNanos) {
+      // start a new interval; the window slides to the start of the previous interval.
+      windowStart = intervalStart;
+      intervalStart = current.clone();
+      intervalStartTime = now;
+    }
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      current[i] -= windowStart[i];
+    }
+    return new BucketSnapshot(current);
+  }
+
+  /** A snapshot of the bucket counts. */
+  static class BucketSnapshot extends Snapshot {
+    private final long[] counts;
+    private final long total;
+
+    BucketSnapshot(long[] counts) {
+      this.counts = counts;
+      long sum = 0;
+      for (long c : counts) {
+        sum += c;
+      }
+      this.total = sum;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+      if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+        throw new IllegalArgumentException(quantile + " is not in [0..1]");
+      }
+      if (total == 0) {
+        return 0.0;
+      }
+      final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+      long sum = 0;
+      for (int i = 0; i < counts.length; i++) {
+        sum += counts[i];
+        if (sum >= rank) {
+          return getBucketValue(i);
+        }
+      }
+      return getMax();
+    }
+
+    /**
+     * @return the sorted bucket values, at most {@link #MAX_VALUES} of them.
+     *         When there are more recorded values, the count of each bucket is scaled down proportionally.
+     */
+    @Override
+    public long[] getValues() {
+      final double scale = total <= MAX_VALUES? 1.0: (double) MAX_VALUES / total;
+      final long[] values = new long[(int) Math.min(total, MAX_VALUES)];
+      int k = 0;
+      double cumulative = 0;
+      for (int i = 0; i < counts.length && k < values.length; i++) {
+        if (counts[i] == 0) {
+          continue;
+        }
+        // round the cumulative count so that the scaled counts add up to the length
+        cumulative += counts[i] * scale;
+        final int end = Math.min((int) Math.round(cumulative), values.length);
+        final long v = getBucketValue(i);
+        for (; k < end; k++) {
+          values[k] = v;
+        }
+      }
+      return values;
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMax() {
+      for (int i = counts.length - 1; i >= 0; i--) {
+        if (counts[i] > 0) {
+          return getBucketValue(i);
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public long getMin() {
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          return getBucketValue(i);
+        }
+      }
+      return 0;
+    }
+
+    @Override
+    public double getMean() {
+      if (total == 0) {
+        return 0.0;
+      }
+      double sum = 0;
+      for (int i = 0; i < counts.length; i++) {
+        sum += (double) counts[i] * getBucketValue(i);
+      }
+      return sum / total;
+    }
+
+    @Override
+    public double getStdDev() {
+      if (total <= 1) {
+        return 0.0;
+      }
+      final double mean = getMean();
+      double sum = 0;
+      for (int i = 0; i < counts.length; i++) {
+        final double diff = getBucketValue(i) - mean;
+        sum += counts[i] * diff * diff;
+      }
+      return Math.sqrt(sum / (total - 1));
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+      try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+        for (int i = 0; i < counts.length; i++) {
+          if (counts[i] > 0) {
+            out.printf("%d %d%n", getBucketValue(i), counts[i]);
+          }
+        }
+      }
+    }
+  }
+}
@@ -35,11 +35,55 @@ import com.codahale.metrics.Timer;
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
 import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Custom implementation of {@link MetricRegistry}.
+ *
+ * The reservoir of the timers can be set by the system property {@link #TIMER_RESERVOIR_PROPERTY};
+ * the default is {@link TimerReservoir#LOG_LINEAR}.
  */
 public class RatisMetricRegistryImpl implements RatisMetricRegistry {
+  public static final Logger LOG = LoggerFactory.getLogger(RatisMetricRegistryImpl.class);
+
+  public static final String TIMER_RESERVOIR_PROPERTY = "ratis.metrics.timer.reservoir";
+
+  /** The reservoirs for the timers. */
+  public enum TimerReservoir {
+    /** The default reservoir of Dropwizard. */
+    EXPONENTIALLY_DECAYING(Timer::new),
+    /** Use {@link LogLinearReservoir}. */
+    LOG_LINEAR(() -> new Timer(new LogLinearReservoir()));
+
+    private final MetricSupplier<Timer> timerSupplier;
+
+    TimerReservoir(MetricSupplier<Timer> timerSupplier) {
+      this.timerSupplier = timerSupplier;
+    }
+
+    MetricSupplier<Timer> getTimerSupplier() {
+      return timerSupplier;
+    }
+
+    static final TimerReservoir DEFAULT = LOG_LINEAR;
+
+    static TimerReservoir get() {
+      final String property = System.getProperty(TIMER_RESERVOIR_PROPERTY);
+      if (property == null) {
+        return DEFAULT;
+      }
+      try {
+        return valueOf(property.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        LOG.warn("Invalid {} = {}, use the default {}", TIMER_RESERVOIR_PROPERTY, property, DEFAULT);
+        return DEFAULT;
+      }
+    }
+  }
+
+  private static final MetricSupplier<Timer> TIMER_SUPPLIER = TimerReservoir.get().getTimerSupplier();
+
   private MetricRegistry metricRegistry = new MetricRegistry();
 
   private final MetricRegistryInfo info;
@@ -54,7 +98,7 @@ public class RatisMetricRegistryImpl implements RatisMetricRegistry {
 
   @Override
   public Timer timer(String name) {
-    return metricRegistry.timer(getMetricName(name));
+    return metricRegistry.timer(getMetricName(name), TIMER_SUPPLIER);
   }
 
   @Override
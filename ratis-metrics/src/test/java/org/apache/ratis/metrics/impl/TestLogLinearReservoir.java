@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.metrics.impl;
+
+import com.codahale.metrics.Snapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestLogLinearReservoir {
+  @Test
+  public void testBucketIndex() {
+    int previous = -1;
+    for (long v = 0; v < (1L << 20); v++) {
+      final int i = LogLinearReservoir.getBucketIndex(v);
+      Assert.assertTrue(i == previous || i == previous + 1);
+      Assert.assertTrue(LogLinearReservoir.getBucketLowerBound(i) <= v);
+      Assert.assertTrue(v < LogLinearReservoir.getBucketLowerBound(i + 1));
+      previous = i;
+    }
+    for (int i = 0; i < LogLinearReservoir.NUM_BUCKETS; i++) {
+      Assert.assertEquals(i, LogLinearReservoir.getBucketIndex(LogLinearReservoir.getBucketLowerBound(i)));
+    }
+    Assert.assertEquals(0, LogLinearReservoir.getBucketIndex(-1));
+    Assert.assertEquals(LogLinearReservoir.NUM_BUCKETS - 1, LogLinearReservoir.getBucketIndex(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testQuantiles() {
+    final AtomicLong clock = new AtomicLong();
+    final LogLinearReservoir reservoir = new LogLinearReservoir(1000, clock::get);
+    final int n = 100_000;
+    for (int i = 1; i <= n; i++) {
+      reservoir.update(i * 1000L);
+    }
+    clock.addAndGet(1000);
+    final Snapshot s = reservoir.getSnapshot();
+    Assert.assertEquals(n, s.size());
+    for (double q : new double[]{0.5, 0.75, 0.95, 0.99, 0.999}) {
+      final double expected = q * n * 1000L;
+      final double error = Math.abs(s.getValue(q) - expected) / expected;
+      Assert.assertTrue("q=" + q + ", error=" + error, error < 0.03);
+    }
+    Assert.assertEquals((n + 1) / 2.0 * 1000L, s.getMean(), 0.03 * s.getMean());
+    Assert.assertTrue(s.getMin() <= 1000L * 1.03);
+    Assert.assertTrue(s.getMax() >= n * 1000L * 0.97);
+  }
+
+  @Test
+  public void testSnapshotInterval() {
+    final AtomicLong clock = new AtomicLong();
+    final LogLinearReservoir reservoir = new LogLinearReservoir(1000, clock::get);
+    for (int i = 0; i < 10; i++) {
+      reservoir.update(ThreadLocalRandom.current().nextLong(1 << 20));
+    }
+    Assert.assertEquals(10, reservoir.getSnapshot().size());
+
+    // within the interval, the new values are included immediately
+    reservoir.update(1);
+    clock.addAndGet(999);
+    Assert.assertEquals(11, reservoir.getSnapshot().size());
+
+    // after the first interval, the snapshot still covers the previous interval
+    clock.addAndGet(1);
+    Assert.assertEquals(11, reservoir.getSnapshot().size());
+
+    // after the second interval, only the values in the previous interval are included
+    reservoir.update(2);
+    clock.addAndGet(1000);
+    final Snapshot snapshot = reservoir.getSnapshot();
+    Assert.assertEquals(1, snapshot.size());
+    Assert.assertEquals(2, snapshot.getMax());
+
+    clock.addAndGet(1000);
+    Assert.assertEquals(0, reservoir.getSnapshot().size());
+  }
+
+  @Test
+  public void testValues() {
+    final AtomicLong clock = new AtomicLong();
+    final LogLinearReservoir reservoir = new LogLinearReservoir(1000, clock::get);
+    for (int i = 0; i < 100; i++) {
+      reservoir.update(i);
+    }
+    long[] values = reservoir.getSnapshot().getValues();
+    Assert.assertEquals(100, values.length);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(LogLinearReservoir.getBucketValue(LogLinearReservoir.getBucketIndex(i)), values[i]);
+    }
+
+    // the number of values is bounded
+    for (int i = 0; i < 1_000_000; i++) {
+      reservoir.update(i % 2 == 0? 10: 1 << 20);
+    }
+    values = reservoir.getSnapshot().getValues();
+    Assert.assertEquals(LogLinearReservoir.MAX_VALUES, values.length);
+    for (int i = 1; i < values.length; i++) {
+      Assert.assertTrue(values[i - 1] <= values[i]);
+    }
+    // about half of the values are 10
+    final long tens = Arrays.stream(values).filter(v -> v == 10).count();
+    Assert.assertEquals(LogLinearReservoir.MAX_VALUES / 2.0, tens, 10);
+  }
+}
@@ -68,6 +68,24 @@ public interface NettyConfigKeys {
     static void setPort(RaftProperties properties, int port) {
       setInt(properties::setInt, PORT_KEY, port);
     }
+
+    /**
+     * Should the fixed-width binary packet header be used?
+     * A client advertises the support in its protobuf headers;
+     * once a server replies with a binary header, the client switches to the binary header.
+     * A peer which has it disabled or does not support it keeps using protobuf headers.
+     */
+    String BINARY_HEADER_ENABLED_KEY = PREFIX + ".binary-header.enabled";
+    boolean BINARY_HEADER_ENABLED_DEFAULT = true;
+
+    static boolean binaryHeaderEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          BINARY_HEADER_ENABLED_KEY, BINARY_HEADER_ENABLED_DEFAULT, getDefaultLog());
+    }
+
+    static void setBinaryHeaderEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, BINARY_HEADER_ENABLED_KEY, enabled);
+    }
   }
 
   static void main(String[] args) {
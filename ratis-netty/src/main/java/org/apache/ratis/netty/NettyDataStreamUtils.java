@@ -18,17 +18,22 @@
 package org.apache.ratis.netty;
 
 import org.apache.ratis.datastream.impl.DataStreamReplyByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
 import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
-import org.apache.ratis.netty.server.DataStreamRequestByteBuf;
+import org.apache.ratis.datastream.impl.DataStreamRequestFilePositionCount;
 import org.apache.ratis.proto.RaftProtos.DataStreamReplyHeaderProto;
 import org.apache.ratis.proto.RaftProtos.DataStreamRequestHeaderProto;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto;
 import org.apache.ratis.protocol.DataStreamPacketHeader;
 import org.apache.ratis.protocol.DataStreamReplyHeader;
+import org.apache.ratis.protocol.DataStreamRequest;
 import org.apache.ratis.protocol.DataStreamRequestHeader;
 import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
 import org.apache.ratis.thirdparty.io.netty.buffer.ByteBufAllocator;
 import org.apache.ratis.thirdparty.io.netty.buffer.Unpooled;
+import org.apache.ratis.thirdparty.io.netty.channel.Channel;
+import org.apache.ratis.thirdparty.io.netty.channel.DefaultFileRegion;
+import org.apache.ratis.thirdparty.io.netty.util.AttributeKey;
 
 import java.nio.ByteBuffer;
 import java.util.Optional;
@@ -36,8 +41,26 @@ import java.util.function.Consumer;
 import java.util.function.Function;
 
 public interface NettyDataStreamUtils {
+  /** Has the binary header been negotiated for the channel? */
+  AttributeKey<Boolean> BINARY_HEADER = AttributeKey.valueOf(NettyDataStreamUtils.class, "binaryHeader");
 
-  static ByteBuffer getDataStreamRequestHeaderProtoByteBuf(DataStreamRequestByteBuffer request) {
+  static boolean isBinaryHeader(Channel channel) {
+    return Boolean.TRUE.equals(channel.attr(BINARY_HEADER).get());
+  }
+
+  static void setBinaryHeader(Channel channel) {
+    channel.attr(BINARY_HEADER).set(Boolean.TRUE);
+  }
+
+  static ByteBuffer getDataStreamRequestHeaderProtoByteBuf(DataStreamRequest request) {
+    return getDataStreamRequestHeaderProtoByteBuf(request, false);
+  }
+
+  /**
+   * @param binaryHeaderSupported should the request advertise the support of the binary header?
+   */
+  static ByteBuffer getDataStreamRequestHeaderProtoByteBuf(DataStreamRequest request,
+      boolean binaryHeaderSupported) {
     DataStreamPacketHeaderProto.Builder b = DataStreamPacketHeaderProto
         .newBuilder()
         .setStreamId(request.getStreamId())
@@ -47,6 +70,7 @@ public interface NettyDataStreamUtils {
     return DataStreamRequestHeaderProto
         .newBuilder()
         .setPacketHeader(b)
+        .setBinaryHeaderVersion(binaryHeaderSupported? DataStreamPacketHeader.BINARY_HEADER_VERSION: 0)
         .build()
         .toByteString()
         .asReadOnlyByteBuffer();
@@ -71,16 +95,66 @@ public interface NettyDataStreamUtils {
 
   static void encodeDataStreamRequestByteBuffer(DataStreamRequestByteBuffer request, Consumer<ByteBuf> out,
       ByteBufAllocator allocator) {
-    ByteBuffer headerBuf = getDataStreamRequestHeaderProtoByteBuf(request);
+    encodeDataStreamRequestByteBuffer(request, out, allocator, false, false);
+  }
+
+  /**
+   * @param binaryHeaderSupported does the client support the binary header?
+   * @param binaryHeader has the binary header been negotiated?
+   */
+  static void encodeDataStreamRequestByteBuffer(DataStreamRequestByteBuffer request, Consumer<ByteBuf> out,
+      ByteBufAllocator allocator, boolean binaryHeaderSupported, boolean binaryHeader) {
+    encodeDataStreamRequestHeader(request, out, allocator, binaryHeaderSupported, binaryHeader);
+    out.accept(Unpooled.wrappedBuffer(request.slice()));
+  }
+
+  /** Encode the request with its buffer, which is retained until it is written. */
+  static void encodeDataStreamRequestByteBuf(DataStreamRequestByteBuf request, Consumer<ByteBuf> out,
+      ByteBufAllocator allocator, boolean binaryHeaderSupported, boolean binaryHeader) {
+    encodeDataStreamRequestHeader(request, out, allocator, binaryHeaderSupported, binaryHeader);
+    out.accept(request.slice().retain());
+  }
+
+  /** Encode the request with a {@link DefaultFileRegion} so that the data is sent by zero-copy file transfer. */
+  static void encodeDataStreamRequestFilePositionCount(DataStreamRequestFilePositionCount request,
+      Consumer<Object> out, ByteBufAllocator allocator, boolean binaryHeaderSupported, boolean binaryHeader) {
+    encodeDataStreamRequestHeader(request, out, allocator, binaryHeaderSupported, binaryHeader);
+    final DefaultFileRegion region = new DefaultFileRegion(
+        request.getFile(), request.getPosition(), request.getDataLength());
+    // the file is owned by the caller; retain the region so that the file is not closed when the region is released
+    out.accept(region.retain());
+  }
+
+  static void encodeDataStreamRequestHeader(DataStreamRequest request, Consumer<? super ByteBuf> out,
+      ByteBufAllocator allocator, boolean binaryHeaderSupported, boolean binaryHeader) {
+    if (binaryHeader) {
+      final ByteBuf headerBuf = allocator.directBuffer(DataStreamRequestHeader.getSizeOfBinaryHeader());
+      DataStreamRequestHeader.writeBinary(request, headerBuf);
+      out.accept(headerBuf);
+      return;
+    }
+    ByteBuffer headerBuf = getDataStreamRequestHeaderProtoByteBuf(request, binaryHeaderSupported);
     final ByteBuf headerLenBuf = allocator.directBuffer(DataStreamPacketHeader.getSizeOfHeaderLen());
     headerLenBuf.writeInt(headerBuf.remaining());
     out.accept(headerLenBuf);
     out.accept(Unpooled.wrappedBuffer(headerBuf));
-    out.accept(Unpooled.wrappedBuffer(request.slice()));
   }
 
   static void encodeDataStreamReplyByteBuffer(DataStreamReplyByteBuffer reply, Consumer<ByteBuf> out,
       ByteBufAllocator allocator) {
+    encodeDataStreamReplyByteBuffer(reply, out, allocator, false);
+  }
+
+  /** @param binaryHeader has the binary header been negotiated? */
+  static void encodeDataStreamReplyByteBuffer(DataStreamReplyByteBuffer reply, Consumer<ByteBuf> out,
+      ByteBufAllocator allocator, boolean binaryHeader) {
+    if (binaryHeader) {
+      final ByteBuf headerBuf = allocator.directBuffer(DataStreamReplyHeader.getSizeOfBinaryHeader());
+      DataStreamReplyHeader.writeBinary(reply, headerBuf);
+      out.accept(headerBuf);
+      out.accept(Unpooled.wrappedBuffer(reply.slice()));
+      return;
+    }
     ByteBuffer headerBuf = getDataStreamReplyHeaderProtoByteBuf(reply);
     final ByteBuf headerLenBuf = allocator.directBuffer(DataStreamPacketHeader.getSizeOfHeaderLen());
     headerLenBuf.writeInt(headerBuf.remaining());
@@ -90,8 +164,18 @@ public interface NettyDataStreamUtils {
   }
 
   static DataStreamRequestByteBuf decodeDataStreamRequestByteBuf(ByteBuf buf) {
+    return decodeDataStreamRequestByteBuf(buf, header -> {});
+  }
+
+  /** @param headerConsumer for inspecting the header, such as the binary header version supported by the client. */
+  static DataStreamRequestByteBuf decodeDataStreamRequestByteBuf(ByteBuf buf,
+      Consumer<DataStreamRequestHeader> headerConsumer) {
     return Optional.ofNullable(DataStreamRequestHeader.read(buf))
         .map(header -> checkHeader(header, buf))
+        .map(header -> {
+          headerConsumer.accept(header);
+          return header;
+        })
         .map(header -> new DataStreamRequestByteBuf(header, decodeData(buf, header, ByteBuf::retain)))
         .orElse(null);
   }
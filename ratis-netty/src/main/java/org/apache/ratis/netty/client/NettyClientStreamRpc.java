@@ -20,8 +20,13 @@ package org.apache.ratis.netty.client;
 
 import org.apache.ratis.client.DataStreamClientRpc;
 import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.datastream.impl.DataStreamReplyByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
 import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestFilePositionCount;
+import org.apache.ratis.netty.NettyConfigKeys;
 import org.apache.ratis.netty.NettyDataStreamUtils;
+import org.apache.ratis.protocol.DataStreamPacketHeader;
 import org.apache.ratis.protocol.DataStreamReply;
 import org.apache.ratis.protocol.DataStreamRequest;
 import org.apache.ratis.protocol.RaftPeer;
@@ -54,9 +59,11 @@ public class NettyClientStreamRpc implements DataStreamClientRpc {
   private final EventLoopGroup workerGroup = new NioEventLoopGroup();
   private final Supplier<Channel> channel;
   private final ConcurrentMap<Long, Queue<CompletableFuture<DataStreamReply>>> replies = new ConcurrentHashMap<>();
+  private final boolean binaryHeaderEnabled;
 
   public NettyClientStreamRpc(RaftPeer server, RaftProperties properties){
     this.server = server;
+    this.binaryHeaderEnabled = NettyConfigKeys.DataStream.binaryHeaderEnabled(properties);
 
     final ChannelFuture f = new Bootstrap()
         .group(workerGroup)
@@ -85,6 +92,18 @@ public class NettyClientStreamRpc implements DataStreamClientRpc {
             .map(Queue::poll)
             .ifPresent(f -> f.complete(reply));
       }
+
+      @Override
+      public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // e.g. a corrupted reply header; the remaining replies cannot be decoded
+        LOG.warn("{}: exception caught, closing the channel", NettyClientStreamRpc.this, cause);
+        for (Queue<CompletableFuture<DataStreamReply>> queue : replies.values()) {
+          for (CompletableFuture<DataStreamReply> f; (f = queue.poll()) != null; ) {
+            f.completeExceptionally(cause);
+          }
+        }
+        ctx.close();
+      }
     };
   }
 
@@ -100,11 +119,23 @@ public class NettyClientStreamRpc implements DataStreamClientRpc {
     };
   }
 
-  MessageToMessageEncoder<DataStreamRequestByteBuffer> newEncoder() {
-    return new MessageToMessageEncoder<DataStreamRequestByteBuffer>() {
+  MessageToMessageEncoder<DataStreamRequest> newEncoder() {
+    return new MessageToMessageEncoder<DataStreamRequest>() {
       @Override
-      protected void encode(ChannelHandlerContext context, DataStreamRequestByteBuffer request, List<Object> out) {
-        NettyDataStreamUtils.encodeDataStreamRequestByteBuffer(request, out::add, context.alloc());
+      protected void encode(ChannelHandlerContext context, DataStreamRequest request, List<Object> out) {
+        final boolean binaryHeader = binaryHeaderEnabled && NettyDataStreamUtils.isBinaryHeader(context.channel());
+        if (request instanceof DataStreamRequestByteBuffer) {
+          NettyDataStreamUtils.encodeDataStreamRequestByteBuffer((DataStreamRequestByteBuffer) request, out::add,
+              context.alloc(), binaryHeaderEnabled, binaryHeader);
+        } else if (request instanceof DataStreamRequestByteBuf) {
+          NettyDataStreamUtils.encodeDataStreamRequestByteBuf((DataStreamRequestByteBuf) request, out::add,
+              context.alloc(), binaryHeaderEnabled, binaryHeader);
+        } else if (request instanceof DataStreamRequestFilePositionCount) {
+          NettyDataStreamUtils.encodeDataStreamRequestFilePositionCount((DataStreamRequestFilePositionCount) request,
+              out::add, context.alloc(), binaryHeaderEnabled, binaryHeader);
+        } else {
+          throw new IllegalStateException(this + ": Unexpected request " + request.getClass());
+        }
       }
     };
   }
@@ -117,7 +148,16 @@ public class NettyClientStreamRpc implements DataStreamClientRpc {
 
       @Override
       protected void decode(ChannelHandlerContext context, ByteBuf buf, List<Object> out) {
-        Optional.ofNullable(NettyDataStreamUtils.decodeDataStreamReplyByteBuffer(buf)).ifPresent(out::add);
+        final boolean binaryHeader = DataStreamPacketHeader.isBinaryHeader(buf);
+        final DataStreamReplyByteBuffer reply = NettyDataStreamUtils.decodeDataStreamReplyByteBuffer(buf);
+        if (reply == null) {
+          return;
+        }
+        if (binaryHeader && binaryHeaderEnabled) {
+          // the server supports the binary header; use it for the subsequent requests
+          NettyDataStreamUtils.setBinaryHeader(context.channel());
+        }
+        out.add(reply);
       }
     };
   }
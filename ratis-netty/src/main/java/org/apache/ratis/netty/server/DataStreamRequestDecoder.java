@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.ratis.netty.server;
+
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
+import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
+import org.apache.ratis.protocol.DataStreamRequestHeader;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.buffer.CompositeByteBuf;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelHandlerContext;
+import org.apache.ratis.thirdparty.io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A streaming decoder for the {@link org.apache.ratis.protocol.DataStreamRequest}s received by a server.
+ *
+ * Unlike {@link org.apache.ratis.thirdparty.io.netty.handler.codec.ByteToMessageDecoder},
+ * it does not cumulate the received buffers.
+ * Only the bytes of an incomplete header are copied; the data are passed on as slices of the received buffers.
+ * - The data of a {@link Type#STREAM_DATA} packet are passed on as {@link Chunk}s as soon as they arrive.
+ * - The other packets are small; they are passed on as {@link DataStreamRequestByteBuf}s once completed.
+ *
+ * This class is NOT threadsafe; it is expected to be invoked by the event loop of its channel.
+ */
+class DataStreamRequestDecoder extends ChannelInboundHandlerAdapter {
+  /** A part of the data of a {@link Type#STREAM_DATA} packet. */
+  static final class Chunk {
+    private final DataStreamRequestHeader header;
+    private final ByteBuf data;
+    private final boolean last;
+
+    private Chunk(DataStreamRequestHeader header, ByteBuf data, boolean last) {
+      this.header = header;
+      this.data = data;
+      this.last = last;
+    }
+
+    DataStreamRequestHeader getHeader() {
+      return header;
+    }
+
+    /** @return the data, which must be released by the receiver. */
+    ByteBuf getData() {
+      return data;
+    }
+
+    /** @return is this the last chunk of the packet? */
+    boolean isLast() {
+      return last;
+    }
+
+    @Override
+    public String toString() {
+      return header + ", chunk=" + data.readableBytes() + (last? " (last)": "");
+    }
+  }
+
+  /**
+   * @return a composite buffer without a limit on the number of components.
+   *         The default limit is 16; adding more components consolidates them, which copies the data.
+   */
+  static CompositeByteBuf newCompositeBuffer(ByteBufAllocator alloc) {
+    return alloc.compositeBuffer(Integer.MAX_VALUE);
+  }
+
+  /** For inspecting the headers, such as the binary header version supported by the client. */
+  private final BiConsumer<ChannelHandlerContext, DataStreamRequestHeader> headerConsumer;
+
+  /** The bytes of an incomplete header. */
+  private ByteBuf headerBytes;
+  /** The header of the packet being received, or null if a new header is expected. */
+  private DataStreamRequestHeader header;
+  /** The number of the data bytes of the current packet not yet received. */
+  private long remaining;
+  /** The data of the current packet if it is not a {@link Type#STREAM_DATA} packet. */
+  private CompositeByteBuf data;
+
+  DataStreamRequestDecoder(BiConsumer<ChannelHandlerContext, DataStreamRequestHeader> headerConsumer) {
+    this.headerConsumer = headerConsumer;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (!(msg instanceof ByteBuf)) {
+      super.channelRead(ctx, msg);
+      return;
+    }
+
+    final ByteBuf in;
+    if (headerBytes != null) {
+      in = ctx.alloc().compositeBuffer(2).addComponents(true, headerBytes, (ByteBuf) msg);
+      headerBytes = null;
+    } else {
+      in = (ByteBuf) msg;
+    }
+
+    try {
+      decode(ctx, in);
+      if (in.isReadable()) {
+        // only an incomplete header can be left; copy it since it is small
+        headerBytes = ctx.alloc().buffer(in.readableBytes()).writeBytes(in);
+      }
+    } finally {
+      in.release();
+    }
+  }
+
+  private void decode(ChannelHandlerContext ctx, ByteBuf in) {
+    for(;;) {
+      if (header == null) {
+        in.markReaderIndex();
+        header = DataStreamRequestHeader.readHeaderOnly(in);
+        if (header == null) {
+          return;
+        }
+        headerConsumer.accept(ctx, header);
+        remaining = header.getDataLength();
+        if (header.getType() != Type.STREAM_DATA) {
+          data = newCompositeBuffer(ctx.alloc());
+        }
+      }
+
+      final int n = Math.toIntExact(Math.min(remaining, in.readableBytes()));
+      if (n == 0 && remaining > 0) {
+        return;
+      }
+      final ByteBuf slice = in.readRetainedSlice(n);
+      remaining -= n;
+      final boolean last = remaining == 0;
+
+      if (header.getType() == Type.STREAM_DATA) {
+        ctx.fireChannelRead(new Chunk(header, slice, last));
+      } else {
+        data.addComponent(true, slice);
+        if (last) {
+          ctx.fireChannelRead(new DataStreamRequestByteBuf(header, data));
+        }
+      }
+
+      if (last) {
+        header = null;
+        data = null;
+      }
+    }
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    if (headerBytes != null) {
+      headerBytes.release();
+      headerBytes = null;
+    }
+    if (data != null) {
+      data.release();
+      data = null;
+    }
+    super.channelInactive(ctx);
+  }
+}
@@ -23,30 +23,41 @@ import org.apache.ratis.client.DataStreamOutputRpc;
 import org.apache.ratis.client.impl.ClientProtoUtils;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.datastream.impl.DataStreamReplyByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
 import org.apache.ratis.io.CloseAsync;
 import org.apache.ratis.netty.NettyConfigKeys;
 import org.apache.ratis.netty.NettyDataStreamUtils;
 import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
 import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto;
 import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.protocol.DataStreamPacketHeader;
 import org.apache.ratis.protocol.DataStreamReply;
+import org.apache.ratis.protocol.DataStreamRequestHeader;
 import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.protocol.RoutingTable;
+import org.apache.ratis.protocol.exceptions.GroupMismatchException;
 import org.apache.ratis.server.DataStreamServerRpc;
 import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.metrics.DataStreamServerMetrics;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.StateMachine.DataStream;
 import org.apache.ratis.thirdparty.io.netty.bootstrap.ServerBootstrap;
 import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.buffer.CompositeByteBuf;
 import org.apache.ratis.thirdparty.io.netty.channel.*;
 import org.apache.ratis.thirdparty.io.netty.channel.nio.NioEventLoopGroup;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.SocketChannel;
 import org.apache.ratis.thirdparty.io.netty.channel.socket.nio.NioServerSocketChannel;
-import org.apache.ratis.thirdparty.io.netty.handler.codec.ByteToMessageDecoder;
 import org.apache.ratis.thirdparty.io.netty.handler.codec.MessageToMessageEncoder;
 import org.apache.ratis.thirdparty.io.netty.handler.logging.LogLevel;
 import org.apache.ratis.thirdparty.io.netty.handler.logging.LoggingHandler;
+import org.apache.ratis.util.Daemon;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.PeerProxyMap;
 import org.slf4j.Logger;
@@ -59,6 +70,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -68,11 +80,14 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class NettyServerStreamRpc implements DataStreamServerRpc {
   public static final Logger LOG = LoggerFactory.getLogger(NettyServerStreamRpc.class);
@@ -97,10 +112,15 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
       peers.addAll(newPeers);
     }
 
-    List<DataStreamOutputRpc> getDataStreamOutput(RaftClientRequest request) throws IOException {
+    List<RaftPeerId> getPeerIds() {
+      return peers.stream().map(RaftPeer::getId).collect(Collectors.toList());
+    }
+
+    List<DataStreamOutputRpc> getDataStreamOutput(RaftClientRequest request, Set<RaftPeerId> successors)
+        throws IOException {
       final List<DataStreamOutputRpc> outs = new ArrayList<>();
       try {
-        getDataStreamOutput(outs, request);
+        getDataStreamOutput(outs, request, successors);
       } catch (IOException e) {
         outs.forEach(CloseAsync::closeAsync);
         throw e;
@@ -108,13 +128,13 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
       return outs;
     }
 
-    private void getDataStreamOutput(List<DataStreamOutputRpc> outs, RaftClientRequest request)
-        throws IOException {
-      for (RaftPeer peer : peers) {
+    private void getDataStreamOutput(List<DataStreamOutputRpc> outs, RaftClientRequest request,
+        Set<RaftPeerId> successors) throws IOException {
+      for (RaftPeerId peerId : successors) {
         try {
-          outs.add((DataStreamOutputRpc) map.getProxy(peer.getId()).stream(request));
+          outs.add((DataStreamOutputRpc) map.getProxy(peerId).stream(request));
         } catch (IOException e) {
-          throw new IOException(map.getName() + ": Failed to getDataStreamOutput for " + peer, e);
+          throw new IOException(map.getName() + ": Failed to getDataStreamOutput for " + peerId, e);
         }
       }
     }
@@ -124,37 +144,74 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     }
   }
 
+  /**
+   * A fixed number of single-threaded executors.
+   * All the tasks of a stream are executed by the same executor so that they are executed in order.
+   * A slow stream only delays the streams sharing the same executor but not the others.
+   */
+  static class StripedExecutor {
+    private final List<ExecutorService> executors;
+
+    StripedExecutor(String name, int size) {
+      this.executors = Collections.unmodifiableList(IntStream.range(0, size)
+          .mapToObj(i -> Executors.newSingleThreadExecutor(r -> new Daemon(r, name + "-" + i)))
+          .collect(Collectors.toList()));
+    }
+
+    Executor get(StreamMap.Key key) {
+      return executors.get(Math.floorMod(key.hashCode(), executors.size()));
+    }
+
+    void shutdown() {
+      executors.forEach(ExecutorService::shutdown);
+    }
+  }
+
+  /** The tasks of a local stream are submitted to its {@link StripedExecutor} and then executed in order. */
   static class LocalStream {
     private final CompletableFuture<DataStream> streamFuture;
-    private final AtomicReference<CompletableFuture<Long>> writeFuture;
+    /** The stream, available once the previous task is completed. */
+    private CompletableFuture<DataStream> previous;
 
     LocalStream(CompletableFuture<DataStream> streamFuture) {
       this.streamFuture = streamFuture;
-      this.writeFuture = new AtomicReference<>(streamFuture.thenApply(s -> 0L));
+      this.previous = streamFuture;
+    }
+
+    /**
+     * Submit the given task without blocking the executor for the stream to be created.
+     * The tasks are chained since the dependents of an incomplete future are not executed in order.
+     */
+    private synchronized <T> CompletableFuture<T> submit(Function<DataStream, T> task, Executor executor) {
+      final CompletableFuture<T> f = previous.thenApplyAsync(task, executor);
+      previous = f.handle((n, e) -> null).thenCompose(v -> streamFuture);
+      return f;
     }
 
     CompletableFuture<Long> write(ByteBuf buf, Executor executor) {
-      return composeAsync(writeFuture, executor,
-          n -> streamFuture.thenApplyAsync(stream -> writeTo(buf, stream), executor));
+      return submit(stream -> writeTo(buf, stream), executor);
     }
 
     CompletableFuture<Long> close(Executor executor) {
-      return composeAsync(writeFuture, executor,
-          n -> streamFuture.thenApplyAsync(NettyServerStreamRpc::close, executor));
+      return submit(stream -> NettyServerStreamRpc.close(stream), executor);
     }
   }
 
+  /**
+   * The requests to a remote stream are sent from its {@link StripedExecutor} in order.
+   * They are pipelined since the {@link DataStreamOutputRpc} preserves the order of the requests.
+   */
   static class RemoteStream {
     private final DataStreamOutputRpc out;
-    private final AtomicReference<CompletableFuture<DataStreamReply>> writeFuture;
 
     RemoteStream(DataStreamOutputRpc out) {
       this.out = out;
-      this.writeFuture = new AtomicReference<>(out.getHeaderFuture());
     }
 
     CompletableFuture<DataStreamReply> write(DataStreamRequestByteBuf request, Executor executor) {
-      return composeAsync(writeFuture, executor, v -> out.writeAsync(request.slice().nioBuffer()));
+      // forward the received buffer as is; it is released after all the writes are completed
+      return CompletableFuture.supplyAsync(() -> out.writeAsync(request.slice()), executor)
+          .thenCompose(Function.identity());
     }
 
     CompletableFuture<Boolean> startTransaction(DataStreamRequestByteBuf request, ChannelHandlerContext ctx,
@@ -172,7 +229,38 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     }
 
     CompletableFuture<DataStreamReply> close(Executor executor) {
-      return composeAsync(writeFuture, executor, v -> out.closeAsync());
+      return CompletableFuture.supplyAsync(out::closeAsync, executor).thenCompose(Function.identity());
+    }
+  }
+
+  /** A {@link Type#STREAM_DATA} packet being received in {@link DataStreamRequestDecoder.Chunk}s. */
+  static class DataPacket {
+    private final List<CompletableFuture<Long>> localWrites = new ArrayList<>();
+    /** The data to be forwarded to the remotes, or null if there are no remotes. */
+    private final CompositeByteBuf forward;
+
+    DataPacket(CompositeByteBuf forward) {
+      this.forward = forward;
+    }
+
+    CompositeByteBuf getForward() {
+      return forward;
+    }
+
+    void addLocalWrite(CompletableFuture<Long> localWrite) {
+      localWrites.add(localWrite);
+    }
+
+    /** @return a future of the total number of bytes written locally. */
+    CompletableFuture<Long> getLocalWrite() {
+      return JavaUtils.allOf(localWrites).thenApply(v -> localWrites.stream().mapToLong(CompletableFuture::join).sum());
+    }
+
+    /** Release the data received so far, which will not be forwarded. */
+    void release() {
+      if (forward != null) {
+        forward.release();
+      }
     }
   }
 
@@ -181,8 +269,13 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     private final boolean primary;
     private final LocalStream local;
     private final List<RemoteStream> remotes;
+    /** For sending the replies in order. */
     private final AtomicReference<CompletableFuture<Void>> previous
         = new AtomicReference<>(CompletableFuture.completedFuture(null));
+    /** The number of the requests received but not yet replied. */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /** The data packet being received; it is only accessed by the event loop of the channel. */
+    private DataPacket packet;
 
     StreamInfo(RaftClientRequest request, boolean primary,
         CompletableFuture<DataStream> stream, List<DataStreamOutputRpc> outs) {
@@ -204,10 +297,36 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
       return primary;
     }
 
+    boolean hasRemotes() {
+      return !remotes.isEmpty();
+    }
+
     LocalStream getLocal() {
       return local;
     }
 
+    AtomicInteger getQueueDepth() {
+      return queueDepth;
+    }
+
+    DataPacket getPacket(ByteBufAllocator alloc) {
+      if (packet == null) {
+        packet = new DataPacket(remotes.isEmpty()? null: DataStreamRequestDecoder.newCompositeBuffer(alloc));
+      }
+      return packet;
+    }
+
+    DataPacket removePacket() {
+      final DataPacket removed = packet;
+      packet = null;
+      return removed;
+    }
+
+    /** Release the data packet being received, if there is any. */
+    void releasePacket() {
+      Optional.ofNullable(removePacket()).ifPresent(DataPacket::release);
+    }
+
     <T> List<T> applyToRemotes(Function<RemoteStream, T> function) {
       return remotes.isEmpty()?Collections.emptyList(): remotes.stream().map(function).collect(Collectors.toList());
     }
@@ -263,6 +382,21 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
       LOG.debug("get({}) returns {}", key, info);
       return info;
     }
+
+    /** @return the streams received from the given channel. */
+    List<StreamInfo> getStreams(ChannelId channelId) {
+      return map.entrySet().stream()
+          .filter(e -> e.getKey().channelId.equals(channelId))
+          .map(Map.Entry::getValue)
+          .collect(Collectors.toList());
+    }
+
+    /** @return the keys of the streams received from the given channel. */
+    List<Key> getKeys(ChannelId channelId) {
+      return map.keySet().stream()
+          .filter(key -> key.channelId.equals(channelId))
+          .collect(Collectors.toList());
+    }
   }
 
   private final RaftServer server;
@@ -274,13 +408,18 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
   private final StreamMap streams = new StreamMap();
   private final Proxies proxies;
 
-  private final Executor executor;
+  private final StripedExecutor executors;
+  private final DataStreamServerMetrics metrics;
+  private final boolean binaryHeaderEnabled;
+  private final RaftServerConfigKeys.DataStream.Topology topology;
 
   public NettyServerStreamRpc(RaftServer server) {
     this.server = server;
     this.name = server.getId() + "-" + getClass().getSimpleName();
 
     final RaftProperties properties = server.getProperties();
+    this.binaryHeaderEnabled = NettyConfigKeys.DataStream.binaryHeaderEnabled(properties);
+    this.topology = RaftServerConfigKeys.DataStream.topology(properties);
     final int port = NettyConfigKeys.DataStream.port(properties);
     this.channelFuture = new ServerBootstrap()
         .group(bossGroup, workerGroup)
@@ -290,8 +429,9 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
         .childOption(ChannelOption.SO_KEEPALIVE, true)
         .bind(port);
     this.proxies = new Proxies(new PeerProxyMap<>(name, peer -> newClient(peer, properties)));
-    this.executor = Executors.newFixedThreadPool(
+    this.executors = new StripedExecutor(name,
         RaftServerConfigKeys.DataStream.asyncThreadPoolSize(server.getProperties()));
+    this.metrics = new DataStreamServerMetrics(server.getId());
   }
 
   static DataStreamClient newClient(RaftPeer peer, RaftProperties properties) {
@@ -307,14 +447,47 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     proxies.addPeers(newPeers);
   }
 
+  /** @return the default routing table for the primary according to the configured {@link #topology}. */
+  private RoutingTable newRoutingTable() {
+    final List<RaftPeerId> others = proxies.getPeerIds();
+    others.remove(server.getId());
+    switch (topology) {
+      case STAR:
+        return RoutingTable.star(server.getId(), others);
+      case CHAIN:
+        return RoutingTable.chain(server.getId(), others);
+      default:
+        throw new IllegalStateException(this + ": Unexpected topology " + topology);
+    }
+  }
+
+  private List<RaftPeerId> getPeerIds(RaftGroupId groupId) throws IOException {
+    for (RaftGroup group : server.getGroups()) {
+      if (group.getGroupId().equals(groupId)) {
+        return group.getPeers().stream().map(RaftPeer::getId).collect(Collectors.toList());
+      }
+    }
+    throw new GroupMismatchException(server.getId() + ": group " + groupId + " not found.");
+  }
+
   private StreamInfo newStreamInfo(ByteBuf buf) {
     try {
-      final RaftClientRequest request = ClientProtoUtils.toRaftClientRequest(
+      final RaftClientRequest received = ClientProtoUtils.toRaftClientRequest(
           RaftClientRequestProto.parseFrom(buf.nioBuffer()));
+      final boolean isPrimary = server.getId().equals(received.getServerId());
+      if (isPrimary && received.getRoutingTable() != null) {
+        // reject a client routing table which would not deliver the data to each peer exactly once
+        received.getRoutingTable().validate(server.getId(), getPeerIds(received.getRaftGroupId()));
+      }
+      // the primary sets the routing table, if the client has not, so that the peers can forward the data
+      final RaftClientRequest request = isPrimary && received.getRoutingTable() == null?
+          RaftClientRequest.toRoutedRequest(received, newRoutingTable()): received;
+      final Set<RaftPeerId> successors = Optional.ofNullable(request.getRoutingTable())
+          .map(table -> table.getSuccessors(server.getId()))
+          .orElse(Collections.emptySet());
       final StateMachine stateMachine = server.getStateMachine(request.getRaftGroupId());
-      final boolean isPrimary = server.getId().equals(request.getServerId());
       return new StreamInfo(request, isPrimary, stateMachine.data().stream(request),
-          isPrimary? proxies.getDataStreamOutput(request): Collections.emptyList());
+          proxies.getDataStreamOutput(request, successors));
     } catch (Throwable e) {
       throw new CompletionException(e);
     }
@@ -375,22 +548,51 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     return new ChannelInboundHandlerAdapter(){
       @Override
       public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        read(ctx, (DataStreamRequestByteBuf)msg);
+        if (msg instanceof DataStreamRequestDecoder.Chunk) {
+          read(ctx, (DataStreamRequestDecoder.Chunk) msg);
+        } else {
+          read(ctx, (DataStreamRequestByteBuf) msg);
+        }
+      }
+
+      @Override
+      public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePackets(ctx);
+        // the streams which are not closed will never be closed
+        streams.getKeys(ctx.channel().id()).forEach(metrics::removeStreamQueueDepthGauge);
+        super.channelInactive(ctx);
+      }
+
+      @Override
+      public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // e.g. a corrupted request header; the remaining requests cannot be decoded
+        LOG.warn("{}: exception caught in channel {}, closing it", NettyServerStreamRpc.this, ctx.channel(), cause);
+        releasePackets(ctx);
+        ctx.close();
       }
     };
   }
 
+  /** Release the data packets partially received from the channel since they will never be completed. */
+  private void releasePackets(ChannelHandlerContext ctx) {
+    for (StreamInfo info : streams.getStreams(ctx.channel().id())) {
+      info.releasePacket();
+    }
+  }
+
   private CompletableFuture<Void> startTransaction(StreamInfo info, DataStreamRequestByteBuf request,
-      ChannelHandlerContext ctx) {
+      ChannelHandlerContext ctx, Executor executor) {
     try {
       return server.submitClientRequestAsync(info.getRequest()).thenAcceptAsync(reply -> {
         if (reply.isSuccess()) {
           ByteBuffer buffer = ClientProtoUtils.toRaftClientReplyProto(reply).toByteString().asReadOnlyByteBuffer();
           sendReplySuccess(request, buffer, -1, ctx);
-        } else if (request.getType() == Type.STREAM_CLOSE) {
+        } else if (request.getType() == Type.STREAM_CLOSE
+            || (request.getType() == Type.START_TRANSACTION && info.hasRemotes())) {
           // if this server is not the leader, forward start transition to the other peers
           // there maybe other unexpected reason cause failure except not leader, forwardStartTransaction anyway
-          forwardStartTransaction(info, request, ctx);
+          // in a chain, the peers forward it further to their successors
+          forwardStartTransaction(info, request, ctx, executor);
         } else if (request.getType() == Type.START_TRANSACTION){
           sendReplyNotSuccess(request, ctx);
         } else {
@@ -403,8 +605,8 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     }
   }
 
-  private void forwardStartTransaction(
-      final StreamInfo info, final DataStreamRequestByteBuf request, final ChannelHandlerContext ctx) {
+  private void forwardStartTransaction(final StreamInfo info, final DataStreamRequestByteBuf request,
+      final ChannelHandlerContext ctx, final Executor executor) {
     final List<CompletableFuture<Boolean>> results = info.applyToRemotes(
         out -> out.startTransaction(request, ctx, executor));
 
@@ -419,11 +621,12 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     LOG.debug("{}: read {}", this, request);
     final ByteBuf buf = request.slice();
     final StreamMap.Key key = new StreamMap.Key(ctx.channel().id(), request.getStreamId());
+    final Executor executor = executors.get(key);
 
     if (request.getType() == Type.START_TRANSACTION) {
       // for peers to start transaction
       final StreamInfo info = streams.get(key);
-      composeAsync(info.getPrevious(), executor, v -> startTransaction(info, request, ctx))
+      composeAsync(info.getPrevious(), executor, v -> startTransaction(info, request, ctx, executor))
           .thenAccept(v -> buf.release());
       return;
     }
@@ -432,22 +635,73 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     final CompletableFuture<Long> localWrite;
     final List<CompletableFuture<DataStreamReply>> remoteWrites;
     if (request.getType() == Type.STREAM_HEADER) {
-      info = streams.computeIfAbsent(key, id -> newStreamInfo(buf));
+      try {
+        info = streams.computeIfAbsent(key, id -> newStreamInfo(buf));
+      } catch (CompletionException e) {
+        // e.g. an invalid routing table; the stream is not created
+        LOG.warn("{}: failed to create stream {} for {}", this, key, request, e);
+        buf.release();
+        sendReplyNotSuccess(request, ctx);
+        return;
+      }
+      metrics.addStreamQueueDepthGauge(key, info.getQueueDepth()::get);
       localWrite = CompletableFuture.completedFuture(0L);
       remoteWrites = Collections.emptyList();
-    } else if (request.getType() == Type.STREAM_DATA) {
-      info = streams.get(key);
-      localWrite = info.getLocal().write(buf, executor);
-      remoteWrites = info.applyToRemotes(out -> out.write(request, executor));
     } else if (request.getType() == Type.STREAM_CLOSE) {
       info = streams.get(key);
+      if (info == null) {
+        buf.release();
+        throw new IllegalStateException(this + ": Stream " + key + " not found for " + request);
+      }
       localWrite = info.getLocal().close(executor);
-      remoteWrites = info.isPrimary()? info.applyToRemotes(out -> out.close(executor)): Collections.emptyList();
+      remoteWrites = info.applyToRemotes(out -> out.close(executor));
     } else {
       buf.release();
       throw new IllegalStateException(this + ": Unexpected type " + request.getType() + ", request=" + request);
     }
 
+    replyAsync(key, info, request, buf, localWrite, remoteWrites, ctx, executor);
+  }
+
+  /**
+   * Read a chunk of a data packet.
+   * The chunk is written locally once it is received.
+   * The packet is forwarded to the remotes once all of its chunks are received.
+   */
+  private void read(ChannelHandlerContext ctx, DataStreamRequestDecoder.Chunk chunk) {
+    LOG.trace("{}: read {}", this, chunk);
+    final DataStreamRequestHeader header = chunk.getHeader();
+    final StreamMap.Key key = new StreamMap.Key(ctx.channel().id(), header.getStreamId());
+    final Executor executor = executors.get(key);
+    final StreamInfo info = streams.get(key);
+    if (info == null) {
+      chunk.getData().release();
+      throw new IllegalStateException(this + ": Stream " + key + " not found for " + header);
+    }
+    final DataPacket packet = info.getPacket(ctx.alloc());
+
+    final ByteBuf data = chunk.getData();
+    if (packet.getForward() != null) {
+      // retain before writing locally since the local write releases it
+      packet.getForward().addComponent(true, data.retain());
+    }
+    packet.addLocalWrite(info.getLocal().write(data, executor).whenComplete((n, e) -> data.release()));
+    if (!chunk.isLast()) {
+      return;
+    }
+
+    info.removePacket();
+    final DataStreamRequestByteBuf request = new DataStreamRequestByteBuf(header, packet.getForward());
+    final List<CompletableFuture<DataStreamReply>> remoteWrites = info.applyToRemotes(
+        out -> out.write(request, executor));
+    replyAsync(key, info, request, request.slice(), packet.getLocalWrite(), remoteWrites, ctx, executor);
+  }
+
+  /** Send the reply once the local and the remote writes are completed; the replies of a stream are in order. */
+  private void replyAsync(StreamMap.Key key, StreamInfo info, DataStreamRequestByteBuf request, ByteBuf buf,
+      CompletableFuture<Long> localWrite, List<CompletableFuture<DataStreamReply>> remoteWrites,
+      ChannelHandlerContext ctx, Executor executor) {
+    info.getQueueDepth().incrementAndGet();
     composeAsync(info.getPrevious(), executor, n -> JavaUtils.allOf(remoteWrites)
         .thenCombineAsync(localWrite, (v, bytesWritten) -> {
           if (request.getType() == Type.STREAM_HEADER
@@ -457,16 +711,17 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
             if (info.isPrimary()) {
               // after all server close stream, primary server start transaction
               // TODO(runzhiwang): send start transaction to leader directly
-              startTransaction(info, request, ctx);
+              startTransaction(info, request, ctx, executor);
             } else {
               sendReply(remoteWrites, request, bytesWritten, ctx);
             }
+            metrics.removeStreamQueueDepthGauge(key);
           } else {
             throw new IllegalStateException(this + ": Unexpected type " + request.getType() + ", request=" + request);
           }
           buf.release();
           return null;
-        }, executor));
+        }, executor)).whenComplete((v, e) -> info.getQueueDepth().decrementAndGet());
   }
 
   private boolean checkSuccessRemoteWrite(
@@ -492,24 +747,21 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     };
   }
 
-  ByteToMessageDecoder newDecoder() {
-    return new ByteToMessageDecoder() {
-      {
-        this.setCumulator(ByteToMessageDecoder.COMPOSITE_CUMULATOR);
+  ChannelInboundHandler newDecoder() {
+    return new DataStreamRequestDecoder((context, header) -> {
+      if (binaryHeaderEnabled && header.getBinaryHeaderVersion() >= DataStreamPacketHeader.BINARY_HEADER_VERSION) {
+        // the client supports the binary header; reply with it so that the client will switch to it
+        NettyDataStreamUtils.setBinaryHeader(context.channel());
       }
-
-      @Override
-      protected void decode(ChannelHandlerContext context, ByteBuf buf, List<Object> out) {
-        Optional.ofNullable(NettyDataStreamUtils.decodeDataStreamRequestByteBuf(buf)).ifPresent(out::add);
-      }
-    };
+    });
   }
 
   MessageToMessageEncoder<DataStreamReplyByteBuffer> newEncoder() {
     return new MessageToMessageEncoder<DataStreamReplyByteBuffer>() {
       @Override
       protected void encode(ChannelHandlerContext context, DataStreamReplyByteBuffer reply, List<Object> out) {
-        NettyDataStreamUtils.encodeDataStreamReplyByteBuffer(reply, out::add, context.alloc());
+        NettyDataStreamUtils.encodeDataStreamReplyByteBuffer(reply, out::add, context.alloc(),
+            NettyDataStreamUtils.isBinaryHeader(context.channel()));
       }
     };
   }
@@ -532,6 +784,8 @@ public class NettyServerStreamRpc implements DataStreamServerRpc {
     }
 
     proxies.close();
+    executors.shutdown();
+    metrics.unregister();
   }
 
   @Override
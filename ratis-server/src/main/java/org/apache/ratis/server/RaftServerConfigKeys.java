@@ -18,6 +18,7 @@
 package org.apache.ratis.server;
 
 import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.CompressionType;
 import org.apache.ratis.util.SizeInBytes;
 import org.apache.ratis.util.TimeDuration;
 import org.slf4j.Logger;
@@ -50,6 +51,20 @@ public interface RaftServerConfigKeys {
     setFiles(properties::setFiles, STORAGE_DIR_KEY, storageDir);
   }
 
+  /**
+   * Sync the meta files (term and votedFor) of all the groups in a server in batches by a shared thread,
+   * instead of syncing them separately in the threads updating them.
+   */
+  String STORAGE_META_FILE_SYNC_BATCH_ENABLED_KEY = PREFIX + ".storage.meta-file.sync.batch.enabled";
+  boolean STORAGE_META_FILE_SYNC_BATCH_ENABLED_DEFAULT = false;
+  static boolean storageMetaFileSyncBatchEnabled(RaftProperties properties) {
+    return getBoolean(properties::getBoolean, STORAGE_META_FILE_SYNC_BATCH_ENABLED_KEY,
+        STORAGE_META_FILE_SYNC_BATCH_ENABLED_DEFAULT, getDefaultLog());
+  }
+  static void setStorageMetaFileSyncBatchEnabled(RaftProperties properties, boolean enabled) {
+    setBoolean(properties::setBoolean, STORAGE_META_FILE_SYNC_BATCH_ENABLED_KEY, enabled);
+  }
+
   String REMOVED_GROUPS_DIR_KEY = PREFIX + ".removed.groups.dir";
   File REMOVED_GROUPS_DIR_DEFAULT = new File("/tmp/raft-server/removed-groups/");
   static File removedGroupsDir(RaftProperties properties) {
@@ -108,6 +123,34 @@ public interface RaftServerConfigKeys {
     static void setByteLimit(RaftProperties properties, SizeInBytes byteLimit) {
       setSizeInBytes(properties::set, BYTE_LIMIT_KEY, byteLimit, requireMin(1L));
     }
+
+    /**
+     * Trace the stages of one in every n write requests on the leader;
+     * the value 0 disables the tracing.
+     */
+    String TRACE_SAMPLING_INTERVAL_KEY = PREFIX + ".trace.sampling-interval";
+    int TRACE_SAMPLING_INTERVAL_DEFAULT = 0;
+    static int traceSamplingInterval(RaftProperties properties) {
+      return getInt(properties::getInt, TRACE_SAMPLING_INTERVAL_KEY, TRACE_SAMPLING_INTERVAL_DEFAULT,
+          getDefaultLog(), requireMin(0));
+    }
+    static void setTraceSamplingInterval(RaftProperties properties, int interval) {
+      setInt(properties::setInt, TRACE_SAMPLING_INTERVAL_KEY, interval, requireMin(0));
+    }
+
+    /**
+     * Log the stage breakdown of a traced write request taking longer than the threshold;
+     * the value 0 disables the slow request log.
+     */
+    String TRACE_SLOW_THRESHOLD_KEY = PREFIX + ".trace.slow-threshold";
+    TimeDuration TRACE_SLOW_THRESHOLD_DEFAULT = TimeDuration.valueOf(1, TimeUnit.SECONDS);
+    static TimeDuration traceSlowThreshold(RaftProperties properties) {
+      return getTimeDuration(properties.getTimeDuration(TRACE_SLOW_THRESHOLD_DEFAULT.getUnit()),
+          TRACE_SLOW_THRESHOLD_KEY, TRACE_SLOW_THRESHOLD_DEFAULT, getDefaultLog());
+    }
+    static void setTraceSlowThreshold(RaftProperties properties, TimeDuration threshold) {
+      setTimeDuration(properties::setTimeDuration, TRACE_SLOW_THRESHOLD_KEY, threshold);
+    }
   }
 
   interface Watch {
@@ -220,6 +263,68 @@ public interface RaftServerConfigKeys {
       setInt(properties::setInt, SEGMENT_CACHE_NUM_MAX_KEY, maxCachedSegmentNum);
     }
 
+    /** The compression type of the newly created log segment files; NONE means the uncompressed format. */
+    String SEGMENT_COMPRESSION_TYPE_KEY = PREFIX + ".segment.compression.type";
+    CompressionType SEGMENT_COMPRESSION_TYPE_DEFAULT = CompressionType.NONE;
+    static CompressionType segmentCompressionType(RaftProperties properties) {
+      return get(properties::getEnum,
+          SEGMENT_COMPRESSION_TYPE_KEY, SEGMENT_COMPRESSION_TYPE_DEFAULT, getDefaultLog());
+    }
+    static void setSegmentCompressionType(RaftProperties properties, CompressionType compressionType) {
+      set(properties::setEnum, SEGMENT_COMPRESSION_TYPE_KEY, compressionType);
+    }
+
+    /** The max uncompressed size of a compressed block of log entries. */
+    String SEGMENT_COMPRESSION_BLOCK_SIZE_KEY = PREFIX + ".segment.compression.block.size";
+    SizeInBytes SEGMENT_COMPRESSION_BLOCK_SIZE_DEFAULT = SizeInBytes.valueOf("64KB");
+    static SizeInBytes segmentCompressionBlockSize(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          SEGMENT_COMPRESSION_BLOCK_SIZE_KEY, SEGMENT_COMPRESSION_BLOCK_SIZE_DEFAULT, getDefaultLog());
+    }
+    static void setSegmentCompressionBlockSize(RaftProperties properties, SizeInBytes blockSize) {
+      setSizeInBytes(properties::set, SEGMENT_COMPRESSION_BLOCK_SIZE_KEY, blockSize);
+    }
+
+    /**
+     * Write an index file for each closed segment
+     * so that the segment can be loaded without scanning the segment file.
+     */
+    String SEGMENT_INDEX_ENABLED_KEY = PREFIX + ".segment.index.enabled";
+    boolean SEGMENT_INDEX_ENABLED_DEFAULT = true;
+    static boolean segmentIndexEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          SEGMENT_INDEX_ENABLED_KEY, SEGMENT_INDEX_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setSegmentIndexEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, SEGMENT_INDEX_ENABLED_KEY, enabled);
+    }
+
+    /**
+     * Register the closed segments already included in the snapshot without reading the segment files
+     * so that the startup time does not grow with the log size.
+     * Such segments are loaded on the first access or by a background warm-up thread.
+     */
+    String SEGMENT_LAZY_LOAD_ENABLED_KEY = PREFIX + ".segment.lazy-load.enabled";
+    boolean SEGMENT_LAZY_LOAD_ENABLED_DEFAULT = false;
+    static boolean segmentLazyLoadEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          SEGMENT_LAZY_LOAD_ENABLED_KEY, SEGMENT_LAZY_LOAD_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setSegmentLazyLoadEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, SEGMENT_LAZY_LOAD_ENABLED_KEY, enabled);
+    }
+
+    /** Load the lazy segments in a background thread after the log is opened? */
+    String SEGMENT_LAZY_LOAD_WARM_UP_ENABLED_KEY = PREFIX + ".segment.lazy-load.warm-up.enabled";
+    boolean SEGMENT_LAZY_LOAD_WARM_UP_ENABLED_DEFAULT = true;
+    static boolean segmentLazyLoadWarmUpEnabled(RaftProperties properties) {
+      return getBoolean(properties::getBoolean,
+          SEGMENT_LAZY_LOAD_WARM_UP_ENABLED_KEY, SEGMENT_LAZY_LOAD_WARM_UP_ENABLED_DEFAULT, getDefaultLog());
+    }
+    static void setSegmentLazyLoadWarmUpEnabled(RaftProperties properties, boolean enabled) {
+      setBoolean(properties::setBoolean, SEGMENT_LAZY_LOAD_WARM_UP_ENABLED_KEY, enabled);
+    }
+
     String PREALLOCATED_SIZE_KEY = PREFIX + ".preallocated.size";
     SizeInBytes PREALLOCATED_SIZE_DEFAULT = SizeInBytes.valueOf("4MB");
     static SizeInBytes preallocatedSize(RaftProperties properties) {
@@ -358,6 +463,77 @@ public interface RaftServerConfigKeys {
         setSizeInBytes(properties::set, SNAPSHOT_CHUNK_SIZE_MAX_KEY, maxChunkSize);
       }
 
+      /**
+       * Should the snapshot chunks be read from memory-mapped files?
+       * If it is enabled, the chunks are sent without copying the file data to the heap;
+       * otherwise, the data of each chunk is read to a heap buffer.
+       * It is disabled by default since the JVM crashes with SIGBUS
+       * if a mapped snapshot file is truncated, e.g. by the state machine, while it is being sent.
+       */
+      String SNAPSHOT_CHUNK_MEMORY_MAPPED_ENABLED_KEY = PREFIX + ".snapshot.chunk.memory-mapped.enabled";
+      boolean SNAPSHOT_CHUNK_MEMORY_MAPPED_ENABLED_DEFAULT = false;
+      static boolean snapshotChunkMemoryMappedEnabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean, SNAPSHOT_CHUNK_MEMORY_MAPPED_ENABLED_KEY,
+            SNAPSHOT_CHUNK_MEMORY_MAPPED_ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setSnapshotChunkMemoryMappedEnabled(RaftProperties properties, boolean memoryMapped) {
+        setBoolean(properties::setBoolean, SNAPSHOT_CHUNK_MEMORY_MAPPED_ENABLED_KEY, memoryMapped);
+      }
+
+      /** The number of snapshot files read and sent to a follower at the same time. */
+      String SNAPSHOT_FILES_PARALLEL_KEY = PREFIX + ".snapshot.files.parallel";
+      int SNAPSHOT_FILES_PARALLEL_DEFAULT = 1;
+      static int snapshotFilesParallel(RaftProperties properties) {
+        return getInt(properties::getInt, SNAPSHOT_FILES_PARALLEL_KEY, SNAPSHOT_FILES_PARALLEL_DEFAULT,
+            getDefaultLog(), requireMin(1));
+      }
+      static void setSnapshotFilesParallel(RaftProperties properties, int parallel) {
+        setInt(properties::setInt, SNAPSHOT_FILES_PARALLEL_KEY, parallel);
+      }
+
+      /** The maximum number of installSnapshot requests sent to a follower without receiving the replies. */
+      String SNAPSHOT_CHUNK_WINDOW_KEY = PREFIX + ".snapshot.chunk.window";
+      int SNAPSHOT_CHUNK_WINDOW_DEFAULT = 16;
+      static int snapshotChunkWindow(RaftProperties properties) {
+        return getInt(properties::getInt, SNAPSHOT_CHUNK_WINDOW_KEY, SNAPSHOT_CHUNK_WINDOW_DEFAULT,
+            getDefaultLog(), requireMin(1));
+      }
+      static void setSnapshotChunkWindow(RaftProperties properties, int window) {
+        setInt(properties::setInt, SNAPSHOT_CHUNK_WINDOW_KEY, window);
+      }
+
+      /**
+       * The maximum number of snapshot bytes per second sent by a server to all the followers of all the groups.
+       * The remaining bandwidth is left for the appendEntries traffic.
+       * When it is limited, the snapshot chunks are capped at the bytes allowed in half the min rpc timeout.
+       * The value 0 means unlimited.
+       */
+      String SNAPSHOT_BANDWIDTH_KEY = PREFIX + ".snapshot.bandwidth";
+      SizeInBytes SNAPSHOT_BANDWIDTH_DEFAULT = SizeInBytes.valueOf(0);
+      static SizeInBytes snapshotBandwidth(RaftProperties properties) {
+        return getSizeInBytes(properties::getSizeInBytes,
+            SNAPSHOT_BANDWIDTH_KEY, SNAPSHOT_BANDWIDTH_DEFAULT, getDefaultLog());
+      }
+      static void setSnapshotBandwidth(RaftProperties properties, SizeInBytes bytesPerSecond) {
+        setSizeInBytes(properties::set, SNAPSHOT_BANDWIDTH_KEY, bytesPerSecond);
+      }
+
+      /**
+       * Should the snapshot be installed incrementally?
+       * If it is enabled, the leader first sends the digests of the snapshot files
+       * so that the follower could reuse the files it already has in its current snapshot;
+       * only the remaining files are sent.
+       */
+      String SNAPSHOT_INCREMENTAL_ENABLED_KEY = PREFIX + ".snapshot.incremental.enabled";
+      boolean SNAPSHOT_INCREMENTAL_ENABLED_DEFAULT = true;
+      static boolean snapshotIncrementalEnabled(RaftProperties properties) {
+        return getBoolean(properties::getBoolean, SNAPSHOT_INCREMENTAL_ENABLED_KEY,
+            SNAPSHOT_INCREMENTAL_ENABLED_DEFAULT, getDefaultLog());
+      }
+      static void setSnapshotIncrementalEnabled(RaftProperties properties, boolean incremental) {
+        setBoolean(properties::setBoolean, SNAPSHOT_INCREMENTAL_ENABLED_KEY, incremental);
+      }
+
       String INSTALL_SNAPSHOT_ENABLED_KEY = PREFIX + ".install.snapshot.enabled";
       boolean INSTALL_SNAPSHOT_ENABLED_DEFAULT = true;
       static boolean installSnapshotEnabled(RaftProperties properties) {
@@ -367,6 +543,28 @@ public interface RaftServerConfigKeys {
       static void setInstallSnapshotEnabled(RaftProperties properties, boolean shouldInstallSnapshot) {
         setBoolean(properties::setBoolean, INSTALL_SNAPSHOT_ENABLED_KEY, shouldInstallSnapshot);
       }
+
+      /** The compression of the log entries and the snapshot chunks sent to the followers. */
+      String COMPRESSION_TYPE_KEY = PREFIX + ".compression.type";
+      CompressionType COMPRESSION_TYPE_DEFAULT = CompressionType.NONE;
+      static CompressionType compressionType(RaftProperties properties) {
+        return get(properties::getEnum,
+            COMPRESSION_TYPE_KEY, COMPRESSION_TYPE_DEFAULT, getDefaultLog());
+      }
+      static void setCompressionType(RaftProperties properties, CompressionType compressionType) {
+        set(properties::setEnum, COMPRESSION_TYPE_KEY, compressionType);
+      }
+
+      /** Batches of log entries or snapshot chunks smaller than the threshold are sent uncompressed. */
+      String COMPRESSION_THRESHOLD_KEY = PREFIX + ".compression.threshold";
+      SizeInBytes COMPRESSION_THRESHOLD_DEFAULT = SizeInBytes.valueOf("4KB");
+      static SizeInBytes compressionThreshold(RaftProperties properties) {
+        return getSizeInBytes(properties::getSizeInBytes,
+            COMPRESSION_THRESHOLD_KEY, COMPRESSION_THRESHOLD_DEFAULT, getDefaultLog());
+      }
+      static void setCompressionThreshold(RaftProperties properties, SizeInBytes threshold) {
+        setSizeInBytes(properties::set, COMPRESSION_THRESHOLD_KEY, threshold);
+      }
     }
   }
 
@@ -404,11 +602,29 @@ public interface RaftServerConfigKeys {
     static void setRetentionFileNum(RaftProperties properties, int numSnapshotFilesRetained) {
       setInt(properties::setInt, RETENTION_FILE_NUM_KEY, numSnapshotFilesRetained);
     }
+
+    /**
+     * The maximum number of threads shared by the groups of a server for installing snapshot chunks.
+     * The chunks of a group are always installed in order.
+     */
+    String INSTALL_THREADS_MAX_KEY = PREFIX + ".install.threads.max";
+    int INSTALL_THREADS_MAX_DEFAULT = 8;
+    static int installThreadsMax(RaftProperties properties) {
+      return getInt(properties::getInt, INSTALL_THREADS_MAX_KEY, INSTALL_THREADS_MAX_DEFAULT, getDefaultLog(),
+          requireMin(1));
+    }
+    static void setInstallThreadsMax(RaftProperties properties, int installThreadsMax) {
+      setInt(properties::setInt, INSTALL_THREADS_MAX_KEY, installThreadsMax);
+    }
   }
 
   interface DataStream {
     String PREFIX = RaftServerConfigKeys.PREFIX + ".data-stream";
 
+    /**
+     * The number of single-threaded executors for the streams.
+     * The tasks of a stream are always executed in order by the same executor.
+     */
     String ASYNC_THREAD_POOL_SIZE_KEY = PREFIX + ".async.thread.pool.size";
     int ASYNC_THREAD_POOL_SIZE_DEFAULT = 16;
 
@@ -420,6 +636,78 @@ public interface RaftServerConfigKeys {
     static void setAsyncThreadPoolSize(RaftProperties properties, int port) {
       setInt(properties::setInt, ASYNC_THREAD_POOL_SIZE_KEY, port);
     }
+
+    /** The size preallocated at a time for a file-backed stream; 0 means no preallocation. */
+    String FILE_PREALLOCATED_SIZE_KEY = PREFIX + ".file.preallocated.size";
+    SizeInBytes FILE_PREALLOCATED_SIZE_DEFAULT = SizeInBytes.valueOf("4MB");
+    static SizeInBytes filePreallocatedSize(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          FILE_PREALLOCATED_SIZE_KEY, FILE_PREALLOCATED_SIZE_DEFAULT, getDefaultLog());
+    }
+    static void setFilePreallocatedSize(RaftProperties properties, SizeInBytes preallocatedSize) {
+      setSizeInBytes(properties::set, FILE_PREALLOCATED_SIZE_KEY, preallocatedSize);
+    }
+
+    /**
+     * The size of the buffer for coalescing the small writes of a file-backed stream.
+     * It is rounded up to a multiple of the block size.
+     */
+    String FILE_WRITE_BUFFER_SIZE_KEY = PREFIX + ".file.write.buffer.size";
+    SizeInBytes FILE_WRITE_BUFFER_SIZE_DEFAULT = SizeInBytes.valueOf("64KB");
+    static SizeInBytes fileWriteBufferSize(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          FILE_WRITE_BUFFER_SIZE_KEY, FILE_WRITE_BUFFER_SIZE_DEFAULT, getDefaultLog());
+    }
+    static void setFileWriteBufferSize(RaftProperties properties, SizeInBytes writeBufferSize) {
+      setSizeInBytes(properties::set, FILE_WRITE_BUFFER_SIZE_KEY, writeBufferSize, requireMin(SizeInBytes.ONE_KB));
+    }
+
+    /** When to force the data of a file-backed stream to the disk. */
+    enum SyncPolicy {
+      /** After each write. */
+      WRITE,
+      /** After every {@link #FILE_SYNC_BYTES_KEY} bytes and on close. */
+      BYTES,
+      /** Only on close. */
+      CLOSE
+    }
+
+    String FILE_SYNC_POLICY_KEY = PREFIX + ".file.sync.policy";
+    SyncPolicy FILE_SYNC_POLICY_DEFAULT = SyncPolicy.CLOSE;
+    static SyncPolicy fileSyncPolicy(RaftProperties properties) {
+      return get(properties::getEnum, FILE_SYNC_POLICY_KEY, FILE_SYNC_POLICY_DEFAULT, getDefaultLog());
+    }
+    static void setFileSyncPolicy(RaftProperties properties, SyncPolicy syncPolicy) {
+      set(properties::setEnum, FILE_SYNC_POLICY_KEY, syncPolicy);
+    }
+
+    /** The number of bytes written between two syncs when the sync policy is {@link SyncPolicy#BYTES}. */
+    String FILE_SYNC_BYTES_KEY = PREFIX + ".file.sync.bytes";
+    SizeInBytes FILE_SYNC_BYTES_DEFAULT = SizeInBytes.valueOf("4MB");
+    static SizeInBytes fileSyncBytes(RaftProperties properties) {
+      return getSizeInBytes(properties::getSizeInBytes,
+          FILE_SYNC_BYTES_KEY, FILE_SYNC_BYTES_DEFAULT, getDefaultLog());
+    }
+    static void setFileSyncBytes(RaftProperties properties, SizeInBytes syncBytes) {
+      setSizeInBytes(properties::set, FILE_SYNC_BYTES_KEY, syncBytes, requireMin(SizeInBytes.ONE_KB));
+    }
+
+    /** How the primary forwards the data when the client has not specified a routing table. */
+    enum Topology {
+      /** The primary forwards the data to all the other peers. */
+      STAR,
+      /** The primary forwards the data to a peer, which forwards it to the next peer, and so on. */
+      CHAIN
+    }
+
+    String TOPOLOGY_KEY = PREFIX + ".topology";
+    Topology TOPOLOGY_DEFAULT = Topology.STAR;
+    static Topology topology(RaftProperties properties) {
+      return get(properties::getEnum, TOPOLOGY_KEY, TOPOLOGY_DEFAULT, getDefaultLog());
+    }
+    static void setTopology(RaftProperties properties, Topology topology) {
+      set(properties::setEnum, TOPOLOGY_KEY, topology);
+    }
   }
 
   /** server rpc timeout related */
@@ -519,6 +807,31 @@ public interface RaftServerConfigKeys {
     static void setLeaderStepDownWaitTime(RaftProperties properties, TimeDuration noLeaderTimeout) {
       setTimeDuration(properties::setTimeDuration, LEADER_STEP_DOWN_WAIT_TIME_KEY, noLeaderTimeout);
     }
+
+    /**
+     * Run a pre-vote round before each election (see Section 9.6 of the Raft thesis).
+     * A candidate increases its term only if a majority would grant its vote,
+     * so that a partitioned server rejoining the group does not disrupt the current leader.
+     */
+    String PRE_VOTE_KEY = PREFIX + ".pre-vote";
+    boolean PRE_VOTE_DEFAULT = false;
+    static boolean preVote(RaftProperties properties) {
+      return getBoolean(properties::getBoolean, PRE_VOTE_KEY, PRE_VOTE_DEFAULT, getDefaultLog());
+    }
+    static void setPreVote(RaftProperties properties, boolean enablePreVote) {
+      setBoolean(properties::setBoolean, PRE_VOTE_KEY, enablePreVote);
+    }
+
+    /** The maximum number of threads shared by the groups of a server for sending requestVote. */
+    String VOTE_THREADS_MAX_KEY = PREFIX + ".vote.threads.max";
+    int VOTE_THREADS_MAX_DEFAULT = 16;
+    static int voteThreadsMax(RaftProperties properties) {
+      return getInt(properties::getInt, VOTE_THREADS_MAX_KEY, VOTE_THREADS_MAX_DEFAULT, getDefaultLog(),
+          requireMin(1));
+    }
+    static void setVoteThreadsMax(RaftProperties properties, int voteThreadsMax) {
+      setInt(properties::setInt, VOTE_THREADS_MAX_KEY, voteThreadsMax);
+    }
   }
 
   static void main(String[] args) {
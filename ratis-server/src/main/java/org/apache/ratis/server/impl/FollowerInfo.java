@@ -17,6 +17,7 @@
  */
 package org.apache.ratis.server.impl;
 
+import org.apache.ratis.proto.RaftProtos.CompressionType;
 import org.apache.ratis.protocol.RaftGroupMemberId;
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.server.raftlog.RaftLog;
@@ -25,6 +26,8 @@ import org.apache.ratis.util.Timestamp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
@@ -38,11 +41,15 @@ public class FollowerInfo {
   private final RaftPeer peer;
   private final AtomicReference<Timestamp> lastRpcResponseTime;
   private final AtomicReference<Timestamp> lastRpcSendTime;
+  /** The last time the match index was known to be caught up with the leader's last index. */
+  private final AtomicReference<Timestamp> lastCaughtUpTime = new AtomicReference<>(Timestamp.currentTime());
   private final RaftLogIndex nextIndex;
   private final RaftLogIndex matchIndex = new RaftLogIndex("matchIndex", 0L);
   private final RaftLogIndex commitIndex = new RaftLogIndex("commitIndex", RaftLog.INVALID_LOG_INDEX);
   private final RaftLogIndex snapshotIndex = new RaftLogIndex("snapshotIndex", 0L);
   private volatile boolean attendVote;
+  /** The compression types advertised by the follower in its latest reply. */
+  private volatile List<CompressionType> supportedCompressions = Collections.emptyList();
   private final int rpcSlownessTimeoutMs;
 
   FollowerInfo(RaftGroupMemberId id, RaftPeer peer, Timestamp lastRpcTime, long nextIndex,
@@ -67,6 +74,26 @@ public class FollowerInfo {
     return matchIndex.updateToMax(newMatchIndex, debugIndexChange);
   }
 
+  /** @return the number of entries the match index is behind the given leader's last index. */
+  public long getLagEntries(long leaderLastIndex) {
+    return Math.max(0, leaderLastIndex - getMatchIndex());
+  }
+
+  /** Update the last caught-up time if the follower is caught up with the given leader's last index. */
+  void updateLastCaughtUpTime(long leaderLastIndex) {
+    if (getMatchIndex() >= leaderLastIndex) {
+      lastCaughtUpTime.set(Timestamp.currentTime());
+    }
+  }
+
+  /**
+   * @return the elapsed time in milliseconds since the follower was last known to be caught up
+   *         with the leader, or 0 if it is caught up with the given leader's last index.
+   */
+  public long getLagTimeMs(long leaderLastIndex) {
+    return getMatchIndex() >= leaderLastIndex? 0: lastCaughtUpTime.get().elapsedTimeMs();
+  }
+
   /** @return the commit index acked by the follower. */
   long getCommitIndex() {
     return commitIndex.get();
@@ -130,6 +157,16 @@ public class FollowerInfo {
     return peer;
   }
 
+  /** Update the compression types supported by the follower. */
+  public void updateSupportedCompressions(List<CompressionType> types) {
+    supportedCompressions = types;
+  }
+
+  /** @return true iff the follower has advertised that it supports the given compression type. */
+  boolean isCompressionSupported(CompressionType type) {
+    return supportedCompressions.contains(type);
+  }
+
   /** Update lastRpcResponseTime to the current time. */
   public void updateLastRpcResponseTime() {
     lastRpcResponseTime.set(Timestamp.currentTime());
@@ -26,7 +26,6 @@ import org.apache.ratis.thirdparty.com.google.common.annotations.VisibleForTesti
 import org.apache.ratis.util.Daemon;
 import org.apache.ratis.util.LifeCycle;
 import org.apache.ratis.util.LogUtils;
-import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.TimeDuration;
 import org.apache.ratis.util.Timestamp;
 import org.slf4j.Logger;
@@ -42,7 +41,6 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.HashSet;
@@ -84,22 +82,14 @@ class LeaderElection implements Runnable {
     }
   }
 
+  /** Submit the requests of one round to the shared executor and poll the replies. */
   static class Executor {
     private final ExecutorCompletionService<RequestVoteReplyProto> service;
-    private final ExecutorService executor;
 
-    private final AtomicInteger count = new AtomicInteger();
-
-    Executor(Object name, int size) {
-      Preconditions.assertTrue(size > 0);
-      executor = Executors.newFixedThreadPool(size, r -> new Daemon(r, name + "-" + count.incrementAndGet()));
+    Executor(ExecutorService executor) {
       service = new ExecutorCompletionService<>(executor);
     }
 
-    void shutdown() {
-      executor.shutdown();
-    }
-
     void submit(Callable<RequestVoteReplyProto> task) {
       service.submit(task);
     }
@@ -200,6 +190,15 @@ class LeaderElection implements Runnable {
   private void askForVotes() throws InterruptedException, IOException {
     final ServerState state = server.getState();
     while (shouldRun()) {
+      if (server.isPreVoteEnabled()) {
+        final Result result = askForPreVotes(state);
+        if (result == Result.TIMEOUT) {
+          continue;
+        } else if (result != Result.PASSED) {
+          return; // null means that this should not run anymore.
+        }
+      }
+
       // one round of requestVotes
       final long electionTerm;
       final RaftConfiguration conf;
@@ -213,54 +212,94 @@ class LeaderElection implements Runnable {
       }
       LOG.info("{}: begin an election at term {} for {}", this, electionTerm, conf);
 
-      TermIndex lastEntry = state.getLastEntry();
-
-      final ResultAndTerm r;
-      final Collection<RaftPeer> others = conf.getOtherPeers(server.getId());
-      if (others.isEmpty()) {
-        r = new ResultAndTerm(Result.PASSED, electionTerm);
-      } else {
-        final Executor voteExecutor = new Executor(this, others.size());
-        try {
-          final int submitted = submitRequests(electionTerm, lastEntry, others, voteExecutor);
-          r = waitForResults(electionTerm, submitted, conf, voteExecutor);
-        } finally {
-          voteExecutor.shutdown();
-        }
-      }
+      final ResultAndTerm r = submitRequestsAndWaitForResults(electionTerm, electionTerm, false, conf);
 
       synchronized (server) {
         if (!shouldRun(electionTerm)) {
           return; // term already passed or this should not run anymore.
         }
-
-        switch (r.result) {
-          case PASSED:
-            server.changeToLeader();
-            return;
-          case SHUTDOWN:
-            LOG.info("{} received shutdown response when requesting votes.", this);
-            server.getProxy().close();
-            return;
-          case REJECTED:
-          case DISCOVERED_A_NEW_TERM:
-            final long term = Math.max(r.term, state.getCurrentTerm());
-            server.changeToFollowerAndPersistMetadata(term, Result.DISCOVERED_A_NEW_TERM);
-            return;
-          case TIMEOUT: // should start another election
-            continue;
-          default: throw new IllegalArgumentException("Unable to process result " + r.result);
+        if (r.result == Result.TIMEOUT) {
+          continue; // should start another election
         }
+        processResult(r, state);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Ask the other peers whether they would grant the vote if this server starts an election at the next term.
+   * The term of this server is unchanged.
+   *
+   * @return the result, or null if this should not run anymore.
+   */
+  private Result askForPreVotes(ServerState state) throws InterruptedException, IOException {
+    final long currentTerm;
+    final RaftConfiguration conf;
+    synchronized (server) {
+      if (!shouldRun()) {
+        return null;
+      }
+      currentTerm = state.getCurrentTerm();
+      conf = state.getRaftConf();
+    }
+    LOG.info("{}: begin a pre-vote at term {} for {}", this, currentTerm, conf);
+
+    final ResultAndTerm r = submitRequestsAndWaitForResults(currentTerm, currentTerm + 1, true, conf);
+    synchronized (server) {
+      if (!shouldRun(currentTerm)) {
+        return null; // term already passed or this should not run anymore.
       }
+      if (r.result == Result.REJECTED) {
+        // the term is unchanged; there is nothing to persist
+        server.changeToFollowerAtCurrentTerm(r.result);
+      } else if (r.result != Result.PASSED && r.result != Result.TIMEOUT) {
+        processResult(r, state);
+      }
+      return r.result;
+    }
+  }
+
+  private void processResult(ResultAndTerm r, ServerState state) throws IOException {
+    switch (r.result) {
+      case PASSED:
+        server.changeToLeader();
+        return;
+      case SHUTDOWN:
+        LOG.info("{} received shutdown response when requesting votes.", this);
+        server.getProxy().close();
+        return;
+      case REJECTED:
+      case DISCOVERED_A_NEW_TERM:
+        final long term = Math.max(r.term, state.getCurrentTerm());
+        server.changeToFollowerAndPersistMetadata(term, r.result);
+        return;
+      default: throw new IllegalArgumentException("Unable to process result " + r.result);
+    }
+  }
+
+  /**
+   * @param term the term of this server during the round.
+   * @param candidateTerm the term to be sent in the requests.
+   */
+  private ResultAndTerm submitRequestsAndWaitForResults(long term, long candidateTerm, boolean preVote,
+      RaftConfiguration conf) throws InterruptedException {
+    final TermIndex lastEntry = server.getState().getLastEntry();
+    final Collection<RaftPeer> others = conf.getOtherPeers(server.getId());
+    if (others.isEmpty()) {
+      return new ResultAndTerm(Result.PASSED, candidateTerm);
     }
+    final Executor voteExecutor = new Executor(server.getProxy().getVoteExecutor());
+    final int submitted = submitRequests(candidateTerm, lastEntry, others, preVote, voteExecutor);
+    return waitForResults(term, candidateTerm, submitted, conf, voteExecutor);
   }
 
   private int submitRequests(final long electionTerm, final TermIndex lastEntry,
-      Collection<RaftPeer> others, Executor voteExecutor) {
+      Collection<RaftPeer> others, boolean preVote, Executor voteExecutor) {
     int submitted = 0;
     for (final RaftPeer peer : others) {
       final RequestVoteRequestProto r = server.createRequestVoteRequest(
-          peer.getId(), electionTerm, lastEntry);
+          peer.getId(), electionTerm, lastEntry, preVote);
       voteExecutor.submit(() -> server.getServerRpc().requestVote(r));
       submitted++;
     }
@@ -282,7 +321,7 @@ class LeaderElection implements Runnable {
     return higherPriorityPeers;
   }
 
-  private ResultAndTerm waitForResults(final long electionTerm, final int submitted,
+  private ResultAndTerm waitForResults(final long electionTerm, final long candidateTerm, final int submitted,
       RaftConfiguration conf, Executor voteExecutor) throws InterruptedException {
     final Timestamp timeout = Timestamp.currentTime().addTimeMs(server.getRandomTimeoutMs());
     final Map<RaftPeerId, RequestVoteReplyProto> responses = new HashMap<>();
@@ -323,6 +362,8 @@ class LeaderElection implements Runnable {
         if (r.getShouldShutdown()) {
           return logAndReturn(Result.SHUTDOWN, responses, exceptions, -1);
         }
+        // For a pre-vote, candidateTerm is one more than the term of this server;
+        // a reply at candidateTerm also means that a new term has started.
         if (r.getTerm() > electionTerm) {
           return logAndReturn(Result.DISCOVERED_A_NEW_TERM, responses,
               exceptions, r.getTerm());
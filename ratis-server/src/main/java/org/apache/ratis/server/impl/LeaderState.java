@@ -249,6 +249,7 @@ public class LeaderState {
     processor = new EventProcessor();
     raftServerMetrics = server.getRaftServerMetrics();
     logAppenderMetrics = new LogAppenderMetrics(server.getMemberId());
+    logAppenderMetrics.addCompressionRatioGauge();
     this.pendingRequests = new PendingRequests(server.getMemberId(), properties, raftServerMetrics);
     this.watchRequests = new WatchRequests(server.getMemberId(), properties);
     this.messageStreamRequests = new MessageStreamRequests(server.getMemberId());
@@ -294,6 +295,7 @@ public class LeaderState {
       LOG.warn("{}: Caught exception in sendNotLeaderResponses", this, e);
     }
     messageStreamRequests.clear();
+    server.getRequestTracer().clear();
     server.getServerRpc().notifyNotLeader(server.getMemberId().getGroupId());
     logAppenderMetrics.unregister();
     raftServerMetrics.unregister();
@@ -449,6 +451,7 @@ public class LeaderState {
           peerIdFollowerInfoMap.put(peer.getId(), f);
           raftServerMetrics.addFollower(f.getPeer());
           logAppenderMetrics.addFollowerGauges(f);
+          logAppenderMetrics.addFollowerReplicationMetrics(f, () -> raftLog.getNextIndex() - 1);
           return logAppender;
         }).collect(Collectors.toList());
     senders.addAll(newAppenders);
@@ -681,6 +684,8 @@ public class LeaderState {
   }
 
   private void updateCommit(long majority, long min) {
+    final RequestTracer tracer = server.getRequestTracer();
+    tracer.onFlushed(raftLog.getFlushIndex());
     final long oldLastCommitted = raftLog.getLastCommittedIndex();
     if (majority > oldLastCommitted) {
       // copy the entries out from the raftlog, in order to prevent that
@@ -692,6 +697,7 @@ public class LeaderState {
         watchRequests.update(ReplicationLevel.MAJORITY, majority);
         logMetadata(majority);
         commitIndexChanged();
+        tracer.onCommitted(majority);
       }
 
       try {
@@ -979,6 +985,10 @@ public class LeaderState {
     return senders.stream();
   }
 
+  LogAppenderMetrics getLogAppenderMetrics() {
+    return logAppenderMetrics;
+  }
+
   /**
    * Record Follower Heartbeat Elapsed Time.
    * @param follower RaftPeer.
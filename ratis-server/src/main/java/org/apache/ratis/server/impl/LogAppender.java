@@ -20,24 +20,31 @@ package org.apache.ratis.server.impl;
 import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.metrics.LogAppenderMetrics;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.server.storage.FileInfo;
 import org.apache.ratis.server.raftlog.RaftLog;
 import org.apache.ratis.server.raftlog.RaftLog.EntryWithData;
 import org.apache.ratis.server.raftlog.RaftLogIOException;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.UnsafeByteOperations;
 import org.apache.ratis.proto.RaftProtos.*;
 import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Timer;
 
 import static org.apache.ratis.server.impl.RaftServerConstants.DEFAULT_CALLID;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.LOG_APPENDER_INSTALL_SNAPSHOT_METRIC;
@@ -144,7 +151,15 @@ public class LogAppender {
 
   private final DataQueue<EntryWithData> buffer;
   private final int snapshotChunkMaxSize;
+  /** The progress of the snapshot being installed, if there is any. */
+  private volatile SnapshotProgress snapshotProgress;
+  private final boolean snapshotChunkMemoryMapped;
+  private final int snapshotFilesParallel;
+  private final boolean snapshotIncremental;
+  private final TokenBucket snapshotRateLimiter;
   private final long halfMinTimeoutMs;
+  private final CompressionType compressionType;
+  private final long compressionThreshold;
 
   private final AppenderDaemon daemon;
 
@@ -156,8 +171,15 @@ public class LogAppender {
     this.raftLog = server.getState().getLog();
 
     final RaftProperties properties = server.getProxy().getProperties();
-    this.snapshotChunkMaxSize = RaftServerConfigKeys.Log.Appender.snapshotChunkSizeMax(properties).getSizeInt();
+    this.snapshotChunkMemoryMapped = RaftServerConfigKeys.Log.Appender.snapshotChunkMemoryMappedEnabled(properties);
+    this.snapshotFilesParallel = RaftServerConfigKeys.Log.Appender.snapshotFilesParallel(properties);
+    this.snapshotIncremental = RaftServerConfigKeys.Log.Appender.snapshotIncrementalEnabled(properties);
+    this.snapshotRateLimiter = server.getProxy().getSnapshotRateLimiter();
     this.halfMinTimeoutMs = server.getMinTimeoutMs() / 2;
+    this.snapshotChunkMaxSize = getSnapshotChunkMaxSize(
+        RaftServerConfigKeys.Log.Appender.snapshotChunkSizeMax(properties).getSizeInt());
+    this.compressionType = RaftServerConfigKeys.Log.Appender.compressionType(properties);
+    this.compressionThreshold = RaftServerConfigKeys.Log.Appender.compressionThreshold(properties).getSize();
 
     final SizeInBytes bufferByteLimit = RaftServerConfigKeys.Log.Appender.bufferByteLimit(properties);
     final int bufferElementLimit = RaftServerConfigKeys.Log.Appender.bufferElementLimit(properties);
@@ -165,6 +187,19 @@ public class LogAppender {
     this.daemon = new AppenderDaemon();
   }
 
+  /**
+   * When the snapshot bandwidth is limited, cap the chunk size at the bytes allowed in half the min timeout
+   * so that the follower, without other contention of the bandwidth,
+   * receives an installSnapshot request before its election timeout.
+   */
+  private int getSnapshotChunkMaxSize(int configured) {
+    if (snapshotRateLimiter.isUnlimited()) {
+      return configured;
+    }
+    final long bytes = snapshotRateLimiter.getRatePerSecond() * halfMinTimeoutMs / 1000;
+    return Math.toIntExact(Math.max(1, Math.min(configured, bytes)));
+  }
+
   public RaftServerImpl getServer() {
     return server;
   }
@@ -258,6 +293,88 @@ public class LogAppender {
         getFollowerId(), previous, protos, !follower.isAttendingVote(), callId);
   }
 
+  private boolean shouldCompress(long size) {
+    // compress only if the follower has advertised support, so that an old follower can still be served
+    return compressionType != CompressionType.NONE && size >= compressionThreshold
+        && follower.isCompressionSupported(compressionType);
+  }
+
+  /**
+   * Compress the log entries of the given request
+   * if compression is enabled and the entries are not smaller than the threshold.
+   * The returned request is only for sending; use the given request for bookkeeping.
+   */
+  protected AppendEntriesRequestProto compressEntries(AppendEntriesRequestProto request) throws IOException {
+    if (request.getEntriesCount() == 0) {
+      return request;
+    }
+    long size = 0;
+    for (LogEntryProto entry : request.getEntriesList()) {
+      size += entry.getSerializedSize();
+    }
+    if (!shouldCompress(size)) {
+      return request;
+    }
+    final LogAppenderMetrics metrics = leaderState.getLogAppenderMetrics();
+    final Timer.Context timerContext = metrics.getCompressionTimer().time();
+    final AppendEntriesRequestProto compressed = ServerProtoUtils.compressEntries(request, compressionType, size);
+    timerContext.stop();
+    metrics.onCompression(compressed.getCompressedEntries().getUncompressedSize(),
+        compressed.getCompressedEntries().getData().size());
+    return compressed;
+  }
+
+  /** @return the number of the appendEntries requests sent to the follower but not yet replied. */
+  protected int getNumInFlightRequests() {
+    return 0;
+  }
+
+  /** @return the total size of the appendEntries requests sent to the follower but not yet replied. */
+  protected long getInFlightBytes() {
+    return 0;
+  }
+
+  /** @return the timer of the appendEntries round trip time, or null if it is not tracked by this appender. */
+  protected Timer getAppendEntriesLatencyTimer() {
+    return null;
+  }
+
+  /** @return the replication status of the follower. */
+  FollowerReplicationProto getFollowerReplicationProto() {
+    final long leaderLastIndex = raftLog.getNextIndex() - 1;
+    final FollowerReplicationProto.Builder b = FollowerReplicationProto.newBuilder()
+        .setId(follower.getPeer().getRaftPeerProto())
+        .setNextIndex(follower.getNextIndex())
+        .setMatchIndex(follower.getMatchIndex())
+        .setLagEntries(follower.getLagEntries(leaderLastIndex))
+        .setLagTimeMs(follower.getLagTimeMs(leaderLastIndex))
+        .setInFlightRequests(getNumInFlightRequests())
+        .setInFlightBytes(getInFlightBytes());
+    final LogAppenderMetrics metrics = leaderState.getLogAppenderMetrics();
+    Optional.ofNullable(metrics.getSentEntriesMeter(getFollowerId())).ifPresent(m -> b
+        .setSentEntries(m.getCount())
+        .setSentEntriesPerSecond(m.getOneMinuteRate()));
+    Optional.ofNullable(metrics.getSentBytesMeter(getFollowerId())).ifPresent(m -> b
+        .setSentBytes(m.getCount())
+        .setSentBytesPerSecond(m.getOneMinuteRate()));
+    Optional.ofNullable(getAppendEntriesLatencyTimer()).ifPresent(t -> b
+        .setAppendEntriesLatencyMs(t.getSnapshot().getMean() / 1_000_000));
+    return b.build();
+  }
+
+  /** Record the number of entries and the number of bytes sent to the follower. */
+  protected void onEntriesSent(AppendEntriesRequestProto request) {
+    final int count = request.getEntriesCount();
+    if (count == 0) {
+      return;
+    }
+    long size = 0;
+    for (LogEntryProto entry : request.getEntriesList()) {
+      size += entry.getSerializedSize();
+    }
+    leaderState.getLogAppenderMetrics().onEntriesSent(getFollowerId(), count, size);
+  }
+
   private void assertProtos(List<LogEntryProto> protos, long nextIndex, TermIndex previous, long snapshotIndex) {
     if (protos.isEmpty()) {
       return;
@@ -296,9 +413,12 @@ public class LogAppender {
           return null;
         }
 
+        final AppendEntriesRequestProto toSend = compressEntries(request);
+        onEntriesSent(request);
         follower.updateLastRpcSendTime();
-        final AppendEntriesReplyProto r = server.getServerRpc().appendEntries(request);
+        final AppendEntriesReplyProto r = server.getServerRpc().appendEntries(toSend);
         follower.updateLastRpcResponseTime();
+        follower.updateSupportedCompressions(r.getSupportedCompressionsList());
 
         updateCommitIndex(r.getFollowerCommit());
         return r;
@@ -324,41 +444,174 @@ public class LogAppender {
     }
   }
 
+  /** The progress of installing a snapshot to the follower, for resuming the installation after a failure. */
+  static class SnapshotProgress {
+    private final TermIndex termIndex;
+    /** Map: the file name relative to root -> the offset persisted in the follower */
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+
+    SnapshotProgress(TermIndex termIndex) {
+      this.termIndex = termIndex;
+    }
+
+    boolean matches(TermIndex ti) {
+      return termIndex.equals(ti);
+    }
+
+    void update(List<SnapshotFileProgressProto> fileProgress) {
+      for (SnapshotFileProgressProto p : fileProgress) {
+        offsets.merge(p.getFilename(), p.getOffset(), Math::max);
+      }
+    }
+
+    /**
+     * @return the offset to resume sending the file.
+     *         For the last file, at least one byte is sent so that the last request is sent.
+     */
+    long getResumeOffset(String filename, long fileSize, boolean isLastFile) {
+      final long offset = Math.min(offsets.getOrDefault(filename, 0L), fileSize);
+      return isLastFile && fileSize > 0? Math.min(offset, fileSize - 1): offset;
+    }
+  }
+
+  private SnapshotProgress getSnapshotProgress(SnapshotInfo snapshot) {
+    final SnapshotProgress progress = snapshotProgress;
+    if (progress != null && progress.matches(snapshot.getTermIndex())) {
+      return progress;
+    }
+    snapshotProgress = new SnapshotProgress(snapshot.getTermIndex());
+    return snapshotProgress;
+  }
+
+  /** Forget the progress of the given snapshot so that it is learned from the follower again. */
+  private void resetSnapshotProgress(SnapshotInfo snapshot) {
+    snapshotProgress = new SnapshotProgress(snapshot.getTermIndex());
+  }
+
+  /** Record the progress in the given reply for resuming the installation. */
+  protected void onInstallSnapshotReply(InstallSnapshotReplyProto reply) {
+    final SnapshotProgress progress = snapshotProgress;
+    if (progress == null) {
+      return;
+    }
+    if (reply.getResult() == InstallSnapshotResult.SUCCESS) {
+      progress.update(reply.getFileProgressList());
+    } else if (reply.getResult() == InstallSnapshotResult.RESUME_MISMATCH) {
+      LOG.warn("{}: failed to resume installing snapshot {}, will restart from the beginning",
+          this, progress.termIndex);
+      snapshotProgress = null;
+    }
+  }
+
+  /** The snapshot has been installed to the follower; clear its progress. */
+  protected void onSnapshotInstalled() {
+    snapshotProgress = null;
+  }
+
+  /**
+   * Iterate the snapshot files as installSnapshot requests, each of which has a single chunk.
+   * Up to {@link #snapshotFilesParallel} files are read at the same time
+   * and their chunks are interleaved in a round-robin manner.
+   */
   protected class SnapshotRequestIter
       implements Iterable<InstallSnapshotRequestProto> {
+    /** A snapshot file being read. */
+    private final class FileReader {
+      private final FileInfo fileInfo;
+      private final long fileSize;
+      private final FileChannel in;
+      private long offset;
+      private int chunkIndex = 0;
+
+      FileReader(FileInfo fileInfo, long fileSize, long offset) throws IOException {
+        this.fileInfo = fileInfo;
+        this.fileSize = fileSize;
+        this.offset = offset;
+        this.in = FileChannel.open(fileInfo.getPath(), StandardOpenOption.READ);
+      }
+
+      FileChunkProto readChunk() throws IOException {
+        final int length = getSnapshotChunkLength(fileSize - offset);
+        throttle(snapshotRateLimiter.take(length));
+        final FileChunkProto chunk = readFileChunk(fileInfo, in, length, offset, chunkIndex++);
+        offset += length;
+        return chunk;
+      }
+
+      boolean isDone() {
+        return offset >= fileSize;
+      }
+
+      void close() {
+        IOUtils.cleanup(LOG, in);
+      }
+    }
+
     private final SnapshotInfo snapshot;
     private final List<FileInfo> files;
-    private FileInputStream in;
     private int fileIndex = 0;
-
-    private FileInfo currentFileInfo;
-    private byte[] currentBuf;
-    private long currentFileSize;
-    private long currentOffset = 0;
-    private int chunkIndex = 0;
+    /** The files being read. */
+    private final Deque<FileReader> readers = new ArrayDeque<>();
 
     private final String requestId;
-    private int requestIndex = 0;
+    private int requestIndex;
+    private final SnapshotProgress progress;
+    /** The request returned by the last next() should not be sent before this time in {@link System#nanoTime()}. */
+    private long throttledUntilNanos = System.nanoTime();
 
     public SnapshotRequestIter(SnapshotInfo snapshot, String requestId)
         throws IOException {
+      this(snapshot, requestId, 0);
+    }
+
+    /**
+     * @param firstRequestIndex the index of the first request,
+     *                          which is 1 if the request from {@link #newSnapshotProgressRequest} has been sent.
+     */
+    public SnapshotRequestIter(SnapshotInfo snapshot, String requestId, int firstRequestIndex)
+        throws IOException {
       this.snapshot = snapshot;
       this.requestId = requestId;
+      this.requestIndex = firstRequestIndex;
       this.files = snapshot.getFiles();
-      if (files.size() > 0) {
-        startReadFile();
+      this.progress = getSnapshotProgress(snapshot);
+      startReadFiles();
+    }
+
+    /** Start reading the next files, if there are any, until there are enough readers. */
+    private void startReadFiles() throws IOException {
+      while (readers.size() < snapshotFilesParallel && fileIndex < files.size()) {
+        final FileInfo fileInfo = files.get(fileIndex);
+        final long fileSize = fileInfo.getPath().toFile().length();
+        final boolean isLastFile = fileIndex == files.size() - 1;
+        fileIndex++;
+        // skip the files which have already been installed by the follower
+        final long offset = progress.getResumeOffset(getRelativePath(fileInfo), fileSize, isLastFile);
+        if (!isLastFile && offset >= fileSize) {
+          continue;
+        }
+        if (offset > 0) {
+          LOG.info("{}: resume installing snapshot {} from {} at offset {}",
+              LogAppender.this, snapshot.getTermIndex(), fileInfo.getPath(), offset);
+        }
+        readers.addLast(new FileReader(fileInfo, fileSize, offset));
+      }
+    }
+
+    private void throttle(long waitNanos) {
+      if (waitNanos > 0) {
+        throttledUntilNanos = System.nanoTime() + waitNanos;
       }
     }
 
-    private void startReadFile() throws IOException {
-      currentFileInfo = files.get(fileIndex);
-      File snapshotFile = currentFileInfo.getPath().toFile();
-      currentFileSize = snapshotFile.length();
-      final int bufLength = getSnapshotChunkLength(currentFileSize);
-      currentBuf = new byte[bufLength];
-      currentOffset = 0;
-      chunkIndex = 0;
-      in = new FileInputStream(snapshotFile);
+    /** @return the time in nanoseconds to wait before sending the request returned by the last next(). */
+    long getThrottleNanos() {
+      return throttledUntilNanos - System.nanoTime();
+    }
+
+    private void closeReaders() {
+      readers.forEach(FileReader::close);
+      readers.clear();
     }
 
     private int getSnapshotChunkLength(long len) {
@@ -370,45 +623,31 @@ public class LogAppender {
       return new Iterator<InstallSnapshotRequestProto>() {
         @Override
         public boolean hasNext() {
-          return fileIndex < files.size();
+          return !readers.isEmpty();
         }
 
         @Override
         public InstallSnapshotRequestProto next() {
-          if (fileIndex >= files.size()) {
+          final FileReader reader = readers.pollFirst();
+          if (reader == null) {
             throw new NoSuchElementException();
           }
-          final int targetLength = getSnapshotChunkLength(
-              currentFileSize - currentOffset);
-          FileChunkProto chunk;
           try {
-            chunk = readFileChunk(currentFileInfo, in, currentBuf,
-                targetLength, currentOffset, chunkIndex);
-            boolean done = (fileIndex == files.size() - 1) &&
-                chunk.getDone();
-            InstallSnapshotRequestProto request =
-                server.createInstallSnapshotRequest(follower.getPeer().getId(),
-                    requestId, requestIndex++, snapshot,
-                    Collections.singletonList(chunk), done);
-            currentOffset += targetLength;
-            chunkIndex++;
-
-            if (currentOffset >= currentFileSize) {
-              in.close();
-              fileIndex++;
-              if (fileIndex < files.size()) {
-                startReadFile();
-              }
+            final FileChunkProto chunk = reader.readChunk();
+            if (reader.isDone()) {
+              reader.close();
+              startReadFiles();
+            } else {
+              readers.addLast(reader);
             }
 
-            return request;
+            final boolean done = readers.isEmpty();
+            return server.createInstallSnapshotRequest(follower.getPeer().getId(),
+                requestId, requestIndex++, snapshot,
+                Collections.singletonList(chunk), done);
           } catch (IOException e) {
-            if (in != null) {
-              try {
-                in.close();
-              } catch (IOException ignored) {
-              }
-            }
+            reader.close();
+            closeReaders();
             LOG.warn("{}: Failed to prepare installSnapshot request", LogAppender.this, e);
             throw new RuntimeException(e);
           }
@@ -417,24 +656,106 @@ public class LogAppender {
     }
   }
 
+  /**
+   * Wait until the request returned by the given iterator could be sent within the snapshot bandwidth.
+   * Instead of sleeping, it waits on this appender so that {@link #notifyAppend()} could wake it up.
+   */
+  protected void awaitSnapshotThrottle(SnapshotRequestIter requests) throws InterruptedIOException {
+    synchronized (this) {
+      for (long nanos; isAppenderRunning() && (nanos = requests.getThrottleNanos()) > 0; ) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(this, nanos);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw IOUtils.toInterruptedIOException(this + ": Interrupted while throttling the snapshot", e);
+        }
+      }
+    }
+  }
+
   protected InstallSnapshotRequestProto createInstallSnapshotNotificationRequest(
       TermIndex firstLogStartTermIndex) {
     return server.createInstallSnapshotRequest(getFollowerId(), firstLogStartTermIndex);
   }
 
+  /**
+   * Read the data of a snapshot chunk.
+   * When memory mapping is enabled, the returned data refers to the mapped file region
+   * so that it is serialized to the network buffers without copying it to the heap.
+   * The data is never modified after it is returned.
+   */
+  static ByteString readChunkData(FileChannel in, int length, long offset, boolean memoryMapped)
+      throws IOException {
+    final ByteBuffer buffer;
+    if (memoryMapped) {
+      buffer = in.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    } else {
+      buffer = ByteBuffer.allocate(length);
+      IOUtils.readFully(in, buffer, offset);
+      buffer.flip();
+    }
+    return UnsafeByteOperations.unsafeWrap(buffer);
+  }
+
+  /**
+   * Create the first request of a snapshot installation.
+   * The request has a data-less chunk for each file
+   * so that the follower reports the length of each file it has persisted,
+   * which may survive a restart of the leader or the follower.
+   * When incremental installation is enabled,
+   * the follower also reuses the files having the same digests in its current snapshot.
+   * The progress in the reply replaces the progress known by the leader
+   * and then the {@link SnapshotRequestIter} created after the reply is received resumes from there.
+   *
+   * @return the request with index 0, or null if the snapshot has no files.
+   */
+  protected InstallSnapshotRequestProto newSnapshotProgressRequest(SnapshotInfo snapshot, String requestId) {
+    if (snapshot.getFiles().isEmpty()) {
+      return null;
+    }
+    resetSnapshotProgress(snapshot);
+    final List<FileChunkProto> chunks = new ArrayList<>();
+    for (FileInfo fileInfo : snapshot.getFiles()) {
+      chunks.add(FileChunkProto.newBuilder()
+          .setFilename(getRelativePath(fileInfo))
+          .setTotalSize(fileInfo.getFileSize())
+          .setFileDigest(ByteString.copyFrom(fileInfo.getFileDigest().getDigest()))
+          .setReuse(snapshotIncremental)
+          .setProgressOnly(!snapshotIncremental)
+          .build());
+    }
+    return server.createInstallSnapshotRequest(follower.getPeer().getId(),
+        requestId, 0, snapshot, chunks, false);
+  }
+
+  private String getRelativePath(FileInfo fileInfo) {
+    final Path relativePath = server.getState().getStorage().getStorageDir()
+        .relativizeToRoot(fileInfo.getPath());
+    return relativePath.toString();
+  }
+
   private FileChunkProto readFileChunk(FileInfo fileInfo,
-      FileInputStream in, byte[] buf, int length, long offset, int chunkIndex)
+      FileChannel in, int length, long offset, int chunkIndex)
       throws IOException {
     FileChunkProto.Builder builder = FileChunkProto.newBuilder()
         .setOffset(offset).setChunkIndex(chunkIndex);
-    IOUtils.readFully(in, buf, 0, length);
-    Path relativePath = server.getState().getStorage().getStorageDir()
-        .relativizeToRoot(fileInfo.getPath());
-    builder.setFilename(relativePath.toString());
+    final ByteString data = readChunkData(in, length, offset, snapshotChunkMemoryMapped);
+    builder.setFilename(getRelativePath(fileInfo));
     builder.setDone(offset + length == fileInfo.getFileSize());
     builder.setFileDigest(
         ByteString.copyFrom(fileInfo.getFileDigest().getDigest()));
-    builder.setData(ByteString.copyFrom(buf, 0, length));
+    if (shouldCompress(length)) {
+      final LogAppenderMetrics metrics = leaderState.getLogAppenderMetrics();
+      final Timer.Context timerContext = metrics.getCompressionTimer().time();
+      final ByteString compressed = CompressionUtils.compress(compressionType, data);
+      timerContext.stop();
+      metrics.onCompression(length, compressed.size());
+      builder.setCompression(compressionType)
+          .setUncompressedSize(length)
+          .setData(compressed);
+    } else {
+      builder.setData(data);
+    }
     return builder.build();
   }
 
@@ -442,11 +763,25 @@ public class LogAppender {
     String requestId = UUID.randomUUID().toString();
     InstallSnapshotReplyProto reply = null;
     try {
-      for (InstallSnapshotRequestProto request :
-          new SnapshotRequestIter(snapshot, requestId)) {
+      final InstallSnapshotRequestProto progressRequest = newSnapshotProgressRequest(snapshot, requestId);
+      if (progressRequest != null) {
+        follower.updateLastRpcSendTime();
+        reply = server.getServerRpc().installSnapshot(progressRequest);
+        follower.updateLastRpcResponseTime();
+        follower.updateSupportedCompressions(reply.getSupportedCompressionsList());
+        onInstallSnapshotReply(reply);
+        if (!reply.getServerReply().getSuccess()) {
+          return reply;
+        }
+      }
+      final SnapshotRequestIter requests = new SnapshotRequestIter(snapshot, requestId, progressRequest == null? 0: 1);
+      for (InstallSnapshotRequestProto request : requests) {
+        awaitSnapshotThrottle(requests);
         follower.updateLastRpcSendTime();
         reply = server.getServerRpc().installSnapshot(request);
         follower.updateLastRpcResponseTime();
+        follower.updateSupportedCompressions(reply.getSupportedCompressionsList());
+        onInstallSnapshotReply(reply);
 
         if (!reply.getServerReply().getSuccess()) {
           return reply;
@@ -461,6 +796,7 @@ public class LogAppender {
     }
 
     if (reply != null) {
+      onSnapshotInstalled();
       follower.setSnapshotIndex(snapshot.getTermIndex().getIndex());
       LOG.info("{}: installSnapshot {} successfully", this, snapshot);
       server.getRaftServerMetrics().getCounter(LOG_APPENDER_INSTALL_SNAPSHOT_METRIC).inc();
@@ -554,6 +890,7 @@ public class LogAppender {
   }
 
   protected void submitEventOnSuccessAppend() {
+    follower.updateLastCaughtUpTime(raftLog.getNextIndex() - 1);
     if (follower.isAttendingVote()) {
       leaderState.submitUpdateCommitEvent();
     } else {
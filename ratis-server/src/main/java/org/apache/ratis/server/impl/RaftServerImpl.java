@@ -90,6 +90,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
   private final int minTimeoutMs;
   private final int maxTimeoutMs;
   private final TimeDuration leaderStepDownWaitTime;
+  private final boolean preVoteEnabled;
   private final int rpcSlownessTimeoutMs;
   private final int sleepDeviationThresholdMs;
   private final boolean installSnapshotEnabled;
@@ -106,8 +107,11 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
   private final RaftServerJmxAdapter jmxAdapter;
   private final LeaderElectionMetrics leaderElectionMetrics;
   private final RaftServerMetrics raftServerMetrics;
+  private final RequestTracer requestTracer;
 
   private AtomicReference<TermIndex> inProgressInstallSnapshotRequest;
+  /** For installing the snapshot chunks in order, off the rpc threads. */
+  private final TaskQueue installSnapshotQueue = new TaskQueue("installSnapshot");
 
   // To avoid append entry before complete start() method
   // For example, if thread1 start(), but before thread1 startAsFollower(), thread2 receive append entry
@@ -128,6 +132,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     maxTimeoutMs = RaftServerConfigKeys.Rpc.timeoutMax(properties).toIntExact(TimeUnit.MILLISECONDS);
     rpcSlownessTimeoutMs = RaftServerConfigKeys.Rpc.slownessTimeout(properties).toIntExact(TimeUnit.MILLISECONDS);
     leaderStepDownWaitTime = RaftServerConfigKeys.LeaderElection.leaderStepDownWaitTime(properties);
+    preVoteEnabled = RaftServerConfigKeys.LeaderElection.preVote(properties);
     sleepDeviationThresholdMs = RaftServerConfigKeys.sleepDeviationThreshold(properties);
     installSnapshotEnabled = RaftServerConfigKeys.Log.Appender.installSnapshotEnabled(properties);
     Preconditions.assertTrue(maxTimeoutMs > minTimeoutMs,
@@ -141,6 +146,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     this.jmxAdapter = new RaftServerJmxAdapter();
     this.leaderElectionMetrics = LeaderElectionMetrics.getLeaderElectionMetrics(this);
     this.raftServerMetrics = RaftServerMetrics.getRaftServerMetrics(this);
+    this.requestTracer = new RequestTracer(getMemberId(), properties, raftServerMetrics);
 
     this.startComplete = new AtomicBoolean(false);
   }
@@ -179,6 +185,10 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return leaderStepDownWaitTime;
   }
 
+  boolean isPreVoteEnabled() {
+    return preVoteEnabled;
+  }
+
   int getSleepDeviationThresholdMs() {
     return sleepDeviationThresholdMs;
   }
@@ -413,6 +423,11 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return metadataUpdated;
   }
 
+  /** Change to follower at the current term, which is unchanged and so is not persisted. */
+  synchronized void changeToFollowerAtCurrentTerm(Object reason) {
+    changeToFollower(state.getCurrentTerm(), false, reason);
+  }
+
   synchronized void changeToFollowerAndPersistMetadata(long newTerm, Object reason) throws IOException {
     if (changeToFollower(newTerm, false, reason)) {
       state.persistMetadata();
@@ -485,6 +500,9 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
             leader.addFollowerInfo(ServerProtoUtils.toServerRpcProto(
                 f.getPeer(), f.getLastRpcResponseTime().elapsedTimeMs())));
         leader.setTerm(ls.getCurrentTerm());
+        leader.setLastIndex(state.getLog().getNextIndex() - 1);
+        leader.setCommitIndex(state.getLog().getLastCommittedIndex());
+        ls.getLogAppenders().map(LogAppender::getFollowerReplicationProto).forEach(leader::addReplication);
         roleInfo.setLeaderInfo(leader);
       });
       break;
@@ -588,7 +606,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
    */
   private CompletableFuture<RaftClientReply> appendTransaction(
       RaftClientRequest request, TransactionContext context,
-      RetryCache.CacheEntry cacheEntry) throws IOException {
+      RetryCache.CacheEntry cacheEntry, RequestTracer.Trace trace) throws IOException {
     assertLifeCycleState(LifeCycle.States.RUNNING);
     CompletableFuture<RaftClientReply> reply;
 
@@ -628,6 +646,9 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
             getMemberId() + ": Failed to add a pending write request for " + request));
         return cacheEntry.getReplyFuture();
       }
+      if (trace != null) {
+        requestTracer.onAppended(trace, pending.getIndex());
+      }
       leaderState.notifySenders();
     }
     return pending.getFuture();
@@ -638,8 +659,8 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
       RaftClientRequest request) throws IOException {
     assertLifeCycleState(LifeCycle.States.RUNNING);
     LOG.debug("{}: receive client request({})", getMemberId(), request);
-    Timer timer = raftServerMetrics.getClientRequestTimer(request);
-    final Timer.Context timerContext = (timer != null) ? timer.time() : null;
+    final Timer timer = raftServerMetrics.getClientRequestTimer(request);
+    final long startTime = System.nanoTime();
 
     CompletableFuture<RaftClientReply> replyFuture;
 
@@ -687,14 +708,18 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
           // TODO: this client request will not be added to pending requests until
           // later which means that any failure in between will leave partial state in
           // the state machine. We should call cancelTransaction() for failed requests
+          final RequestTracer.Trace trace = requestTracer.sample(request, startTime);
           TransactionContext context = stateMachine.startTransaction(request);
+          if (trace != null) {
+            trace.mark(RequestTracer.Stage.START_TRANSACTION);
+          }
           if (context.getException() != null) {
             RaftClientReply exceptionReply = new RaftClientReply(request,
                 new StateMachineException(getMemberId(), context.getException()), getCommitInfos());
             cacheEntry.failWithReply(exceptionReply);
             replyFuture =  CompletableFuture.completedFuture(exceptionReply);
           } else {
-            replyFuture = appendTransaction(request, context, cacheEntry);
+            replyFuture = appendTransaction(request, context, cacheEntry, trace);
           }
         }
       }
@@ -702,8 +727,8 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
 
     final RaftClientRequest.Type type = request.getType();
     replyFuture.whenComplete((clientReply, exception) -> {
-      if (clientReply.isSuccess() && timerContext != null) {
-        timerContext.stop();
+      if (clientReply.isSuccess() && timer != null) {
+        timer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
       }
       if (exception != null || clientReply.getException() != null) {
         incFailedRequestCount(type);
@@ -893,6 +918,12 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
   public RequestVoteReplyProto requestVote(RequestVoteRequestProto r)
       throws IOException {
     final RaftRpcRequestProto request = r.getServerRequest();
+    if (r.getPreVote()) {
+      return requestPreVote(RaftPeerId.valueOf(request.getRequestorId()),
+          ProtoUtils.toRaftGroupId(request.getRaftGroupId()),
+          r.getCandidateTerm(),
+          ServerProtoUtils.toTermIndex(r.getCandidateLastEntry()));
+    }
     return requestVote(RaftPeerId.valueOf(request.getRequestorId()),
         ProtoUtils.toRaftGroupId(request.getRaftGroupId()),
         r.getCandidateTerm(),
@@ -956,6 +987,39 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return reply;
   }
 
+  /**
+   * Handle a pre-vote: reply whether the vote would be granted without changing any state.
+   * Unlike a vote, a pre-vote is rejected whenever this server has a leader,
+   * even if the candidate term is higher.
+   */
+  private RequestVoteReplyProto requestPreVote(
+      RaftPeerId candidateId, RaftGroupId candidateGroupId,
+      long candidateTerm, TermIndex candidateLastEntry) throws IOException {
+    LOG.debug("{}: receive requestPreVote({}, {}, {}, {})",
+        getMemberId(), candidateId, candidateGroupId, candidateTerm, candidateLastEntry);
+    assertLifeCycleState(LifeCycle.States.RUNNING);
+    assertGroup(candidateId, candidateGroupId);
+
+    boolean voteGranted = false;
+    final RequestVoteReplyProto reply;
+    synchronized (this) {
+      assertLifeCycleState(LifeCycle.States.RUNNING);
+      final boolean hasLeader = isLeader() || (isFollower() && state.hasLeader()
+          && role.getFollowerState().map(FollowerState::shouldWithholdVotes).orElse(false));
+      final RaftPeer candidate = getRaftConf().getPeer(candidateId);
+      if (!hasLeader && candidate != null && state.recognizeCandidate(candidateId, candidateTerm)) {
+        final int compare = ServerState.compareLog(state.getLastEntry(), candidateLastEntry);
+        final int priority = getRaftConf().getPeer(getId()).getPriority();
+        voteGranted = compare < 0 || (compare == 0 && priority <= candidate.getPriority());
+      }
+      reply = ServerProtoUtils.toRequestVoteReplyProto(candidateId, getMemberId(),
+          voteGranted, state.getCurrentTerm(), false);
+      LOG.info("{}-{} replies to pre-vote request from {}: granted? {} (hasLeader? {}, term={})",
+          getMemberId(), role, candidateId, voteGranted, hasLeader, state.getCurrentTerm());
+    }
+    return reply;
+  }
+
   private void validateEntries(long expectedTerm, TermIndex previous,
       LogEntryProto... entries) {
     if (entries != null && entries.length > 0) {
@@ -1000,8 +1064,8 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
       throws IOException {
     // TODO avoid converting list to array
     final RaftRpcRequestProto request = r.getServerRequest();
-    final LogEntryProto[] entries = r.getEntriesList()
-        .toArray(new LogEntryProto[r.getEntriesCount()]);
+    final List<LogEntryProto> entryList = ServerProtoUtils.getEntries(r);
+    final LogEntryProto[] entries = entryList.toArray(new LogEntryProto[entryList.size()]);
     final TermIndex previous = r.hasPreviousLog() ?
         ServerProtoUtils.toTermIndex(r.getPreviousLog()) : null;
     final RaftPeerId requestorId = RaftPeerId.valueOf(request.getRequestorId());
@@ -1075,7 +1139,8 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     final long currentTerm;
     final long followerCommit = state.getLog().getLastCommittedIndex();
     final Optional<FollowerState> followerState;
-    Timer.Context timer = raftServerMetrics.getFollowerAppendEntryTimer(isHeartbeat).time();
+    final Timer timer = raftServerMetrics.getFollowerAppendEntryTimer(isHeartbeat);
+    final long startTime = System.nanoTime();
     synchronized (this) {
       // Check life cycle state again to avoid the PAUSING/PAUSED state.
       assertLifeCycleState(LifeCycle.States.STARTING_OR_RUNNING);
@@ -1144,7 +1209,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
       }
       logAppendEntries(isHeartbeat, () ->
           getMemberId() + ": succeeded to handle AppendEntries. Reply: " + ServerProtoUtils.toString(reply));
-      timer.stop();  // TODO: future never completes exceptionally?
+      timer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);  // TODO: future never completes exceptionally?
       return reply;
     });
   }
@@ -1218,6 +1283,11 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return reply;
   }
 
+  @Override
+  public CompletableFuture<InstallSnapshotReplyProto> installSnapshotAsync(InstallSnapshotRequestProto request) {
+    return installSnapshotQueue.submit(() -> installSnapshot(request), getProxy().getInstallSnapshotExecutor());
+  }
+
   public boolean pause() throws IOException {
     // TODO: should pause() be limited on only working for a follower?
 
@@ -1309,6 +1379,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     InstallSnapshotRequestProto.SnapshotChunkProto snapshotChunkRequest = request.getSnapshotChunk();
     final TermIndex lastTermIndex = ServerProtoUtils.toTermIndex(snapshotChunkRequest.getTermIndex());
     final long lastIncludedIndex = lastTermIndex.getIndex();
+    final List<SnapshotFileProgressProto> progress;
     synchronized (this) {
       final boolean recognized = state.recognizeLeader(leaderId, leaderTerm);
       currentTerm = state.getCurrentTerm();
@@ -1332,22 +1403,26 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
             getMemberId(), state.getLog().getNextIndex(), lastIncludedIndex);
 
         //TODO: We should only update State with installed snapshot once the request is done.
-        state.installSnapshot(request);
+        progress = state.installSnapshot(request);
 
         // update the committed index
         // re-load the state machine if this is the last chunk
-        if (snapshotChunkRequest.getDone()) {
+        if (progress != null && snapshotChunkRequest.getDone()) {
           state.reloadStateMachine(lastIncludedIndex);
         }
       } finally {
         updateLastRpcTime(FollowerState.UpdateType.INSTALL_SNAPSHOT_COMPLETE);
       }
     }
+    if (progress == null) {
+      return ServerProtoUtils.toInstallSnapshotReplyProto(leaderId, getMemberId(),
+          currentTerm, snapshotChunkRequest.getRequestIndex(), InstallSnapshotResult.RESUME_MISMATCH);
+    }
     if (snapshotChunkRequest.getDone()) {
       LOG.info("{}: successfully install the entire snapshot-{}", getMemberId(), lastIncludedIndex);
     }
     return ServerProtoUtils.toInstallSnapshotReplyProto(leaderId, getMemberId(),
-        currentTerm, snapshotChunkRequest.getRequestIndex(), InstallSnapshotResult.SUCCESS);
+        currentTerm, snapshotChunkRequest.getRequestIndex(), InstallSnapshotResult.SUCCESS, progress);
   }
 
   private InstallSnapshotReplyProto notifyStateMachineToInstallSnapshot(
@@ -1448,8 +1523,8 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
   }
 
   synchronized RequestVoteRequestProto createRequestVoteRequest(
-      RaftPeerId targetId, long term, TermIndex lastEntry) {
-    return ServerProtoUtils.toRequestVoteRequestProto(getMemberId(), targetId, term, lastEntry);
+      RaftPeerId targetId, long term, TermIndex lastEntry, boolean preVote) {
+    return ServerProtoUtils.toRequestVoteRequestProto(getMemberId(), targetId, term, lastEntry, preVote);
   }
 
   public void submitUpdateCommitEvent() {
@@ -1495,6 +1570,7 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
       synchronized (RaftServerImpl.this) {
         final LeaderState leaderState = role.getLeaderState().orElse(null);
         if (isLeader() && leaderState != null) { // is leader and is running
+          requestTracer.onApplied(logIndex);
           leaderState.replyPendingRequest(logIndex, r);
         }
       }
@@ -1569,6 +1645,10 @@ public class RaftServerImpl implements RaftServerProtocol, RaftServerAsynchronou
     return leaderElectionMetrics;
   }
 
+  RequestTracer getRequestTracer() {
+    return requestTracer;
+  }
+
   public RaftServerMetrics getRaftServerMetrics() {
     return raftServerMetrics;
   }
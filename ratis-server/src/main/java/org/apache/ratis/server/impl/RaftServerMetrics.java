@@ -21,6 +21,7 @@ package org.apache.ratis.server.impl;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.FOLLOWER_APPEND_ENTRIES_LATENCY;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedMap;
@@ -32,6 +33,7 @@ import com.codahale.metrics.Timer;
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
 import org.apache.ratis.proto.RaftProtos;
+import org.apache.ratis.proto.RaftProtos.ReplicationLevel;
 import org.apache.ratis.proto.RaftProtos.RaftClientRequestProto.TypeCase;
 import org.apache.ratis.protocol.RaftClientRequest;
 import org.apache.ratis.protocol.RaftPeer;
@@ -55,6 +57,7 @@ public final class RaftServerMetrics extends RatisMetrics {
   public static final String RAFT_CLIENT_STALE_READ_REQUEST = "clientStaleReadRequest";
   public static final String RAFT_CLIENT_WRITE_REQUEST = "clientWriteRequest";
   public static final String RAFT_CLIENT_WATCH_REQUEST = "clientWatch%sRequest";
+  public static final String RAFT_CLIENT_WRITE_REQUEST_STAGE = "clientWriteRequest_%s";
   public static final String REQUEST_QUEUE_LIMIT_HIT_COUNTER = "numRequestQueueLimitHits";
   public static final String RESOURCE_LIMIT_HIT_COUNTER = "leaderNumResourceLimitHits";
   public static final String REQUEST_BYTE_SIZE_LIMIT_HIT_COUNTER = "numRequestsByteSizeLimitHits";
@@ -79,6 +82,14 @@ public final class RaftServerMetrics extends RatisMetrics {
   private Map<String, Long> followerLastHeartbeatElapsedTimeMap = new HashMap<>();
   private CommitInfoCache commitInfoCache;
 
+  // the timers used for each request are resolved once in order to avoid the lookup for each call.
+  private final Timer readRequestTimer;
+  private final Timer staleReadRequestTimer;
+  private final Timer writeRequestTimer;
+  private final Map<ReplicationLevel, Timer> watchRequestTimers = new EnumMap<>(ReplicationLevel.class);
+  private final Timer followerAppendEntryTimer;
+  private final Timer followerHeartbeatTimer;
+
   private static Map<String, RaftServerMetrics> metricsMap = new ConcurrentHashMap<>();
 
   public static RaftServerMetrics getRaftServerMetrics(
@@ -100,6 +111,18 @@ public final class RaftServerMetrics extends RatisMetrics {
     commitInfoCache = server.getCommitInfoCache();
     addPeerCommitIndexGauge(server.getId());
     addRetryCacheMetric(server);
+
+    readRequestTimer = getTimer(RAFT_CLIENT_READ_REQUEST);
+    staleReadRequestTimer = getTimer(RAFT_CLIENT_STALE_READ_REQUEST);
+    writeRequestTimer = getTimer(RAFT_CLIENT_WRITE_REQUEST);
+    for (ReplicationLevel level : ReplicationLevel.values()) {
+      if (level != ReplicationLevel.UNRECOGNIZED) {
+        watchRequestTimers.put(level,
+            getTimer(String.format(RAFT_CLIENT_WATCH_REQUEST, RaftClientRequest.Type.toString(level))));
+      }
+    }
+    followerAppendEntryTimer = getTimer(FOLLOWER_APPEND_ENTRIES_LATENCY);
+    followerHeartbeatTimer = getTimer(FOLLOWER_APPEND_ENTRIES_LATENCY + "_heartbeat");
   }
 
   private RatisMetricRegistry getMetricRegistryForRaftServer(String serverId) {
@@ -187,7 +210,7 @@ public final class RaftServerMetrics extends RatisMetrics {
   }
 
   public Timer getFollowerAppendEntryTimer(boolean isHeartbeat) {
-    return registry.timer(FOLLOWER_APPEND_ENTRIES_LATENCY + (isHeartbeat ? "_heartbeat" : ""));
+    return isHeartbeat? followerHeartbeatTimer: followerAppendEntryTimer;
   }
 
   public Timer getTimer(String timerName) {
@@ -198,16 +221,20 @@ public final class RaftServerMetrics extends RatisMetrics {
     return registry.counter(counterName);
   }
 
+  /** @return the timer of the time spent in the given stage by the traced write requests. */
+  Timer getWriteRequestStageTimer(String stage) {
+    return getTimer(String.format(RAFT_CLIENT_WRITE_REQUEST_STAGE, stage));
+  }
+
   public Timer getClientRequestTimer(RaftClientRequest request) {
     if (request.is(TypeCase.READ)) {
-      return getTimer(RAFT_CLIENT_READ_REQUEST);
+      return readRequestTimer;
     } else if (request.is(TypeCase.STALEREAD)) {
-      return getTimer(RAFT_CLIENT_STALE_READ_REQUEST);
+      return staleReadRequestTimer;
     } else if (request.is(TypeCase.WATCH)) {
-      String watchType = RaftClientRequest.Type.toString(request.getType().getWatch().getReplication());
-      return getTimer(String.format(RAFT_CLIENT_WATCH_REQUEST, watchType));
+      return watchRequestTimers.get(request.getType().getWatch().getReplication());
     } else if (request.is(TypeCase.WRITE)) {
-      return getTimer(RAFT_CLIENT_WRITE_REQUEST);
+      return writeRequestTimer;
     }
     return null;
   }
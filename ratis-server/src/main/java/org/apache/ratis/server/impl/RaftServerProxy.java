@@ -37,12 +37,16 @@ import org.apache.ratis.server.DataStreamServerRpc;
 import org.apache.ratis.server.RaftServer;
 import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.RaftServerRpc;
+import org.apache.ratis.server.metrics.StorageDirMetrics;
+import org.apache.ratis.server.storage.MetaFileSyncer;
 import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.Daemon;
 import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.LifeCycle;
 import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.ProtoUtils;
+import org.apache.ratis.util.TokenBucket;
 import org.apache.ratis.util.function.CheckedFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +63,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -168,6 +173,16 @@ public class RaftServerProxy implements RaftServer {
   private final DataStreamServerRpc dataStreamServerRpc;
 
   private ExecutorService implExecutor;
+  /** Shared by the leader elections of all the groups for sending requestVote. */
+  private final ExecutorService voteExecutor;
+  /** Shared by the groups for installing snapshots; the chunks of each group are installed in order. */
+  private final ExecutorService installSnapshotExecutor;
+  /** Shared by the groups for limiting the bandwidth of sending snapshots to the followers. */
+  private final TokenBucket snapshotRateLimiter;
+  /** Shared by the groups for syncing their meta files in batches; null if it is disabled. */
+  private final MetaFileSyncer metaFileSyncer;
+  /** The disk I/O metrics aggregated by storage directory; see {@link #getStorageDirMetrics(File)}. */
+  private final Map<File, StorageDirMetrics> storageDirMetrics = new ConcurrentHashMap<>();
 
   private final ImplMap impls = new ImplMap();
 
@@ -188,6 +203,47 @@ public class RaftServerProxy implements RaftServer {
     this.lifeCycle = new LifeCycle(this.id + "-" + getClass().getSimpleName());
 
     this.implExecutor = Executors.newSingleThreadExecutor();
+    this.voteExecutor = newBoundedCachedThreadPool(
+        RaftServerConfigKeys.LeaderElection.voteThreadsMax(properties), this.id + "-requestVote-");
+    this.installSnapshotExecutor = newBoundedCachedThreadPool(
+        RaftServerConfigKeys.Snapshot.installThreadsMax(properties), this.id + "-installSnapshot-");
+    this.snapshotRateLimiter = new TokenBucket(
+        RaftServerConfigKeys.Log.Appender.snapshotBandwidth(properties).getSize());
+    this.metaFileSyncer = RaftServerConfigKeys.storageMetaFileSyncBatchEnabled(properties)?
+        new MetaFileSyncer(this.id): null;
+  }
+
+  /**
+   * @return a thread pool with at most the given number of daemon threads;
+   *         the idle threads are terminated and the pending tasks are queued.
+   */
+  private static ExecutorService newBoundedCachedThreadPool(int maxThreads, String namePrefix) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), r -> new Daemon(r, namePrefix + threadCount.incrementAndGet()));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  ExecutorService getVoteExecutor() {
+    return voteExecutor;
+  }
+
+  ExecutorService getInstallSnapshotExecutor() {
+    return installSnapshotExecutor;
+  }
+
+  TokenBucket getSnapshotRateLimiter() {
+    return snapshotRateLimiter;
+  }
+
+  MetaFileSyncer getMetaFileSyncer() {
+    return metaFileSyncer;
+  }
+
+  /** @return the metrics shared by all the groups having their storage in the given directory. */
+  public StorageDirMetrics getStorageDirMetrics(File dir) {
+    return storageDirMetrics.computeIfAbsent(dir.getAbsoluteFile(), d -> new StorageDirMetrics(getId(), d));
   }
 
   /** Check the storage dir and add groups*/
@@ -337,6 +393,8 @@ public class RaftServerProxy implements RaftServer {
     lifeCycle.checkStateAndClose(() -> {
       LOG.info("{}: close", getId());
       impls.close();
+      voteExecutor.shutdown();
+      installSnapshotExecutor.shutdown();
 
       try {
         getServerRpc().close();
@@ -349,6 +407,12 @@ public class RaftServerProxy implements RaftServer {
       } catch (IOException ignored) {
         LOG.warn(getId() + ": Failed to close " + SupportedDataStreamType.NETTY + " server", ignored);
       }
+
+      if (metaFileSyncer != null) {
+        metaFileSyncer.close();
+      }
+      storageDirMetrics.values().forEach(StorageDirMetrics::unregister);
+      storageDirMetrics.clear();
     });
   }
 
@@ -491,6 +555,12 @@ public class RaftServerProxy implements RaftServer {
     return getImpl(request.getServerRequest()).appendEntries(request);
   }
 
+  @Override
+  public CompletableFuture<InstallSnapshotReplyProto> installSnapshotAsync(InstallSnapshotRequestProto request) {
+    final RaftGroupId groupId = ProtoUtils.toRaftGroupId(request.getServerRequest().getRaftGroupId());
+    return submitRequest(groupId, impl -> impl.installSnapshotAsync(request));
+  }
+
   @Override
   public InstallSnapshotReplyProto installSnapshot(InstallSnapshotRequestProto request) throws IOException {
     return getImpl(request.getServerRequest()).installSnapshot(request);
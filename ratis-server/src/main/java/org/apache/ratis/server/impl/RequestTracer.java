@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import com.codahale.metrics.Timer;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.util.TimeDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Trace the stages of the sampled write requests on the leader.
+ * <p>
+ * A traced request carries the time it was received;
+ * the time of each later {@link Stage} is recorded when the leader observes it.
+ * Once the request is applied, the time spent in each stage is recorded in the stage timers
+ * and, if the request is slower than the threshold, the breakdown is logged.
+ * <p>
+ * Only the sampled requests are tracked so that the cost of the untraced requests is a counter increment
+ * and an empty map check.
+ */
+class RequestTracer {
+  static final Logger LOG = LoggerFactory.getLogger(RequestTracer.class);
+
+  /** The stages of a write request after it is received by the leader, in pipeline order. */
+  enum Stage {
+    /** {@link org.apache.ratis.statemachine.StateMachine#startTransaction(RaftClientRequest)} returned. */
+    START_TRANSACTION("startTransaction"),
+    /** The pending request is admitted and the entry is submitted to the local log. */
+    APPEND("append"),
+    /** The entry is flushed to the leader's local log. */
+    FLUSH("flush"),
+    /** The entry is replicated to a majority and committed. */
+    COMMIT("commit"),
+    /** The entry is applied to the state machine. */
+    APPLY("apply");
+
+    private final String metricName;
+
+    Stage(String metricName) {
+      this.metricName = metricName;
+    }
+
+    String getMetricName() {
+      return metricName;
+    }
+  }
+
+  /**
+   * The timestamps of a traced request.
+   * Since {@link System#nanoTime()} may be zero or negative,
+   * the marked stages are tracked in a bitset and the timestamps are only compared by their differences.
+   */
+  static final class Trace {
+    private final String request;
+    private final long receivedTime;
+    private final long[] stageTimes = new long[Stage.values().length];
+    /** The bit of a stage is set iff the stage is marked. */
+    private int marked;
+    private long index = -1;
+
+    Trace(RaftClientRequest request, long receivedTime) {
+      this.request = request.getClientId() + ":" + request.getCallId();
+      this.receivedTime = receivedTime;
+    }
+
+    void mark(Stage stage) {
+      mark(stage, System.nanoTime());
+    }
+
+    private boolean isMarked(Stage stage) {
+      return (marked & (1 << stage.ordinal())) != 0;
+    }
+
+    synchronized void mark(Stage stage, long time) {
+      if (!isMarked(stage)) {
+        stageTimes[stage.ordinal()] = time;
+        marked |= 1 << stage.ordinal();
+      }
+    }
+
+    /** @return the time spent in each observed stage, measured from the latest earlier stage. */
+    synchronized Map<Stage, Long> getStageNanos() {
+      final Map<Stage, Long> map = new EnumMap<>(Stage.class);
+      long previous = receivedTime;
+      for (Stage stage : Stage.values()) {
+        if (isMarked(stage)) {
+          final long t = stageTimes[stage.ordinal()];
+          final long elapsed = t - previous;
+          map.put(stage, Math.max(0, elapsed));
+          if (elapsed > 0) {
+            previous = t;
+          }
+        }
+      }
+      return map;
+    }
+
+    synchronized long getTotalNanos() {
+      long total = 0;
+      for (Stage stage : Stage.values()) {
+        if (isMarked(stage)) {
+          total = Math.max(total, stageTimes[stage.ordinal()] - receivedTime);
+        }
+      }
+      return total;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder b = new StringBuilder()
+          .append(request).append("@").append(index)
+          .append(": total=").append(toMillis(getTotalNanos())).append("ms");
+      getStageNanos().forEach((stage, nanos) -> b.append(", ")
+          .append(stage.getMetricName()).append("=").append(toMillis(nanos)).append("ms"));
+      return b.toString();
+    }
+
+    private static String toMillis(long nanos) {
+      return String.format("%.3f", nanos / 1_000_000.0);
+    }
+  }
+
+  private final Object name;
+  private final int samplingInterval;
+  private final long slowThresholdNanos;
+  private final AtomicLong requestCount = new AtomicLong();
+  /** The traced requests which are appended but not yet applied, keyed by log index. */
+  private final ConcurrentNavigableMap<Long, Trace> traces = new ConcurrentSkipListMap<>();
+  private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+  RequestTracer(Object name, RaftProperties properties, RaftServerMetrics metrics) {
+    this(name, RaftServerConfigKeys.Write.traceSamplingInterval(properties),
+        RaftServerConfigKeys.Write.traceSlowThreshold(properties), metrics::getWriteRequestStageTimer);
+  }
+
+  RequestTracer(Object name, int samplingInterval, TimeDuration slowThreshold,
+      Function<String, Timer> getStageTimer) {
+    this.name = name;
+    this.samplingInterval = samplingInterval;
+    this.slowThresholdNanos = slowThreshold.toLong(TimeUnit.NANOSECONDS);
+    if (isEnabled()) {
+      for (Stage stage : Stage.values()) {
+        stageTimers.put(stage, getStageTimer.apply(stage.getMetricName()));
+      }
+    }
+  }
+
+  boolean isEnabled() {
+    return samplingInterval > 0;
+  }
+
+  /** @return a new {@link Trace} if the request is sampled; otherwise, return null. */
+  Trace sample(RaftClientRequest request, long receivedTime) {
+    if (!isEnabled() || requestCount.getAndIncrement() % samplingInterval != 0) {
+      return null;
+    }
+    return new Trace(request, receivedTime);
+  }
+
+  /** Start tracking the given trace by the log index of its entry. */
+  void onAppended(Trace trace, long index) {
+    trace.mark(Stage.APPEND);
+    trace.index = index;
+    traces.put(index, trace);
+  }
+
+  void onFlushed(long flushIndex) {
+    markUpTo(flushIndex, Stage.FLUSH);
+  }
+
+  void onCommitted(long commitIndex) {
+    markUpTo(commitIndex, Stage.COMMIT);
+  }
+
+  private void markUpTo(long index, Stage stage) {
+    if (traces.isEmpty()) {
+      return;
+    }
+    final long now = System.nanoTime();
+    for (Trace trace : traces.headMap(index, true).values()) {
+      trace.mark(stage, now);
+    }
+  }
+
+  void onApplied(long index) {
+    if (traces.isEmpty()) {
+      return;
+    }
+    final Trace trace = traces.remove(index);
+    if (trace == null) {
+      return;
+    }
+    trace.mark(Stage.APPLY);
+    trace.getStageNanos().forEach((stage, nanos) -> stageTimers.get(stage).update(nanos, TimeUnit.NANOSECONDS));
+    if (slowThresholdNanos > 0 && trace.getTotalNanos() >= slowThresholdNanos) {
+      LOG.warn("{}: slow write request {}", name, trace);
+    }
+  }
+
+  /** Stop tracking all the requests, e.g. when the leader steps down. */
+  void clear() {
+    traces.clear();
+  }
+
+  int getNumTraces() {
+    return traces.size();
+  }
+}
@@ -27,11 +27,16 @@ import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.thirdparty.com.google.protobuf.CodedInputStream;
+import org.apache.ratis.util.CompressionUtils;
 import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.ProtoUtils;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -120,7 +125,12 @@ public interface ServerProtoUtils {
         + ", previous=" + toTermIndexString(proto.getPreviousLog())
         + ", leaderCommit=" + proto.getLeaderCommit()
         + ", initializing? " + proto.getInitializing()
-        + ", entries: " + toShortString(proto.getEntriesList());
+        + ", entries: " + (proto.hasCompressedEntries()? toString(proto.getCompressedEntries())
+            : toShortString(proto.getEntriesList()));
+  }
+  public static String toString(CompressedLogEntriesProto proto) {
+    return proto.getType() + "(size=" + proto.getEntryCount()
+        + ", bytes=" + proto.getData().size() + "/" + proto.getUncompressedSize() + ")";
   }
   static String toString(AppendEntriesReplyProto reply) {
     if (reply == null) {
@@ -328,10 +338,11 @@ public interface ServerProtoUtils {
   }
 
   static RequestVoteRequestProto toRequestVoteRequestProto(
-      RaftGroupMemberId requestorId, RaftPeerId replyId, long term, TermIndex lastEntry) {
+      RaftGroupMemberId requestorId, RaftPeerId replyId, long term, TermIndex lastEntry, boolean preVote) {
     final RequestVoteRequestProto.Builder b = RequestVoteRequestProto.newBuilder()
         .setServerRequest(toRaftRpcRequestProtoBuilder(requestorId, replyId))
-        .setCandidateTerm(term);
+        .setCandidateTerm(term)
+        .setPreVote(preVote);
     if (lastEntry != null) {
       b.setCandidateLastEntry(toTermIndexProto(lastEntry));
     }
@@ -341,11 +352,21 @@ public interface ServerProtoUtils {
   static InstallSnapshotReplyProto toInstallSnapshotReplyProto(
       RaftPeerId requestorId, RaftGroupMemberId replyId,
       long currentTerm, int requestIndex, InstallSnapshotResult result) {
+    return toInstallSnapshotReplyProto(requestorId, replyId, currentTerm, requestIndex, result,
+        Collections.emptyList());
+  }
+
+  static InstallSnapshotReplyProto toInstallSnapshotReplyProto(
+      RaftPeerId requestorId, RaftGroupMemberId replyId,
+      long currentTerm, int requestIndex, InstallSnapshotResult result,
+      List<SnapshotFileProgressProto> fileProgress) {
     final RaftRpcReplyProto.Builder rb = toRaftRpcReplyProtoBuilder(requestorId,
         replyId, result == InstallSnapshotResult.SUCCESS);
     final InstallSnapshotReplyProto.Builder builder = InstallSnapshotReplyProto
         .newBuilder().setServerReply(rb).setTerm(currentTerm).setResult(result)
-        .setRequestIndex(requestIndex);
+        .setRequestIndex(requestIndex)
+        .addAllFileProgress(fileProgress)
+        .addAllSupportedCompressions(CompressionUtils.SUPPORTED_TYPES);
     return builder.build();
   }
 
@@ -355,7 +376,8 @@ public interface ServerProtoUtils {
     final RaftRpcReplyProto.Builder rb = toRaftRpcReplyProtoBuilder(requestorId,
         replyId, result == InstallSnapshotResult.SUCCESS);
     final InstallSnapshotReplyProto.Builder builder = InstallSnapshotReplyProto
-        .newBuilder().setServerReply(rb).setTerm(currentTerm).setResult(result);
+        .newBuilder().setServerReply(rb).setTerm(currentTerm).setResult(result)
+        .addAllSupportedCompressions(CompressionUtils.SUPPORTED_TYPES);
     if (installedSnapshotIndex > 0) {
       builder.setSnapshotIndex(installedSnapshotIndex);
     }
@@ -429,6 +451,7 @@ public interface ServerProtoUtils {
         .setFollowerCommit(followerCommit)
         .setResult(result)
         .setIsHearbeat(isHeartbeat)
+        .addAllSupportedCompressions(CompressionUtils.SUPPORTED_TYPES)
         .build();
   }
 
@@ -456,6 +479,57 @@ public interface ServerProtoUtils {
     return b.build();
   }
 
+  /** @return true iff the given request has any log entries, which may be compressed. */
+  static boolean hasEntries(AppendEntriesRequestProto request) {
+    return request.getEntriesCount() > 0 || request.hasCompressedEntries();
+  }
+
+  /** @return the log entries in the given request; decompress them if they are compressed. */
+  static List<LogEntryProto> getEntries(AppendEntriesRequestProto request) throws IOException {
+    if (!request.hasCompressedEntries()) {
+      return request.getEntriesList();
+    }
+    final CompressedLogEntriesProto compressed = request.getCompressedEntries();
+    final ByteString data = CompressionUtils.decompress(
+        compressed.getType(), compressed.getData(), Math.toIntExact(compressed.getUncompressedSize()));
+    final CodedInputStream in = data.newCodedInput();
+    final List<LogEntryProto> entries = new ArrayList<>(compressed.getEntryCount());
+    for (int i = 0; i < compressed.getEntryCount(); i++) {
+      final int length = in.readRawVarint32();
+      final int limit = in.pushLimit(length);
+      entries.add(LogEntryProto.parseFrom(in));
+      in.popLimit(limit);
+    }
+    Preconditions.assertTrue(in.isAtEnd(), "Unexpected trailing data in compressed entries");
+    return entries;
+  }
+
+  /**
+   * Compress the log entries in the given request as a whole.
+   * @return the compressed request, or the given request if it has no entries.
+   */
+  static AppendEntriesRequestProto compressEntries(AppendEntriesRequestProto request, CompressionType type,
+      long uncompressedSize) throws IOException {
+    if (request.getEntriesCount() == 0 || type == CompressionType.NONE) {
+      return request;
+    }
+    final ByteString.Output out = ByteString.newOutput(Math.toIntExact(uncompressedSize));
+    for (LogEntryProto entry : request.getEntriesList()) {
+      entry.writeDelimitedTo(out);
+    }
+    final ByteString uncompressed = out.toByteString();
+    final CompressedLogEntriesProto compressed = CompressedLogEntriesProto.newBuilder()
+        .setType(type)
+        .setEntryCount(request.getEntriesCount())
+        .setUncompressedSize(uncompressed.size())
+        .setData(CompressionUtils.compress(type, uncompressed))
+        .build();
+    return request.toBuilder()
+        .clearEntries()
+        .setCompressedEntries(compressed)
+        .build();
+  }
+
   static ServerRpcProto toServerRpcProto(RaftPeer peer, long delay) {
     if (peer == null) {
       // if no peer information return empty
@@ -28,6 +28,7 @@ import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLog;
 import org.apache.ratis.server.storage.*;
 import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.proto.RaftProtos.SnapshotFileProgressProto;
 import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.TransactionContext;
@@ -107,7 +108,7 @@ public class ServerState implements Closeable {
     final File dir = chooseStorageDir(RaftServerConfigKeys.storageDir(prop),
         group.getGroupId().getUuid().toString());
     storage = new RaftStorage(dir, RaftServerConstants.StartupOption.REGULAR,
-        RaftServerConfigKeys.Log.corruptionPolicy(prop));
+        RaftServerConfigKeys.Log.corruptionPolicy(prop), server.getProxy().getMetaFileSyncer());
     snapshotManager = new SnapshotManager(storage, id);
 
     long lastApplied = initStatemachine(stateMachine, group.getGroupId());
@@ -413,12 +414,19 @@ public class ServerState implements Closeable {
     return storage;
   }
 
-  void installSnapshot(InstallSnapshotRequestProto request) throws IOException {
+  /**
+   * @return the progress of the files in the request,
+   *         or null if the installation cannot be resumed from the offsets in the request.
+   */
+  List<SnapshotFileProgressProto> installSnapshot(InstallSnapshotRequestProto request) throws IOException {
     // TODO: verify that we need to install the snapshot
     StateMachine sm = server.getStateMachine();
     sm.pause(); // pause the SM to prepare for install snapshot
-    snapshotManager.installSnapshot(sm, request);
-    updateInstalledSnapshotIndex(ServerProtoUtils.toTermIndex(request.getSnapshotChunk().getTermIndex()));
+    final List<SnapshotFileProgressProto> progress = snapshotManager.installSnapshot(sm, request);
+    if (progress != null) {
+      updateInstalledSnapshotIndex(ServerProtoUtils.toTermIndex(request.getSnapshotChunk().getTermIndex()));
+    }
+    return progress;
   }
 
   void updateInstalledSnapshotIndex(TermIndex lastTermIndexInSnapshot) {
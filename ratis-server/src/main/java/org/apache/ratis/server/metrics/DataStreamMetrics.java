@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.metrics;
+
+import org.apache.ratis.metrics.MetricRegistryInfo;
+import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.metrics.RatisMetrics;
+import org.apache.ratis.protocol.RaftPeerId;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics for the files written by the data streams of a server.
+ * The registry is separated from {@link DataStreamServerMetrics}
+ * so that it is not unregistered when the data stream server is closed.
+ */
+public final class DataStreamMetrics extends RatisMetrics {
+  public static final String RATIS_DATA_STREAM_METRICS = "data_stream";
+  public static final String RATIS_DATA_STREAM_METRICS_DESC = "Metrics for data streams";
+
+  // The number of bytes written to the files
+  public static final String DATA_STREAM_BYTES_WRITTEN = "bytesWritten";
+  // The number of bytes preallocated for the files
+  public static final String DATA_STREAM_PREALLOCATED_BYTES = "preallocatedBytes";
+  // Time taken to force the files to the disk
+  public static final String DATA_STREAM_SYNC_TIME = "syncTime";
+
+  private final Meter bytesWritten;
+  private final Meter preallocatedBytes;
+  private final Timer syncTimer;
+
+  public DataStreamMetrics(RaftPeerId serverId) {
+    registry = getMetricRegistryForDataStream(serverId.toString());
+    bytesWritten = registry.meter(DATA_STREAM_BYTES_WRITTEN);
+    preallocatedBytes = registry.meter(DATA_STREAM_PREALLOCATED_BYTES);
+    syncTimer = registry.timer(DATA_STREAM_SYNC_TIME);
+  }
+
+  private RatisMetricRegistry getMetricRegistryForDataStream(String serverId) {
+    return create(new MetricRegistryInfo(serverId,
+        RATIS_APPLICATION_NAME_METRICS,
+        RATIS_DATA_STREAM_METRICS, RATIS_DATA_STREAM_METRICS_DESC));
+  }
+
+  public void onBytesWritten(long bytes) {
+    bytesWritten.mark(bytes);
+  }
+
+  public void onPreallocated(long bytes) {
+    preallocatedBytes.mark(bytes);
+  }
+
+  public void onSync(long elapsedNanos) {
+    syncTimer.update(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public Meter getBytesWritten() {
+    return bytesWritten;
+  }
+
+  public Meter getPreallocatedBytes() {
+    return preallocatedBytes;
+  }
+
+  public Timer getSyncTimer() {
+    return syncTimer;
+  }
+}
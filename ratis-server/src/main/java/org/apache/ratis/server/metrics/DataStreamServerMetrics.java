@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.metrics;
+
+import org.apache.ratis.metrics.MetricRegistryInfo;
+import org.apache.ratis.metrics.RatisMetricRegistry;
+import org.apache.ratis.metrics.RatisMetrics;
+import org.apache.ratis.protocol.RaftPeerId;
+
+import java.util.function.IntSupplier;
+
+/** Metrics for the data stream server, which are unregistered when the server is closed. */
+public final class DataStreamServerMetrics extends RatisMetrics {
+  public static final String RATIS_DATA_STREAM_SERVER_METRICS = "data_stream_server";
+  public static final String RATIS_DATA_STREAM_SERVER_METRICS_DESC = "Metrics for data stream servers";
+
+  // The number of the requests of a stream which are received but not yet replied
+  public static final String DATA_STREAM_QUEUE_DEPTH = "stream_%s_queue_depth";
+
+  public DataStreamServerMetrics(RaftPeerId serverId) {
+    registry = getMetricRegistryForDataStreamServer(serverId.toString());
+  }
+
+  private RatisMetricRegistry getMetricRegistryForDataStreamServer(String serverId) {
+    return create(new MetricRegistryInfo(serverId,
+        RATIS_APPLICATION_NAME_METRICS,
+        RATIS_DATA_STREAM_SERVER_METRICS, RATIS_DATA_STREAM_SERVER_METRICS_DESC));
+  }
+
+  public void addStreamQueueDepthGauge(Object stream, IntSupplier queueDepth) {
+    registry.gauge(String.format(DATA_STREAM_QUEUE_DEPTH, stream), () -> queueDepth::getAsInt);
+  }
+
+  public void removeStreamQueueDepthGauge(Object stream) {
+    registry.remove(String.format(DATA_STREAM_QUEUE_DEPTH, stream));
+  }
+}
@@ -25,14 +25,49 @@ import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
 import org.apache.ratis.metrics.RatisMetrics;
 import org.apache.ratis.protocol.RaftGroupMemberId;
+import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.server.impl.FollowerInfo;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
 public final class LogAppenderMetrics extends RatisMetrics {
   public static final String RATIS_LOG_APPENDER_METRICS = "log_appender";
   public static final String RATIS_LOG_APPENDER_METRICS_DESC = "Metrics for log appender";
 
+  // Time taken to compress the appendEntries and installSnapshot payload
+  public static final String COMPRESSION_TIME = "compressionTime";
+  // Number of payload bytes before compression
+  public static final String COMPRESSION_UNCOMPRESSED_BYTES = "compressionUncompressedBytes";
+  // Number of payload bytes after compression
+  public static final String COMPRESSION_COMPRESSED_BYTES = "compressionCompressedBytes";
+  // The ratio of the uncompressed bytes to the compressed bytes
+  public static final String COMPRESSION_RATIO = "compressionRatio";
+
+  // The number of entries and bytes sent to a follower
+  public static final String FOLLOWER_SENT_ENTRIES = "follower_%s_sent_entries";
+  public static final String FOLLOWER_SENT_BYTES = "follower_%s_sent_bytes";
+  // The number of entries the match index of a follower is behind the last index of the leader
+  public static final String FOLLOWER_LAG_ENTRIES = "follower_%s_lag_entries";
+  // The elapsed time in milliseconds since a follower was last caught up with the leader
+  public static final String FOLLOWER_LAG_TIME = "follower_%s_lag_time";
+
+  private final Timer compressionTimer;
+  private final Counter uncompressedBytes;
+  private final Counter compressedBytes;
+  private final Map<RaftPeerId, Meter> sentEntries = new ConcurrentHashMap<>();
+  private final Map<RaftPeerId, Meter> sentBytes = new ConcurrentHashMap<>();
+
   public LogAppenderMetrics(RaftGroupMemberId groupMemberId) {
     registry = getMetricRegistryForLogAppender(groupMemberId.toString());
+    compressionTimer = registry.timer(COMPRESSION_TIME);
+    uncompressedBytes = registry.counter(COMPRESSION_UNCOMPRESSED_BYTES);
+    compressedBytes = registry.counter(COMPRESSION_COMPRESSED_BYTES);
   }
 
   private RatisMetricRegistry getMetricRegistryForLogAppender(String serverId) {
@@ -41,6 +76,22 @@ public final class LogAppenderMetrics extends RatisMetrics {
         RATIS_LOG_APPENDER_METRICS, RATIS_LOG_APPENDER_METRICS_DESC));
   }
 
+  public Timer getCompressionTimer() {
+    return compressionTimer;
+  }
+
+  public void onCompression(long uncompressed, long compressed) {
+    uncompressedBytes.inc(uncompressed);
+    compressedBytes.inc(compressed);
+  }
+
+  public void addCompressionRatioGauge() {
+    registry.gauge(COMPRESSION_RATIO, () -> () -> {
+      final long c = compressedBytes.getCount();
+      return c == 0? 1.0: (double) uncompressedBytes.getCount() / c;
+    });
+  }
+
   public void addFollowerGauges(FollowerInfo followerInfo) {
     registry.gauge(String.format(FOLLOWER_NEXT_INDEX,
         followerInfo.getPeer().getId().toString()),
@@ -50,4 +101,35 @@ public final class LogAppenderMetrics extends RatisMetrics {
     registry.gauge(String.format(FOLLOWER_RPC_RESP_TIME, followerInfo.getPeer().getId().toString()),
         () -> () -> followerInfo.getLastRpcTime().elapsedTimeMs());
   }
+
+  public void addFollowerReplicationMetrics(FollowerInfo followerInfo, LongSupplier leaderLastIndex) {
+    final RaftPeerId id = followerInfo.getPeer().getId();
+    sentEntries.put(id, registry.meter(String.format(FOLLOWER_SENT_ENTRIES, id)));
+    sentBytes.put(id, registry.meter(String.format(FOLLOWER_SENT_BYTES, id)));
+    registry.gauge(String.format(FOLLOWER_LAG_ENTRIES, id),
+        () -> () -> followerInfo.getLagEntries(leaderLastIndex.getAsLong()));
+    registry.gauge(String.format(FOLLOWER_LAG_TIME, id),
+        () -> () -> followerInfo.getLagTimeMs(leaderLastIndex.getAsLong()));
+  }
+
+  public void onEntriesSent(RaftPeerId follower, int entries, long bytes) {
+    final Meter entriesMeter = sentEntries.get(follower);
+    if (entriesMeter != null) {
+      entriesMeter.mark(entries);
+    }
+    final Meter bytesMeter = sentBytes.get(follower);
+    if (bytesMeter != null) {
+      bytesMeter.mark(bytes);
+    }
+  }
+
+  /** @return the meter of the entries sent to the given follower, or null if the follower is unknown. */
+  public Meter getSentEntriesMeter(RaftPeerId follower) {
+    return sentEntries.get(follower);
+  }
+
+  /** @return the meter of the bytes sent to the given follower, or null if the follower is unknown. */
+  public Meter getSentBytesMeter(RaftPeerId follower) {
+    return sentBytes.get(follower);
+  }
 }
@@ -18,7 +18,10 @@
 
 package org.apache.ratis.server.metrics;
 
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ratis.metrics.MetricRegistryInfo;
 import org.apache.ratis.metrics.RatisMetricRegistry;
@@ -28,8 +31,11 @@ import org.apache.ratis.util.DataQueue;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
 import com.codahale.metrics.Timer;
 
 public class RaftLogMetrics extends RatisMetrics {
@@ -74,6 +80,27 @@ public class RaftLogMetrics extends RatisMetrics {
   // Number of entries appended to the raft log
   public static final String RAFT_LOG_APPEND_ENTRY_COUNT = "appendEntryCount";
   public static final String RAFT_LOG_PURGE_METRIC = "purgeLog";
+
+  //////////////////////////////
+  // Raft Log Disk I/O Metrics
+  /////////////////////////////
+  // Number of bytes written to the log segment files
+  public static final String RAFT_LOG_BYTES_WRITTEN = "bytesWritten";
+  // Number of bytes preallocated for the log segment files
+  public static final String RAFT_LOG_PREALLOCATED_BYTES = "preallocatedBytes";
+  // Number of bytes re-read from the log segment files in order to load the entry cache
+  public static final String RAFT_LOG_CACHE_LOAD_BYTES = "cacheLoadBytes";
+  // Number of syncs of the log segment files
+  public static final String RAFT_LOG_SYNC_COUNT = "syncCount";
+  // Time taken to sync raft log within a sliding time window
+  public static final String RAFT_LOG_SYNC_TIME_WINDOW = "syncTimeWindow";
+  // Number of rolled log segments
+  public static final String RAFT_LOG_SEGMENT_ROLL_COUNT = "segmentRollCount";
+  // Number of purged log segments and their size in bytes
+  public static final String RAFT_LOG_SEGMENT_PURGE_COUNT = "segmentPurgeCount";
+  public static final String RAFT_LOG_PURGED_BYTES = "purgedBytes";
+  // The window of the sliding time window timers
+  private static final long SLIDING_WINDOW_SECONDS = 60;
   public static final String LOG_APPENDER_INSTALL_SNAPSHOT_METRIC = "numInstallSnapshot";
 
   // Log Entry metrics
@@ -93,8 +120,58 @@ public class RaftLogMetrics extends RatisMetrics {
   public static final String FOLLOWER_MATCH_INDEX = "follower_%s_match_index";
   public static final String FOLLOWER_RPC_RESP_TIME = "follower_%s_rpc_response_time";
 
+  // the metrics used in the hot paths are resolved once in order to avoid the lookup for each call.
+  private final Timer flushTimer;
+  private final Timer syncTimer;
+  private final Timer appendEntryTimer;
+  private final Timer queueTimer;
+  private final Timer enqueueDelayTimer;
+  private final Timer readEntryTimer;
+  private final Counter cacheHitCount;
+  private final Counter cacheMissCount;
+  private final Counter flushCount;
+  private final Counter appendEntryCount;
+  private final Map<Class<?>, Timer> taskExecutionTimers = new ConcurrentHashMap<>();
+  private final Meter bytesWritten;
+  private final Meter preallocatedBytes;
+  private final Meter cacheLoadBytes;
+  private final Meter syncCount;
+  private final Timer syncTimeWindow;
+  private final Meter segmentRollCount;
+  private final Meter segmentPurgeCount;
+  private final Meter purgedBytes;
+  /** The aggregated metrics of the storage directory, if there is any. */
+  private volatile StorageDirMetrics storageDirMetrics;
+
   public RaftLogMetrics(String serverId) {
     this.registry = getMetricRegistryForLogWorker(serverId);
+    this.flushTimer = getTimer(RAFT_LOG_FLUSH_TIME);
+    this.syncTimer = getTimer(RAFT_LOG_SYNC_TIME);
+    this.appendEntryTimer = getTimer(RAFT_LOG_APPEND_ENTRY_LATENCY);
+    this.queueTimer = getTimer(RAFT_LOG_TASK_QUEUE_TIME);
+    this.enqueueDelayTimer = getTimer(RAFT_LOG_TASK_ENQUEUE_DELAY);
+    this.readEntryTimer = getTimer(RAFT_LOG_READ_ENTRY_LATENCY);
+    this.cacheHitCount = registry.counter(RAFT_LOG_CACHE_HIT_COUNT);
+    this.cacheMissCount = registry.counter(RAFT_LOG_CACHE_MISS_COUNT);
+    this.flushCount = registry.counter(RAFT_LOG_FLUSH_COUNT);
+    this.appendEntryCount = registry.counter(RAFT_LOG_APPEND_ENTRY_COUNT);
+    this.bytesWritten = registry.meter(RAFT_LOG_BYTES_WRITTEN);
+    this.preallocatedBytes = registry.meter(RAFT_LOG_PREALLOCATED_BYTES);
+    this.cacheLoadBytes = registry.meter(RAFT_LOG_CACHE_LOAD_BYTES);
+    this.syncCount = registry.meter(RAFT_LOG_SYNC_COUNT);
+    this.syncTimeWindow = registry.timer(RAFT_LOG_SYNC_TIME_WINDOW, RaftLogMetrics::newSlidingWindowTimer);
+    this.segmentRollCount = registry.meter(RAFT_LOG_SEGMENT_ROLL_COUNT);
+    this.segmentPurgeCount = registry.meter(RAFT_LOG_SEGMENT_PURGE_COUNT);
+    this.purgedBytes = registry.meter(RAFT_LOG_PURGED_BYTES);
+  }
+
+  static Timer newSlidingWindowTimer() {
+    return new Timer(new SlidingTimeWindowArrayReservoir(SLIDING_WINDOW_SECONDS, TimeUnit.SECONDS));
+  }
+
+  /** Also record the disk I/O metrics to the given aggregated metrics of the storage directory. */
+  public void setStorageDirMetrics(StorageDirMetrics storageDirMetrics) {
+    this.storageDirMetrics = storageDirMetrics;
   }
 
   private RatisMetricRegistry getMetricRegistryForLogWorker(String serverId) {
@@ -141,15 +218,15 @@ public class RaftLogMetrics extends RatisMetrics {
   }
 
   public Timer getFlushTimer() {
-    return getTimer(RAFT_LOG_FLUSH_TIME);
+    return flushTimer;
   }
 
   public Timer getRaftLogSyncTimer() {
-    return getTimer(RAFT_LOG_SYNC_TIME);
+    return syncTimer;
   }
 
   public void onRaftLogCacheHit() {
-    registry.counter(RAFT_LOG_CACHE_HIT_COUNT).inc();
+    cacheHitCount.inc();
   }
 
   public void onLogEntryCommit(LogEntryProto proto) {
@@ -163,35 +240,41 @@ public class RaftLogMetrics extends RatisMetrics {
   }
 
   public void onRaftLogCacheMiss() {
-    registry.counter(RAFT_LOG_CACHE_MISS_COUNT).inc();
+    cacheMissCount.inc();
   }
 
   public void onRaftLogFlush() {
-    registry.counter(RAFT_LOG_FLUSH_COUNT).inc();
+    flushCount.inc();
   }
 
   public void onRaftLogAppendEntry() {
-    registry.counter(RAFT_LOG_APPEND_ENTRY_COUNT).inc();
+    appendEntryCount.inc();
   }
 
   public Timer getRaftLogAppendEntryTimer() {
-    return getTimer(RAFT_LOG_APPEND_ENTRY_LATENCY);
+    return appendEntryTimer;
   }
 
   public Timer getRaftLogQueueTimer() {
-    return getTimer(RAFT_LOG_TASK_QUEUE_TIME);
+    return queueTimer;
   }
 
   public Timer getRaftLogEnqueueDelayTimer() {
-    return getTimer(RAFT_LOG_TASK_ENQUEUE_DELAY);
+    return enqueueDelayTimer;
   }
 
   public Timer getRaftLogTaskExecutionTimer(String taskName) {
     return getTimer(String.format(RAFT_LOG_TASK_EXECUTION_TIME, taskName));
   }
 
+  /** The same as getRaftLogTaskExecutionTimer(taskClass.getSimpleName().toLowerCase()) but cached. */
+  public Timer getRaftLogTaskExecutionTimer(Class<?> taskClass) {
+    return taskExecutionTimers.computeIfAbsent(taskClass,
+        c -> getRaftLogTaskExecutionTimer(c.getSimpleName().toLowerCase()));
+  }
+
   public Timer getRaftLogReadEntryTimer() {
-    return getTimer(RAFT_LOG_READ_ENTRY_LATENCY);
+    return readEntryTimer;
   }
 
   public Timer getRaftLogLoadSegmentTimer() {
@@ -202,4 +285,52 @@ public class RaftLogMetrics extends RatisMetrics {
     return getTimer(RAFT_LOG_PURGE_METRIC);
   }
 
+  public void onBytesWritten(long written, long preallocated) {
+    final StorageDirMetrics dir = storageDirMetrics;
+    if (written > 0) {
+      bytesWritten.mark(written);
+      if (dir != null) {
+        dir.getBytesWritten().mark(written);
+      }
+    }
+    if (preallocated > 0) {
+      preallocatedBytes.mark(preallocated);
+      if (dir != null) {
+        dir.getPreallocatedBytes().mark(preallocated);
+      }
+    }
+  }
+
+  public void onRaftLogSync(long nanos) {
+    syncTimer.update(nanos, TimeUnit.NANOSECONDS);
+    syncTimeWindow.update(nanos, TimeUnit.NANOSECONDS);
+    syncCount.mark();
+    final StorageDirMetrics dir = storageDirMetrics;
+    if (dir != null) {
+      dir.getSyncTimeWindow().update(nanos, TimeUnit.NANOSECONDS);
+      dir.getSyncCount().mark();
+    }
+  }
+
+  public void onCacheLoad(long bytes) {
+    cacheLoadBytes.mark(bytes);
+    final StorageDirMetrics dir = storageDirMetrics;
+    if (dir != null) {
+      dir.getCacheLoadBytes().mark(bytes);
+    }
+  }
+
+  public void onSegmentRoll() {
+    segmentRollCount.mark();
+  }
+
+  public void onSegmentPurge(long bytes) {
+    segmentPurgeCount.mark();
+    purgedBytes.mark(bytes);
+    final StorageDirMetrics dir = storageDirMetrics;
+    if (dir != null) {
+      dir.getPurgedBytes().mark(bytes);
+    }
+  }
+
 }
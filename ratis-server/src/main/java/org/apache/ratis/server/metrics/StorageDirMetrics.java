@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.metrics;
+
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_BYTES_WRITTEN;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_CACHE_LOAD_BYTES;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_PREALLOCATED_BYTES;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_PURGED_BYTES;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_SYNC_COUNT;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_SYNC_TIME_WINDOW;
+
+import org.apache.ratis.metrics.MetricRegistryInfo;
+import org.apache.ratis.metrics.RatisMetrics;
+import org.apache.ratis.protocol.RaftPeerId;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import java.io.File;
+
+/**
+ * The disk I/O metrics aggregated across all the groups of a server sharing the same storage directory.
+ * The metrics of each group are in {@link RaftLogMetrics}.
+ */
+public final class StorageDirMetrics extends RatisMetrics {
+  public static final String RATIS_STORAGE_DIR_METRICS = "storage_dir";
+  public static final String RATIS_STORAGE_DIR_METRICS_DESC = "Disk I/O metrics of a storage directory";
+
+  private final Meter bytesWritten;
+  private final Meter preallocatedBytes;
+  private final Meter cacheLoadBytes;
+  private final Meter purgedBytes;
+  private final Meter syncCount;
+  private final Timer syncTimeWindow;
+
+  public StorageDirMetrics(RaftPeerId serverId, File dir) {
+    registry = create(new MetricRegistryInfo(serverId + "_" + toMetricName(dir),
+        RATIS_APPLICATION_NAME_METRICS, RATIS_STORAGE_DIR_METRICS, RATIS_STORAGE_DIR_METRICS_DESC));
+    bytesWritten = registry.meter(RAFT_LOG_BYTES_WRITTEN);
+    preallocatedBytes = registry.meter(RAFT_LOG_PREALLOCATED_BYTES);
+    cacheLoadBytes = registry.meter(RAFT_LOG_CACHE_LOAD_BYTES);
+    purgedBytes = registry.meter(RAFT_LOG_PURGED_BYTES);
+    syncCount = registry.meter(RAFT_LOG_SYNC_COUNT);
+    syncTimeWindow = registry.timer(RAFT_LOG_SYNC_TIME_WINDOW, RaftLogMetrics::newSlidingWindowTimer);
+  }
+
+  /** @return the given directory path with the characters other than letters, digits, '-' and '.' replaced. */
+  static String toMetricName(File dir) {
+    return dir.getAbsolutePath().replaceAll("[^A-Za-z0-9.\\-]", "_");
+  }
+
+  Meter getBytesWritten() {
+    return bytesWritten;
+  }
+
+  Meter getPreallocatedBytes() {
+    return preallocatedBytes;
+  }
+
+  Meter getCacheLoadBytes() {
+    return cacheLoadBytes;
+  }
+
+  Meter getPurgedBytes() {
+    return purgedBytes;
+  }
+
+  Meter getSyncCount() {
+    return syncCount;
+  }
+
+  Timer getSyncTimeWindow() {
+    return syncTimeWindow;
+  }
+}
@@ -20,6 +20,9 @@ package org.apache.ratis.server.protocol;
 
 import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
 import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotReplyProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
+import org.apache.ratis.util.JavaUtils;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
@@ -28,4 +31,24 @@ public interface RaftServerAsynchronousProtocol {
 
   CompletableFuture<AppendEntriesReplyProto> appendEntriesAsync(AppendEntriesRequestProto request)
       throws IOException;
+
+  /**
+   * Install the snapshot chunk in the given request asynchronously.
+   * The requests of the same group are processed in order.
+   *
+   * The default implementation installs the chunk synchronously using
+   * {@link RaftServerProtocol#installSnapshot(InstallSnapshotRequestProto)}
+   * and returns a completed future.
+   */
+  default CompletableFuture<InstallSnapshotReplyProto> installSnapshotAsync(InstallSnapshotRequestProto request) {
+    if (!(this instanceof RaftServerProtocol)) {
+      return JavaUtils.completeExceptionally(new UnsupportedOperationException(
+          getClass().getName() + " does not implement " + RaftServerProtocol.class.getSimpleName()));
+    }
+    try {
+      return CompletableFuture.completedFuture(((RaftServerProtocol) this).installSnapshot(request));
+    } catch (Exception e) {
+      return JavaUtils.completeExceptionally(e);
+    }
+  }
 }
@@ -35,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -42,7 +43,9 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 
 /**
@@ -66,13 +69,20 @@ public class LogSegment implements Comparable<Long> {
   }
 
   static class LogRecord {
-    /** starting offset in the file */
+    /**
+     * starting offset in the file.
+     * For the compressed format, it is the offset as if the entries were written uncompressed.
+     */
     private final long offset;
     private final TermIndex termIndex;
 
     LogRecord(long offset, LogEntryProto entry) {
+      this(offset, ServerProtoUtils.toTermIndex(entry));
+    }
+
+    LogRecord(long offset, TermIndex termIndex) {
       this.offset = offset;
-      this.termIndex = ServerProtoUtils.toTermIndex(entry);
+      this.termIndex = termIndex;
     }
 
     TermIndex getTermIndex() {
@@ -96,10 +106,34 @@ public class LogSegment implements Comparable<Long> {
     return new LogSegment(storage, false, start, end, raftLogMetrics);
   }
 
+  /**
+   * Create a closed segment without reading the segment file.
+   * The records are loaded on the first access, or by {@link #load()}.
+   * Before the segment is loaded, its total size is estimated by the file length.
+   */
+  static LogSegment newLazySegment(RaftStorage storage, File file, long start, long end, boolean useIndex,
+      RaftLogMetrics raftLogMetrics) {
+    final LogSegment segment = newCloseSegment(storage, start, end, raftLogMetrics);
+    segment.loaded = false;
+    segment.useIndex = useIndex;
+    segment.totalSize = file.length();
+    return segment;
+  }
+
   public static int readSegmentFile(File file, long start, long end,
       boolean isOpen, CorruptionPolicy corruptionPolicy,
       RaftLogMetrics raftLogMetrics, Consumer<LogEntryProto> entryConsumer) throws
       IOException {
+    return readSegmentFile(file, start, end, isOpen, corruptionPolicy, raftLogMetrics, entryConsumer, null);
+  }
+
+  /**
+   * @param validLengthConsumer if non-null, it consumes the file position after the last entry read.
+   */
+  @SuppressWarnings("parameternumber")
+  private static int readSegmentFile(File file, long start, long end,
+      boolean isOpen, CorruptionPolicy corruptionPolicy, RaftLogMetrics raftLogMetrics,
+      Consumer<LogEntryProto> entryConsumer, LongConsumer validLengthConsumer) throws IOException {
     int count = 0;
     try (SegmentedRaftLogInputStream in = new SegmentedRaftLogInputStream(file, start, end, isOpen, raftLogMetrics)) {
       for(LogEntryProto prev = null, next; (next = in.nextEntry()) != null; prev = next) {
@@ -111,6 +145,9 @@ public class LogSegment implements Comparable<Long> {
         if (entryConsumer != null) {
           entryConsumer.accept(next);
         }
+        if (validLengthConsumer != null) {
+          validLengthConsumer.accept(in.getPosition());
+        }
         count++;
       }
     } catch (IOException ioe) {
@@ -133,17 +170,48 @@ public class LogSegment implements Comparable<Long> {
   static LogSegment loadSegment(RaftStorage storage, File file, long start, long end, boolean isOpen,
       boolean keepEntryInCache, Consumer<LogEntryProto> logConsumer, RaftLogMetrics raftLogMetrics)
       throws IOException {
+    return loadSegment(storage, file, start, end, isOpen, keepEntryInCache, logConsumer, raftLogMetrics, false);
+  }
+
+  /**
+   * Load a segment from the given file.
+   *
+   * When useIndex is true and the segment is closed and not kept in cache,
+   * the segment is loaded from its index file, if the index file exists and is valid.
+   * In such case, only the configuration entries and the last metadata entry are passed to the logConsumer.
+   * Otherwise, the entire segment file is scanned and, for a closed segment, the missing index file is written.
+   */
+  @SuppressWarnings("parameternumber")
+  static LogSegment loadSegment(RaftStorage storage, File file, long start, long end, boolean isOpen,
+      boolean keepEntryInCache, Consumer<LogEntryProto> logConsumer, RaftLogMetrics raftLogMetrics,
+      boolean useIndex) throws IOException {
+    if (useIndex && !isOpen && !keepEntryInCache) {
+      final LogSegment indexed = loadSegmentFromIndex(storage, file, start, end, logConsumer, raftLogMetrics);
+      if (indexed != null) {
+        return indexed;
+      }
+    }
+
     final LogSegment segment = isOpen ?
         LogSegment.newOpenSegment(storage, start, raftLogMetrics) :
         LogSegment.newCloseSegment(storage, start, end, raftLogMetrics);
 
     final CorruptionPolicy corruptionPolicy = CorruptionPolicy.get(storage, RaftStorage::getLogCorruptionPolicy);
+    // For the compressed format, the total size of a segment is counted in the uncompressed entry sizes
+    // so that the valid length of the file has to be obtained from the reader.
+    final boolean compressed = SegmentedRaftLogFormat.isCompressed(file);
+    final AtomicLong validLength = new AtomicLong(SegmentedRaftLogFormat.getHeaderLength());
+    final boolean writeIndex = useIndex && !isOpen && !LogSegmentIndex.getIndexFile(file).exists();
+    final List<LogEntryProto> specialEntries = new ArrayList<>();
     final int entryCount = readSegmentFile(file, start, end, isOpen, corruptionPolicy, raftLogMetrics, entry -> {
       segment.append(keepEntryInCache || isOpen, entry);
+      if (writeIndex && isSpecialEntry(entry)) {
+        specialEntries.add(entry);
+      }
       if (logConsumer != null) {
         logConsumer.accept(entry);
       }
-    });
+    }, compressed? validLength::set: null);
     LOG.info("Successfully read {} entries from segment file {}", entryCount, file);
 
     if (isOpen) {
@@ -160,10 +228,14 @@ public class LogSegment implements Comparable<Long> {
     if (entryCount == 0) {
       // The segment does not have any entries, delete the file.
       FileUtils.deleteFile(file);
+      LogSegmentIndex.deleteIndexFile(file);
       return null;
-    } else if (file.length() > segment.getTotalSize()) {
-      // The segment has extra padding, truncate it.
-      FileUtils.truncateFile(file, segment.getTotalSize());
+    } else {
+      final long length = compressed? validLength.get(): segment.getTotalSize();
+      if (file.length() > length) {
+        // The segment has extra padding, truncate it.
+        FileUtils.truncateFile(file, length);
+      }
     }
 
     try {
@@ -171,9 +243,191 @@ public class LogSegment implements Comparable<Long> {
     } catch (Exception e) {
       throw new IllegalStateException("Failed to read segment file " + file, e);
     }
+
+    if (writeIndex && !corrupted) {
+      try {
+        segment.writeIndexFile(file, specialEntries);
+      } catch (IOException e) {
+        LOG.warn("Failed to write index file for segment file {}", file, e);
+        LogSegmentIndex.deleteIndexFile(file);
+      }
+    }
+    return segment;
+  }
+
+  private static boolean isSpecialEntry(LogEntryProto entry) {
+    return entry.hasConfigurationEntry() || entry.hasMetadataEntry();
+  }
+
+  /** @return the loaded segment or null if the index file does not exist or is invalid. */
+  private static LogSegment loadSegmentFromIndex(RaftStorage storage, File file, long start, long end,
+      Consumer<LogEntryProto> logConsumer, RaftLogMetrics raftLogMetrics) {
+    final LogSegmentIndex index = readIndexFile(file, start, end);
+    if (index == null) {
+      return null;
+    }
+    final LogSegment segment = LogSegment.newCloseSegment(storage, start, end, raftLogMetrics);
+    segment.loadRecords(index, logConsumer);
     return segment;
   }
 
+  /** @return the index of the given segment file or null if the index file does not exist or is invalid. */
+  private static LogSegmentIndex readIndexFile(File file, long start, long end) {
+    final File indexFile = LogSegmentIndex.getIndexFile(file);
+    if (!indexFile.exists()) {
+      return null;
+    }
+    try {
+      return LogSegmentIndex.read(indexFile, file, start, end);
+    } catch (IOException e) {
+      LOG.warn("Failed to read index file {}, fall back to scan the segment file {}", indexFile, file, e);
+      LogSegmentIndex.deleteIndexFile(file);
+      return null;
+    }
+  }
+
+  private void loadRecords(LogSegmentIndex index, Consumer<LogEntryProto> logConsumer) {
+    for (int i = 0; i < index.getNumEntries(); i++) {
+      records.add(new LogRecord(index.getOffset(i), index.getTermIndex(i)));
+    }
+    totalSize = index.getTotalSize();
+    for (LogEntryProto entry : index.getSpecialEntries()) {
+      final TermIndex ti = ServerProtoUtils.toTermIndex(entry);
+      if (entry.hasConfigurationEntry()) {
+        configEntries.add(ti);
+      } else if (entry.hasMetadataEntry()) {
+        lastMetadataEntry = ti;
+      }
+      if (logConsumer != null) {
+        logConsumer.accept(entry);
+      }
+    }
+    assertSegment(index.getStartIndex(), index.getNumEntries(), false, index.getEndIndex());
+    LOG.info("Successfully loaded {} records from the index of segment {}", index.getNumEntries(), this);
+  }
+
+  /**
+   * Load the records of this lazily registered segment, if they are not yet loaded.
+   * The segment file is only read but never modified.
+   */
+  private void loadIfLazy() {
+    if (!loaded) {
+      loadLazily();
+    }
+  }
+
+  private synchronized void loadLazily() {
+    if (loaded) {
+      return;
+    }
+    Preconditions.assertTrue(!isOpen(), () -> "Lazy segment " + this + " is open");
+    final File file = getSegmentFile();
+    final LogSegmentIndex index = useIndex? readIndexFile(file, startIndex, endIndex): null;
+    if (index != null) {
+      loadRecords(index, null);
+    } else {
+      final long expectedEnd = endIndex;
+      // Load into local variables and then publish them at once without changing endIndex
+      // since endIndex is read without holding the lock.
+      final List<LogRecord> loadedRecords = new ArrayList<>();
+      final Set<TermIndex> loadedConfigEntries = new HashSet<>();
+      final TermIndex[] loadedMetadataEntry = {null};
+      final long[] size = {SegmentedRaftLogFormat.getHeaderLength()};
+      final int count;
+      try {
+        count = readSegmentFile(file, startIndex, expectedEnd, false, getLogCorruptionPolicy(), raftLogMetrics,
+            entry -> {
+              final long expectedIndex = startIndex + loadedRecords.size();
+              Preconditions.assertTrue(entry.getIndex() == expectedIndex,
+                  "gap between the expected index %s and the entry %s", expectedIndex, entry.getIndex());
+              final LogRecord record = new LogRecord(size[0], entry);
+              loadedRecords.add(record);
+              if (entry.hasConfigurationEntry()) {
+                loadedConfigEntries.add(record.getTermIndex());
+              } else if (entry.hasMetadataEntry()) {
+                loadedMetadataEntry[0] = record.getTermIndex();
+              }
+              size[0] += getEntrySize(entry);
+            });
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to load segment file " + file, e);
+      }
+      if (count != loadedRecords.size() || startIndex + count - 1 != expectedEnd) {
+        throw new IllegalStateException("Failed to load segment file " + file + ": loaded " + count
+            + " entries but the expected index range is [" + startIndex + ", " + expectedEnd + "]");
+      }
+      records.addAll(loadedRecords);
+      configEntries.addAll(loadedConfigEntries);
+      if (loadedMetadataEntry[0] != null) {
+        lastMetadataEntry = loadedMetadataEntry[0];
+      }
+      totalSize = size[0];
+      LOG.info("Successfully loaded {} entries from segment file {}", count, file);
+    }
+    loaded = true;
+  }
+
+  /**
+   * Write the index file of this closed segment.
+   *
+   * @param file the segment file.
+   * @param specialEntries the configuration entries and the metadata entries, in the index order.
+   */
+  private synchronized void writeIndexFile(File file, List<LogEntryProto> specialEntries) throws IOException {
+    Preconditions.assertTrue(!isOpen(), () -> "Segment " + this + " is still open");
+    final int n = records.size();
+    final long[] terms = new long[n];
+    final long[] offsets = new long[n];
+    for (int i = 0; i < n; i++) {
+      final LogRecord r = records.get(i);
+      terms[i] = r.getTermIndex().getTerm();
+      offsets[i] = r.getOffset();
+    }
+
+    // only the last metadata entry is needed
+    final List<LogEntryProto> entries = new ArrayList<>();
+    LogEntryProto lastMetadata = null;
+    for (LogEntryProto e : specialEntries) {
+      if (e.hasConfigurationEntry()) {
+        entries.add(ServerProtoUtils.removeStateMachineData(e));
+      } else if (e.hasMetadataEntry()) {
+        lastMetadata = e;
+      }
+    }
+    if (lastMetadata != null) {
+      entries.add(lastMetadata);
+      entries.sort(Comparator.comparingLong(LogEntryProto::getIndex));
+    }
+
+    new LogSegmentIndex(startIndex, endIndex, file.length(), totalSize, terms, offsets, entries)
+        .write(LogSegmentIndex.getIndexFile(file));
+  }
+
+  /**
+   * Write the index file of this segment after it is closed and its file is finalized.
+   *
+   * @return true if the index file is written;
+   *         otherwise, return false if the segment has been changed since it was closed.
+   */
+  synchronized boolean writeIndexFile(File file, long expectedEndIndex) throws IOException {
+    if (isOpen() || endIndex != expectedEndIndex || records.size() != numOfEntries()) {
+      return false;
+    }
+    final List<TermIndex> special = new ArrayList<>(configEntries);
+    if (lastMetadataEntry != null) {
+      special.add(lastMetadataEntry);
+    }
+    special.sort(Comparator.naturalOrder());
+
+    final List<LogEntryProto> specialEntries = new ArrayList<>(special.size());
+    for (TermIndex ti : special) {
+      final LogEntryProto cached = getEntryFromCache(ti);
+      specialEntries.add(cached != null ? cached : loadCache(getLogRecord(ti.getIndex())));
+    }
+    writeIndexFile(file, specialEntries);
+    return true;
+  }
+
   private void assertSegment(long expectedStart, int expectedEntryCount, boolean corrupted, long expectedEnd) {
     Preconditions.assertSame(expectedStart, getStartIndex(), "Segment start index");
     Preconditions.assertSame(expectedEntryCount, records.size(), "Number of records");
@@ -199,19 +453,17 @@ public class LogSegment implements Comparable<Long> {
    * In the future we can make the cache loader configurable if necessary.
    */
   class LogEntryLoader extends CacheLoader<LogRecord, LogEntryProto> {
-    private RaftLogMetrics raftLogMetrics;
-
-    LogEntryLoader(RaftLogMetrics raftLogMetrics) {
-      this.raftLogMetrics = raftLogMetrics;
-    }
-
     @Override
     public LogEntryProto load(LogRecord key) throws IOException {
       final File file = getSegmentFile();
       // note the loading should not exceed the endIndex: it is possible that
       // the on-disk log file should be truncated but has not been done yet.
+      final long[] bytesRead = {0};
       readSegmentFile(file, startIndex, endIndex, isOpen, getLogCorruptionPolicy(), raftLogMetrics,
-          entry -> entryCache.put(ServerProtoUtils.toTermIndex(entry), entry));
+          entry -> entryCache.put(ServerProtoUtils.toTermIndex(entry), entry), position -> bytesRead[0] = position);
+      if (raftLogMetrics != null) {
+        raftLogMetrics.onCacheLoad(bytesRead[0]);
+      }
       loadingTimes.incrementAndGet();
       return Objects.requireNonNull(entryCache.get(key.getTermIndex()));
     }
@@ -231,7 +483,14 @@ public class LogSegment implements Comparable<Long> {
   private volatile long endIndex;
   private RaftStorage storage;
   private RaftLogMetrics raftLogMetrics;
-  private final LogEntryLoader cacheLoader = new LogEntryLoader(raftLogMetrics);
+  private final LogEntryLoader cacheLoader = new LogEntryLoader();
+  /**
+   * Is the segment loaded?
+   * It is false for a segment registered lazily, i.e. its records are not yet read from the file.
+   */
+  private volatile boolean loaded = true;
+  /** Use the index file for loading a lazy segment? */
+  private boolean useIndex;
   /** later replace it with a metric */
   private final AtomicInteger loadingTimes = new AtomicInteger();
 
@@ -244,6 +503,8 @@ public class LogSegment implements Comparable<Long> {
    */
   private final Map<TermIndex, LogEntryProto> entryCache = new ConcurrentHashMap<>();
   private final Set<TermIndex> configEntries = new HashSet<>();
+  /** The last metadata entry in this segment, if there is any. */
+  private TermIndex lastMetadataEntry;
 
   private LogSegment(RaftStorage storage, boolean isOpen, long start, long end, RaftLogMetrics raftLogMetrics) {
     this.storage = storage;
@@ -299,6 +560,8 @@ public class LogSegment implements Comparable<Long> {
     }
     if (entry.hasConfigurationEntry()) {
       configEntries.add(record.getTermIndex());
+    } else if (entry.hasMetadataEntry()) {
+      lastMetadataEntry = record.getTermIndex();
     }
     totalSize += getEntrySize(entry);
     endIndex = entry.getIndex();
@@ -323,8 +586,18 @@ public class LogSegment implements Comparable<Long> {
     }
   }
 
+  boolean isLoaded() {
+    return loaded;
+  }
+
+  /** Load this segment if it is lazy. */
+  void load() {
+    loadIfLazy();
+  }
+
   LogRecord getLogRecord(long index) {
     if (index >= startIndex && index <= endIndex) {
+      loadIfLazy();
       return records.get(Math.toIntExact(index - startIndex));
     }
     return null;
@@ -335,14 +608,18 @@ public class LogSegment implements Comparable<Long> {
   }
 
   TermIndex getLastTermIndex() {
+    loadIfLazy();
     LogRecord last = getLastRecord();
     return last == null ? null : last.getTermIndex();
   }
 
   boolean isConfigEntry(TermIndex ti) {
-    return configEntries.contains(ti);
+    // A lazy segment only has entries included in the snapshot, whose configuration has already been applied.
+    // Do not load it since the callers only check the newly committed entries.
+    return loaded && configEntries.contains(ti);
   }
 
+  /** @return the total size, which is an estimation if this is a lazy segment not yet loaded. */
   long getTotalSize() {
     return totalSize;
   }
@@ -352,12 +629,17 @@ public class LogSegment implements Comparable<Long> {
    */
   synchronized void truncate(long fromIndex) {
     Preconditions.assertTrue(fromIndex >= startIndex && fromIndex <= endIndex);
+    loadIfLazy();
     for (long index = endIndex; index >= fromIndex; index--) {
       LogRecord removed = records.remove(Math.toIntExact(index - startIndex));
       entryCache.remove(removed.getTermIndex());
       configEntries.remove(removed.getTermIndex());
       totalSize = removed.offset;
     }
+    if (lastMetadataEntry != null && lastMetadataEntry.getIndex() >= fromIndex) {
+      // the previous metadata entry, if there is any, is unknown; it will be found when the segment is reloaded.
+      lastMetadataEntry = null;
+    }
     isOpen = false;
     this.endIndex = fromIndex - 1;
   }
@@ -383,7 +665,9 @@ public class LogSegment implements Comparable<Long> {
     records.clear();
     entryCache.clear();
     configEntries.clear();
+    lastMetadataEntry = null;
     endIndex = startIndex - 1;
+    loaded = true;
   }
 
   int getLoadingTimes() {
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.raftlog.segmented;
+
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.util.AtomicFileOutputStream;
+import org.apache.ratis.util.ChecksumUtils;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.Preconditions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ * The index of a closed log segment, persisted in a sidecar file next to the segment file
+ * so that the segment can be loaded without reading all its entries.
+ *
+ * The index file has the following layout:
+ * <pre>
+ *   header "RaftIdx1"
+ *   startIndex, endIndex, segment file length, total (uncompressed) size
+ *   term runs: number of runs followed by (term, number of entries) pairs
+ *   entry sizes: one int per entry
+ *   special entries: number of entries followed by (length, {@link LogEntryProto}) pairs
+ *   a 4-byte CRC32C checksum of all the bytes above
+ * </pre>
+ * The special entries are the configuration entries and the last metadata entry of the segment,
+ * i.e. the entries which have to be passed to the log consumer when the log is opened.
+ */
+final class LogSegmentIndex {
+  private static final byte[] HEADER_BYTES = "RaftIdx1".getBytes(StandardCharsets.UTF_8);
+  static final String FILE_SUFFIX = ".idx";
+
+  static File getIndexFile(File segmentFile) {
+    return new File(segmentFile.getParentFile(), segmentFile.getName() + FILE_SUFFIX);
+  }
+
+  /** Delete the index file of the given segment file, if it exists. */
+  static void deleteIndexFile(File segmentFile) {
+    final File indexFile = getIndexFile(segmentFile);
+    if (indexFile.exists()) {
+      FileUtils.deleteFileQuietly(indexFile);
+    }
+  }
+
+  private final long startIndex;
+  private final long endIndex;
+  private final long fileLength;
+  private final long totalSize;
+  private final long[] terms;
+  private final long[] offsets;
+  private final List<LogEntryProto> specialEntries;
+
+  @SuppressWarnings("parameternumber")
+  LogSegmentIndex(long startIndex, long endIndex, long fileLength, long totalSize,
+      long[] terms, long[] offsets, List<LogEntryProto> specialEntries) {
+    Preconditions.assertTrue(endIndex >= startIndex, () -> "endIndex = " + endIndex + " < startIndex = " + startIndex);
+    final int n = Math.toIntExact(endIndex - startIndex + 1);
+    Preconditions.assertSame(n, terms.length, "terms.length");
+    Preconditions.assertSame(n, offsets.length, "offsets.length");
+    this.startIndex = startIndex;
+    this.endIndex = endIndex;
+    this.fileLength = fileLength;
+    this.totalSize = totalSize;
+    this.terms = terms;
+    this.offsets = offsets;
+    this.specialEntries = Collections.unmodifiableList(specialEntries);
+  }
+
+  long getStartIndex() {
+    return startIndex;
+  }
+
+  long getEndIndex() {
+    return endIndex;
+  }
+
+  int getNumEntries() {
+    return offsets.length;
+  }
+
+  long getOffset(int i) {
+    return offsets[i];
+  }
+
+  TermIndex getTermIndex(int i) {
+    return TermIndex.newTermIndex(terms[i], startIndex + i);
+  }
+
+  long getTotalSize() {
+    return totalSize;
+  }
+
+  List<LogEntryProto> getSpecialEntries() {
+    return specialEntries;
+  }
+
+  void write(File indexFile) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 4 * offsets.length);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.write(HEADER_BYTES);
+      out.writeLong(startIndex);
+      out.writeLong(endIndex);
+      out.writeLong(fileLength);
+      out.writeLong(totalSize);
+
+      // terms rarely change within a segment, write them as runs
+      final List<long[]> runs = new ArrayList<>();
+      for (int i = 0; i < terms.length; ) {
+        int j = i + 1;
+        while (j < terms.length && terms[j] == terms[i]) {
+          j++;
+        }
+        runs.add(new long[]{terms[i], j - i});
+        i = j;
+      }
+      out.writeInt(runs.size());
+      for (long[] run : runs) {
+        out.writeLong(run[0]);
+        out.writeInt(Math.toIntExact(run[1]));
+      }
+
+      for (int i = 0; i < offsets.length; i++) {
+        final long next = i + 1 < offsets.length ? offsets[i + 1] : totalSize;
+        out.writeInt(Math.toIntExact(next - offsets[i]));
+      }
+
+      out.writeInt(specialEntries.size());
+      for (LogEntryProto e : specialEntries) {
+        final byte[] b = e.toByteArray();
+        out.writeInt(b.length);
+        out.write(b);
+      }
+      out.writeInt(checksum(bytes.toByteArray(), bytes.size()));
+    }
+
+    try (OutputStream out = new AtomicFileOutputStream(indexFile)) {
+      bytes.writeTo(out);
+    }
+  }
+
+  private static int checksum(byte[] bytes, int length) {
+    final Checksum checksum = ChecksumUtils.newCrc32c();
+    checksum.update(bytes, 0, length);
+    return (int) checksum.getValue();
+  }
+
+  /**
+   * Read the index of the given segment file.
+   *
+   * @throws IOException if the index file cannot be read,
+   *                     or it is corrupted or inconsistent with the segment file.
+   */
+  static LogSegmentIndex read(File indexFile, File segmentFile, long startIndex, long endIndex) throws IOException {
+    final byte[] bytes = Files.readAllBytes(indexFile.toPath());
+    final int length = bytes.length - 4;
+    if (length < HEADER_BYTES.length) {
+      throw new IOException("Index file " + indexFile + " is too short: length = " + bytes.length);
+    }
+    if (!Arrays.equals(HEADER_BYTES, Arrays.copyOf(bytes, HEADER_BYTES.length))) {
+      throw new IOException("Index file " + indexFile + " has an invalid header");
+    }
+    final int expected = ((bytes[length] & 0xFF) << 24) | ((bytes[length + 1] & 0xFF) << 16)
+        | ((bytes[length + 2] & 0xFF) << 8) | (bytes[length + 3] & 0xFF);
+    final int computed = checksum(bytes, length);
+    if (expected != computed) {
+      throw new IOException("Index file " + indexFile + " has checksum mismatched: expected = "
+          + Integer.toHexString(expected) + " != computed = " + Integer.toHexString(computed));
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+      in.readFully(new byte[HEADER_BYTES.length]);
+      final long start = in.readLong();
+      final long end = in.readLong();
+      final long fileLength = in.readLong();
+      final long totalSize = in.readLong();
+      if (start != startIndex || end != endIndex) {
+        throw new IOException("Index file " + indexFile + " has range [" + start + ", " + end
+            + "] but the segment range is [" + startIndex + ", " + endIndex + "]");
+      }
+      if (fileLength != segmentFile.length()) {
+        throw new IOException("Index file " + indexFile + " has file length " + fileLength
+            + " but the segment file length is " + segmentFile.length());
+      }
+
+      final int n = Math.toIntExact(end - start + 1);
+      final long[] terms = new long[n];
+      final int numRuns = in.readInt();
+      int i = 0;
+      for (int r = 0; r < numRuns; r++) {
+        final long term = in.readLong();
+        final int count = in.readInt();
+        if (count <= 0 || i + count > n) {
+          throw new IOException("Index file " + indexFile + " has an invalid term run: count = " + count);
+        }
+        Arrays.fill(terms, i, i + count, term);
+        i += count;
+      }
+      if (i != n) {
+        throw new IOException("Index file " + indexFile + " has " + i + " terms but expected " + n);
+      }
+
+      final long[] offsets = new long[n];
+      long offset = SegmentedRaftLogFormat.getHeaderLength();
+      for (i = 0; i < n; i++) {
+        offsets[i] = offset;
+        offset += in.readInt();
+      }
+      if (offset != totalSize) {
+        throw new IOException("Index file " + indexFile + " has total size " + totalSize
+            + " but the entry sizes sum up to " + offset);
+      }
+
+      final int numSpecialEntries = in.readInt();
+      final List<LogEntryProto> specialEntries = new ArrayList<>(numSpecialEntries);
+      for (int k = 0; k < numSpecialEntries; k++) {
+        final byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        specialEntries.add(LogEntryProto.parseFrom(b));
+      }
+
+      if (in.available() != 0) {
+        throw new IOException("Index file " + indexFile + " has " + in.available() + " trailing bytes");
+      }
+      return new LogSegmentIndex(start, end, fileLength, totalSize, terms, offsets, specialEntries);
+    } catch (RuntimeException e) {
+      throw new IOException("Failed to read index file " + indexFile, e);
+    }
+  }
+}
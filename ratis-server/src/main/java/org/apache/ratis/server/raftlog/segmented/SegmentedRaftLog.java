@@ -34,17 +34,21 @@ import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
 import org.apache.ratis.util.AutoCloseableLock;
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import com.codahale.metrics.Timer;
@@ -81,7 +85,8 @@ public class SegmentedRaftLog extends RaftLog {
    */
   abstract static class Task {
     private final CompletableFuture<Long> future = new CompletableFuture<>();
-    private Timer.Context queueTimerContext;
+    private Timer queueTimer;
+    private long enqueueTime;
 
     CompletableFuture<Long> getFuture() {
       return future;
@@ -105,13 +110,14 @@ public class SegmentedRaftLog extends RaftLog {
 
     abstract long getEndIndex();
 
-    void startTimerOnEnqueue(Timer queueTimer) {
-      queueTimerContext = queueTimer.time();
+    void startTimerOnEnqueue(Timer timer) {
+      queueTimer = timer;
+      enqueueTime = System.nanoTime();
     }
 
     void stopTimerOnDequeue() {
-      if (queueTimerContext != null) {
-        queueTimerContext.stop();
+      if (queueTimer != null) {
+        queueTimer.update(System.nanoTime() - enqueueTime, TimeUnit.NANOSECONDS);
       }
     }
 
@@ -190,6 +196,9 @@ public class SegmentedRaftLog extends RaftLog {
   private final SegmentedRaftLogWorker fileLogWorker;
   private final long segmentMaxSize;
   private final boolean stateMachineCachingEnabled;
+  private final boolean lazyLoadEnabled;
+  private final boolean lazyLoadWarmUpEnabled;
+  private volatile Daemon warmUpDaemon;
 
   public SegmentedRaftLog(RaftGroupMemberId memberId, RaftServerImpl server,
       RaftStorage storage, long lastIndexInSnapshot, RaftProperties properties) {
@@ -210,6 +219,15 @@ public class SegmentedRaftLog extends RaftLog {
     this.fileLogWorker = new SegmentedRaftLogWorker(memberId, stateMachine,
         submitUpdateCommitEvent, server, storage, properties, getRaftLogMetrics());
     stateMachineCachingEnabled = RaftServerConfigKeys.Log.StateMachineData.cachingEnabled(properties);
+    this.lazyLoadEnabled = RaftServerConfigKeys.Log.segmentLazyLoadEnabled(properties);
+    this.lazyLoadWarmUpEnabled = RaftServerConfigKeys.Log.segmentLazyLoadWarmUpEnabled(properties);
+    if (server != null && server.getProxy() != null) {
+      // the group directory is a subdirectory of the configured storage directory
+      final File volume = storage.getStorageDir().getRoot().getParentFile();
+      if (volume != null) {
+        getRaftLogMetrics().setStorageDirMetrics(server.getProxy().getStorageDirMetrics(volume));
+      }
+    }
   }
 
   @Override
@@ -224,6 +242,54 @@ public class SegmentedRaftLog extends RaftLog {
     fileLogWorker.start(Math.max(cache.getEndIndex(), lastIndexInSnapshot),
         Math.min(cache.getLastIndexInClosedSegments(), lastIndexInSnapshot),
         openSegmentFile);
+    if (lazyLoadWarmUpEnabled) {
+      startWarmUp();
+    }
+  }
+
+  /** Load the lazy segments in the background. */
+  private void startWarmUp() {
+    final List<LogSegment> lazySegments = cache.getLazySegments();
+    if (lazySegments.isEmpty()) {
+      return;
+    }
+    warmUpDaemon = new Daemon(() -> {
+      int count = 0;
+      for (LogSegment segment : lazySegments) {
+        if (Thread.currentThread().isInterrupted()) {
+          LOG.info("{}: Warm-up interrupted after {} out of {} lazy segment(s)", getName(), count, lazySegments.size());
+          return;
+        }
+        // skip the segment if it has been purged or truncated, or the log has been closed.
+        if (cache.getSegment(segment.getStartIndex()) == segment && !segment.isLoaded()) {
+          try {
+            segment.load();
+            count++;
+          } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+              continue;
+            }
+            LOG.warn("{}: Failed to warm up segment {}", getName(), segment, e);
+          }
+        }
+      }
+      LOG.info("{}: Warmed up {} out of {} lazy segment(s)", getName(), count, lazySegments.size());
+    }, getName() + "-SegmentWarmUp");
+    warmUpDaemon.start();
+  }
+
+  private void stopWarmUp() throws InterruptedIOException {
+    final Daemon daemon = warmUpDaemon;
+    if (daemon == null) {
+      return;
+    }
+    daemon.interrupt();
+    try {
+      daemon.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw IOUtils.toInterruptedIOException(getName() + ": Interrupted when stopping " + daemon.getName(), e);
+    }
   }
 
   @Override
@@ -236,6 +302,7 @@ public class SegmentedRaftLog extends RaftLog {
     try(AutoCloseableLock writeLock = writeLock()) {
       List<LogPathAndIndex> paths = storage.getStorageDir().getLogSegmentFiles();
       int i = 0;
+      int lazyCount = 0;
       for (LogPathAndIndex pi : paths) {
         // During the initial loading, we can only confirm the committed
         // index based on the snapshot. This means if a log segment is not kept
@@ -245,11 +312,25 @@ public class SegmentedRaftLog extends RaftLog {
         // so that during the initial loading we can apply part of the log
         // entries to the state machine
         boolean keepEntryInCache = (paths.size() - i++) <= cache.getMaxCachedSegments();
+        // The closed segments included in the snapshot are not needed for determining the configuration
+        // and the commit index.  Keep the segment with lastIndexInSnapshot and all the later segments eager
+        // so that truncation, which is always after the commit index, never makes a lazy segment the last one;
+        // then getLastEntryTermIndex does not load any lazy segment.
+        if (lazyLoadEnabled && !keepEntryInCache && !pi.isOpen() && i < paths.size()
+            && pi.getEndIndex() < lastIndexInSnapshot) {
+          cache.registerLazySegment(pi);
+          lazyCount++;
+          continue;
+        }
         final Timer.Context loadSegmentContext = getRaftLogMetrics().getRaftLogLoadSegmentTimer().time();
         cache.loadSegment(pi, keepEntryInCache, logConsumer);
         loadSegmentContext.stop();
       }
 
+      if (lazyCount > 0) {
+        LOG.info("{}: Registered {} lazy segment(s) out of {}", getName(), lazyCount, paths.size());
+      }
+
       // if the largest index is smaller than the last index in snapshot, we do
       // not load the log to avoid holes between log segments. This may happen
       // when the local I/O worker is too slow to persist log (slower than
@@ -272,7 +353,12 @@ public class SegmentedRaftLog extends RaftLog {
       if (segment == null) {
         return null;
       }
-      record = segment.getLogRecord(index);
+      try {
+        record = segment.getLogRecord(index);
+      } catch (IllegalStateException e) {
+        // failed to load a lazy segment
+        throw new RaftLogIOException(getName() + ": Failed to get log entry " + index, e);
+      }
       if (record == null) {
         return null;
       }
@@ -380,7 +466,7 @@ public class SegmentedRaftLog extends RaftLog {
 
   @Override
   protected CompletableFuture<Long> appendEntryImpl(LogEntryProto entry) {
-    final Timer.Context context = getRaftLogMetrics().getRaftLogAppendEntryTimer().time();
+    final long startTime = System.nanoTime();
     checkLogState();
     if (LOG.isTraceEnabled()) {
       LOG.trace("{}: appendEntry {}", getName(), ServerProtoUtils.toLogEntryString(entry));
@@ -423,7 +509,7 @@ public class SegmentedRaftLog extends RaftLog {
       LOG.error("{}: Failed to append {}", getName(), ServerProtoUtils.toLogEntryString(entry), e);
       throw e;
     } finally {
-      context.stop();
+      getRaftLogMetrics().getRaftLogAppendEntryTimer().update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
     }
   }
 
@@ -514,6 +600,7 @@ public class SegmentedRaftLog extends RaftLog {
 
   @Override
   public void close() throws IOException {
+    stopWarmUp();
     try(AutoCloseableLock writeLock = writeLock()) {
       super.close();
       cache.close();
@@ -39,6 +39,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * In-memory RaftLog Cache. Currently we provide a simple implementation that
@@ -138,12 +139,10 @@ public class SegmentedRaftLogCache {
     private final Object name;
     private final List<LogSegment> segments = new ArrayList<>();
     private final AutoCloseableReadWriteLock lock;
-    private long sizeInBytes;
 
     LogSegmentList(Object name) {
       this.name = name;
       this.lock = new AutoCloseableReadWriteLock(name);
-      this.sizeInBytes = 0;
     }
 
     AutoCloseableLock readLock() {
@@ -168,8 +167,21 @@ public class SegmentedRaftLogCache {
       }
     }
 
+    /**
+     * The size is computed on demand
+     * since the size of a lazy segment is only an estimation until the segment is loaded.
+     */
     long sizeInBytes() {
-      return sizeInBytes;
+      try(AutoCloseableLock readLock = readLock()) {
+        return segments.stream().mapToLong(LogSegment::getTotalSize).sum();
+      }
+    }
+
+    /** @return the segments which are not yet loaded. */
+    List<LogSegment> getLazySegments() {
+      try(AutoCloseableLock readLock = readLock()) {
+        return segments.stream().filter(s -> !s.isLoaded()).collect(Collectors.toList());
+      }
     }
 
     long countCached() {
@@ -232,7 +244,6 @@ public class SegmentedRaftLogCache {
 
     boolean add(LogSegment logSegment) {
       try(AutoCloseableLock writeLock = writeLock()) {
-        sizeInBytes += logSegment.getTotalSize();
         return segments.add(logSegment);
       }
     }
@@ -241,7 +252,6 @@ public class SegmentedRaftLogCache {
       try(AutoCloseableLock writeLock = writeLock()) {
         segments.forEach(LogSegment::clear);
         segments.clear();
-        sizeInBytes = 0;
       }
     }
 
@@ -261,7 +271,6 @@ public class SegmentedRaftLogCache {
               final SegmentFileInfo info = new SegmentFileInfo(openSegment.getStartIndex(),
                   oldEnd, true, openSegment.getTotalSize(), openSegment.getEndIndex());
               segments.add(openSegment);
-              sizeInBytes += openSegment.getTotalSize();
               clearOpenSegment.run();
               return new TruncationSegments(info, Collections.emptyList());
             }
@@ -270,15 +279,12 @@ public class SegmentedRaftLogCache {
           final LogSegment ts = segments.get(segmentIndex);
           final long oldEnd = ts.getEndIndex();
           final List<SegmentFileInfo> list = new ArrayList<>();
-          sizeInBytes -= ts.getTotalSize();
           ts.truncate(index);
-          sizeInBytes += ts.getTotalSize();
           final int size = segments.size();
           for(int i = size - 1;
               i >= (ts.numOfEntries() == 0? segmentIndex: segmentIndex + 1);
               i--) {
             LogSegment s = segments.remove(i);
-            sizeInBytes -= s.getTotalSize();
             final long endOfS = i == segmentIndex? oldEnd: s.getEndIndex();
             s.clear();
             list.add(new SegmentFileInfo(s.getStartIndex(), endOfS, false, 0, s.getEndIndex()));
@@ -304,7 +310,6 @@ public class SegmentedRaftLogCache {
             list.add(SegmentFileInfo.newClosedSegmentFileInfo(ls));
           }
           segments.clear();
-          sizeInBytes = 0;
         } else if (segmentIndex >= 0) {
           // we start to purge the closedSegments which do not overlap with index.
           LogSegment overlappedSegment = segments.get(segmentIndex);
@@ -314,7 +319,6 @@ public class SegmentedRaftLogCache {
               segmentIndex : segmentIndex - 1;
           for (int i = startIndex; i >= 0; i--) {
             LogSegment segment = segments.remove(i);
-            sizeInBytes -= segment.getTotalSize();
             list.add(SegmentFileInfo.newClosedSegmentFileInfo(segment));
           }
         } else {
@@ -342,6 +346,7 @@ public class SegmentedRaftLogCache {
   private final RaftLogMetrics raftLogMetrics;
 
   private final int maxCachedSegments;
+  private final boolean segmentIndexEnabled;
   private final CacheInvalidationPolicy evictionPolicy = new CacheInvalidationPolicyDefault();
 
   SegmentedRaftLogCache(Object name, RaftStorage storage, RaftProperties properties) {
@@ -358,6 +363,7 @@ public class SegmentedRaftLogCache {
     this.raftLogMetrics.addClosedSegmentsSizeInBytes(this);
     this.raftLogMetrics.addOpenSegmentSizeInBytes(this);
     this.maxCachedSegments = RaftServerConfigKeys.Log.segmentCacheNumMax(properties);
+    this.segmentIndexEnabled = RaftServerConfigKeys.Log.segmentIndexEnabled(properties);
   }
 
   int getMaxCachedSegments() {
@@ -366,13 +372,24 @@ public class SegmentedRaftLogCache {
 
   void loadSegment(LogPathAndIndex pi, boolean keepEntryInCache,
       Consumer<LogEntryProto> logConsumer) throws IOException {
-    LogSegment logSegment = LogSegment.loadSegment(storage, pi.getPath().toFile(),
-        pi.getStartIndex(), pi.getEndIndex(), pi.isOpen(), keepEntryInCache, logConsumer, raftLogMetrics);
+    LogSegment logSegment = LogSegment.loadSegment(storage, pi.getPath().toFile(), pi.getStartIndex(),
+        pi.getEndIndex(), pi.isOpen(), keepEntryInCache, logConsumer, raftLogMetrics, segmentIndexEnabled);
     if (logSegment != null) {
       addSegment(logSegment);
     }
   }
 
+  /** Register the given closed segment without reading the segment file. */
+  void registerLazySegment(LogPathAndIndex pi) {
+    Preconditions.assertTrue(!pi.isOpen(), () -> "Segment " + pi + " is open");
+    addSegment(LogSegment.newLazySegment(storage, pi.getPath().toFile(), pi.getStartIndex(), pi.getEndIndex(),
+        segmentIndexEnabled, raftLogMetrics));
+  }
+
+  List<LogSegment> getLazySegments() {
+    return closedSegments.getLazySegments();
+  }
+
   public long getCachedSegmentNum() {
     return closedSegments.countCached();
   }
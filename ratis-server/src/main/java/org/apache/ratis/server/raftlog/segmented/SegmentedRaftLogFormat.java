@@ -20,18 +20,37 @@ package org.apache.ratis.server.raftlog.segmented;
 import org.apache.ratis.util.Preconditions;
 import org.apache.ratis.util.function.CheckedFunction;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
+/**
+ * The format of a log segment file.
+ *
+ * A segment file starts with a header.
+ * The header "RaftLog1" indicates that the log entries are written one by one.
+ * The header "RaftLog2" indicates that the log entries are written in compressed blocks,
+ * where each block is a {@link org.apache.ratis.proto.RaftProtos.CompressedLogEntriesProto}.
+ * In both formats, each record is written as a var-int length, the record and a 4-byte checksum.
+ */
 public interface SegmentedRaftLogFormat {
   class Internal {
     private static final byte[] HEADER_BYTES = "RaftLog1".getBytes(StandardCharsets.UTF_8);
     private static final byte[] HEADER_BYTES_CLONE = HEADER_BYTES.clone();
+    private static final byte[] COMPRESSED_HEADER_BYTES = "RaftLog2".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMPRESSED_HEADER_BYTES_CLONE = COMPRESSED_HEADER_BYTES.clone();
     private static final byte TERMINATOR_BYTE = 0;
 
+    private static byte[] getHeaderBytes(boolean compressed) {
+      return compressed? COMPRESSED_HEADER_BYTES: HEADER_BYTES;
+    }
+
     private static void assertHeader() {
       Preconditions.assertTrue(Arrays.equals(HEADER_BYTES, HEADER_BYTES_CLONE));
+      Preconditions.assertTrue(Arrays.equals(COMPRESSED_HEADER_BYTES, COMPRESSED_HEADER_BYTES_CLONE));
     }
   }
 
@@ -40,9 +59,14 @@ public interface SegmentedRaftLogFormat {
   }
 
   static int matchHeader(byte[] bytes, int offset, int length) {
+    return matchHeader(bytes, offset, length, false);
+  }
+
+  static int matchHeader(byte[] bytes, int offset, int length, boolean compressed) {
     Preconditions.assertTrue(length <= getHeaderLength());
+    final byte[] header = Internal.getHeaderBytes(compressed);
     for(int i = 0; i < length; i++) {
-      if (bytes[offset + i] != Internal.HEADER_BYTES[i]) {
+      if (bytes[offset + i] != header[i]) {
         return i;
       }
     }
@@ -50,11 +74,25 @@ public interface SegmentedRaftLogFormat {
   }
 
   static <T> T applyHeaderTo(CheckedFunction<byte[], T, IOException> function) throws IOException {
-    final T t = function.apply(Internal.HEADER_BYTES);
+    return applyHeaderTo(false, function);
+  }
+
+  static <T> T applyHeaderTo(boolean compressed, CheckedFunction<byte[], T, IOException> function)
+      throws IOException {
+    final T t = function.apply(Internal.getHeaderBytes(compressed));
     Internal.assertHeader(); // assert that the header is unmodified by the function.
     return t;
   }
 
+  /** @return true iff the given file starts with the compressed header. */
+  static boolean isCompressed(File file) throws IOException {
+    final byte[] header = new byte[getHeaderLength()];
+    try (InputStream in = new FileInputStream(file)) {
+      final int n = in.read(header);
+      return n == header.length && matchHeader(header, 0, n, true) == n;
+    }
+  }
+
   static byte getTerminator() {
     return Internal.TERMINATOR_BYTE;
   }
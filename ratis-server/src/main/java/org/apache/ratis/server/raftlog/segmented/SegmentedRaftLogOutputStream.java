@@ -17,11 +17,16 @@
  */
 package org.apache.ratis.server.raftlog.segmented;
 
+import org.apache.ratis.proto.RaftProtos.CompressedLogEntriesProto;
+import org.apache.ratis.proto.RaftProtos.CompressionType;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.ratis.thirdparty.com.google.protobuf.MessageLite;
+import org.apache.ratis.util.ChecksumUtils;
+import org.apache.ratis.util.CompressionUtils;
 import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.Preconditions;
-import org.apache.ratis.util.PureJavaCrc32C;
 import org.apache.ratis.util.function.CheckedConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,23 +58,58 @@ public class SegmentedRaftLogOutputStream implements Closeable {
   private final long segmentMaxSize;
   private final long preallocatedSize;
 
+  private final CompressionType compressionType;
+  private final int blockSize;
+  /** The uncompressed entries of the current block; null if this stream is not compressed. */
+  private final ByteString.Output block;
+  private int blockEntryCount = 0;
+
+  /** The number of bytes written by this stream; written by a single thread but may be read by others. */
+  private volatile long writtenBytes = 0;
+  /** The number of bytes preallocated by this stream; written by a single thread but may be read by others. */
+  private volatile long preallocatedBytes = 0;
+
   public SegmentedRaftLogOutputStream(File file, boolean append, long segmentMaxSize,
       long preallocatedSize, ByteBuffer byteBuffer)
       throws IOException {
+    this(file, append, segmentMaxSize, preallocatedSize, byteBuffer, CompressionType.NONE, 0);
+  }
+
+  /**
+   * @param compressionType the compression type for a new file.
+   *                        When appending to an existing file, the format of the file is used.
+   * @param blockSize the max uncompressed size of a compressed block.
+   */
+  @SuppressWarnings("parameternumber")
+  public SegmentedRaftLogOutputStream(File file, boolean append, long segmentMaxSize,
+      long preallocatedSize, ByteBuffer byteBuffer, CompressionType compressionType, int blockSize)
+      throws IOException {
     this.file = file;
-    this.checksum = new PureJavaCrc32C();
+    this.checksum = ChecksumUtils.newCrc32c();
     this.segmentMaxSize = segmentMaxSize;
     this.preallocatedSize = preallocatedSize;
+    // An existing file must be appended in its own format; each compressed block records its own type.
+    this.compressionType = !append? compressionType
+        : !SegmentedRaftLogFormat.isCompressed(file)? CompressionType.NONE
+        : compressionType != CompressionType.NONE? compressionType
+        : CompressionType.DEFLATE;
+    this.blockSize = blockSize;
+    this.block = isCompressed()? ByteString.newOutput(blockSize): null;
     this.out = BufferedWriteChannel.open(file, append, byteBuffer);
 
     if (!append) {
       // write header
       preallocateIfNecessary(SegmentedRaftLogFormat.getHeaderLength());
-      SegmentedRaftLogFormat.applyHeaderTo(CheckedConsumer.asCheckedFunction(out::write));
+      SegmentedRaftLogFormat.applyHeaderTo(isCompressed(), CheckedConsumer.asCheckedFunction(out::write));
+      writtenBytes += SegmentedRaftLogFormat.getHeaderLength();
       out.flush();
     }
   }
 
+  boolean isCompressed() {
+    return compressionType != CompressionType.NONE;
+  }
+
   /**
    * Write the given entry to this output stream.
    *
@@ -81,22 +121,63 @@ public class SegmentedRaftLogOutputStream implements Closeable {
    * Size in bytes to be written:
    *   (size to encode n) + n + (checksum size),
    *   where n is the entry serialized size and the checksum size is 4.
+   *
+   * For the compressed format, the entry is first added to the current block.
+   * The block is written in the format above
+   * when it reaches the block size or when this stream is flushed.
    */
   public void write(LogEntryProto entry) throws IOException {
-    final int serialized = entry.getSerializedSize();
+    if (isCompressed()) {
+      entry.writeDelimitedTo(block);
+      blockEntryCount++;
+      if (block.size() >= blockSize) {
+        writeBlock();
+      }
+    } else {
+      writeRecord(entry);
+    }
+  }
+
+  private void writeBlock() throws IOException {
+    if (blockEntryCount == 0) {
+      return;
+    }
+    final ByteString uncompressed = block.toByteString();
+    final CompressedLogEntriesProto proto = CompressedLogEntriesProto.newBuilder()
+        .setType(compressionType)
+        .setEntryCount(blockEntryCount)
+        .setUncompressedSize(uncompressed.size())
+        .setData(CompressionUtils.compress(compressionType, uncompressed))
+        .build();
+    block.reset();
+    blockEntryCount = 0;
+    writeRecord(proto);
+  }
+
+  private void writeRecord(MessageLite record) throws IOException {
+    final int serialized = record.getSerializedSize();
     final int proto = CodedOutputStream.computeUInt32SizeNoTag(serialized) + serialized;
     final byte[] buf = new byte[proto + 4]; // proto and 4-byte checksum
     preallocateIfNecessary(buf.length);
 
     CodedOutputStream cout = CodedOutputStream.newInstance(buf);
     cout.writeUInt32NoTag(serialized);
-    entry.writeTo(cout);
+    record.writeTo(cout);
 
     checksum.reset();
     checksum.update(buf, 0, proto);
     ByteBuffer.wrap(buf, proto, 4).putInt((int) checksum.getValue());
 
     out.write(buf);
+    writtenBytes += buf.length;
+  }
+
+  long getWrittenBytes() {
+    return writtenBytes;
+  }
+
+  long getPreallocatedBytes() {
+    return preallocatedBytes;
   }
 
   @Override
@@ -114,6 +195,7 @@ public class SegmentedRaftLogOutputStream implements Closeable {
    */
   public void flush() throws IOException {
     try {
+      writeBlock();
       out.flush();
     } catch (IOException ioe) {
       throw new IOException("Failed to flush " + this, ioe);
@@ -131,6 +213,7 @@ public class SegmentedRaftLogOutputStream implements Closeable {
     Preconditions.assertTrue(actual >= outstanding);
     final long allocated = IOUtils.preallocate(fc, actual, FILL);
     LOG.debug("Pre-allocated {} bytes for {}", allocated, this);
+    preallocatedBytes += allocated;
     return allocated;
   }
 
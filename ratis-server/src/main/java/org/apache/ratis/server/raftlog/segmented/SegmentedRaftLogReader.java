@@ -20,22 +20,27 @@ package org.apache.ratis.server.raftlog.segmented;
 import org.apache.ratis.io.CorruptedFileException;
 import org.apache.ratis.protocol.exceptions.ChecksumException;
 import org.apache.ratis.server.impl.RaftServerConstants;
+import org.apache.ratis.server.impl.ServerProtoUtils;
 import org.apache.ratis.server.metrics.RaftLogMetrics;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedInputStream;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.ratis.proto.RaftProtos.CompressedLogEntriesProto;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.ChecksumUtils;
+import org.apache.ratis.util.CompressionUtils;
 import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.Preconditions;
-import org.apache.ratis.util.PureJavaCrc32C;
 import org.apache.ratis.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Checksum;
 
-import com.codahale.metrics.Timer;
-
 class SegmentedRaftLogReader implements Closeable {
   static final Logger LOG = LoggerFactory.getLogger(SegmentedRaftLogReader.class);
   /**
@@ -140,13 +145,17 @@ class SegmentedRaftLogReader implements Closeable {
   private byte[] temp = new byte[4096];
   private final Checksum checksum;
   private final RaftLogMetrics raftLogMetrics;
+  /** Is the file in the compressed format? It is set by {@link #verifyHeader()}. */
+  private boolean compressed = false;
+  /** The remaining entries of the current compressed block. */
+  private final Deque<LogEntryProto> blockEntries = new ArrayDeque<>();
 
   SegmentedRaftLogReader(File file, RaftLogMetrics raftLogMetrics) throws FileNotFoundException {
     this.file = file;
     this.limiter = new LimitedInputStream(
         new BufferedInputStream(new FileInputStream(file)));
     in = new DataInputStream(limiter);
-    checksum = new PureJavaCrc32C();
+    checksum = ChecksumUtils.newCrc32c();
     this.raftLogMetrics = raftLogMetrics;
   }
 
@@ -166,11 +175,13 @@ class SegmentedRaftLogReader implements Closeable {
     final int headerLength = SegmentedRaftLogFormat.getHeaderLength();
     final int readLength = in.read(temp, 0, headerLength);
     Preconditions.assertTrue(readLength <= headerLength);
-    final int matchLength = SegmentedRaftLogFormat.matchHeader(temp, 0, readLength);
+    final int matchLength = Math.max(SegmentedRaftLogFormat.matchHeader(temp, 0, readLength, false),
+        SegmentedRaftLogFormat.matchHeader(temp, 0, readLength, true));
     Preconditions.assertTrue(matchLength <= readLength);
 
     if (readLength == headerLength && matchLength == readLength) {
       // The header is matched successfully
+      compressed = SegmentedRaftLogFormat.matchHeader(temp, 0, readLength, true) == readLength;
       return true;
     } else if (SegmentedRaftLogFormat.isTerminator(temp, matchLength, readLength - matchLength)) {
       // The header is partially written
@@ -192,11 +203,11 @@ class SegmentedRaftLogReader implements Closeable {
    *         exception when skipBrokenEdits is false.
    */
   LogEntryProto readEntry() throws IOException {
-    Timer.Context readEntryContext = null;
+    if (!blockEntries.isEmpty()) {
+      return blockEntries.poll();
+    }
+    final long startTime = raftLogMetrics != null? System.nanoTime(): 0L;
     try {
-      if (raftLogMetrics != null) {
-        readEntryContext = raftLogMetrics.getRaftLogReadEntryTimer().time();
-      }
       return decodeEntry();
     } catch (EOFException eof) {
       in.reset();
@@ -218,8 +229,8 @@ class SegmentedRaftLogReader implements Closeable {
       in.reset();
       throw new IOException("got unexpected exception " + e.getMessage(), e);
     } finally {
-      if (readEntryContext != null) {
-        readEntryContext.stop();
+      if (raftLogMetrics != null) {
+        raftLogMetrics.getRaftLogReadEntryTimer().update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
       }
     }
   }
@@ -229,7 +240,7 @@ class SegmentedRaftLogReader implements Closeable {
    * @return the index of the log entry
    */
   long scanEntry() throws IOException {
-    LogEntryProto entry = decodeEntry();
+    final LogEntryProto entry = !blockEntries.isEmpty()? blockEntries.poll(): decodeEntry();
     return entry != null ? entry.getIndex() : RaftServerConstants.INVALID_LOG_INDEX;
   }
 
@@ -270,6 +281,9 @@ class SegmentedRaftLogReader implements Closeable {
    * The input stream will be advanced to the end of the op at the end of this
    * function.
    *
+   * For the compressed format, a whole block is decoded.
+   * The first entry is returned and the remaining entries are kept in {@link #blockEntries}.
+   *
    * @return The log entry, or null if we hit EOF.
    */
   private LogEntryProto decodeEntry() throws IOException {
@@ -319,8 +333,27 @@ class SegmentedRaftLogReader implements Closeable {
     }
 
     // parse the buffer
-    return LogEntryProto.parseFrom(
-        CodedInputStream.newInstance(temp, varintLength, entryLength));
+    final CodedInputStream buffer = CodedInputStream.newInstance(temp, varintLength, entryLength);
+    if (!compressed) {
+      return LogEntryProto.parseFrom(buffer);
+    }
+    decodeBlock(CompressedLogEntriesProto.parseFrom(buffer));
+    return blockEntries.poll();
+  }
+
+  private void decodeBlock(CompressedLogEntriesProto block) throws IOException {
+    final ByteString data = CompressionUtils.decompress(
+        block.getType(), block.getData(), Math.toIntExact(block.getUncompressedSize()));
+    final CodedInputStream entries = data.newCodedInput();
+    for(int i = 0; i < block.getEntryCount(); i++) {
+      final int limit = entries.pushLimit(entries.readRawVarint32());
+      blockEntries.add(LogEntryProto.parseFrom(entries));
+      entries.popLimit(limit);
+    }
+    if (blockEntries.isEmpty() || !entries.isAtEnd()) {
+      throw new CorruptedFileException(file, "Log block corrupted: expected " + block.getEntryCount()
+          + " entries in " + ServerProtoUtils.toString(block));
+    }
   }
 
   private void checkBufferSize(int entryLength) {
@@ -339,6 +372,7 @@ class SegmentedRaftLogReader implements Closeable {
   }
 
   void skipFully(long length) throws IOException {
+    blockEntries.clear();
     limiter.clearLimit();
     IOUtils.skipFully(limiter, length);
   }
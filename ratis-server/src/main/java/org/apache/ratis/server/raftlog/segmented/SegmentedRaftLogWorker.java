@@ -33,6 +33,7 @@ import org.apache.ratis.server.storage.RaftStorage;
 import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLogCache.SegmentFileInfo;
 import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLogCache.TruncationSegments;
 import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLog.Task;
+import org.apache.ratis.proto.RaftProtos.CompressionType;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.util.*;
@@ -42,12 +43,19 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -140,10 +148,15 @@ class SegmentedRaftLogWorker implements Runnable {
 
   private final RaftStorage storage;
   private volatile SegmentedRaftLogOutputStream out;
+  /**
+   * The bytes written and preallocated by {@link #out} which have been recorded in the metrics.
+   * They are updated by the worker thread and also by {@link #close()} in another thread.
+   */
+  private final AtomicLong recordedWrittenBytes = new AtomicLong();
+  private final AtomicLong recordedPreallocatedBytes = new AtomicLong();
   private final Runnable submitUpdateCommitEvent;
   private final StateMachine stateMachine;
   private final Timer logFlushTimer;
-  private final Timer raftLogSyncTimer;
   private final Timer raftLogQueueingTimer;
   private final Timer raftLogEnqueueingDelayTimer;
   private final RaftLogMetrics raftLogMetrics;
@@ -168,6 +181,9 @@ class SegmentedRaftLogWorker implements Runnable {
   private final long segmentMaxSize;
   private final long preallocatedSize;
   private final int bufferSize;
+  private final CompressionType compressionType;
+  private final int compressionBlockSize;
+  private final boolean segmentIndexEnabled;
   private final RaftServerImpl server;
   private int flushBatchSize;
 
@@ -192,6 +208,9 @@ class SegmentedRaftLogWorker implements Runnable {
     this.segmentMaxSize = RaftServerConfigKeys.Log.segmentSizeMax(properties).getSize();
     this.preallocatedSize = RaftServerConfigKeys.Log.preallocatedSize(properties).getSize();
     this.bufferSize = RaftServerConfigKeys.Log.writeBufferSize(properties).getSizeInt();
+    this.compressionType = RaftServerConfigKeys.Log.segmentCompressionType(properties);
+    this.compressionBlockSize = RaftServerConfigKeys.Log.segmentCompressionBlockSize(properties).getSizeInt();
+    this.segmentIndexEnabled = RaftServerConfigKeys.Log.segmentIndexEnabled(properties);
     this.forceSyncNum = RaftServerConfigKeys.Log.forceSyncNum(properties);
     this.flushBatchSize = 0;
 
@@ -204,7 +223,6 @@ class SegmentedRaftLogWorker implements Runnable {
     metricRegistry.addLogWorkerQueueSizeGauge(writeTasks.q);
     metricRegistry.addFlushBatchSizeGauge(() -> (Gauge<Integer>) () -> flushBatchSize);
     this.logFlushTimer = metricRegistry.getFlushTimer();
-    this.raftLogSyncTimer = metricRegistry.getRaftLogSyncTimer();
     this.raftLogQueueingTimer = metricRegistry.getRaftLogQueueTimer();
     this.raftLogEnqueueingDelayTimer = metricRegistry.getRaftLogEnqueueDelayTimer();
 
@@ -232,6 +250,7 @@ class SegmentedRaftLogWorker implements Runnable {
       Thread.currentThread().interrupt();
     }
     IOUtils.cleanup(LOG, out);
+    recordIoBytes();
     LOG.info("{} close()", name);
   }
 
@@ -258,12 +277,12 @@ class SegmentedRaftLogWorker implements Runnable {
   private Task addIOTask(Task task) {
     LOG.debug("{} adds IO task {}", name, task);
     try {
-      final Timer.Context enqueueTimerContext = raftLogEnqueueingDelayTimer.time();
+      final long enqueueStartTime = System.nanoTime();
       for(; !queue.offer(task, ONE_SECOND); ) {
         Preconditions.assertTrue(isAlive(),
             "the worker thread is not alive");
       }
-      enqueueTimerContext.stop();
+      raftLogEnqueueingDelayTimer.update(System.nanoTime() - enqueueStartTime, TimeUnit.NANOSECONDS);
       task.startTimerOnEnqueue(raftLogQueueingTimer);
     } catch (Exception e) {
       if (e instanceof InterruptedException && !running) {
@@ -298,10 +317,10 @@ class SegmentedRaftLogWorker implements Runnable {
             if (logIOException != null) {
               throw logIOException;
             } else {
-              Timer.Context executionTimeContext =
-                  raftLogMetrics.getRaftLogTaskExecutionTimer(task.getClass().getSimpleName().toLowerCase()).time();
+              final long executionStartTime = System.nanoTime();
               task.execute();
-              executionTimeContext.stop();
+              raftLogMetrics.getRaftLogTaskExecutionTimer(task.getClass())
+                  .update(System.nanoTime() - executionStartTime, TimeUnit.NANOSECONDS);
             }
           } catch (IOException e) {
             if (task.getEndIndex() < lastWrittenIndex) {
@@ -353,7 +372,7 @@ class SegmentedRaftLogWorker implements Runnable {
   private void flushWrites() throws IOException {
     if (out != null) {
       LOG.debug("{}: flush {}", name, out);
-      final Timer.Context timerContext = logFlushTimer.time();
+      final long flushStartTime = System.nanoTime();
       try {
         final CompletableFuture<Void> f = stateMachine != null ?
             stateMachine.data().flush(lastWrittenIndex) :
@@ -361,15 +380,16 @@ class SegmentedRaftLogWorker implements Runnable {
         if (stateMachineDataPolicy.isSync()) {
           stateMachineDataPolicy.getFromFuture(f, () -> this + "-flushStateMachineData");
         }
-        final Timer.Context logSyncTimerContext = raftLogSyncTimer.time();
+        final long syncStartTime = System.nanoTime();
         flushBatchSize = (int)(lastWrittenIndex - flushIndex.get());
         out.flush();
-        logSyncTimerContext.stop();
+        raftLogMetrics.onRaftLogSync(System.nanoTime() - syncStartTime);
+        recordIoBytes();
         if (!stateMachineDataPolicy.isSync()) {
           IOUtils.getFromFuture(f, () -> this + "-flushStateMachineData");
         }
       } finally {
-        timerContext.stop();
+        logFlushTimer.update(System.nanoTime() - flushStartTime, TimeUnit.NANOSECONDS);
       }
       updateFlushedIndexIncreasingly();
     }
@@ -441,7 +461,10 @@ class SegmentedRaftLogWorker implements Runnable {
         for (SegmentFileInfo fileInfo : segments.getToDelete()) {
           File delFile = storage.getStorageDir()
                   .getClosedLogFile(fileInfo.getStartIndex(), fileInfo.getEndIndex());
+          final long length = delFile.length();
           FileUtils.deleteFile(delFile);
+          raftLogMetrics.onSegmentPurge(length);
+          LogSegmentIndex.deleteIndexFile(delFile);
         }
         purgeLogContext.stop();
       }
@@ -529,11 +552,13 @@ class SegmentedRaftLogWorker implements Runnable {
   }
 
   private class FinalizeLogSegment extends Task {
+    private final LogSegment segment;
     private final long startIndex;
     private final long endIndex;
 
     FinalizeLogSegment(LogSegment segmentToClose) {
       Preconditions.assertTrue(segmentToClose != null, "Log segment to be rolled is null");
+      this.segment = segmentToClose;
       this.startIndex = segmentToClose.getStartIndex();
       this.endIndex = segmentToClose.getEndIndex();
     }
@@ -552,6 +577,10 @@ class SegmentedRaftLogWorker implements Runnable {
 
         FileUtils.move(openFile, dstFile);
         LOG.info("{}: Rolled log segment from {} to {}", name, openFile, dstFile);
+        raftLogMetrics.onSegmentRoll();
+        if (segmentIndexEnabled) {
+          writeIndexFile(dstFile);
+        }
       } else { // delete the file of the empty segment
         FileUtils.deleteFile(openFile);
         LOG.info("{}: Deleted empty log segment {}", name, openFile);
@@ -560,6 +589,18 @@ class SegmentedRaftLogWorker implements Runnable {
       safeCacheEvictIndex.updateToMax(endIndex, traceIndexChange);
     }
 
+    private void writeIndexFile(File dstFile) {
+      // The index is only an optimization for loading the segment; failing to write it is not fatal.
+      try {
+        if (!segment.writeIndexFile(dstFile, endIndex)) {
+          LOG.info("{}: Skipped writing index file for {} since the segment has been changed", name, dstFile);
+        }
+      } catch (IOException e) {
+        LOG.warn("{}: Failed to write index file for {}", name, dstFile, e);
+        LogSegmentIndex.deleteIndexFile(dstFile);
+      }
+    }
+
     @Override
     void failed(IOException e) {
       // not failed for a specific log entry, but an entire segment
@@ -634,7 +675,13 @@ class SegmentedRaftLogWorker implements Runnable {
                 segments.getToTruncate().getEndIndex());
         Preconditions.assertTrue(fileToTruncate.exists(),
             "File %s to be truncated does not exist", fileToTruncate);
-        FileUtils.truncateFile(fileToTruncate, segments.getToTruncate().getTargetLength());
+        LogSegmentIndex.deleteIndexFile(fileToTruncate);
+        if (SegmentedRaftLogFormat.isCompressed(fileToTruncate)) {
+          truncateCompressedFile(fileToTruncate, segments.getToTruncate().getStartIndex(),
+              segments.getToTruncate().getNewEndIndex());
+        } else {
+          FileUtils.truncateFile(fileToTruncate, segments.getToTruncate().getTargetLength());
+        }
 
         // rename the file
         File dstFile = storage.getStorageDir().getClosedLogFile(
@@ -643,7 +690,7 @@ class SegmentedRaftLogWorker implements Runnable {
             "Truncated file %s already exists ", dstFile);
         FileUtils.move(fileToTruncate, dstFile);
         LOG.info("{}: Truncated log file {} to length {} and moved it to {}", name,
-            fileToTruncate, segments.getToTruncate().getTargetLength(), dstFile);
+            fileToTruncate, dstFile.length(), dstFile);
 
         // update lastWrittenIndex
         lastWrittenIndex = segments.getToTruncate().getNewEndIndex();
@@ -661,6 +708,7 @@ class SegmentedRaftLogWorker implements Runnable {
           Preconditions.assertTrue(delFile.exists(),
               "File %s to be deleted does not exist", delFile);
           FileUtils.deleteFile(delFile);
+          LogSegmentIndex.deleteIndexFile(delFile);
           LOG.info("{}: Deleted log file {}", name, delFile);
           minStart = Math.min(minStart, del.getStartIndex());
         }
@@ -692,6 +740,71 @@ class SegmentedRaftLogWorker implements Runnable {
     }
   }
 
+  /**
+   * A compressed file cannot be truncated in the middle of a block.
+   * Truncate it at the beginning of the block containing the first entry to be removed
+   * and then rewrite the remaining entries of that block as a new block.
+   * In the latter case, the new file is written to a temp file and then moved over the given file
+   * so that the remaining entries are not lost if the server is stopped in the middle.
+   */
+  private void truncateCompressedFile(File file, long startIndex, long newEndIndex) throws IOException {
+    final List<LogEntryProto> remaining = new ArrayList<>();
+    long blockStart = SegmentedRaftLogFormat.getHeaderLength();
+    long blockEnd = blockStart;
+    boolean found = false;
+    try (SegmentedRaftLogInputStream in = new SegmentedRaftLogInputStream(
+        file, startIndex, RaftLog.INVALID_LOG_INDEX, true, raftLogMetrics)) {
+      for(LogEntryProto entry; (entry = in.nextEntry()) != null; ) {
+        if (in.getPosition() != blockEnd) {
+          // started reading a new block
+          blockStart = blockEnd;
+          blockEnd = in.getPosition();
+          remaining.clear();
+        }
+        if (entry.getIndex() > newEndIndex) {
+          found = true;
+          break;
+        }
+        remaining.add(entry);
+      }
+    }
+
+    if (!found || remaining.isEmpty()) {
+      FileUtils.truncateFile(file, found? blockStart: blockEnd);
+      return;
+    }
+
+    final File tmpDir = storage.getStorageDir().getNewTempDir();
+    FileUtils.createDirectories(tmpDir);
+    try {
+      final File tmp = new File(tmpDir, file.getName());
+      copyPrefix(file, tmp, blockStart);
+      try (SegmentedRaftLogOutputStream rewrite = new SegmentedRaftLogOutputStream(tmp, true, segmentMaxSize,
+          preallocatedSize, writeBuffer, compressionType, compressionBlockSize)) {
+        for (LogEntryProto entry : remaining) {
+          rewrite.write(entry);
+        }
+        rewrite.flush();
+        raftLogMetrics.onBytesWritten(rewrite.getWrittenBytes(), rewrite.getPreallocatedBytes());
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      FileUtils.fsyncDirectory(file.getParentFile());
+    } finally {
+      FileUtils.deleteFully(tmpDir);
+    }
+  }
+
+  /** Copy the first length bytes of the given file to the given new file. */
+  private static void copyPrefix(File src, File dst, long length) throws IOException {
+    try (FileChannel in = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+         FileChannel out = FileChannel.open(dst.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      for (long position = 0; position < length; ) {
+        position += in.transferTo(position, length - position, out);
+      }
+      out.force(false);
+    }
+  }
+
   long getFlushIndex() {
     return flushIndex.get();
   }
@@ -700,8 +813,23 @@ class SegmentedRaftLogWorker implements Runnable {
     return safeCacheEvictIndex.get();
   }
 
+  /** Record the bytes written and preallocated by the current output stream since the last call. */
+  private void recordIoBytes() {
+    final SegmentedRaftLogOutputStream stream = out;
+    if (stream == null) {
+      return;
+    }
+    final long written = stream.getWrittenBytes();
+    final long preallocated = stream.getPreallocatedBytes();
+    // the counts only increase, so that each byte is recorded exactly once even if the calls race
+    final long writtenDelta = written - recordedWrittenBytes.getAndAccumulate(written, Math::max);
+    final long preallocatedDelta = preallocated - recordedPreallocatedBytes.getAndAccumulate(preallocated, Math::max);
+    raftLogMetrics.onBytesWritten(Math.max(0, writtenDelta), Math.max(0, preallocatedDelta));
+  }
+
   private void freeSegmentedRaftLogOutputStream() {
     IOUtils.cleanup(LOG, out);
+    recordIoBytes();
     out = null;
     Preconditions.assertTrue(writeBuffer.position() == 0);
   }
@@ -709,6 +837,9 @@ class SegmentedRaftLogWorker implements Runnable {
   private void allocateSegmentedRaftLogOutputStream(File file, boolean append) throws IOException {
     Preconditions.assertTrue(out == null && writeBuffer.position() == 0);
     out = new SegmentedRaftLogOutputStream(file, append, segmentMaxSize,
-            preallocatedSize, writeBuffer);
+            preallocatedSize, writeBuffer, compressionType, compressionBlockSize);
+    recordedWrittenBytes.set(0);
+    recordedPreallocatedBytes.set(0);
+    recordIoBytes();
   }
 }
@@ -18,18 +18,34 @@
 package org.apache.ratis.server.storage;
 
 import org.apache.ratis.util.AtomicFileOutputStream;
+import org.apache.ratis.util.ChecksumUtils;
 import org.apache.ratis.util.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.zip.Checksum;
 
 /**
  * Class that represents a file on disk which persistently stores
- * a single <code>long</code> value. The file is updated atomically
+ * the term and the votedFor information. The file is updated atomically
  * and durably (i.e fsynced).
+ *
+ * The file has two fixed-size slots, A and B.  Each slot stores a binary record
+ * (magic, sequence number, term, votedFor and a checksum).
+ * An update writes the new record to the slot not holding the latest record and then fsyncs the file,
+ * so that the latest record survives a torn write.  No rename is needed.
+ * When loading, the valid record with the largest sequence number is used.
+ *
+ * The legacy text format (a {@link Properties} file) can still be read.
+ * It is converted to the binary format atomically in the first update.
  */
 public class MetaFile {
   private static final Logger LOG = LoggerFactory.getLogger(MetaFile.class);
@@ -38,13 +54,83 @@ public class MetaFile {
   static final long DEFAULT_TERM = 0;
   static final String EMPTY_VOTEFOR = "";
 
+  static final int SLOT_SIZE = 4096;
+  private static final byte[] MAGIC = "RaftMeta".getBytes(StandardCharsets.UTF_8);
+  /** magic, sequence number, term, votedFor length. */
+  private static final int RECORD_HEADER_SIZE = MAGIC.length + 8 + 8 + 4;
+  private static final int CHECKSUM_SIZE = 4;
+  static final int MAX_VOTEDFOR_BYTES = SLOT_SIZE - RECORD_HEADER_SIZE - CHECKSUM_SIZE;
+
+  private static final class Record {
+    private final long sequence;
+    private final long term;
+    private final String votedFor;
+
+    private Record(long sequence, long term, String votedFor) {
+      this.sequence = sequence;
+      this.term = term;
+      this.votedFor = votedFor;
+    }
+
+    ByteBuffer encode() throws IOException {
+      final byte[] votedForBytes = votedFor.getBytes(StandardCharsets.UTF_8);
+      if (votedForBytes.length > MAX_VOTEDFOR_BYTES) {
+        throw new IOException("votedFor is too long: " + votedForBytes.length + " > " + MAX_VOTEDFOR_BYTES
+            + " bytes, votedFor=" + votedFor);
+      }
+      final ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+      buffer.put(MAGIC).putLong(sequence).putLong(term).putInt(votedForBytes.length).put(votedForBytes);
+      buffer.putInt(checksum(buffer.array(), 0, buffer.position()));
+      buffer.position(0);
+      return buffer;
+    }
+
+    /** @return the record decoded from the slot at the given offset, or null if the slot is invalid. */
+    static Record decode(byte[] bytes, int offset) {
+      if (offset + RECORD_HEADER_SIZE + CHECKSUM_SIZE > bytes.length
+          || !Arrays.equals(MAGIC, Arrays.copyOfRange(bytes, offset, offset + MAGIC.length))) {
+        return null;
+      }
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset + MAGIC.length, SLOT_SIZE - MAGIC.length);
+      final long sequence = buffer.getLong();
+      final long term = buffer.getLong();
+      final int length = buffer.getInt();
+      if (length < 0 || length > MAX_VOTEDFOR_BYTES) {
+        return null;
+      }
+      final int checksumOffset = offset + RECORD_HEADER_SIZE + length;
+      if (checksumOffset + CHECKSUM_SIZE > bytes.length
+          || ByteBuffer.wrap(bytes, checksumOffset, CHECKSUM_SIZE).getInt()
+          != checksum(bytes, offset, RECORD_HEADER_SIZE + length)) {
+        return null;
+      }
+      final String votedFor = new String(bytes, offset + RECORD_HEADER_SIZE, length, StandardCharsets.UTF_8);
+      return new Record(sequence, term, votedFor);
+    }
+  }
+
+  private static int checksum(byte[] bytes, int offset, int length) {
+    final Checksum checksum = ChecksumUtils.newCrc32c();
+    checksum.update(bytes, offset, length);
+    return (int) checksum.getValue();
+  }
+
   private final File file;
+  /** For syncing the file in batches; null means syncing it directly. */
+  private final MetaFileSyncer syncer;
   private boolean loaded = false;
   private long term;
   private String votedFor;
+  /** The sequence number of the latest record; -1 means the file is not (yet) in the binary format. */
+  private long sequence = -1;
 
   MetaFile(File file) {
+    this(file, null);
+  }
+
+  MetaFile(File file, MetaFileSyncer syncer) {
     this.file = file;
+    this.syncer = syncer;
     term = DEFAULT_TERM;
     votedFor = EMPTY_VOTEFOR;
   }
@@ -86,13 +172,31 @@ public class MetaFile {
    * @throws IOException if the file cannot be written
    */
   void writeFile(long givenTerm, String votedForInfo) throws IOException {
+    if (!loaded && sequence < 0 && file.exists()) {
+      // find out the latest sequence number
+      try {
+        readFile();
+      } catch (IOException e) {
+        LOG.warn("Failed to read {}, overwrite it", file, e);
+      }
+    }
+
+    final Record record = new Record(sequence + 1, givenTerm, votedForInfo);
+    if (sequence < 0) {
+      writeNewFile(record);
+    } else {
+      writeSlot(record);
+    }
+    sequence = record.sequence;
+  }
+
+  /** Write a new file, or convert a legacy file, with both slots containing the given record. */
+  private void writeNewFile(Record record) throws IOException {
+    final ByteBuffer slot = record.encode();
     AtomicFileOutputStream fos = new AtomicFileOutputStream(file);
-    Properties properties = new Properties();
-    properties.setProperty(TERM_KEY, Long.toString(givenTerm));
-    properties.setProperty(VOTEDFOR_KEY, votedForInfo);
     try {
-      properties.store(
-          new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8)), "");
+      fos.write(slot.array());
+      fos.write(slot.array());
       fos.close();
       fos = null;
     } finally {
@@ -102,29 +206,79 @@ public class MetaFile {
     }
   }
 
+  /** Write the record to the slot not holding the latest record, i.e. slot A for even and B for odd sequence. */
+  private void writeSlot(Record record) throws IOException {
+    final long offset = (record.sequence & 1) * SLOT_SIZE;
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+    try {
+      IOUtils.writeFully(channel, record.encode(), offset);
+    } catch (IOException e) {
+      IOUtils.cleanup(LOG, channel);
+      throw e;
+    }
+
+    if (syncer != null) {
+      syncer.sync(file, channel);
+    } else {
+      try (FileChannel c = channel) {
+        c.force(false);
+      }
+    }
+  }
+
   void readFile() throws IOException {
     term = DEFAULT_TERM;
     votedFor = EMPTY_VOTEFOR;
+    sequence = -1;
     if (file.exists()) {
-      BufferedReader br = new BufferedReader(
-          new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
-      try {
-        Properties properties = new Properties();
-        properties.load(br);
-        if (properties.containsKey(TERM_KEY) &&
-            properties.containsKey(VOTEDFOR_KEY)) {
-          term = Long.parseLong((String) properties.get(TERM_KEY));
-          votedFor = (String) properties.get(VOTEDFOR_KEY);
-        } else {
-          throw new IOException("Corrupted term/votedFor properties: "
-              + properties);
-        }
-      } catch(IOException e) {
-        LOG.warn("Cannot load term/votedFor properties from {}", file, e);
-        throw e;
-      } finally {
-        IOUtils.cleanup(LOG, br);
+      final byte[] bytes = Files.readAllBytes(file.toPath());
+      if (bytes.length == 2 * SLOT_SIZE) {
+        readBinary(bytes);
+      } else {
+        readLegacy(bytes);
       }
     }
   }
+
+  private void readBinary(byte[] bytes) throws IOException {
+    final Record a = Record.decode(bytes, 0);
+    final Record b = Record.decode(bytes, SLOT_SIZE);
+    final Record latest = a == null ? b : b == null ? a : a.sequence >= b.sequence ? a : b;
+    if (latest == null) {
+      final IOException e = new IOException("Corrupted meta file " + file + ": both slots are invalid");
+      LOG.warn("Cannot load term/votedFor from {}", file, e);
+      throw e;
+    }
+    if (a == null || b == null) {
+      LOG.warn("One of the slots in {} is invalid; use the other slot {}", file,
+          latest == a ? "A" : "B");
+    }
+    term = latest.term;
+    votedFor = latest.votedFor;
+    sequence = latest.sequence;
+  }
+
+  private void readLegacy(byte[] bytes) throws IOException {
+    try (Reader br = new BufferedReader(new InputStreamReader(
+        new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))) {
+      Properties properties = new Properties();
+      properties.load(br);
+      if (properties.containsKey(TERM_KEY) &&
+          properties.containsKey(VOTEDFOR_KEY)) {
+        term = Long.parseLong((String) properties.get(TERM_KEY));
+        votedFor = (String) properties.get(VOTEDFOR_KEY);
+      } else {
+        throw new IOException("Corrupted term/votedFor properties: "
+            + properties);
+      }
+    } catch(IOException e) {
+      LOG.warn("Cannot load term/votedFor properties from {}", file, e);
+      throw e;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + ":" + file;
+  }
 }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.ratis.server.storage;
+
+import org.apache.ratis.util.Daemon;
+import org.apache.ratis.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Sync the {@link MetaFile}s of all the groups in a server in batches.
+ *
+ * A writer hands over the channel of its written file and then waits until the file is synced,
+ * so that the durability guarantee of {@link MetaFile} is unchanged.
+ * The pending requests are synced together by a single thread:
+ * a file updated multiple times in a batch is synced only once
+ * and the number of concurrent fsync calls is bounded.
+ */
+public class MetaFileSyncer implements Closeable {
+  public static final Logger LOG = LoggerFactory.getLogger(MetaFileSyncer.class);
+
+  private static final class Request {
+    private final File file;
+    private final FileChannel channel;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+    private Request(File file, FileChannel channel) {
+      this.file = file;
+      this.channel = channel;
+    }
+  }
+
+  private final String name;
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+  private final Daemon daemon;
+  private volatile boolean running = true;
+
+  public MetaFileSyncer(Object name) {
+    this.name = name + "-" + getClass().getSimpleName();
+    this.daemon = new Daemon(this::run, this.name);
+    daemon.start();
+  }
+
+  /**
+   * Sync the given file and then close the given channel.
+   * This method blocks until the file is synced.
+   */
+  void sync(File file, FileChannel channel) throws IOException {
+    final Request request = new Request(file, channel);
+    if (!running) {
+      IOUtils.cleanup(LOG, channel);
+      throw new IOException(name + " is already closed");
+    }
+    queue.offer(request);
+    if (!running) {
+      // the daemon may have exited before the request is added.
+      failPending();
+    }
+    IOUtils.getFromFuture(request.future, () -> name + ": sync " + file);
+  }
+
+  private void run() {
+    final List<Request> batch = new ArrayList<>();
+    while (running) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        if (running) {
+          LOG.warn("{} is interrupted", name, e);
+        }
+        Thread.currentThread().interrupt();
+        break;
+      }
+      queue.drainTo(batch);
+      syncBatch(batch);
+      batch.clear();
+    }
+    failPending();
+  }
+
+  private void syncBatch(List<Request> batch) {
+    final Map<File, List<Request>> files = new LinkedHashMap<>();
+    for (Request r : batch) {
+      files.computeIfAbsent(r.file, k -> new ArrayList<>()).add(r);
+    }
+    for (List<Request> requests : files.values()) {
+      // syncing any one of the channels syncs the file
+      IOException exception = null;
+      try {
+        requests.get(requests.size() - 1).channel.force(false);
+      } catch (IOException e) {
+        exception = e;
+      }
+      for (Request r : requests) {
+        IOUtils.cleanup(LOG, r.channel);
+        if (exception == null) {
+          r.future.complete(null);
+        } else {
+          r.future.completeExceptionally(exception);
+        }
+      }
+    }
+    LOG.debug("{}: synced {} file(s) for {} request(s)", name, files.size(), batch.size());
+  }
+
+  private void failPending() {
+    for (Request r; (r = queue.poll()) != null; ) {
+      IOUtils.cleanup(LOG, r.channel);
+      r.future.completeExceptionally(new IOException(name + " is already closed"));
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    daemon.interrupt();
+    try {
+      daemon.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    failPending();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
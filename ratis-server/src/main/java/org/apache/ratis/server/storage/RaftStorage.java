@@ -41,6 +41,8 @@ public class RaftStorage implements Closeable {
   private final RaftStorageDirectory storageDir;
   private final StorageState state;
   private final CorruptionPolicy logCorruptionPolicy;
+  /** For syncing the meta file in batches; null means syncing it directly. */
+  private final MetaFileSyncer metaFileSyncer;
   private volatile MetaFile metaFile;
 
   public RaftStorage(File dir, RaftServerConstants.StartupOption option)
@@ -50,6 +52,12 @@ public class RaftStorage implements Closeable {
 
   public RaftStorage(File dir, RaftServerConstants.StartupOption option, CorruptionPolicy logCorruptionPolicy)
       throws IOException {
+    this(dir, option, logCorruptionPolicy, null);
+  }
+
+  public RaftStorage(File dir, RaftServerConstants.StartupOption option, CorruptionPolicy logCorruptionPolicy,
+      MetaFileSyncer metaFileSyncer) throws IOException {
+    this.metaFileSyncer = metaFileSyncer;
     this.storageDir = new RaftStorageDirectory(dir);
     if (option == RaftServerConstants.StartupOption.FORMAT) {
       if (storageDir.analyzeStorage(false) == StorageState.NON_EXISTENT) {
@@ -86,7 +94,7 @@ public class RaftStorage implements Closeable {
   }
 
   private MetaFile writeMetaFile(long term, String votedFor) throws IOException {
-    MetaFile mFile = new MetaFile(storageDir.getMetaFile());
+    MetaFile mFile = new MetaFile(storageDir.getMetaFile(), metaFileSyncer);
     mFile.set(term, votedFor);
     return mFile;
   }
@@ -99,7 +107,7 @@ public class RaftStorage implements Closeable {
       throws IOException {
     StorageState storageState = storageDir.analyzeStorage(toLock);
     if (storageState == StorageState.NORMAL) {
-      metaFile = new MetaFile(storageDir.getMetaFile());
+      metaFile = new MetaFile(storageDir.getMetaFile(), metaFileSyncer);
       Preconditions.assertTrue(metaFile.exists(),
           () -> "Meta file " + metaFile + " does not exists.");
       metaFile.readFile();
@@ -52,6 +52,7 @@ public class RaftStorageDirectory {
   static final String TEMP = "tmp";
   static final Pattern CLOSED_SEGMENT_REGEX = Pattern.compile("log_(\\d+)-(\\d+)");
   static final Pattern OPEN_SEGMENT_REGEX = Pattern.compile("log_inprogress_(\\d+)(?:\\..*)?");
+  static final Pattern INSTALL_SNAPSHOT_TEMP_DIR_REGEX = Pattern.compile("snapshot_(\\d+)_(\\d+)");
   private static final String CONF_EXTENSION = ".conf";
 
 
@@ -181,11 +182,31 @@ public class RaftStorageDirectory {
     return new File(getRoot(), STATE_MACHINE);
   }
 
+  /** @return the directory for keeping the previous state machine directory while it is being replaced. */
+  File getStateMachineOldDir() {
+    return new File(getRoot(), STATE_MACHINE + ".old");
+  }
+
   /** Returns a uniquely named temporary directory under $rootdir/tmp/ */
   public File getNewTempDir() {
     return new File(new File(getRoot(), TEMP), UUID.randomUUID().toString());
   }
 
+  /**
+   * @return the temporary directory for installing the snapshot with the given term and index.
+   *         The directory is the same across restarts so that an installation can be resumed.
+   */
+  public File getInstallSnapshotTempDir(long term, long index) {
+    return new File(new File(getRoot(), TEMP), "snapshot_" + term + "_" + index);
+  }
+
+  /** @return the existing temporary directories for installing snapshots. */
+  public List<File> getInstallSnapshotTempDirs() {
+    final File[] dirs = new File(getRoot(), TEMP).listFiles(
+        f -> f.isDirectory() && INSTALL_SNAPSHOT_TEMP_DIR_REGEX.matcher(f.getName()).matches());
+    return dirs == null? Collections.emptyList(): Arrays.asList(dirs);
+  }
+
   public Path relativizeToRoot(Path p) {
     if (p.isAbsolute()) {
       return getRoot().toPath().relativize(p);
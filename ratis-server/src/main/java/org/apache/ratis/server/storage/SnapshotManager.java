@@ -18,21 +18,35 @@
 package org.apache.ratis.server.storage;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
 
 import org.apache.ratis.io.CorruptedFileException;
 import org.apache.ratis.io.MD5Hash;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.proto.RaftProtos.FileChunkProto;
 import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
+import org.apache.ratis.proto.RaftProtos.SnapshotFileProgressProto;
+import org.apache.ratis.proto.RaftProtos.TermIndexProto;
+import org.apache.ratis.server.protocol.TermIndex;
 import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.CompressionUtils;
 import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.IOUtils;
 import org.apache.ratis.util.MD5FileUtil;
-import org.apache.ratis.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,94 +58,488 @@ import org.slf4j.LoggerFactory;
 public class SnapshotManager {
   private static final Logger LOG = LoggerFactory.getLogger(SnapshotManager.class);
 
+  private static final String LINK_SUFFIX = ".link";
+
+  /**
+   * A snapshot file being received.
+   * The file is kept open across the chunks
+   * and its digest is computed incrementally as long as the chunks arrive in order.
+   * The data is only forced to the disk once the file is completed
+   * or when its progress is queried for resuming the installation.
+   */
+  private static final class SnapshotFileWriter {
+    /**
+     * Open the given file for writing at the given offset.
+     *
+     * @return the writer, or null if the file does not have the data before the offset.
+     */
+    static SnapshotFileWriter open(File file, long offset) throws IOException {
+      if (offset == 0) {
+        // delete any existing temp snapshot file if it has the same last index.
+        if (file.exists()) {
+          FileUtils.deleteFully(file);
+        }
+        return new SnapshotFileWriter(file,
+            FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 0);
+      }
+      if (!file.exists() || file.length() < offset) {
+        return null;
+      }
+      // resume the file; the data after the offset, if there is any, will be overwritten.
+      final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+      channel.truncate(offset);
+      return new SnapshotFileWriter(file, channel, offset);
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final MessageDigest digester = MD5Hash.newDigester();
+    /** The length of the data written so far. */
+    private long length;
+    /** Is the digest computed from the beginning of the file? */
+    private boolean digestComplete;
+
+    private SnapshotFileWriter(File file, FileChannel channel, long length) {
+      this.file = file;
+      this.channel = channel;
+      this.length = length;
+      this.digestComplete = length == 0;
+    }
+
+    long getLength() {
+      return length;
+    }
+
+    /** Write the given data at the given offset without copying it. */
+    void write(long offset, ByteString data) throws IOException {
+      final boolean inOrder = offset == length;
+      long position = offset;
+      for (ByteBuffer buffer : data.asReadOnlyByteBufferList()) {
+        if (inOrder) {
+          digester.update(buffer.duplicate());
+        }
+        final int n = buffer.remaining();
+        IOUtils.writeFully(channel, buffer, position);
+        position += n;
+      }
+      digestComplete &= inOrder;
+      length = Math.max(length, position);
+    }
+
+    /** Force the data written so far to the disk. */
+    void sync() throws IOException {
+      channel.force(false);
+    }
+
+    /** Force the file to the disk, close it and then return its digest. */
+    MD5Hash finish() throws IOException {
+      channel.force(true);
+      final long size = channel.size();
+      channel.close();
+      if (digestComplete && length == size) {
+        return new MD5Hash(digester.digest());
+      }
+      // the file was resumed or the chunks were out of order, fall back to computing the digest from the file
+      return MD5FileUtil.computeMd5ForFile(file);
+    }
+
+    void close() {
+      IOUtils.cleanup(LOG, channel);
+    }
+  }
+
+  /**
+   * The state of a snapshot installation, which may span multiple requests.
+   * An installation is identified by the term and the index of the snapshot
+   * so that it can be resumed by the requests with a different request id.
+   */
+  private static final class Installation {
+    private final long term;
+    private final long index;
+    private final File tmpDir;
+    private final Map<String, SnapshotFileWriter> writers = new HashMap<>();
+
+    Installation(long term, long index, File tmpDir) {
+      this.term = term;
+      this.index = index;
+      this.tmpDir = tmpDir;
+    }
+
+    boolean matches(TermIndexProto ti) {
+      return term == ti.getTerm() && index == ti.getIndex();
+    }
+
+    File getTmpDir() {
+      return tmpDir;
+    }
+
+    /** @return the writer, or null if the file cannot be written at the given offset. */
+    SnapshotFileWriter getWriter(File tmpSnapshotFile, long offset) throws IOException {
+      final String key = tmpSnapshotFile.getName();
+      SnapshotFileWriter writer = writers.get(key);
+      if (writer == null || offset == 0 || offset > writer.getLength()) {
+        if (writer != null) {
+          writers.remove(key).close();
+        }
+        writer = SnapshotFileWriter.open(tmpSnapshotFile, offset);
+        if (writer != null) {
+          writers.put(key, writer);
+        }
+      }
+      return writer;
+    }
+
+    /**
+     * Force the given temp snapshot file to the disk.
+     *
+     * @return the length of the data persisted, or 0 if the file does not exist.
+     */
+    long sync(File tmpSnapshotFile) throws IOException {
+      final SnapshotFileWriter writer = writers.get(tmpSnapshotFile.getName());
+      if (writer != null) {
+        writer.sync();
+        return writer.getLength();
+      }
+      if (!tmpSnapshotFile.exists()) {
+        return 0;
+      }
+      // the file was written before a restart
+      try (FileChannel channel = FileChannel.open(tmpSnapshotFile.toPath(), StandardOpenOption.WRITE)) {
+        channel.force(false);
+        return channel.size();
+      }
+    }
+
+    SnapshotFileWriter remove(File tmpSnapshotFile) {
+      return writers.remove(tmpSnapshotFile.getName());
+    }
+
+    void closeWriter(File tmpSnapshotFile) {
+      final SnapshotFileWriter writer = remove(tmpSnapshotFile);
+      if (writer != null) {
+        writer.close();
+      }
+    }
+
+    void close() {
+      writers.values().forEach(SnapshotFileWriter::close);
+      writers.clear();
+    }
+
+    @Override
+    public String toString() {
+      return "snapshot-" + term + "_" + index + ":" + tmpDir;
+    }
+  }
+
   private final RaftStorage storage;
   private final RaftPeerId selfId;
+  /** The installation in progress, if there is any. */
+  private Installation installation;
 
   public SnapshotManager(RaftStorage storage, RaftPeerId selfId)
       throws IOException {
     this.storage = storage;
     this.selfId = selfId;
+    recoverStateMachineDir();
+    deleteInstallSnapshotTempDirs(getLatestInstallSnapshotTempDir());
+  }
+
+  /** @return the temp dir of the latest installation, which may be resumed, or null if there is no such dir. */
+  private File getLatestInstallSnapshotTempDir() {
+    File latest = null;
+    TermIndex latestTermIndex = null;
+    for (File d : storage.getStorageDir().getInstallSnapshotTempDirs()) {
+      final Matcher matcher = RaftStorageDirectory.INSTALL_SNAPSHOT_TEMP_DIR_REGEX.matcher(d.getName());
+      if (matcher.matches()) {
+        final TermIndex ti = TermIndex.newTermIndex(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)));
+        if (latestTermIndex == null || ti.compareTo(latestTermIndex) > 0) {
+          latest = d;
+          latestTermIndex = ti;
+        }
+      }
+    }
+    return latest;
   }
 
-  public void installSnapshot(StateMachine stateMachine,
+  /** Delete the temp dirs of the previous installations other than the given dir. */
+  private void deleteInstallSnapshotTempDirs(File keep) {
+    for (File d : storage.getStorageDir().getInstallSnapshotTempDirs()) {
+      if (!d.equals(keep)) {
+        LOG.info("{}: delete the stale snapshot installation dir {}", selfId, d);
+        try {
+          FileUtils.deleteFully(d);
+        } catch (IOException e) {
+          LOG.warn("{}: failed to delete {}", selfId, d, e);
+        }
+      }
+    }
+  }
+
+  private Installation getInstallation(InstallSnapshotRequestProto.SnapshotChunkProto snapshotChunkRequest)
+      throws IOException {
+    final TermIndexProto ti = snapshotChunkRequest.getTermIndex();
+    if (installation != null) {
+      if (installation.matches(ti)) {
+        return installation;
+      }
+      LOG.info("{}: abort the previous snapshot installation {} for the new snapshot {}",
+          selfId, installation, ti);
+      installation.close();
+      FileUtils.deleteFully(installation.getTmpDir());
+      installation = null;
+    }
+
+    // the temp dir may already exist if the installation is resumed
+    final File tmpDir = storage.getStorageDir().getInstallSnapshotTempDir(ti.getTerm(), ti.getIndex());
+    FileUtils.createDirectories(tmpDir);
+    deleteInstallSnapshotTempDirs(tmpDir);
+    installation = new Installation(ti.getTerm(), ti.getIndex(), tmpDir);
+    return installation;
+  }
+
+  /** @return the file in the given snapshot with the given digest and size, or null if there is no such file. */
+  private static Path findFile(SnapshotInfo snapshot, MD5Hash digest, long size) {
+    if (snapshot == null || snapshot.getFiles() == null) {
+      return null;
+    }
+    for (FileInfo f : snapshot.getFiles()) {
+      if (digest.equals(f.getFileDigest()) && f.getFileSize() == size && Files.isRegularFile(f.getPath())) {
+        return f.getPath();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the length of the given temp snapshot file persisted in this peer
+   * so that the leader could resume sending the file from there.
+   * If it is requested and the file is not yet complete,
+   * the file of the current snapshot having the same digest and size is reused.
+   *
+   * @return the length of the data persisted for the given chunk.
+   */
+  private long getPersistedLength(SnapshotInfo currentSnapshot, Installation current, File tmpSnapshotFile,
+      FileChunkProto chunk) throws IOException {
+    final MD5Hash digest = new MD5Hash(chunk.getFileDigest().toByteArray());
+    final long size = chunk.getTotalSize();
+    if (tmpSnapshotFile.length() == size && isComplete(tmpSnapshotFile, digest)) {
+      // the file has already been received or reused before the installation was resumed
+      return size;
+    }
+    if (chunk.getReuse() && reuseFile(currentSnapshot, current, tmpSnapshotFile, digest, size)) {
+      return size;
+    }
+    return current.sync(tmpSnapshotFile);
+  }
+
+  /**
+   * Reuse the file of the current snapshot having the given digest and size.
+   * The file is hard-linked to the temp snapshot file, or copied if hard links are not supported.
+   *
+   * @return true if the file is reused; otherwise, there is no such file, return false.
+   */
+  private boolean reuseFile(SnapshotInfo currentSnapshot, Installation current, File tmpSnapshotFile,
+      MD5Hash digest, long size) throws IOException {
+    final Path existing = findFile(currentSnapshot, digest, size);
+    if (existing == null) {
+      return false;
+    }
+    current.closeWriter(tmpSnapshotFile);
+    final Path target = tmpSnapshotFile.toPath();
+    final Path link = new File(tmpSnapshotFile.getParentFile(), tmpSnapshotFile.getName() + LINK_SUFFIX).toPath();
+    Files.deleteIfExists(link);
+    try {
+      Files.createLink(link, existing);
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.debug("{}: failed to link {} to {}, copy it instead", selfId, existing, link, e);
+      Files.deleteIfExists(link);
+      Files.copy(existing, link);
+    }
+    // Save the digest before moving the file into place so that the file, once it exists, is known to be complete.
+    // A complete file is never reopened for writing since it may share the inode with the current snapshot.
+    MD5FileUtil.saveMD5File(tmpSnapshotFile, digest);
+    Files.move(link, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    LOG.info("{}: reuse {} as {}", selfId, existing, tmpSnapshotFile);
+    return true;
+  }
+
+  /** @return is the given temp snapshot file completely received or reused with the given digest? */
+  private static boolean isComplete(File tmpSnapshotFile, MD5Hash digest) throws IOException {
+    return tmpSnapshotFile.exists() && digest.equals(MD5FileUtil.readStoredMd5ForFile(tmpSnapshotFile));
+  }
+
+  private void closeInstallation() {
+    if (installation != null) {
+      installation.close();
+      installation = null;
+    }
+  }
+
+  /**
+   * Install the snapshot chunks in the given request.
+   * A partially installed snapshot is kept in a temp dir
+   * so that the installation can be resumed after a failure,
+   * even if the leader or this peer is restarted.
+   *
+   * @return the progress of the files in the request,
+   *         or null if the installation cannot be resumed from the offsets in the request.
+   *         The progress of a data-less chunk is the length persisted;
+   *         the progress of a data chunk may not yet be forced to the disk.
+   */
+  public synchronized List<SnapshotFileProgressProto> installSnapshot(StateMachine stateMachine,
       InstallSnapshotRequestProto request) throws IOException {
     final InstallSnapshotRequestProto.SnapshotChunkProto snapshotChunkRequest =
         request.getSnapshotChunk();
     final long lastIncludedIndex = snapshotChunkRequest.getTermIndex().getIndex();
     final RaftStorageDirectory dir = storage.getStorageDir();
 
-    File tmpDir = dir.getNewTempDir();
-    FileUtils.createDirectories(tmpDir);
-    tmpDir.deleteOnExit();
+    final Installation current = getInstallation(snapshotChunkRequest);
+    final File tmpDir = current.getTmpDir();
+    if (snapshotChunkRequest.getRequestIndex() == 0) {
+      LOG.info("Installing snapshot:{}, to tmp dir:{}", request, tmpDir);
+    } else {
+      LOG.debug("Installing snapshot:{}, to tmp dir:{}", request, tmpDir);
+    }
 
-    LOG.info("Installing snapshot:{}, to tmp dir:{}", request, tmpDir);
+    final List<SnapshotFileProgressProto> progress = new ArrayList<>();
+    try {
+      for (FileChunkProto chunk : snapshotChunkRequest.getFileChunksList()) {
+        SnapshotInfo pi = stateMachine.getLatestSnapshot();
+        if (pi != null && pi.getTermIndex().getIndex() >= lastIncludedIndex) {
+          throw new IOException("There exists snapshot file "
+              + pi.getFiles() + " in " + selfId
+              + " with endIndex >= lastIncludedIndex " + lastIncludedIndex);
+        }
 
-    // TODO: Make sure that subsequent requests for the same installSnapshot are coming in order,
-    // and are not lost when whole request cycle is done. Check requestId and requestIndex here
+        String fileName = chunk.getFilename(); // this is relative to the root dir
+        // TODO: assumes flat layout inside SM dir
+        File tmpSnapshotFile = new File(tmpDir,
+            new File(dir.getRoot(), fileName).getName());
 
-    for (FileChunkProto chunk : snapshotChunkRequest.getFileChunksList()) {
-      SnapshotInfo pi = stateMachine.getLatestSnapshot();
-      if (pi != null && pi.getTermIndex().getIndex() >= lastIncludedIndex) {
-        throw new IOException("There exists snapshot file "
-            + pi.getFiles() + " in " + selfId
-            + " with endIndex >= lastIncludedIndex " + lastIncludedIndex);
-      }
+        if (chunk.getReuse() || chunk.getProgressOnly()) {
+          progress.add(SnapshotFileProgressProto.newBuilder()
+              .setFilename(fileName)
+              .setOffset(getPersistedLength(pi, current, tmpSnapshotFile, chunk))
+              .build());
+          continue;
+        }
 
-      String fileName = chunk.getFilename(); // this is relative to the root dir
-      // TODO: assumes flat layout inside SM dir
-      File tmpSnapshotFile = new File(tmpDir,
-          new File(dir.getRoot(), fileName).getName());
-
-      FileOutputStream out = null;
-      try {
-        // if offset is 0, delete any existing temp snapshot file if it has the
-        // same last index.
-        if (chunk.getOffset() == 0) {
-          if (tmpSnapshotFile.exists()) {
-            FileUtils.deleteFully(tmpSnapshotFile);
-          }
-          // create the temp snapshot file and put padding inside
-          out = new FileOutputStream(tmpSnapshotFile);
-        } else {
-          Preconditions.assertTrue(tmpSnapshotFile.exists());
-          out = new FileOutputStream(tmpSnapshotFile, true);
-          FileChannel fc = out.getChannel();
-          fc.position(chunk.getOffset());
+        if (isComplete(tmpSnapshotFile, new MD5Hash(chunk.getFileDigest().toByteArray()))) {
+          // the file is already complete, e.g. the leader resends the last byte when resuming
+          progress.add(SnapshotFileProgressProto.newBuilder()
+              .setFilename(fileName)
+              .setOffset(tmpSnapshotFile.length())
+              .build());
+          continue;
         }
 
         // write data to the file
-        out.write(chunk.getData().toByteArray());
-      } finally {
-        IOUtils.cleanup(null, out);
-      }
+        final SnapshotFileWriter writer = current.getWriter(tmpSnapshotFile, chunk.getOffset());
+        if (writer == null) {
+          LOG.warn("{}: failed to resume installing {} at offset {} since the file is missing or too short",
+              selfId, tmpSnapshotFile, chunk.getOffset());
+          closeInstallation();
+          return null;
+        }
+        final ByteString data = CompressionUtils.decompress(
+            chunk.getCompression(), chunk.getData(), Math.toIntExact(chunk.getUncompressedSize()));
+        writer.write(chunk.getOffset(), data);
+        progress.add(SnapshotFileProgressProto.newBuilder()
+            .setFilename(fileName)
+            .setOffset(writer.getLength())
+            .build());
 
-      // rename the temp snapshot file if this is the last chunk. also verify
-      // the md5 digest and create the md5 meta-file.
-      if (chunk.getDone()) {
-        final MD5Hash expectedDigest =
-            new MD5Hash(chunk.getFileDigest().toByteArray());
-        // calculate the checksum of the snapshot file and compare it with the
-        // file digest in the request
-        MD5Hash digest = MD5FileUtil.computeMd5ForFile(tmpSnapshotFile);
-        if (!digest.equals(expectedDigest)) {
-          LOG.warn("The snapshot md5 digest {} does not match expected {}",
-              digest, expectedDigest);
-          // rename the temp snapshot file to .corrupt
-          FileUtils.renameFileToCorrupt(tmpSnapshotFile);
-          throw new CorruptedFileException(
-              tmpSnapshotFile, "MD5 mismatch for snapshot-" + lastIncludedIndex
-              + " installation");
-        } else {
-          MD5FileUtil.saveMD5File(tmpSnapshotFile, digest);
+        // close the temp snapshot file if this is the last chunk. also verify
+        // the md5 digest and create the md5 meta-file.
+        if (chunk.getDone()) {
+          final MD5Hash expectedDigest =
+              new MD5Hash(chunk.getFileDigest().toByteArray());
+          // the checksum of the snapshot file is computed while writing it
+          final MD5Hash digest = current.remove(tmpSnapshotFile).finish();
+          if (!digest.equals(expectedDigest)) {
+            LOG.warn("The snapshot md5 digest {} does not match expected {}",
+                digest, expectedDigest);
+            // rename the temp snapshot file to .corrupt
+            FileUtils.renameFileToCorrupt(tmpSnapshotFile);
+            throw new CorruptedFileException(
+                tmpSnapshotFile, "MD5 mismatch for snapshot-" + lastIncludedIndex
+                + " installation");
+          } else {
+            MD5FileUtil.saveMD5File(tmpSnapshotFile, digest);
+          }
         }
       }
+    } catch (IOException e) {
+      // keep the temp dir for resuming the installation
+      closeInstallation();
+      throw e;
     }
 
     if (snapshotChunkRequest.getDone()) {
+      // all the files should have been closed when their last chunks were received
+      closeInstallation();
       LOG.info("Install snapshot is done, renaming tnp dir:{} to:{}",
           tmpDir, dir.getStateMachineDir());
-      dir.getStateMachineDir().delete();
-      tmpDir.renameTo(dir.getStateMachineDir());
+      replaceStateMachineDir(tmpDir);
+    }
+    return progress;
+  }
+
+  /**
+   * Replace the state machine dir with the given dir.
+   * The current dir is moved aside first and is only deleted after the new dir is in place,
+   * so that there is always a snapshot to recover from; see {@link #recoverStateMachineDir()}.
+   */
+  private void replaceStateMachineDir(File newDir) throws IOException {
+    final RaftStorageDirectory dir = storage.getStorageDir();
+    final File smDir = dir.getStateMachineDir();
+    final File oldDir = dir.getStateMachineOldDir();
+    if (oldDir.exists()) {
+      FileUtils.deleteFully(oldDir);
+    }
+    if (smDir.exists()) {
+      FileUtils.move(smDir, oldDir);
+    }
+    FileUtils.move(newDir, smDir);
+    FileUtils.fsyncDirectory(dir.getRoot());
+    finishReplacingStateMachineDir(oldDir, smDir);
+  }
+
+  /**
+   * Move the regular files of the old dir which are missing in the new dir,
+   * such as the files the state machine keeps other than the snapshot, and then delete the old dir.
+   * The files of the old snapshot, i.e. the files with digests, and the subdirectories are not moved.
+   */
+  private void finishReplacingStateMachineDir(File oldDir, File smDir) throws IOException {
+    final File[] files = oldDir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        final File target = new File(smDir, f.getName());
+        final boolean isSnapshotFile = f.getName().endsWith(MD5FileUtil.MD5_SUFFIX)
+            || MD5FileUtil.getDigestFileForFile(f).exists();
+        if (f.isFile() && !isSnapshotFile && !target.exists()) {
+          FileUtils.move(f, target);
+        }
+      }
+    }
+    FileUtils.deleteFully(oldDir);
+  }
+
+  /** Recover the state machine dir if the server was stopped in the middle of replacing it. */
+  private void recoverStateMachineDir() throws IOException {
+    final RaftStorageDirectory dir = storage.getStorageDir();
+    final File smDir = dir.getStateMachineDir();
+    final File oldDir = dir.getStateMachineOldDir();
+    if (!oldDir.exists()) {
+      return;
+    }
+    if (smDir.exists()) {
+      LOG.info("{}: finish replacing {} with {}", selfId, oldDir, smDir);
+      finishReplacingStateMachineDir(oldDir, smDir);
+    } else {
+      LOG.info("{}: restore {} from {}", selfId, smDir, oldDir);
+      FileUtils.move(oldDir, smDir);
     }
   }
 }
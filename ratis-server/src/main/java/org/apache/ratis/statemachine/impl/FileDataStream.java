@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.statemachine.impl;
+
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.RaftServerConfigKeys.DataStream.SyncPolicy;
+import org.apache.ratis.server.metrics.DataStreamMetrics;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.util.IOUtils;
+import org.apache.ratis.util.JavaUtils;
+import org.apache.ratis.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link StateMachine.DataStream} writing the data to a local file.
+ *
+ * The file is preallocated in chunks of {@link RaftServerConfigKeys.DataStream#filePreallocatedSize(RaftProperties)}.
+ * Small writes are coalesced in a direct buffer whose size is a multiple of {@link #BLOCK_SIZE};
+ * large writes bypass the buffer so that the file is written in block-aligned chunks whenever possible.
+ * The data is forced to the disk according to the {@link SyncPolicy}.
+ * When the buffer is flushed for a sync, its trailing partial block is kept in the buffer
+ * and is rewritten with the following data, so that every write starts at a block boundary.
+ *
+ * This class is NOT threadsafe; the writes of a stream are expected to be serialized by the caller.
+ */
+public class FileDataStream implements StateMachine.DataStream, WritableByteChannel {
+  public static final Logger LOG = LoggerFactory.getLogger(FileDataStream.class);
+
+  /** The alignment of the file writes. */
+  public static final int BLOCK_SIZE = 4096;
+
+  private static final ByteBuffer FILL = ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+  private final File file;
+  private final FileChannel fileChannel;
+  private final ByteBuffer buffer;
+  private final DataStreamMetrics metrics;
+
+  private final long preallocatedSize;
+  private final SyncPolicy syncPolicy;
+  private final long syncBytes;
+
+  /** The position of the next write to the file, which is block-aligned, excluding the buffered data. */
+  private long filePosition = 0;
+  /** The number of the bytes at the beginning of the buffer which are already written to the file. */
+  private int bufferWritten = 0;
+  /** The number of bytes written at the last sync. */
+  private long syncedPosition = 0;
+  private boolean open = true;
+
+  public FileDataStream(File file, RaftProperties properties, DataStreamMetrics metrics) throws IOException {
+    this.file = file;
+    this.metrics = Objects.requireNonNull(metrics, "metrics == null");
+    this.preallocatedSize = RaftServerConfigKeys.DataStream.filePreallocatedSize(properties).getSize();
+    this.syncPolicy = RaftServerConfigKeys.DataStream.fileSyncPolicy(properties);
+    this.syncBytes = RaftServerConfigKeys.DataStream.fileSyncBytes(properties).getSize();
+
+    final long bufferSize = RaftServerConfigKeys.DataStream.fileWriteBufferSize(properties).getSize();
+    this.buffer = ByteBuffer.allocateDirect(Math.toIntExact(roundUp(bufferSize)));
+    this.fileChannel = FileChannel.open(file.toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  static long roundUp(long size) {
+    return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /** @return the number of bytes written to this stream, including the buffered data. */
+  public long getBytesWritten() {
+    return filePosition + buffer.position();
+  }
+
+  @Override
+  public WritableByteChannel getWritableByteChannel() {
+    return this;
+  }
+
+  @Override
+  public int write(ByteBuffer src) throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+    final int written = src.remaining();
+    while (src.hasRemaining()) {
+      if (buffer.position() == 0 && src.remaining() >= buffer.capacity()) {
+        // write the block-aligned part directly
+        final int aligned = src.remaining() - src.remaining() % BLOCK_SIZE;
+        final ByteBuffer slice = src.slice();
+        slice.limit(aligned);
+        writeToFile(slice);
+        filePosition += aligned;
+        metrics.onBytesWritten(aligned);
+        src.position(src.position() + aligned);
+      } else {
+        final int n = Math.min(src.remaining(), buffer.remaining());
+        final ByteBuffer slice = src.slice();
+        slice.limit(n);
+        buffer.put(slice);
+        src.position(src.position() + n);
+        if (!buffer.hasRemaining()) {
+          flushBuffer();
+        }
+      }
+    }
+
+    if (syncPolicy == SyncPolicy.WRITE
+        || (syncPolicy == SyncPolicy.BYTES && getBytesWritten() - syncedPosition >= syncBytes)) {
+      flushBuffer();
+      sync(false);
+    }
+    return written;
+  }
+
+  /**
+   * Write the buffered data to the file.
+   * The trailing partial block, if there is any, is kept in the buffer
+   * so that the next write to the file also starts at a block boundary.
+   */
+  private void flushBuffer() throws IOException {
+    final int length = buffer.position();
+    if (length == bufferWritten) {
+      return;
+    }
+    buffer.flip();
+    writeToFile(buffer);
+    metrics.onBytesWritten(length - bufferWritten);
+
+    final int aligned = length - length % BLOCK_SIZE;
+    filePosition += aligned;
+    buffer.position(aligned);
+    buffer.compact();
+    bufferWritten = buffer.position();
+  }
+
+  /** Write the given data to the file at {@link #filePosition}. */
+  private void writeToFile(ByteBuffer src) throws IOException {
+    Preconditions.assertTrue(filePosition % BLOCK_SIZE == 0,
+        () -> this + ": unaligned file position " + filePosition);
+    preallocateIfNecessary(src.remaining());
+    IOUtils.writeFully(fileChannel, src, filePosition);
+  }
+
+  private void preallocateIfNecessary(int size) throws IOException {
+    if (preallocatedSize <= 0) {
+      return;
+    }
+    final long required = filePosition + size - fileChannel.size();
+    if (required > 0) {
+      final long allocated = IOUtils.preallocate(fileChannel, Math.max(required, preallocatedSize), FILL);
+      metrics.onPreallocated(allocated);
+    }
+  }
+
+  private void sync(boolean metaData) throws IOException {
+    final long startTime = System.nanoTime();
+    fileChannel.force(metaData);
+    metrics.onSync(System.nanoTime() - startTime);
+    syncedPosition = getBytesWritten();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  /** Flush the buffered data, truncate the preallocated space, force the file to the disk and then close it. */
+  @Override
+  public void close() throws IOException {
+    if (!open) {
+      return;
+    }
+    open = false;
+    try {
+      flushBuffer();
+      final long size = getBytesWritten();
+      if (fileChannel.size() > size) {
+        fileChannel.truncate(size);
+      }
+      sync(true);
+    } finally {
+      fileChannel.close();
+    }
+  }
+
+  /** Close this stream; the data written is kept in the file for possible recovery. */
+  @Override
+  public CompletableFuture<?> cleanUp() {
+    try {
+      close();
+    } catch (Throwable t) {
+      LOG.warn("{}: Failed to close {}", this, file, t);
+      return JavaUtils.completeExceptionally(t);
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + ":" + file;
+  }
+}
@@ -24,6 +24,9 @@ import org.apache.ratis.client.RaftClient;
 import org.apache.ratis.client.api.GroupManagementApi;
 import org.apache.ratis.protocol.*;
 import org.apache.ratis.proto.RaftProtos.CommitInfoProto;
+import org.apache.ratis.proto.RaftProtos.FollowerReplicationProto;
+import org.apache.ratis.proto.RaftProtos.LeaderInfoProto;
+import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.Log4jUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -84,6 +87,29 @@ public abstract class GroupInfoBaseTest<CLUSTER extends MiniRaftCluster>
       final RaftClientReply reply = sendMessages(numMessages, cluster);
       maxCommit = reply.getCommitInfos().stream().mapToLong(CommitInfoProto::getCommitIndex).max().getAsLong();
     }
+    // check the replication summary of the leader once all the followers have caught up
+    final RaftPeerId leaderId = cluster.getLeader().getId();
+    try (final RaftClient client = cluster.createClient(leaderId)) {
+      JavaUtils.attempt(() -> {
+        final GroupInfoReply gi = client.getGroupManagementApi(leaderId).info(group.getGroupId());
+        final LeaderInfoProto leaderInfo = gi.getRoleInfoProto().getLeaderInfo();
+        Assert.assertEquals(peers.size() - 1, leaderInfo.getReplicationCount());
+        final long lastIndex = leaderInfo.getLastIndex();
+        Assert.assertTrue(lastIndex >= maxCommit);
+        Assert.assertTrue(leaderInfo.getCommitIndex() >= maxCommit);
+        for (FollowerReplicationProto f : leaderInfo.getReplicationList()) {
+          Assert.assertEquals(lastIndex, f.getMatchIndex());
+          Assert.assertEquals(lastIndex + 1, f.getNextIndex());
+          Assert.assertEquals(0, f.getLagEntries());
+          Assert.assertEquals(0, f.getLagTimeMs());
+          // at least the messages and the leader's first entry are sent
+          Assert.assertTrue(f.getSentEntries() >= numMessages + 1);
+          Assert.assertTrue(f.getSentBytes() > f.getSentEntries());
+          Assert.assertEquals(0, f.getInFlightRequests());
+          Assert.assertEquals(0, f.getInFlightBytes());
+        }
+      }, 10, ONE_SECOND, "replication summary", LOG);
+    }
     // kill a follower
     final RaftPeerId killedFollower = cluster.getFollowers().iterator().next().getId();
     cluster.killServer(killedFollower);
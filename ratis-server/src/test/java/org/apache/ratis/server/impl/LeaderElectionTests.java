@@ -22,11 +22,13 @@ import org.apache.ratis.BaseTest;
 import org.apache.ratis.MiniRaftCluster;
 import org.apache.ratis.RaftTestUtil;
 import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
 import org.apache.ratis.metrics.RatisMetricRegistry;
 import org.apache.ratis.protocol.RaftClientReply;
 import org.apache.ratis.protocol.RaftGroupId;
 import org.apache.ratis.protocol.RaftGroupMemberId;
 import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServerConfigKeys;
 import org.apache.ratis.server.metrics.LeaderElectionMetrics;
 import org.apache.ratis.server.raftlog.segmented.SegmentedRaftLogTestUtils;
 import org.apache.ratis.util.ExitUtils;
@@ -177,6 +179,37 @@ public abstract class LeaderElectionTests<CLUSTER extends MiniRaftCluster>
     Assert.assertEquals(leader.getId(), lastServerLeaderId);
   }
 
+  @Test
+  public void testPreVote() throws Exception {
+    final RaftProperties p = getProperties();
+    RaftServerConfigKeys.LeaderElection.setPreVote(p, true);
+    try {
+      runWithNewCluster(3, this::runTestPreVote);
+    } finally {
+      RaftServerConfigKeys.LeaderElection.setPreVote(p, RaftServerConfigKeys.LeaderElection.PRE_VOTE_DEFAULT);
+    }
+  }
+
+  void runTestPreVote(CLUSTER cluster) throws Exception {
+    final RaftServerImpl leader = waitForLeader(cluster);
+    final long term = leader.getState().getCurrentTerm();
+    final RaftServerImpl follower = cluster.getFollowers().get(0);
+    try {
+      // the isolated follower keeps asking for pre-votes without increasing its term
+      isolate(cluster, follower.getId());
+      Thread.sleep(3 * follower.getMaxTimeoutMs());
+      Assert.assertEquals(term, follower.getState().getCurrentTerm());
+    } finally {
+      deIsolate(cluster, follower.getId());
+    }
+
+    // the follower rejoins without disrupting the leader
+    Thread.sleep(2 * leader.getMaxTimeoutMs());
+    Assert.assertTrue(leader.isLeader());
+    Assert.assertEquals(term, leader.getState().getCurrentTerm());
+    Assert.assertEquals(leader.getId(), waitForLeader(cluster).getId());
+  }
+
   protected void testDisconnectLeader() throws Exception {
     try(final MiniRaftCluster cluster = newCluster(3)) {
       cluster.start();
@@ -19,18 +19,29 @@ package org.apache.ratis.server.impl;
 
 import org.apache.log4j.Level;
 import org.apache.ratis.MiniRaftCluster;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.FileChunkProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
 import org.apache.ratis.proto.RaftProtos.RaftPeerRole;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftGroupMemberId;
 import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.raftlog.RaftLog;
+import org.apache.ratis.server.storage.RaftStorage;
+import org.apache.ratis.server.storage.RaftStorageDirectory;
+import org.apache.ratis.statemachine.SnapshotInfo;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.Log4jUtils;
 import org.apache.ratis.util.TimeDuration;
+import org.apache.ratis.util.TokenBucket;
 import org.junit.Assert;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -127,4 +138,53 @@ public class RaftServerTestUtil {
   public static RaftServerImpl getRaftServerImpl(RaftServerProxy proxy, RaftGroupId groupId) {
     return JavaUtils.callAsUnchecked(() -> proxy.getImpl(groupId));
   }
+
+  /**
+   * Create a mock server supporting only what a {@link LogAppender} needs for sending snapshots,
+   * so that the appender can be tested without a cluster.
+   * The file paths are relative to their parent dirs.
+   */
+  public static RaftServerImpl newMockServer(RaftProperties properties, TokenBucket snapshotRateLimiter) {
+    final RaftServerProxy proxy = Mockito.mock(RaftServerProxy.class);
+    Mockito.when(proxy.getProperties()).thenReturn(properties);
+    Mockito.when(proxy.getSnapshotRateLimiter()).thenReturn(snapshotRateLimiter);
+
+    final RaftStorageDirectory dir = Mockito.mock(RaftStorageDirectory.class);
+    Mockito.when(dir.relativizeToRoot(Mockito.any(Path.class)))
+        .thenAnswer(invocation -> ((Path) invocation.getArguments()[0]).getFileName());
+    final RaftStorage storage = Mockito.mock(RaftStorage.class);
+    Mockito.when(storage.getStorageDir()).thenReturn(dir);
+    final ServerState state = Mockito.mock(ServerState.class);
+    Mockito.when(state.getLog()).thenReturn(Mockito.mock(RaftLog.class));
+    Mockito.when(state.getStorage()).thenReturn(storage);
+
+    final RaftServerImpl server = Mockito.mock(RaftServerImpl.class);
+    Mockito.when(server.getProxy()).thenReturn(proxy);
+    Mockito.when(server.getState()).thenReturn(state);
+    Mockito.when(server.getMinTimeoutMs()).thenReturn(150);
+    Mockito.when(server.getMemberId()).thenReturn(
+        RaftGroupMemberId.valueOf(RaftPeerId.valueOf("s0"), RaftGroupId.randomId()));
+    Mockito.when(server.createInstallSnapshotRequest(Mockito.any(RaftPeerId.class), Mockito.anyString(),
+        Mockito.anyInt(), Mockito.any(SnapshotInfo.class), Mockito.anyList(), Mockito.anyBoolean()))
+        .thenAnswer(invocation -> {
+          final Object[] args = invocation.getArguments();
+          @SuppressWarnings("unchecked")
+          final List<FileChunkProto> chunks = (List<FileChunkProto>) args[4];
+          return InstallSnapshotRequestProto.newBuilder()
+              .setSnapshotChunk(InstallSnapshotRequestProto.SnapshotChunkProto.newBuilder()
+                  .setRequestId((String) args[1])
+                  .setRequestIndex((Integer) args[2])
+                  .addAllFileChunks(chunks)
+                  .setDone((Boolean) args[5]))
+              .build();
+        });
+    return server;
+  }
+
+  public static FollowerInfo newMockFollower(String id) {
+    final FollowerInfo follower = Mockito.mock(FollowerInfo.class);
+    Mockito.when(follower.getName()).thenReturn(id);
+    Mockito.when(follower.getPeer()).thenReturn(RaftPeer.newBuilder().setId(id).build());
+    return follower;
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import com.codahale.metrics.Timer;
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.protocol.RaftClientRequest;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.util.TimeDuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class TestRequestTracer extends BaseTest {
+  private static RaftClientRequest newRequest(long callId) {
+    return new RaftClientRequest(ClientId.randomId(), RaftPeerId.valueOf("s0"), RaftGroupId.randomId(),
+        callId, RaftClientRequest.writeRequestType());
+  }
+
+  @Test
+  public void testDisabled() {
+    final RequestTracer tracer = new RequestTracer("disabled", 0, TimeDuration.ZERO, name -> {
+      throw new AssertionError("Unexpected timer " + name);
+    });
+    Assert.assertFalse(tracer.isEnabled());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertNull(tracer.sample(newRequest(i), System.nanoTime()));
+    }
+    tracer.onFlushed(10);
+    tracer.onCommitted(10);
+    tracer.onApplied(1);
+  }
+
+  @Test
+  public void testStages() {
+    final Map<String, Timer> timers = new HashMap<>();
+    final RequestTracer tracer = new RequestTracer("test", 3, TimeDuration.valueOf(1, TimeUnit.NANOSECONDS),
+        name -> timers.computeIfAbsent(name, key -> new Timer()));
+    Assert.assertEquals(RequestTracer.Stage.values().length, timers.size());
+
+    // one in every 3 requests is sampled
+    int sampled = 0;
+    for (int i = 0; i < 9; i++) {
+      final RequestTracer.Trace trace = tracer.sample(newRequest(i), System.nanoTime());
+      if (trace != null) {
+        sampled++;
+        trace.mark(RequestTracer.Stage.START_TRANSACTION);
+        tracer.onAppended(trace, i);
+      }
+    }
+    Assert.assertEquals(3, sampled);
+    Assert.assertEquals(3, tracer.getNumTraces());
+
+    tracer.onFlushed(4);
+    tracer.onCommitted(3);
+    tracer.onApplied(0);
+    tracer.onApplied(3);
+    Assert.assertEquals(1, tracer.getNumTraces());
+    for (RequestTracer.Stage stage : RequestTracer.Stage.values()) {
+      Assert.assertEquals(stage.toString(), 2, timers.get(stage.getMetricName()).getCount());
+    }
+
+    // the entry at index 6 is neither flushed nor committed
+    tracer.onApplied(6);
+    Assert.assertEquals(0, tracer.getNumTraces());
+    Assert.assertEquals(2, timers.get(RequestTracer.Stage.FLUSH.getMetricName()).getCount());
+    Assert.assertEquals(2, timers.get(RequestTracer.Stage.COMMIT.getMetricName()).getCount());
+    Assert.assertEquals(3, timers.get(RequestTracer.Stage.APPLY.getMetricName()).getCount());
+  }
+
+  @Test
+  public void testTraceBreakdown() {
+    final RequestTracer.Trace trace = new RequestTracer.Trace(newRequest(1), 100);
+    trace.mark(RequestTracer.Stage.START_TRANSACTION, 110);
+    trace.mark(RequestTracer.Stage.APPEND, 130);
+    // committed by the followers before the leader flush
+    trace.mark(RequestTracer.Stage.COMMIT, 160);
+    trace.mark(RequestTracer.Stage.FLUSH, 170);
+    trace.mark(RequestTracer.Stage.APPLY, 200);
+    // a stage is marked only once
+    trace.mark(RequestTracer.Stage.APPLY, 300);
+
+    final Map<RequestTracer.Stage, Long> nanos = trace.getStageNanos();
+    Assert.assertEquals(10L, (long) nanos.get(RequestTracer.Stage.START_TRANSACTION));
+    Assert.assertEquals(20L, (long) nanos.get(RequestTracer.Stage.APPEND));
+    Assert.assertEquals(40L, (long) nanos.get(RequestTracer.Stage.FLUSH));
+    Assert.assertEquals(0L, (long) nanos.get(RequestTracer.Stage.COMMIT));
+    Assert.assertEquals(30L, (long) nanos.get(RequestTracer.Stage.APPLY));
+    Assert.assertEquals(100L, trace.getTotalNanos());
+  }
+
+  @Test
+  public void testNonPositiveTimes() {
+    // System.nanoTime() may return zero or negative values
+    final RequestTracer.Trace trace = new RequestTracer.Trace(newRequest(1), -20);
+    trace.mark(RequestTracer.Stage.START_TRANSACTION, -10);
+    trace.mark(RequestTracer.Stage.APPEND, 0);
+    // a stage marked at time 0 is still marked only once
+    trace.mark(RequestTracer.Stage.APPEND, 5);
+    trace.mark(RequestTracer.Stage.APPLY, 30);
+
+    final Map<RequestTracer.Stage, Long> nanos = trace.getStageNanos();
+    Assert.assertEquals(3, nanos.size());
+    Assert.assertEquals(10L, (long) nanos.get(RequestTracer.Stage.START_TRANSACTION));
+    Assert.assertEquals(10L, (long) nanos.get(RequestTracer.Stage.APPEND));
+    Assert.assertEquals(30L, (long) nanos.get(RequestTracer.Stage.APPLY));
+    Assert.assertEquals(50L, trace.getTotalNanos());
+
+    // the timestamps wrap around
+    final RequestTracer.Trace wrapped = new RequestTracer.Trace(newRequest(2), Long.MAX_VALUE - 5);
+    wrapped.mark(RequestTracer.Stage.APPLY, Long.MIN_VALUE + 4);
+    Assert.assertEquals(10L, (long) wrapped.getStageNanos().get(RequestTracer.Stage.APPLY));
+    Assert.assertEquals(10L, wrapped.getTotalNanos());
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.client;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.client.api.DataStreamOutput;
+import org.apache.ratis.datastream.impl.DataStreamRequestFilePositionCount;
+import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
+import org.apache.ratis.protocol.DataStreamReply;
+import org.apache.ratis.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Test the default methods of {@link DataStreamOutput}. */
+public class TestDataStreamOutput extends BaseTest {
+  /** An output supporting only buffers. */
+  static class BufferOutput implements DataStreamOutput {
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<DataStreamReply> writeAsync(ByteBuffer buf) {
+      buffers.add(buf);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<DataStreamReply> closeAsync() {
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  @Test
+  public void testWriteFileRegion() throws Exception {
+    final File dir = getTestDir();
+    FileUtils.createDirectories(dir);
+    final File file = new File(dir, "data");
+    final byte[] data = new byte[1000];
+    ThreadLocalRandom.current().nextBytes(data);
+    Files.write(file.toPath(), data);
+
+    final BufferOutput out = new BufferOutput();
+    try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      out.writeAsync(in, 100, 300).get();
+      out.writeAsync(in, 400, 0).get();
+      Assert.assertEquals(2, out.buffers.size());
+      Assert.assertEquals(ByteBuffer.wrap(data, 100, 300), out.buffers.get(0));
+      Assert.assertEquals(0, out.buffers.get(1).remaining());
+
+      // the region is beyond the end of the file
+      testFailureCase("read beyond EOF", () -> out.writeAsync(in, 900, 200).get(),
+          ExecutionException.class, EOFException.class);
+      Assert.assertEquals(2, out.buffers.size());
+
+      for (long[] region : Arrays.asList(new long[]{-1, 10}, new long[]{0, -1})) {
+        testFailureCase("negative region " + Arrays.toString(region),
+            () -> out.writeAsync(in, region[0], region[1]), IllegalArgumentException.class);
+        testFailureCase("negative region " + Arrays.toString(region),
+            () -> new DataStreamRequestFilePositionCount(1, 0, in, region[0], region[1], Type.STREAM_DATA),
+            IllegalArgumentException.class);
+      }
+    } finally {
+      FileUtils.deleteFully(dir);
+    }
+  }
+}
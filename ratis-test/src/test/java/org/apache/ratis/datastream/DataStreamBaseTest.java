@@ -46,14 +46,18 @@ import org.apache.ratis.server.impl.ServerFactory;
 import org.apache.ratis.statemachine.StateMachine;
 import org.apache.ratis.statemachine.impl.BaseStateMachine;
 import org.apache.ratis.statemachine.StateMachine.DataStream;
+import org.apache.ratis.util.FileUtils;
 import org.apache.ratis.util.JavaUtils;
 import org.apache.ratis.util.LifeCycle;
 import org.apache.ratis.util.NetUtils;
 import org.junit.Assert;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -399,6 +403,37 @@ abstract class DataStreamBaseTest extends BaseTest {
     }
   }
 
+  void runTestDataStreamFromFile(int numServers, int regionSize, int regionNum) throws Exception {
+    final File file = new File(getTestDir(), "data");
+    FileUtils.createDirectories(file.getParentFile());
+    try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      out.write(initBuffer(0, regionSize * regionNum));
+    }
+
+    try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      setup(numServers);
+      try (RaftClient client = newRaftClientForDataStream()) {
+        final DataStreamOutputImpl out = (DataStreamOutputImpl) client.getDataStreamApi().stream();
+        final List<CompletableFuture<DataStreamReply>> futures = new ArrayList<>();
+        for (int i = 0; i < regionNum; i++) {
+          futures.add(out.writeAsync(in, (long) i * regionSize, regionSize));
+        }
+        for (CompletableFuture<DataStreamReply> f : futures) {
+          final DataStreamReply reply = f.join();
+          Assert.assertTrue(reply.isSuccess());
+          Assert.assertEquals(regionSize, reply.getBytesWritten());
+          Assert.assertEquals(Type.STREAM_DATA, reply.getType());
+        }
+        // the file channel is still open
+        Assert.assertTrue(in.isOpen());
+        for (Server s : servers) {
+          assertHeader(s, out.getHeader(), regionSize * regionNum);
+        }
+      }
+    } finally {
+      shutdown();
+    }
+  }
 
   void runTestCloseStream(int bufferSize, int bufferNum, RaftClientReply expectedClientReply)
       throws IOException {
@@ -20,7 +20,12 @@ package org.apache.ratis.datastream;
 
 import org.apache.ratis.RaftConfigKeys;
 import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.datastream.impl.DataStreamReplyByteBuffer;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
 import org.apache.ratis.netty.NettyConfigKeys;
+import org.apache.ratis.netty.NettyDataStreamUtils;
+import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
 import org.apache.ratis.protocol.ClientId;
 import org.apache.ratis.protocol.RaftClientReply;
 import org.apache.ratis.protocol.RaftClientRequest;
@@ -30,12 +35,20 @@ import org.apache.ratis.protocol.RaftPeer;
 import org.apache.ratis.protocol.RaftPeerId;
 import org.apache.ratis.protocol.exceptions.NotLeaderException;
 import org.apache.ratis.server.RaftServer;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.buffer.CompositeByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.Unpooled;
 import org.apache.ratis.util.NetUtils;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -78,7 +91,67 @@ public class TestDataStreamNetty extends DataStreamBaseTest {
     runTestDataStream(3);
   }
 
+  @Test
+  public void testDataStreamChain() throws Exception {
+    RaftServerConfigKeys.DataStream.setTopology(properties, RaftServerConfigKeys.DataStream.Topology.CHAIN);
+    runTestDataStream(3);
+  }
+
+  @Test
+  public void testDataStreamFromFile() throws Exception {
+    runTestDataStreamFromFile(3, 100_000, 20);
+  }
+
+  @Test
+  public void testDataStreamProtobufHeader() throws Exception {
+    NettyConfigKeys.DataStream.setBinaryHeaderEnabled(properties, false);
+    runTestDataStream(3);
+  }
+
+  @Test
+  public void testBinaryHeader() {
+    final byte[] data = "binary-header".getBytes(StandardCharsets.UTF_8);
+    for (boolean binary : new boolean[]{false, true}) {
+      final CompositeByteBuf buf = Unpooled.compositeBuffer();
+      final DataStreamRequestByteBuffer request = new DataStreamRequestByteBuffer(
+          1L, 100L, ByteBuffer.wrap(data), Type.STREAM_DATA);
+      NettyDataStreamUtils.encodeDataStreamRequestByteBuffer(request, b -> buf.addComponent(true, b),
+          ByteBufAllocator.DEFAULT, true, binary);
+      final int[] version = {-1};
+      final DataStreamRequestByteBuf decodedRequest = NettyDataStreamUtils.decodeDataStreamRequestByteBuf(
+          buf, header -> version[0] = header.getBinaryHeaderVersion());
+      Assert.assertNotNull(decodedRequest);
+      Assert.assertEquals(1, version[0]);
+      Assert.assertEquals(1L, decodedRequest.getStreamId());
+      Assert.assertEquals(100L, decodedRequest.getStreamOffset());
+      Assert.assertEquals(Type.STREAM_DATA, decodedRequest.getType());
+      Assert.assertEquals(Unpooled.wrappedBuffer(data), decodedRequest.slice());
+
+      final DataStreamReplyByteBuffer reply = new DataStreamReplyByteBuffer(
+          1L, 100L, ByteBuffer.wrap(data), 12345L, true, Type.STREAM_CLOSE);
+      NettyDataStreamUtils.encodeDataStreamReplyByteBuffer(reply, b -> buf.addComponent(true, b),
+          ByteBufAllocator.DEFAULT, binary);
+      // the reply is incomplete until all its bytes are received
+      final ByteBuf partial = buf.slice(buf.readerIndex(), buf.readableBytes() - 1);
+      Assert.assertNull(NettyDataStreamUtils.decodeDataStreamReplyByteBuffer(partial));
+      final DataStreamReplyByteBuffer decodedReply = NettyDataStreamUtils.decodeDataStreamReplyByteBuffer(buf);
+      Assert.assertNotNull(decodedReply);
+      Assert.assertEquals(1L, decodedReply.getStreamId());
+      Assert.assertEquals(12345L, decodedReply.getBytesWritten());
+      Assert.assertTrue(decodedReply.isSuccess());
+      Assert.assertEquals(Type.STREAM_CLOSE, decodedReply.getType());
+      Assert.assertEquals(ByteBuffer.wrap(data), decodedReply.slice());
+      Assert.assertEquals(0, buf.readableBytes());
+      buf.release();
+    }
+  }
+
   private void testCloseStream(int leaderIndex, int numServers) throws Exception {
+    testCloseStream(leaderIndex, numServers, RaftServerConfigKeys.DataStream.Topology.STAR);
+  }
+
+  private void testCloseStream(int leaderIndex, int numServers, RaftServerConfigKeys.DataStream.Topology topology)
+      throws Exception {
     List<RaftServer> raftServers = new ArrayList<>();
     ClientId clientId = ClientId.randomId();
     RaftGroupId groupId = RaftGroupId.randomId();
@@ -95,6 +168,7 @@ public class TestDataStreamNetty extends DataStreamBaseTest {
       RaftProperties properties = new RaftProperties();
       NettyConfigKeys.DataStream.setPort(properties, NetUtils.createLocalServerAddress().getPort());
       RaftConfigKeys.DataStream.setType(properties, SupportedDataStreamType.NETTY);
+      RaftServerConfigKeys.DataStream.setTopology(properties, topology);
 
       if (i == leaderIndex) {
         raftClientReply = expectedClientReply;
@@ -147,4 +221,10 @@ public class TestDataStreamNetty extends DataStreamBaseTest {
     // primary is 0, leader is 0
     testCloseStream(0, 1);
   }
+
+  @Test
+  public void testCloseStreamChainLastIsLeader() throws Exception {
+    // primary is 0, the chain is 0 -> 1 -> 2, leader is 2
+    testCloseStream(2, 3, RaftServerConfigKeys.DataStream.Topology.CHAIN);
+  }
 }
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.grpc;
+
+import org.apache.ratis.RaftTestUtil;
+import org.apache.ratis.client.RaftClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/** Run the basic tests with dedicated executors and direct appendEntries handling in the gRPC server. */
+public class TestRaftWithGrpcDedicatedExecutors extends TestRaftWithGrpc {
+  {
+    GrpcConfigKeys.Server.setBossGroupSize(getProperties(), 1);
+    GrpcConfigKeys.Server.setWorkerGroupSize(getProperties(), 2);
+    GrpcConfigKeys.Server.setServerExecutorSize(getProperties(), 2);
+    GrpcConfigKeys.Server.setClientExecutorSize(getProperties(), 2);
+    GrpcConfigKeys.Server.setAppendEntriesDirectExecutorEnabled(getProperties(), true);
+  }
+
+  @Test
+  public void testDedicatedExecutorsUsed() throws Exception {
+    runWithNewCluster(NUM_SERVERS, cluster -> {
+      RaftTestUtil.waitForLeader(cluster);
+      try (RaftClient client = cluster.createClient()) {
+        Assert.assertTrue(client.io().send(new RaftTestUtil.SimpleMessage("m")).isSuccess());
+      }
+
+      // the threads of the fixed thread pools are created only when a task is submitted
+      final Set<String> threads = Thread.getAllStackTraces().keySet().stream()
+          .map(Thread::getName)
+          .collect(Collectors.toSet());
+      Assert.assertTrue(threads.toString(), threads.stream().anyMatch(n -> n.contains("GrpcService-client-")));
+      Assert.assertTrue(threads.toString(), threads.stream().anyMatch(n -> n.contains("GrpcService-server-")));
+    });
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.grpc.server;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesReplyProto;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
+import org.apache.ratis.proto.RaftProtos.RequestVoteReplyProto;
+import org.apache.ratis.proto.RaftProtos.RequestVoteRequestProto;
+import org.apache.ratis.proto.grpc.RaftServerProtocolServiceGrpc;
+import org.apache.ratis.proto.grpc.RaftServerProtocolServiceGrpc.RaftServerProtocolServiceImplBase;
+import org.apache.ratis.thirdparty.io.grpc.ManagedChannel;
+import org.apache.ratis.thirdparty.io.grpc.Server;
+import org.apache.ratis.thirdparty.io.grpc.ServerInterceptors;
+import org.apache.ratis.thirdparty.io.grpc.netty.NettyChannelBuilder;
+import org.apache.ratis.thirdparty.io.grpc.netty.NettyServerBuilder;
+import org.apache.ratis.thirdparty.io.grpc.stub.StreamObserver;
+import org.apache.ratis.util.Daemon;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test {@link ExecutorServerInterceptor}.
+ */
+public class TestExecutorServerInterceptor extends BaseTest {
+  private static final String EXECUTOR_THREAD = "test-executor";
+
+  /** Record the threads running the methods. */
+  static class ThreadRecordingService extends RaftServerProtocolServiceImplBase {
+    private final Map<String, String> threads = new ConcurrentHashMap<>();
+
+    String getThread(String method) {
+      return threads.get(method);
+    }
+
+    @Override
+    public void requestVote(RequestVoteRequestProto request, StreamObserver<RequestVoteReplyProto> responseObserver) {
+      threads.put("requestVote", Thread.currentThread().getName());
+      responseObserver.onNext(RequestVoteReplyProto.getDefaultInstance());
+      responseObserver.onCompleted();
+    }
+
+    @Override
+    public StreamObserver<AppendEntriesRequestProto> appendEntries(
+        StreamObserver<AppendEntriesReplyProto> responseObserver) {
+      return new StreamObserver<AppendEntriesRequestProto>() {
+        @Override
+        public void onNext(AppendEntriesRequestProto request) {
+          threads.put("appendEntries", Thread.currentThread().getName());
+          responseObserver.onNext(AppendEntriesReplyProto.getDefaultInstance());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+          responseObserver.onCompleted();
+        }
+      };
+    }
+  }
+
+  @Test
+  public void testExecutorAndDirectMethods() throws Exception {
+    final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Daemon(r, EXECUTOR_THREAD));
+    final ThreadRecordingService service = new ThreadRecordingService();
+    final ExecutorServerInterceptor interceptor = new ExecutorServerInterceptor(executor,
+        Collections.singleton(RaftServerProtocolServiceGrpc.getAppendEntriesMethod().getFullMethodName()));
+    final Server server = NettyServerBuilder.forPort(0)
+        .directExecutor()
+        .addService(ServerInterceptors.intercept(service, interceptor))
+        .build()
+        .start();
+    final ManagedChannel channel = NettyChannelBuilder.forAddress("localhost", server.getPort())
+        .usePlaintext()
+        .build();
+    try {
+      // requestVote is run in the executor
+      RaftServerProtocolServiceGrpc.newBlockingStub(channel).requestVote(RequestVoteRequestProto.getDefaultInstance());
+      Assert.assertEquals(EXECUTOR_THREAD, service.getThread("requestVote"));
+
+      // appendEntries is run directly in the transport thread
+      final CompletableFuture<AppendEntriesReplyProto> reply = new CompletableFuture<>();
+      final StreamObserver<AppendEntriesRequestProto> requests = RaftServerProtocolServiceGrpc.newStub(channel)
+          .appendEntries(new StreamObserver<AppendEntriesReplyProto>() {
+            @Override
+            public void onNext(AppendEntriesReplyProto r) {
+              reply.complete(r);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+              reply.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+          });
+      requests.onNext(AppendEntriesRequestProto.getDefaultInstance());
+      reply.get(10, TimeUnit.SECONDS);
+      requests.onCompleted();
+      final String appendEntriesThread = service.getThread("appendEntries");
+      Assert.assertNotNull(appendEntriesThread);
+      Assert.assertNotEquals(EXECUTOR_THREAD, appendEntriesThread);
+    } finally {
+      channel.shutdownNow();
+      server.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.grpc.server;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotReplyProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
+import org.apache.ratis.server.impl.LeaderState;
+import org.apache.ratis.server.impl.RaftServerTestUtil;
+import org.apache.ratis.util.TokenBucket;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CompletableFuture;
+
+/** Test the window of the installSnapshot requests in {@link GrpcLogAppender}. */
+public class TestGrpcLogAppenderSnapshotWindow extends BaseTest {
+  static InstallSnapshotRequestProto newRequest(int requestIndex) {
+    return InstallSnapshotRequestProto.newBuilder()
+        .setSnapshotChunk(InstallSnapshotRequestProto.SnapshotChunkProto.newBuilder()
+            .setRequestIndex(requestIndex))
+        .build();
+  }
+
+  static InstallSnapshotReplyProto newReply(int requestIndex) {
+    return InstallSnapshotReplyProto.newBuilder().setRequestIndex(requestIndex).build();
+  }
+
+  @Test(timeout = 10000)
+  public void testAwaitSnapshotReplies() throws Exception {
+    final GrpcLogAppender appender = new GrpcLogAppender(
+        RaftServerTestUtil.newMockServer(new RaftProperties(), new TokenBucket(0)),
+        Mockito.mock(LeaderState.class), RaftServerTestUtil.newMockFollower("s1"));
+    try {
+      final GrpcLogAppender.InstallSnapshotResponseHandler handler = appender.new InstallSnapshotResponseHandler();
+      handler.addPending(newRequest(0));
+      handler.addPending(newRequest(1));
+
+      // the number of the pending requests is below the window
+      appender.awaitSnapshotReplies(handler, 3);
+
+      // the window is full until a reply is received
+      final CompletableFuture<Void> full = CompletableFuture.runAsync(() -> appender.awaitSnapshotReplies(handler, 2));
+      Thread.sleep(100);
+      Assert.assertFalse(full.isDone());
+      handler.removePending(newReply(0));
+      full.get();
+      Assert.assertEquals(1, handler.getNumPending());
+
+      // the sender stops waiting once the handler is done, e.g. after a failure reply
+      final CompletableFuture<Void> done = CompletableFuture.runAsync(() -> appender.awaitSnapshotReplies(handler, 1));
+      Thread.sleep(100);
+      Assert.assertFalse(done.isDone());
+      handler.close();
+      done.get();
+      Assert.assertEquals(1, handler.getNumPending());
+    } finally {
+      appender.stopAppender();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.netty.server;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.client.DataStreamOutputRpc;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuf;
+import org.apache.ratis.datastream.impl.DataStreamRequestByteBuffer;
+import org.apache.ratis.netty.NettyDataStreamUtils;
+import org.apache.ratis.proto.RaftProtos.DataStreamPacketHeaderProto.Type;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.ByteBufAllocator;
+import org.apache.ratis.thirdparty.io.netty.buffer.CompositeByteBuf;
+import org.apache.ratis.thirdparty.io.netty.buffer.Unpooled;
+import org.apache.ratis.thirdparty.io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test {@link DataStreamRequestDecoder}.
+ */
+public class TestDataStreamRequestDecoder extends BaseTest {
+  @Test
+  public void testDecodeInPieces() {
+    for (boolean binary : new boolean[]{false, true}) {
+      for (int pieceSize : new int[]{1, 7, 1000, 100_000}) {
+        runTestDecodeInPieces(binary, pieceSize);
+      }
+    }
+  }
+
+  static void runTestDecodeInPieces(boolean binary, int pieceSize) {
+    final byte[] data = new byte[10_000];
+    ThreadLocalRandom.current().nextBytes(data);
+    final byte[] closeData = {1, 2, 3};
+
+    final CompositeByteBuf encoded = Unpooled.compositeBuffer();
+    NettyDataStreamUtils.encodeDataStreamRequestByteBuffer(
+        new DataStreamRequestByteBuffer(1L, 0L, ByteBuffer.wrap(data), Type.STREAM_DATA),
+        b -> encoded.addComponent(true, b), ByteBufAllocator.DEFAULT, true, binary);
+    NettyDataStreamUtils.encodeDataStreamRequestByteBuffer(
+        new DataStreamRequestByteBuffer(1L, data.length, ByteBuffer.wrap(closeData), Type.STREAM_CLOSE),
+        b -> encoded.addComponent(true, b), ByteBufAllocator.DEFAULT, true, binary);
+
+    final AtomicInteger headerCount = new AtomicInteger();
+    final EmbeddedChannel channel = new EmbeddedChannel(
+        new DataStreamRequestDecoder((ctx, header) -> headerCount.incrementAndGet()));
+    while (encoded.isReadable()) {
+      channel.writeInbound(encoded.readRetainedSlice(Math.min(pieceSize, encoded.readableBytes())));
+    }
+    encoded.release();
+    Assert.assertEquals(2, headerCount.get());
+
+    // the data packet is received in chunks
+    final CompositeByteBuf received = Unpooled.compositeBuffer();
+    for (boolean last = false; !last; ) {
+      final DataStreamRequestDecoder.Chunk chunk = channel.readInbound();
+      Assert.assertNotNull(chunk);
+      Assert.assertEquals(1L, chunk.getHeader().getStreamId());
+      Assert.assertEquals(Type.STREAM_DATA, chunk.getHeader().getType());
+      received.addComponent(true, chunk.getData());
+      last = chunk.isLast();
+    }
+    Assert.assertEquals(Unpooled.wrappedBuffer(data), received);
+    received.release();
+
+    // the close packet is received as a whole
+    final DataStreamRequestByteBuf close = channel.readInbound();
+    Assert.assertEquals(Type.STREAM_CLOSE, close.getType());
+    Assert.assertEquals(data.length, close.getStreamOffset());
+    final ByteBuf closeBuf = close.slice();
+    Assert.assertEquals(Unpooled.wrappedBuffer(closeData), closeBuf);
+    closeBuf.release();
+
+    Assert.assertNull(channel.readInbound());
+    Assert.assertFalse(channel.finish());
+  }
+
+  @Test
+  public void testForwardManyChunks() {
+    // a packet to be forwarded is received in more chunks than the default maximum number of components
+    final NettyServerStreamRpc.StreamInfo info = new NettyServerStreamRpc.StreamInfo(null, true,
+        new CompletableFuture<>(), Collections.singletonList(Mockito.mock(DataStreamOutputRpc.class)));
+    final CompositeByteBuf forward = info.getPacket(ByteBufAllocator.DEFAULT).getForward();
+    final byte[] data = new byte[100];
+    ThreadLocalRandom.current().nextBytes(data);
+    for (byte b : data) {
+      forward.addComponent(true, Unpooled.wrappedBuffer(new byte[]{b}));
+    }
+
+    // the chunks are not consolidated, i.e. not copied
+    Assert.assertEquals(data.length, forward.numComponents());
+    Assert.assertEquals(Unpooled.wrappedBuffer(data), forward);
+
+    info.releasePacket();
+    Assert.assertEquals(0, forward.refCnt());
+  }
+}
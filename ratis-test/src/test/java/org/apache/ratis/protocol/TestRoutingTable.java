@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.protocol;
+
+import org.apache.ratis.BaseTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TestRoutingTable extends BaseTest {
+  @Override
+  public int getGlobalTimeoutSeconds() {
+    return 1;
+  }
+
+  private final RaftPeerId[] peers = new RaftPeerId[]{
+      RaftPeerId.valueOf("s0"), RaftPeerId.valueOf("s1"), RaftPeerId.valueOf("s2"), RaftPeerId.valueOf("s3")};
+  private final List<RaftPeerId> all = Arrays.asList(peers);
+  private final List<RaftPeerId> others = all.subList(1, peers.length);
+
+  @Test
+  public void testValid() {
+    RoutingTable.star(peers[0], others).validate(peers[0], all);
+    RoutingTable.chain(peers[0], others).validate(peers[0], all);
+    RoutingTable.newBuilder()
+        .addSuccessor(peers[0], peers[1])
+        .addSuccessor(peers[0], peers[2])
+        .addSuccessor(peers[2], peers[3])
+        .build().validate(peers[0], all);
+
+    final RoutingTable table = RoutingTable.chain(peers[0], others);
+    Assert.assertEquals(table.toString(), RoutingTable.valueOf(table.toProto()).toString());
+  }
+
+  @Test
+  public void testInvalid() {
+    // not rooted at the primary
+    assertInvalid(RoutingTable.chain(peers[1], Arrays.asList(peers[0], peers[2], peers[3])), peers[0]);
+    // a cycle back to the primary
+    assertInvalid(RoutingTable.newBuilder()
+        .addSuccessor(peers[0], peers[1])
+        .addSuccessor(peers[1], peers[2])
+        .addSuccessor(peers[2], peers[3])
+        .addSuccessor(peers[3], peers[0])
+        .build(), peers[0]);
+    // a peer routed twice
+    assertInvalid(RoutingTable.newBuilder()
+        .addSuccessor(peers[0], peers[1])
+        .addSuccessor(peers[0], peers[2])
+        .addSuccessor(peers[1], peers[3])
+        .addSuccessor(peers[2], peers[3])
+        .build(), peers[0]);
+    // a missing peer
+    assertInvalid(RoutingTable.star(peers[0], Arrays.asList(peers[1], peers[2])), peers[0]);
+    // an unknown peer
+    assertInvalid(RoutingTable.star(peers[0], Arrays.asList(peers[1], peers[2], peers[3],
+        RaftPeerId.valueOf("unknown"))), peers[0]);
+    // routes from an unknown peer
+    assertInvalid(RoutingTable.newBuilder()
+        .addSuccessor(peers[0], peers[1])
+        .addSuccessor(peers[0], peers[2])
+        .addSuccessor(peers[0], peers[3])
+        .addSuccessor(RaftPeerId.valueOf("unknown"), peers[1])
+        .build(), peers[0]);
+    // the primary is not a peer
+    assertInvalid(RoutingTable.star(peers[0], others), RaftPeerId.valueOf("unknown"));
+  }
+
+  private void assertInvalid(RoutingTable table, RaftPeerId primary) {
+    testFailureCase("validate " + table, () -> table.validate(primary, all), IllegalArgumentException.class);
+  }
+}
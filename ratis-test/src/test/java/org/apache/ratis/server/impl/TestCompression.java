@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.proto.RaftProtos.AppendEntriesRequestProto;
+import org.apache.ratis.proto.RaftProtos.CompressionType;
+import org.apache.ratis.proto.RaftProtos.LogEntryProto;
+import org.apache.ratis.protocol.ClientId;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.CompressionUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Test the compression codec and the compressed log entries. */
+public class TestCompression extends BaseTest {
+  @Test(timeout = 10000)
+  public void testCodecRoundTrip() throws Exception {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    for(int n = 0; n < 100; n++) {
+      final byte[] bytes = new byte[random.nextInt(100000)];
+      // half random and half repeated so that the data is partially compressible
+      random.nextBytes(bytes);
+      for(int i = bytes.length / 2; i < bytes.length; i++) {
+        bytes[i] = (byte) (i % 7);
+      }
+      final ByteString data = ByteString.copyFrom(bytes);
+      for(CompressionType type : CompressionUtils.SUPPORTED_TYPES) {
+        final ByteString compressed = CompressionUtils.compress(type, data);
+        Assert.assertEquals(data, CompressionUtils.decompress(type, compressed, data.size()));
+      }
+      Assert.assertSame(data, CompressionUtils.compress(CompressionType.NONE, data));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testCompressedEntriesRoundTrip() throws Exception {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final ClientId clientId = ClientId.randomId();
+    final List<LogEntryProto> entries = new ArrayList<>();
+    for(int i = 0; i < 50; i++) {
+      final byte[] bytes = new byte[random.nextInt(1000)];
+      random.nextBytes(bytes);
+      entries.add(i % 5 == 0? ServerProtoUtils.toLogEntryProto(i, 1, i)
+          : ServerProtoUtils.toLogEntryProto(ServerProtoUtils.toStateMachineLogEntryProto(
+              clientId, i, ByteString.copyFrom(bytes), null), 1, i));
+    }
+    final AppendEntriesRequestProto request = AppendEntriesRequestProto.newBuilder()
+        .setLeaderTerm(1)
+        .setLeaderCommit(10)
+        .addAllEntries(entries)
+        .build();
+    long size = 0;
+    for(LogEntryProto e : entries) {
+      size += e.getSerializedSize();
+    }
+
+    final AppendEntriesRequestProto compressed = ServerProtoUtils.compressEntries(
+        request, CompressionType.DEFLATE, size);
+    Assert.assertEquals(0, compressed.getEntriesCount());
+    Assert.assertTrue(compressed.hasCompressedEntries());
+    Assert.assertEquals(entries.size(), compressed.getCompressedEntries().getEntryCount());
+    Assert.assertTrue(ServerProtoUtils.hasEntries(compressed));
+    Assert.assertEquals(request.getLeaderCommit(), compressed.getLeaderCommit());
+    Assert.assertEquals(entries, ServerProtoUtils.getEntries(compressed));
+
+    // requests without entries or without compression are unchanged
+    Assert.assertSame(request, ServerProtoUtils.compressEntries(request, CompressionType.NONE, size));
+    final AppendEntriesRequestProto heartbeat = request.toBuilder().clearEntries().build();
+    Assert.assertSame(heartbeat, ServerProtoUtils.compressEntries(heartbeat, CompressionType.DEFLATE, 0));
+    Assert.assertFalse(ServerProtoUtils.hasEntries(heartbeat));
+    Assert.assertEquals(entries, ServerProtoUtils.getEntries(request));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Test reading the snapshot chunks in {@link LogAppender}. */
+public class TestSnapshotChunkData extends BaseTest {
+  @Test
+  public void testHeapBuffer() throws Exception {
+    runTestReadChunkData(false);
+  }
+
+  @Test
+  public void testMemoryMapped() throws Exception {
+    runTestReadChunkData(true);
+  }
+
+  void runTestReadChunkData(boolean memoryMapped) throws Exception {
+    final File dir = getTestDir();
+    FileUtils.createDirectories(dir);
+    final File file = new File(dir, "snapshot.dat");
+    final byte[] data = new byte[10_000];
+    ThreadLocalRandom.current().nextBytes(data);
+    Files.write(file.toPath(), data);
+
+    final int chunkSize = 1024;
+    try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      for (int offset = 0; offset < data.length; offset += chunkSize) {
+        final int length = Math.min(chunkSize, data.length - offset);
+        final ByteString chunk = LogAppender.readChunkData(in, length, offset, memoryMapped);
+        Assert.assertEquals(ByteString.copyFrom(data, offset, length), chunk);
+      }
+      // reading a chunk does not change the channel position
+      Assert.assertEquals(0, in.position());
+
+      if (!memoryMapped) {
+        testFailureCase("read beyond EOF",
+            () -> LogAppender.readChunkData(in, chunkSize, data.length - 1, false), EOFException.class);
+      }
+    } finally {
+      FileUtils.deleteFully(dir);
+    }
+  }
+}
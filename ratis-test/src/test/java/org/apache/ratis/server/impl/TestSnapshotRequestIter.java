@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.impl;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.io.MD5Hash;
+import org.apache.ratis.proto.RaftProtos.FileChunkProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.server.storage.FileInfo;
+import org.apache.ratis.statemachine.SnapshotInfo;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.SizeInBytes;
+import org.apache.ratis.util.TokenBucket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Test the installSnapshot requests created by {@link LogAppender.SnapshotRequestIter}. */
+public class TestSnapshotRequestIter extends BaseTest {
+  private static final int CHUNK_SIZE = 1000;
+
+  private File dir;
+  private final Map<String, byte[]> contents = new HashMap<>();
+
+  @Before
+  public void setup() throws Exception {
+    dir = getTestDir();
+    FileUtils.createDirectories(dir);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteFully(dir);
+  }
+
+  private SnapshotInfo newSnapshot(int... sizes) throws Exception {
+    final List<FileInfo> files = new ArrayList<>();
+    for (int i = 0; i < sizes.length; i++) {
+      final byte[] data = new byte[sizes[i]];
+      ThreadLocalRandom.current().nextBytes(data);
+      final File f = new File(dir, "file" + i);
+      Files.write(f.toPath(), data);
+      contents.put(f.getName(), data);
+      files.add(new FileInfo(f.toPath(), MD5Hash.digest(data)));
+    }
+    final SnapshotInfo snapshot = Mockito.mock(SnapshotInfo.class);
+    Mockito.when(snapshot.getTermIndex()).thenReturn(TermIndex.newTermIndex(1, 100));
+    Mockito.when(snapshot.getFiles()).thenReturn(files);
+    return snapshot;
+  }
+
+  private static LogAppender newLogAppender(int filesParallel, TokenBucket snapshotRateLimiter) {
+    final RaftProperties properties = new RaftProperties();
+    RaftServerConfigKeys.Log.Appender.setSnapshotChunkSizeMax(properties, SizeInBytes.valueOf(CHUNK_SIZE));
+    RaftServerConfigKeys.Log.Appender.setSnapshotFilesParallel(properties, filesParallel);
+    return new LogAppender(RaftServerTestUtil.newMockServer(properties, snapshotRateLimiter),
+        Mockito.mock(LeaderState.class), RaftServerTestUtil.newMockFollower("s1"));
+  }
+
+  private void assertChunk(String filename, long offset, FileChunkProto chunk) {
+    Assert.assertEquals(filename, chunk.getFilename());
+    Assert.assertEquals(offset, chunk.getOffset());
+    final byte[] data = contents.get(filename);
+    final int length = Math.toIntExact(Math.min(CHUNK_SIZE, data.length - offset));
+    Assert.assertEquals(ByteString.copyFrom(data, Math.toIntExact(offset), length), chunk.getData());
+    Assert.assertEquals(offset + length == data.length, chunk.getDone());
+  }
+
+  @Test
+  public void testRoundRobin() throws Exception {
+    // file0 has 3 chunks, file1 has 1 chunk and file2 has 2 chunks
+    final SnapshotInfo snapshot = newSnapshot(2 * CHUNK_SIZE + 500, CHUNK_SIZE, CHUNK_SIZE + 1);
+    final LogAppender appender = newLogAppender(2, new TokenBucket(0));
+
+    final List<InstallSnapshotRequestProto> requests = new ArrayList<>();
+    appender.new SnapshotRequestIter(snapshot, "r1").forEach(requests::add);
+
+    // up to 2 files are read at the same time; file2 starts once file1 is done
+    final List<String> filenames = Arrays.asList("file0", "file1", "file0", "file2", "file0", "file2");
+    final long[] offsets = {0, 0, CHUNK_SIZE, 0, 2 * CHUNK_SIZE, CHUNK_SIZE};
+    Assert.assertEquals(filenames.size(), requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      final InstallSnapshotRequestProto.SnapshotChunkProto request = requests.get(i).getSnapshotChunk();
+      Assert.assertEquals(i, request.getRequestIndex());
+      Assert.assertEquals(i == requests.size() - 1, request.getDone());
+      Assert.assertEquals(1, request.getFileChunksCount());
+      assertChunk(filenames.get(i), offsets[i], request.getFileChunks(0));
+    }
+  }
+
+  @Test
+  public void testSequential() throws Exception {
+    final SnapshotInfo snapshot = newSnapshot(CHUNK_SIZE + 1, CHUNK_SIZE, 10);
+    final LogAppender appender = newLogAppender(1, new TokenBucket(0));
+
+    final List<String> filenames = new ArrayList<>();
+    for (InstallSnapshotRequestProto request : appender.new SnapshotRequestIter(snapshot, "r1")) {
+      filenames.add(request.getSnapshotChunk().getFileChunks(0).getFilename());
+    }
+    Assert.assertEquals(Arrays.asList("file0", "file0", "file1", "file2"), filenames);
+  }
+
+  @Test
+  public void testThrottle() throws Exception {
+    // the mock server has min timeout 150ms, so the chunks are capped at 75ms of the rate
+    final int rate = 10_000;
+    final int cappedChunkSize = rate * 75 / 1000;
+    // the bucket initially has the tokens of one second
+    final int size = 2 * rate;
+    final SnapshotInfo snapshot = newSnapshot(size);
+    final LogAppender appender = newLogAppender(1, new TokenBucket(rate));
+
+    final LogAppender.SnapshotRequestIter requests = appender.new SnapshotRequestIter(snapshot, "r1");
+    long offset = 0;
+    boolean throttled = false;
+    for (InstallSnapshotRequestProto request : requests) {
+      final FileChunkProto chunk = request.getSnapshotChunk().getFileChunks(0);
+      Assert.assertEquals(offset, chunk.getOffset());
+      Assert.assertTrue(chunk.getData().size() <= cappedChunkSize);
+      offset += chunk.getData().size();
+      // the iterator does not wait; the appender waits before sending the request
+      throttled |= requests.getThrottleNanos() > 0;
+    }
+    Assert.assertEquals(size, offset);
+    Assert.assertTrue(throttled);
+  }
+}
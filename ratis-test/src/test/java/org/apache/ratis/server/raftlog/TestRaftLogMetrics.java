@@ -19,12 +19,14 @@ package org.apache.ratis.server.raftlog;
 
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_APPEND_ENTRY_COUNT;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_APPEND_ENTRY_LATENCY;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_BYTES_WRITTEN;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_CACHE_HIT_COUNT;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_CACHE_MISS_COUNT;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_DATA_QUEUE_SIZE;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_FLUSH_COUNT;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_FLUSH_TIME;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_SYNC_BATCH_SIZE;
+import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_SYNC_COUNT;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_SYNC_TIME;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_TASK_ENQUEUE_DELAY;
 import static org.apache.ratis.server.metrics.RaftLogMetrics.RAFT_LOG_TASK_EXECUTION_TIME;
@@ -52,6 +54,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import javax.management.ObjectName;
+import java.io.File;
 import java.lang.management.ManagementFactory;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
@@ -192,5 +195,15 @@ public class TestRaftLogMetrics extends BaseTest
     Assert.assertNotNull(ratisMetricRegistry.get(RAFT_LOG_DATA_QUEUE_SIZE));
     Assert.assertNotNull(ratisMetricRegistry.get(RAFT_LOG_WORKER_QUEUE_SIZE));
     Assert.assertNotNull(ratisMetricRegistry.get(RAFT_LOG_SYNC_BATCH_SIZE));
+
+    // Test disk I/O accounting
+    Assert.assertEquals(tm.getCount(), ratisMetricRegistry.meter(RAFT_LOG_SYNC_COUNT).getCount());
+    final long bytesWritten = ratisMetricRegistry.meter(RAFT_LOG_BYTES_WRITTEN).getCount();
+    Assert.assertTrue(bytesWritten > 0);
+
+    final File volume = server.getState().getStorage().getStorageDir().getRoot().getParentFile();
+    final RatisMetricRegistry storageDirRegistry = server.getProxy().getStorageDirMetrics(volume).getRegistry();
+    Assert.assertTrue(storageDirRegistry.meter(RAFT_LOG_BYTES_WRITTEN).getCount() >= bytesWritten);
+    Assert.assertTrue(storageDirRegistry.meter(RAFT_LOG_SYNC_COUNT).getCount() >= tm.getCount());
   }
 }
\ No newline at end of file
@@ -44,6 +44,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -187,6 +188,55 @@ public class TestLogSegment extends BaseTest {
     Assert.assertEquals(loadInitial ? 0 : 1, closedSegment.getLoadingTimes());
   }
 
+  @Test
+  public void testLoadClosedSegmentWithIndex() throws Exception {
+    final long start = 1000;
+    final int n = 100;
+    final RaftStorage storage = new RaftStorage(storageDir, StartupOption.REGULAR);
+    final File file = storage.getStorageDir().getClosedLogFile(start, start + n - 1);
+    try (SegmentedRaftLogOutputStream out = new SegmentedRaftLogOutputStream(file, false,
+        segmentMaxSize, preallocatedSize, ByteBuffer.allocateDirect(bufferSize))) {
+      for (int i = 0; i < n; i++) {
+        // write a metadata entry in the middle
+        out.write(i == n/2? ServerProtoUtils.toLogEntryProto(start + i - 1, 1, start + i)
+            : ServerProtoUtils.toLogEntryProto(new SimpleOperation("m" + i).getLogEntryContent(), 1, start + i));
+      }
+    }
+    final File indexFile = LogSegmentIndex.getIndexFile(file);
+    Assert.assertFalse(indexFile.exists());
+
+    // the first load scans the segment file and writes the index file
+    final List<LogEntryProto> scanned = new ArrayList<>();
+    final LogSegment first = LogSegment.loadSegment(storage, file, start, start + n - 1, false, false,
+        scanned::add, null, true);
+    Assert.assertEquals(n, scanned.size());
+    Assert.assertTrue(indexFile.exists());
+
+    // the second load uses the index file; only the metadata entry is passed to the consumer
+    final List<LogEntryProto> indexed = new ArrayList<>();
+    final LogSegment second = LogSegment.loadSegment(storage, file, start, start + n - 1, false, false,
+        indexed::add, null, true);
+    Assert.assertEquals(1, indexed.size());
+    Assert.assertEquals(scanned.get(n/2), indexed.get(0));
+    Assert.assertEquals(first.getTotalSize(), second.getTotalSize());
+    for (long i = start; i < start + n; i++) {
+      Assert.assertEquals(first.getLogRecord(i).getTermIndex(), second.getLogRecord(i).getTermIndex());
+      Assert.assertEquals(first.getLogRecord(i).getOffset(), second.getLogRecord(i).getOffset());
+    }
+    Assert.assertEquals(scanned.get(7), second.loadCache(second.getLogRecord(start + 7)));
+
+    // corrupt the index file; the load should fall back to scan the segment file
+    final byte[] bytes = Files.readAllBytes(indexFile.toPath());
+    bytes[bytes.length/2] ^= 0xFF;
+    Files.write(indexFile.toPath(), bytes);
+    final List<LogEntryProto> rescanned = new ArrayList<>();
+    final LogSegment third = LogSegment.loadSegment(storage, file, start, start + n - 1, false, false,
+        rescanned::add, null, true);
+    Assert.assertEquals(n, rescanned.size());
+    Assert.assertEquals(first.getTotalSize(), third.getTotalSize());
+    storage.close();
+  }
+
   @Test
   public void testAppendEntries() throws Exception {
     final long start = 1000;
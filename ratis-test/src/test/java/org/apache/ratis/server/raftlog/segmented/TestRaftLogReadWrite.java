@@ -27,6 +27,7 @@ import org.apache.ratis.server.impl.RaftServerConstants.StartupOption;
 import org.apache.ratis.server.impl.ServerProtoUtils;
 import org.apache.ratis.server.storage.RaftStorage;
 import org.apache.ratis.thirdparty.com.google.protobuf.CodedOutputStream;
+import org.apache.ratis.proto.RaftProtos.CompressionType;
 import org.apache.ratis.proto.RaftProtos.LogEntryProto;
 import org.apache.ratis.util.FileUtils;
 import org.junit.After;
@@ -151,6 +152,53 @@ public class TestRaftLogReadWrite extends BaseTest {
     storage.close();
   }
 
+  /**
+   * Write and append log entries in the compressed format, then read both formats back.
+   */
+  @Test
+  public void testReadWriteCompressedLog() throws IOException {
+    final RaftStorage storage = new RaftStorage(storageDir, StartupOption.REGULAR);
+    final File openSegment = storage.getStorageDir().getOpenLogFile(0);
+    final LogEntryProto[] entries = new LogEntryProto[200];
+    long size = SegmentedRaftLogFormat.getHeaderLength();
+    try (SegmentedRaftLogOutputStream out = new SegmentedRaftLogOutputStream(openSegment, false,
+        segmentMaxSize, preallocatedSize, ByteBuffer.allocateDirect(bufferSize), CompressionType.DEFLATE, 1024)) {
+      for (int i = 0; i < 100; i++) {
+        entries[i] = ServerProtoUtils.toLogEntryProto(new SimpleOperation("m" + i).getLogEntryContent(), 0, i);
+        out.write(entries[i]);
+        size += LogSegment.getEntrySize(entries[i]);
+        if (i % 30 == 0) {
+          out.flush();
+        }
+      }
+    }
+    Assert.assertTrue(SegmentedRaftLogFormat.isCompressed(openSegment));
+
+    // append with the default constructor; the compressed format of the file should be kept.
+    try (SegmentedRaftLogOutputStream out = new SegmentedRaftLogOutputStream(openSegment, true,
+        segmentMaxSize, preallocatedSize, ByteBuffer.allocateDirect(bufferSize))) {
+      for (int i = 100; i < 200; i++) {
+        entries[i] = ServerProtoUtils.toLogEntryProto(new SimpleOperation("m" + i).getLogEntryContent(), 0, i);
+        out.write(entries[i]);
+        size += LogSegment.getEntrySize(entries[i]);
+      }
+    }
+
+    final List<LogEntryProto> list = new ArrayList<>();
+    LogSegment.readSegmentFile(openSegment, 0, RaftServerConstants.INVALID_LOG_INDEX, true,
+        RaftServerConfigKeys.Log.CorruptionPolicy.EXCEPTION, null, list::add);
+    Assert.assertArrayEquals(entries, list.toArray(new LogEntryProto[0]));
+
+    final LogSegment segment = LogSegment.loadSegment(storage, openSegment, 0,
+        RaftServerConstants.INVALID_LOG_INDEX, true, true, null, null);
+    Assert.assertEquals(199, segment.getEndIndex());
+    Assert.assertEquals(size, segment.getTotalSize());
+    Assert.assertTrue(openSegment.length() < size);
+    Assert.assertArrayEquals(entries, readLog(openSegment, 0, RaftServerConstants.INVALID_LOG_INDEX, true));
+
+    storage.close();
+  }
+
   /**
    * Simulate the scenario that the peer is shutdown without truncating
    * log segment file padding. Make sure the reader can correctly handle this.
@@ -209,6 +209,50 @@ public class TestSegmentedRaftLog extends BaseTest {
     }
   }
 
+  @Test
+  public void testLazyLoadLogSegments() throws Exception {
+    final List<SegmentRange> ranges = prepareRanges(0, 10, 100, 0);
+    final LogEntryProto[] entries = prepareLog(ranges);
+    final long lastIndexInSnapshot = 799;
+    RaftServerConfigKeys.Log.setSegmentCacheNumMax(properties, 2);
+    RaftServerConfigKeys.Log.setSegmentLazyLoadEnabled(properties, true);
+
+    // without warm-up, the lazy segments are loaded on access
+    RaftServerConfigKeys.Log.setSegmentLazyLoadWarmUpEnabled(properties, false);
+    try (SegmentedRaftLog raftLog = new SegmentedRaftLog(memberId, null, storage, lastIndexInSnapshot, properties)) {
+      raftLog.open(lastIndexInSnapshot, null);
+      final SegmentedRaftLogCache cache = raftLog.getRaftLogCache();
+      // segments [0, 99], ..., [600, 699] are lazy; [700, 799] has the last index in snapshot
+      Assert.assertEquals(7, cache.getLazySegments().size());
+      Assert.assertEquals(entries[entries.length - 1], getLastEntry(raftLog));
+      // neither getLastEntryTermIndex nor isConfigEntry loads a lazy segment
+      Assert.assertEquals(ServerProtoUtils.toTermIndex(entries[entries.length - 1]), raftLog.getLastEntryTermIndex());
+      Assert.assertFalse(raftLog.isConfigEntry(ServerProtoUtils.toTermIndex(entries[0])));
+      Assert.assertEquals(7, cache.getLazySegments().size());
+
+      Assert.assertEquals(entries[150], raftLog.get(150));
+      Assert.assertEquals(6, cache.getLazySegments().size());
+
+      for (LogEntryProto e : entries) {
+        Assert.assertEquals(e, raftLog.get(e.getIndex()));
+      }
+      Assert.assertEquals(0, cache.getLazySegments().size());
+    }
+
+    // with warm-up, the lazy segments are loaded in the background
+    RaftServerConfigKeys.Log.setSegmentLazyLoadWarmUpEnabled(properties, true);
+    try (SegmentedRaftLog raftLog = new SegmentedRaftLog(memberId, null, storage, lastIndexInSnapshot, properties)) {
+      raftLog.open(lastIndexInSnapshot, null);
+      final SegmentedRaftLogCache cache = raftLog.getRaftLogCache();
+      JavaUtils.attemptUntilTrue(() -> cache.getLazySegments().isEmpty(),
+          100, TimeDuration.valueOf(100, TimeUnit.MILLISECONDS), "warm-up", LOG);
+      final TermIndex[] termIndices = raftLog.getEntries(0, 1000);
+      for (int i = 0; i < termIndices.length; i++) {
+        Assert.assertEquals(ServerProtoUtils.toTermIndex(entries[i]), termIndices[i]);
+      }
+    }
+  }
+
   static List<LogEntryProto> prepareLogEntries(List<SegmentRange> slist,
       Supplier<String> stringSupplier) {
     List<LogEntryProto> eList = new ArrayList<>();
@@ -33,10 +33,14 @@ import org.junit.Test;
 import org.mockito.internal.util.reflection.Whitebox;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Matcher;
 
@@ -151,6 +155,64 @@ public class TestRaftStorage extends BaseTest {
     storage.close();
   }
 
+  @Test
+  public void testMetaFileSlots() throws Exception {
+    RaftStorage storage = new RaftStorage(storageDir, StartupOption.FORMAT);
+    File m = storage.getStorageDir().getMetaFile();
+    storage.close();
+
+    // a legacy file is still readable and is converted on the first write
+    final Properties properties = new Properties();
+    properties.setProperty("term", "5");
+    properties.setProperty("votedFor", "peer0");
+    try (OutputStream out = new FileOutputStream(m)) {
+      properties.store(out, "");
+    }
+    MetaFile metaFile = new MetaFile(m);
+    Assert.assertEquals(5, metaFile.getTerm());
+    Assert.assertEquals("peer0", metaFile.getVotedFor());
+    metaFile.set(6, "peer1");
+    Assert.assertEquals(2 * MetaFile.SLOT_SIZE, m.length());
+    assertMetaFile(m, 6, "peer1");
+
+    // the updates alternate between the slots
+    metaFile.set(7, "peer2");
+    assertMetaFile(m, 7, "peer2");
+    metaFile.set(8, "peer3");
+    assertMetaFile(m, 8, "peer3");
+
+    // a torn write of the latest slot falls back to the other slot
+    final byte[] bytes = Files.readAllBytes(m.toPath());
+    // term 8 is in slot A and term 7 is in slot B
+    for (int offset : new int[]{0, MetaFile.SLOT_SIZE}) {
+      final byte[] corrupted = bytes.clone();
+      corrupted[offset + 20] ^= 1;
+      Files.write(m.toPath(), corrupted);
+      assertMetaFile(m, offset == 0? 7: 8, offset == 0? "peer2": "peer3");
+    }
+    final byte[] corrupted = bytes.clone();
+    corrupted[20] ^= 1;
+    corrupted[MetaFile.SLOT_SIZE + 20] ^= 1;
+    Files.write(m.toPath(), corrupted);
+    testFailureCase("both slots are corrupted", () -> new MetaFile(m).getTerm(), IOException.class);
+    Files.write(m.toPath(), bytes);
+
+    // sync by a syncer
+    final MetaFileSyncer syncer = new MetaFileSyncer("s0");
+    final MetaFile synced = new MetaFile(m, syncer);
+    Assert.assertEquals(8, synced.getTerm());
+    synced.set(9, "peer4");
+    assertMetaFile(m, 9, "peer4");
+    syncer.close();
+    testFailureCase("syncer is closed", () -> synced.set(10, "peer5"), IOException.class);
+  }
+
+  static void assertMetaFile(File file, long expectedTerm, String expectedVotedFor) throws IOException {
+    final MetaFile metaFile = new MetaFile(file);
+    Assert.assertEquals(expectedTerm, metaFile.getTerm());
+    Assert.assertEquals(expectedVotedFor, metaFile.getVotedFor());
+  }
+
   /**
    * check if RaftStorage deletes tmp metafile when startup
    */
@@ -0,0 +1,378 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.server.storage;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.io.CorruptedFileException;
+import org.apache.ratis.io.MD5Hash;
+import org.apache.ratis.proto.RaftProtos.FileChunkProto;
+import org.apache.ratis.proto.RaftProtos.InstallSnapshotRequestProto;
+import org.apache.ratis.proto.RaftProtos.SnapshotFileProgressProto;
+import org.apache.ratis.proto.RaftProtos.TermIndexProto;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.impl.RaftServerConstants.StartupOption;
+import org.apache.ratis.server.protocol.TermIndex;
+import org.apache.ratis.statemachine.SnapshotInfo;
+import org.apache.ratis.statemachine.StateMachine;
+import org.apache.ratis.thirdparty.com.google.protobuf.ByteString;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.MD5FileUtil;
+import org.apache.ratis.util.TaskQueue;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the streaming snapshot installation in {@link SnapshotManager}.
+ */
+public class TestSnapshotManager extends BaseTest {
+  private static final String FILE_NAME = "sm/snapshot.1_100";
+  private static final int CHUNK_SIZE = 1000;
+
+  private File storageDir;
+  private RaftStorage storage;
+  private SnapshotManager snapshotManager;
+  private final StateMachine stateMachine = Mockito.mock(StateMachine.class);
+
+  @Before
+  public void setup() throws IOException {
+    storageDir = getTestDir();
+    storage = new RaftStorage(storageDir, StartupOption.REGULAR);
+    snapshotManager = new SnapshotManager(storage, RaftPeerId.valueOf("s0"));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (storage != null) {
+      storage.close();
+    }
+    if (storageDir != null) {
+      FileUtils.deleteFully(storageDir.getParentFile());
+    }
+  }
+
+  static List<InstallSnapshotRequestProto> newRequests(String requestId, byte[] data, byte[] digest) {
+    final List<InstallSnapshotRequestProto> requests = new ArrayList<>();
+    int requestIndex = 0;
+    for (int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+      final int length = Math.min(CHUNK_SIZE, data.length - offset);
+      final boolean done = offset + length == data.length;
+      final FileChunkProto chunk = FileChunkProto.newBuilder()
+          .setFilename(FILE_NAME)
+          .setTotalSize(data.length)
+          .setFileDigest(ByteString.copyFrom(digest))
+          .setChunkIndex(requestIndex)
+          .setOffset(offset)
+          .setData(ByteString.copyFrom(data, offset, length))
+          .setDone(done)
+          .build();
+      requests.add(InstallSnapshotRequestProto.newBuilder()
+          .setSnapshotChunk(InstallSnapshotRequestProto.SnapshotChunkProto.newBuilder()
+              .setRequestId(requestId)
+              .setRequestIndex(requestIndex++)
+              .setTermIndex(TermIndexProto.newBuilder().setTerm(1).setIndex(100))
+              .addFileChunks(chunk)
+              .setTotalSize(data.length)
+              .setDone(done))
+          .build());
+    }
+    return requests;
+  }
+
+  static byte[] randomBytes(int size) {
+    final byte[] data = new byte[size];
+    ThreadLocalRandom.current().nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void testInstallSnapshot() throws Exception {
+    final byte[] data = randomBytes(10 * CHUNK_SIZE + 123);
+    final MD5Hash expected = MD5Hash.digest(data);
+    for (InstallSnapshotRequestProto request : newRequests("r1", data, expected.getDigest())) {
+      snapshotManager.installSnapshot(stateMachine, request);
+    }
+
+    final File installed = new File(storage.getStorageDir().getStateMachineDir(), new File(FILE_NAME).getName());
+    Assert.assertArrayEquals(data, Files.readAllBytes(installed.toPath()));
+    Assert.assertEquals(expected, MD5FileUtil.readStoredMd5ForFile(installed));
+  }
+
+  @Test
+  public void testOutOfOrderChunks() throws Exception {
+    final byte[] data = randomBytes(5 * CHUNK_SIZE + 67);
+    final MD5Hash expected = MD5Hash.digest(data);
+    final List<InstallSnapshotRequestProto> requests = newRequests("r1", data, expected.getDigest());
+    for (int i = 0; i < 3; i++) {
+      snapshotManager.installSnapshot(stateMachine, requests.get(i));
+    }
+    // resend an earlier chunk; the digest can no longer be computed incrementally
+    final List<SnapshotFileProgressProto> progress = snapshotManager.installSnapshot(stateMachine, requests.get(1));
+    Assert.assertEquals(3 * CHUNK_SIZE, progress.get(0).getOffset());
+    for (int i = 3; i < requests.size(); i++) {
+      snapshotManager.installSnapshot(stateMachine, requests.get(i));
+    }
+
+    // the digest is computed from the file instead
+    final File installed = new File(storage.getStorageDir().getStateMachineDir(), new File(FILE_NAME).getName());
+    Assert.assertArrayEquals(data, Files.readAllBytes(installed.toPath()));
+    Assert.assertEquals(expected, MD5FileUtil.readStoredMd5ForFile(installed));
+  }
+
+  @Test
+  public void testAsyncInstallation() throws Exception {
+    final byte[] data = randomBytes(20 * CHUNK_SIZE + 89);
+    final MD5Hash expected = MD5Hash.digest(data);
+    final List<InstallSnapshotRequestProto> requests = newRequests("r1", data, expected.getDigest());
+
+    // the same as RaftServerImpl.installSnapshotAsync: a queue per group on a shared executor
+    final TaskQueue queue = new TaskQueue("installSnapshot");
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<CompletableFuture<List<SnapshotFileProgressProto>>> futures = new ArrayList<>();
+      for (InstallSnapshotRequestProto request : requests) {
+        futures.add(queue.submit(() -> snapshotManager.installSnapshot(stateMachine, request), executor));
+      }
+      // the chunks are installed in order
+      for (int i = 0; i < futures.size(); i++) {
+        final List<SnapshotFileProgressProto> progress = futures.get(i).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(Math.min((i + 1) * CHUNK_SIZE, data.length), progress.get(0).getOffset());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    final File installed = new File(storage.getStorageDir().getStateMachineDir(), new File(FILE_NAME).getName());
+    Assert.assertArrayEquals(data, Files.readAllBytes(installed.toPath()));
+    Assert.assertEquals(expected, MD5FileUtil.readStoredMd5ForFile(installed));
+  }
+
+  @Test
+  public void testRestartInstallation() throws Exception {
+    final byte[] data = randomBytes(5 * CHUNK_SIZE);
+    final MD5Hash expected = MD5Hash.digest(data);
+
+    // a partial installation is restarted from the beginning with a new request id
+    final List<InstallSnapshotRequestProto> first = newRequests("r1", data, expected.getDigest());
+    snapshotManager.installSnapshot(stateMachine, first.get(0));
+    snapshotManager.installSnapshot(stateMachine, first.get(1));
+    for (InstallSnapshotRequestProto request : newRequests("r2", data, expected.getDigest())) {
+      snapshotManager.installSnapshot(stateMachine, request);
+    }
+
+    final File installed = new File(storage.getStorageDir().getStateMachineDir(), new File(FILE_NAME).getName());
+    Assert.assertArrayEquals(data, Files.readAllBytes(installed.toPath()));
+  }
+
+  @Test
+  public void testResumeInstallation() throws Exception {
+    final byte[] data = randomBytes(6 * CHUNK_SIZE + 45);
+    final MD5Hash expected = MD5Hash.digest(data);
+
+    final List<InstallSnapshotRequestProto> first = newRequests("r1", data, expected.getDigest());
+    for (int i = 0; i < 3; i++) {
+      final List<SnapshotFileProgressProto> progress = snapshotManager.installSnapshot(stateMachine, first.get(i));
+      Assert.assertEquals(1, progress.size());
+      Assert.assertEquals(FILE_NAME, progress.get(0).getFilename());
+      Assert.assertEquals((i + 1) * CHUNK_SIZE, progress.get(0).getOffset());
+    }
+
+    // restart and then resume with a different request id
+    snapshotManager = new SnapshotManager(storage, RaftPeerId.valueOf("s0"));
+    final List<InstallSnapshotRequestProto> second = newRequests("r2", data, expected.getDigest());
+    for (int i = 3; i < second.size(); i++) {
+      Assert.assertNotNull(snapshotManager.installSnapshot(stateMachine, second.get(i)));
+    }
+
+    final File installed = new File(storage.getStorageDir().getStateMachineDir(), new File(FILE_NAME).getName());
+    Assert.assertArrayEquals(data, Files.readAllBytes(installed.toPath()));
+    Assert.assertEquals(expected, MD5FileUtil.readStoredMd5ForFile(installed));
+  }
+
+  static InstallSnapshotRequestProto newProgressRequest(String requestId, byte[] data, byte[] digest) {
+    return InstallSnapshotRequestProto.newBuilder()
+        .setSnapshotChunk(InstallSnapshotRequestProto.SnapshotChunkProto.newBuilder()
+            .setRequestId(requestId)
+            .setRequestIndex(0)
+            .setTermIndex(TermIndexProto.newBuilder().setTerm(1).setIndex(100))
+            .addFileChunks(FileChunkProto.newBuilder()
+                .setFilename(FILE_NAME)
+                .setTotalSize(data.length)
+                .setFileDigest(ByteString.copyFrom(digest))
+                .setProgressOnly(true)))
+        .build();
+  }
+
+  @Test
+  public void testQueryProgress() throws Exception {
+    final byte[] data = randomBytes(6 * CHUNK_SIZE + 45);
+    final MD5Hash expected = MD5Hash.digest(data);
+
+    // nothing has been received
+    List<SnapshotFileProgressProto> progress = snapshotManager.installSnapshot(stateMachine,
+        newProgressRequest("r1", data, expected.getDigest()));
+    Assert.assertEquals(0, progress.get(0).getOffset());
+
+    final List<InstallSnapshotRequestProto> first = newRequests("r1", data, expected.getDigest());
+    for (int i = 0; i < 3; i++) {
+      snapshotManager.installSnapshot(stateMachine, first.get(i));
+    }
+    progress = snapshotManager.installSnapshot(stateMachine, newProgressRequest("r1", data, expected.getDigest()));
+    Assert.assertEquals(3 * CHUNK_SIZE, progress.get(0).getOffset());
+
+    // the leader learns the progress from the follower after a restart
+    snapshotManager = new SnapshotManager(storage, RaftPeerId.valueOf("s0"));
+    progress = snapshotManager.installSnapshot(stateMachine, newProgressRequest("r2", data, expected.getDigest()));
+    Assert.assertEquals(3 * CHUNK_SIZE, progress.get(0).getOffset());
+
+    final List<InstallSnapshotRequestProto> second = newRequests("r2", data, expected.getDigest());
+    for (int i = 3; i < second.size(); i++) {
+      Assert.assertNotNull(snapshotManager.installSnapshot(stateMachine, second.get(i)));
+    }
+
+    final File installed = new File(storage.getStorageDir().getStateMachineDir(), new File(FILE_NAME).getName());
+    Assert.assertArrayEquals(data, Files.readAllBytes(installed.toPath()));
+    Assert.assertEquals(expected, MD5FileUtil.readStoredMd5ForFile(installed));
+  }
+
+  @Test
+  public void testResumeMismatch() throws Exception {
+    final byte[] data = randomBytes(4 * CHUNK_SIZE);
+    final MD5Hash expected = MD5Hash.digest(data);
+    final List<InstallSnapshotRequestProto> requests = newRequests("r1", data, expected.getDigest());
+    snapshotManager.installSnapshot(stateMachine, requests.get(0));
+
+    // the follower only has the first chunk
+    Assert.assertNull(snapshotManager.installSnapshot(stateMachine, requests.get(2)));
+  }
+
+  @Test
+  public void testDigestMismatch() throws Exception {
+    final byte[] data = randomBytes(3 * CHUNK_SIZE);
+    final byte[] wrongDigest = MD5Hash.digest(randomBytes(10)).getDigest();
+    final List<InstallSnapshotRequestProto> requests = newRequests("r1", data, wrongDigest);
+    for (int i = 0; i < requests.size() - 1; i++) {
+      snapshotManager.installSnapshot(stateMachine, requests.get(i));
+    }
+    testFailureCase("digest mismatch",
+        () -> snapshotManager.installSnapshot(stateMachine, requests.get(requests.size() - 1)),
+        CorruptedFileException.class);
+  }
+
+  @Test
+  public void testDeleteStaleTempDirs() throws Exception {
+    final RaftStorageDirectory dir = storage.getStorageDir();
+    final File older = dir.getInstallSnapshotTempDir(1, 50);
+    final File latest = dir.getInstallSnapshotTempDir(1, 80);
+    FileUtils.createDirectories(older);
+    FileUtils.createDirectories(latest);
+
+    // only the latest installation may be resumed after a restart
+    snapshotManager = new SnapshotManager(storage, RaftPeerId.valueOf("s0"));
+    Assert.assertFalse(older.exists());
+    Assert.assertTrue(latest.exists());
+
+    // a different snapshot is being installed
+    final byte[] data = randomBytes(CHUNK_SIZE);
+    snapshotManager.installSnapshot(stateMachine,
+        newRequests("r1", data, MD5Hash.digest(data).getDigest()).get(0));
+    Assert.assertFalse(latest.exists());
+  }
+
+  static FileChunkProto newReuseChunk(String filename, byte[] data) {
+    return FileChunkProto.newBuilder()
+        .setFilename(filename)
+        .setTotalSize(data.length)
+        .setFileDigest(ByteString.copyFrom(MD5Hash.digest(data).getDigest()))
+        .setReuse(true)
+        .build();
+  }
+
+  @Test
+  public void testReuseFiles() throws Exception {
+    // the current snapshot has an unchanged file
+    final byte[] unchanged = randomBytes(3 * CHUNK_SIZE);
+    final File existing = new File(storage.getStorageDir().getStateMachineDir(), "unchanged.dat");
+    FileUtils.createDirectories(existing.getParentFile());
+    Files.write(existing.toPath(), unchanged);
+    final SnapshotInfo currentSnapshot = Mockito.mock(SnapshotInfo.class);
+    Mockito.when(currentSnapshot.getTermIndex()).thenReturn(TermIndex.newTermIndex(1, 50));
+    Mockito.when(currentSnapshot.getFiles()).thenReturn(
+        Collections.singletonList(new FileInfo(existing.toPath(), MD5Hash.digest(unchanged))));
+    Mockito.when(stateMachine.getLatestSnapshot()).thenReturn(currentSnapshot);
+
+    final byte[] changed = randomBytes(2 * CHUNK_SIZE);
+    final InstallSnapshotRequestProto reuseRequest = InstallSnapshotRequestProto.newBuilder()
+        .setSnapshotChunk(InstallSnapshotRequestProto.SnapshotChunkProto.newBuilder()
+            .setRequestId("r1")
+            .setRequestIndex(0)
+            .setTermIndex(TermIndexProto.newBuilder().setTerm(1).setIndex(100))
+            .addAllFileChunks(Arrays.asList(newReuseChunk("sm/unchanged.dat", unchanged),
+                newReuseChunk(FILE_NAME, changed))))
+        .build();
+    final List<SnapshotFileProgressProto> progress = snapshotManager.installSnapshot(stateMachine, reuseRequest);
+    Assert.assertEquals(2, progress.size());
+    Assert.assertEquals(unchanged.length, progress.get(0).getOffset());
+    Assert.assertEquals(0, progress.get(1).getOffset());
+
+    // resending the last byte of a reused file must not reopen it since it may be linked to the current snapshot
+    final int last = unchanged.length - 1;
+    final InstallSnapshotRequestProto resend = InstallSnapshotRequestProto.newBuilder()
+        .setSnapshotChunk(InstallSnapshotRequestProto.SnapshotChunkProto.newBuilder()
+            .setRequestId("r1")
+            .setRequestIndex(1)
+            .setTermIndex(TermIndexProto.newBuilder().setTerm(1).setIndex(100))
+            .addFileChunks(FileChunkProto.newBuilder()
+                .setFilename("sm/unchanged.dat")
+                .setTotalSize(unchanged.length)
+                .setFileDigest(ByteString.copyFrom(MD5Hash.digest(unchanged).getDigest()))
+                .setOffset(last)
+                .setData(ByteString.copyFrom(unchanged, last, 1))
+                .setDone(true)))
+        .build();
+    final List<SnapshotFileProgressProto> resendProgress = snapshotManager.installSnapshot(stateMachine, resend);
+    Assert.assertEquals(unchanged.length, resendProgress.get(0).getOffset());
+    Assert.assertArrayEquals(unchanged, Files.readAllBytes(existing.toPath()));
+
+    // only the changed file is sent
+    for (InstallSnapshotRequestProto request : newRequests("r1", changed, MD5Hash.digest(changed).getDigest())) {
+      snapshotManager.installSnapshot(stateMachine, request);
+    }
+
+    final File smDir = storage.getStorageDir().getStateMachineDir();
+    final File reused = new File(smDir, "unchanged.dat");
+    Assert.assertArrayEquals(unchanged, Files.readAllBytes(reused.toPath()));
+    Assert.assertEquals(MD5Hash.digest(unchanged), MD5FileUtil.readStoredMd5ForFile(reused));
+    Assert.assertArrayEquals(changed, Files.readAllBytes(new File(smDir, new File(FILE_NAME).getName()).toPath()));
+  }
+}
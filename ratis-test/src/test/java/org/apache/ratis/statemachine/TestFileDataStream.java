@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.statemachine;
+
+import org.apache.ratis.BaseTest;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.metrics.MetricRegistries;
+import org.apache.ratis.protocol.RaftPeerId;
+import org.apache.ratis.server.RaftServerConfigKeys;
+import org.apache.ratis.server.RaftServerConfigKeys.DataStream.SyncPolicy;
+import org.apache.ratis.server.metrics.DataStreamMetrics;
+import org.apache.ratis.server.metrics.DataStreamServerMetrics;
+import org.apache.ratis.statemachine.impl.FileDataStream;
+import org.apache.ratis.util.FileUtils;
+import org.apache.ratis.util.SizeInBytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Test {@link FileDataStream}.
+ */
+public class TestFileDataStream extends BaseTest {
+  private File testDir;
+  private DataStreamMetrics metrics;
+
+  @Before
+  public void setup() throws IOException {
+    testDir = getTestDir();
+    FileUtils.createDirectories(testDir);
+    metrics = new DataStreamMetrics(RaftPeerId.valueOf("s0"));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (metrics != null) {
+      metrics.unregister();
+    }
+    if (testDir != null) {
+      FileUtils.deleteFully(testDir);
+    }
+  }
+
+  @Test
+  public void testSyncOnClose() throws Exception {
+    final RaftProperties properties = new RaftProperties();
+    RaftServerConfigKeys.DataStream.setFileSyncPolicy(properties, SyncPolicy.CLOSE);
+    runTestWrite(properties);
+    Assert.assertEquals(1, metrics.getSyncTimer().getCount());
+  }
+
+  @Test
+  public void testSyncBytes() throws Exception {
+    final RaftProperties properties = new RaftProperties();
+    RaftServerConfigKeys.DataStream.setFilePreallocatedSize(properties, SizeInBytes.valueOf("64KB"));
+    RaftServerConfigKeys.DataStream.setFileWriteBufferSize(properties, SizeInBytes.valueOf("5KB"));
+    RaftServerConfigKeys.DataStream.setFileSyncPolicy(properties, SyncPolicy.BYTES);
+    RaftServerConfigKeys.DataStream.setFileSyncBytes(properties, SizeInBytes.valueOf("32KB"));
+    runTestWrite(properties);
+    Assert.assertTrue(metrics.getSyncTimer().getCount() > 1);
+    Assert.assertTrue(metrics.getPreallocatedBytes().getCount() > 0);
+  }
+
+  @Test
+  public void testSyncEachWrite() throws Exception {
+    final RaftProperties properties = new RaftProperties();
+    RaftServerConfigKeys.DataStream.setFilePreallocatedSize(properties, SizeInBytes.valueOf(0));
+    RaftServerConfigKeys.DataStream.setFileSyncPolicy(properties, SyncPolicy.WRITE);
+    // the buffer is flushed with a partial block for each sync; FileDataStream asserts that the writes stay aligned
+    final int numWrites = runTestWrite(properties);
+    Assert.assertEquals(numWrites + 1, metrics.getSyncTimer().getCount());
+    Assert.assertEquals(0, metrics.getPreallocatedBytes().getCount());
+  }
+
+  @Test
+  public void testSeparateRegistries() {
+    // closing the data stream server must not unregister the metrics of the files
+    new DataStreamServerMetrics(RaftPeerId.valueOf("s0")).unregister();
+    Assert.assertTrue(MetricRegistries.global().get(metrics.getRegistry().getMetricRegistryInfo()).isPresent());
+  }
+
+  /** Write a mix of small and large buffers and verify the file content after close. */
+  private int runTestWrite(RaftProperties properties) throws IOException {
+    final int[] sizes = {1, 100, 4095, 4096, 4097, 10, 70_000, 3, 200_000, 65536, 17};
+    int total = 0;
+    for (int size : sizes) {
+      total += size;
+    }
+    final byte[] expected = new byte[total];
+    ThreadLocalRandom.current().nextBytes(expected);
+
+    final File file = new File(testDir, "stream.dat");
+    final FileDataStream stream = new FileDataStream(file, properties, metrics);
+    int offset = 0;
+    for (int size : sizes) {
+      final int n = stream.getWritableByteChannel().write(ByteBuffer.wrap(expected, offset, size));
+      Assert.assertEquals(size, n);
+      offset += size;
+      Assert.assertEquals(offset, stream.getBytesWritten());
+    }
+    stream.getWritableByteChannel().close();
+    Assert.assertFalse(stream.getWritableByteChannel().isOpen());
+    stream.cleanUp().join();
+
+    Assert.assertEquals(total, file.length());
+    Assert.assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+    Assert.assertEquals(total, metrics.getBytesWritten().getCount());
+    return sizes.length;
+  }
+}
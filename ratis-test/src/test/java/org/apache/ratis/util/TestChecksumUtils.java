@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.apache.ratis.util.ChecksumUtils.Crc32cProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Checksum;
+
+public class TestChecksumUtils {
+  @Test(timeout = 10000)
+  public void testCrc32cProviders() {
+    // the check value of CRC32C
+    final byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+    for(Crc32cProvider provider : Crc32cProvider.values()) {
+      if (provider.isAvailable()) {
+        final Checksum checksum = provider.newChecksum();
+        checksum.update(check, 0, check.length);
+        Assert.assertEquals(provider.toString(), 0xE3069283L, checksum.getValue());
+      }
+    }
+    Assert.assertTrue(ChecksumUtils.getCrc32cProvider().isAvailable());
+
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    for(int n = 0; n < 100; n++) {
+      final byte[] bytes = new byte[random.nextInt(10000)];
+      random.nextBytes(bytes);
+      final long expected = getValue(new PureJavaCrc32C(), bytes);
+      Assert.assertEquals(expected, getValue(ChecksumUtils.newCrc32c(), bytes));
+
+      final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+      direct.put(bytes).flip();
+      final Checksum checksum = ChecksumUtils.newCrc32c();
+      ChecksumUtils.update(checksum, direct);
+      Assert.assertEquals(expected, checksum.getValue());
+      Assert.assertFalse(direct.hasRemaining());
+
+      final Checksum copying = new PureJavaCrc32C();
+      direct.flip();
+      ChecksumUtils.updateByCopying(copying, direct);
+      Assert.assertEquals(expected, copying.getValue());
+    }
+  }
+
+  static long getValue(Checksum checksum, byte[] bytes) {
+    checksum.update(bytes, 0, bytes.length);
+    return checksum.getValue();
+  }
+}
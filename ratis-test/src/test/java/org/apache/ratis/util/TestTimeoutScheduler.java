@@ -24,6 +24,7 @@ import org.junit.Test;
 
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 public class TestTimeoutScheduler extends BaseTest {
@@ -210,6 +211,61 @@ public class TestTimeoutScheduler extends BaseTest {
     errorHandler.assertNoError();
   }
 
+  @Test(timeout = 1000)
+  public void testMultipleRounds() throws Exception {
+    // a small wheel so that the tasks take multiple rounds
+    final TimeoutScheduler scheduler = TimeoutScheduler.newInstance(
+        TimeDuration.valueOf(10, TimeUnit.MILLISECONDS), 4);
+    final ErrorHandler errorHandler = new ErrorHandler();
+
+    final int[] timeouts = {260, 60, 180, 20, 100};
+    final AtomicBoolean[] fired = new AtomicBoolean[timeouts.length];
+    for(int i = 0; i < fired.length; i++) {
+      final AtomicBoolean f = fired[i] = new AtomicBoolean(false);
+      scheduler.onTimeout(TimeDuration.valueOf(timeouts[i], TimeUnit.MILLISECONDS), () -> {
+        Assert.assertFalse(f.get());
+        f.set(true);
+      }, errorHandler);
+    }
+    Assert.assertEquals(timeouts.length, scheduler.getQueueSize());
+
+    Thread.sleep(140);
+    for(int i = 0; i < fired.length; i++) {
+      Assert.assertEquals(timeouts[i] < 140, fired[i].get());
+    }
+    Thread.sleep(200);
+    for (AtomicBoolean f : fired) {
+      Assert.assertTrue(f.get());
+    }
+    // only the shutdown task is pending
+    Assert.assertEquals(1, scheduler.getQueueSize());
+    errorHandler.assertNoError();
+  }
+
+  @Test(timeout = 1000)
+  public void testCancel() throws Exception {
+    final TimingWheel wheel = new TimingWheel("testCancel", TimeDuration.valueOf(10, TimeUnit.MILLISECONDS), 8);
+    try {
+      final AtomicInteger count = new AtomicInteger();
+      final TimingWheel.Task cancelled = wheel.schedule(count::incrementAndGet, HUNDRED_MILLIS);
+      wheel.schedule(count::incrementAndGet, HUNDRED_MILLIS);
+      Assert.assertEquals(2, wheel.getPendingCount());
+
+      cancelled.cancel();
+      Assert.assertEquals(1, wheel.getPendingCount());
+      HUNDRED_MILLIS.sleep();
+      HUNDRED_MILLIS.sleep();
+      Assert.assertEquals(1, count.get());
+      Assert.assertEquals(0, wheel.getPendingCount());
+
+      // cancelling a completed task has no effect
+      cancelled.cancel();
+      Assert.assertEquals(0, wheel.getPendingCount());
+    } finally {
+      wheel.shutdown();
+    }
+  }
+
   @Test(timeout = 10_000)
   public void testShutdown() throws Exception {
     final TimeoutScheduler scheduler = TimeoutScheduler.newInstance();
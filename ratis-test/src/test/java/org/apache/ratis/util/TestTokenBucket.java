@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestTokenBucket {
+  static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test(timeout = 1000)
+  public void testTake() {
+    final AtomicLong clock = new AtomicLong();
+    final TokenBucket bucket = new TokenBucket(1000, clock::get);
+
+    // the bucket is initially full
+    Assert.assertEquals(0, bucket.take(1000));
+    // going into debt
+    Assert.assertEquals(ONE_SECOND / 2, bucket.take(500));
+    Assert.assertEquals(ONE_SECOND, bucket.take(500));
+
+    // repay the debt
+    clock.addAndGet(ONE_SECOND);
+    Assert.assertEquals(0, bucket.take(0));
+    clock.addAndGet(ONE_SECOND / 2);
+    Assert.assertEquals(0, bucket.take(500));
+
+    // the bucket holds at most one second of tokens
+    clock.addAndGet(10 * ONE_SECOND);
+    Assert.assertEquals(0, bucket.take(1000));
+    Assert.assertEquals(ONE_SECOND / 10, bucket.take(100));
+  }
+
+  @Test(timeout = 1000)
+  public void testUnlimited() throws Exception {
+    final TokenBucket bucket = new TokenBucket(0);
+    Assert.assertTrue(bucket.isUnlimited());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(0, bucket.take(Long.MAX_VALUE / 100));
+      bucket.acquire(Long.MAX_VALUE / 100);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ratis.tools;
+
+import org.apache.ratis.client.RaftClient;
+import org.apache.ratis.conf.RaftProperties;
+import org.apache.ratis.proto.RaftProtos.FollowerReplicationProto;
+import org.apache.ratis.proto.RaftProtos.LeaderInfoProto;
+import org.apache.ratis.proto.RaftProtos.RaftPeerRole;
+import org.apache.ratis.proto.RaftProtos.RoleInfoProto;
+import org.apache.ratis.protocol.GroupInfoReply;
+import org.apache.ratis.protocol.RaftGroup;
+import org.apache.ratis.protocol.RaftGroupId;
+import org.apache.ratis.protocol.RaftPeer;
+import org.apache.ratis.protocol.RaftPeerId;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Dump the replication summary of a raft group, i.e. the per-follower replication status seen by the leader.
+ * <p>
+ * Usage: GroupReplicationSummary GROUP_ID PEER_ID:HOST:PORT[,PEER_ID:HOST:PORT...]
+ */
+public final class GroupReplicationSummary {
+  private GroupReplicationSummary() {
+
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Usage: " + GroupReplicationSummary.class.getSimpleName()
+          + " GROUP_ID PEER_ID:HOST:PORT[,PEER_ID:HOST:PORT...]");
+      System.exit(1);
+    }
+    final RaftGroupId groupId = RaftGroupId.valueOf(UUID.fromString(args[0]));
+    final RaftGroup group = RaftGroup.valueOf(groupId, parsePeers(args[1]));
+
+    try (RaftClient client = RaftClient.newBuilder()
+        .setProperties(new RaftProperties())
+        .setRaftGroup(group)
+        .build()) {
+      for (RaftPeer peer : group.getPeers()) {
+        final GroupInfoReply reply;
+        try {
+          reply = client.getGroupManagementApi(peer.getId()).info(groupId);
+        } catch (IOException e) {
+          System.out.println(peer.getId() + ": failed to get group info: " + e);
+          continue;
+        }
+        final RoleInfoProto role = reply.getRoleInfoProto();
+        if (role.getRole() == RaftPeerRole.LEADER) {
+          dump(role, System.out);
+          return;
+        }
+        System.out.println(peer.getId() + ": " + role.getRole());
+      }
+      System.out.println("Leader not found for " + groupId);
+    }
+  }
+
+  static List<RaftPeer> parsePeers(String peers) {
+    final List<RaftPeer> list = new ArrayList<>();
+    for (String peer : peers.split(",")) {
+      final int i = peer.indexOf(':');
+      if (i <= 0) {
+        throw new IllegalArgumentException("Invalid peer " + peer + ", expected PEER_ID:HOST:PORT");
+      }
+      list.add(RaftPeer.newBuilder()
+          .setId(RaftPeerId.valueOf(peer.substring(0, i)))
+          .setAddress(peer.substring(i + 1))
+          .build());
+    }
+    return list;
+  }
+
+  /** Print the replication summary of the given leader role info. */
+  public static void dump(RoleInfoProto role, PrintStream out) {
+    final LeaderInfoProto leader = role.getLeaderInfo();
+    out.printf("Leader %s: term=%d, lastIndex=%d, commitIndex=%d%n",
+        RaftPeerId.valueOf(role.getSelf().getId()), leader.getTerm(), leader.getLastIndex(), leader.getCommitIndex());
+    out.printf("%-20s %10s %10s %10s %10s %12s %12s %10s %12s %12s%n",
+        "follower", "next", "match", "lag", "lagMs", "entries/s", "bytes/s", "inFlight", "inFlightB", "latencyMs");
+    for (FollowerReplicationProto f : leader.getReplicationList()) {
+      out.printf("%-20s %10d %10d %10d %10d %12.1f %12.1f %10d %12d %12.3f%n",
+          RaftPeerId.valueOf(f.getId().getId()), f.getNextIndex(), f.getMatchIndex(),
+          f.getLagEntries(), f.getLagTimeMs(), f.getSentEntriesPerSecond(), f.getSentBytesPerSecond(),
+          f.getInFlightRequests(), f.getInFlightBytes(), f.getAppendEntriesLatencyMs());
+    }
+  }
+}